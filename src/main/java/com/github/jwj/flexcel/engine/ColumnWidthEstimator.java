@@ -0,0 +1,440 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.output.SheetOutput;
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import com.github.jwj.flexcel.style.RowFormat;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式的列宽估算：写出过程中按列记录渲染文本的最大宽度，Sheet 结束时换算为列宽。
+ * <p>
+ * 宽度以 11 磅默认字体中数字 0 的宽度为单位：东亚全角字符按 2 个单位计，其余字符按 1 个单位计，
+ * 再按单元格样式的字号和粗体加权；数值按样式的数字格式估算显示长度。字体、数字格式和自动换行等信息按模板样式缓存，
+ * 不使用 AWT 字体度量，也不需要 SXSSF 的列跟踪，每个单元格只是一次比较，较长的字符串才会逐字符扫描。
+ * 公式、自定义渲染和自动换行的单元格不参与估算，横向合并区域覆盖的单元格也不参与估算。
+ * 估算结果是近似值，不会小于模板中的列宽。只在写出线程上使用，不需要线程安全。
+ * </p>
+ */
+final class ColumnWidthEstimator {
+
+    // Excel 的列宽上限为 255 个字符
+    private static final int MAX_COLUMN_WIDTH = 255 * 256;
+    private static final float BASE_FONT_POINTS = 11f;
+    private static final float BOLD_FACTOR = 1.1f;
+    // 单元格两侧的留白，约为一个字符
+    private static final float PADDING = 1f;
+    // 常规格式下数值最多显示的字符数，更长的数值会以科学计数法显示
+    private static final int GENERAL_NUMBER_CHARS = 11;
+
+    private final List<CellStyle> templateStyles;
+    private final StyleMetrics[] metrics;
+    private final BitSet mergedColumns = new BitSet();
+    private float[] maxWidths = new float[32];
+    private int columnCount;
+
+    ColumnWidthEstimator(TemplateStyleTable styleTable) {
+        this.templateStyles = styleTable.getStyles();
+        this.metrics = new StyleMetrics[templateStyles.size()];
+    }
+
+    /**
+     * 记录一行中各单元格的显示宽度。
+     *
+     * @param row          待写出的行。
+     * @param rowIndex     该行在输出 Sheet 中的行号。
+     * @param sheetRegions 按输出行号登记的静态合并区域，其中横向合并覆盖的单元格不参与估算。
+     */
+    void measure(RenderedRow row, int rowIndex, List<CellRangeAddress> sheetRegions) {
+        boolean merged = markMergedColumns(row, rowIndex, sheetRegions);
+        RowFormat format = row.format;
+        int columnarSize = row.getColumnarSize();
+        for (int i = 0; i < columnarSize; i++) {
+            int col = row.getColumn(i);
+            if (merged && mergedColumns.get(col)) {
+                continue;
+            }
+            StyleMetrics m = metrics(format.getStyleIndex(col));
+            if (m.wrapText) {
+                continue;
+            }
+            switch (row.getType(i)) {
+                case RenderedRow.TYPE_NUMERIC:
+                    update(col, m.factor * numberChars(m, row.getNumber(i)));
+                    break;
+                case RenderedRow.TYPE_STRING:
+                    measureString(col, (String) row.getRef(i), m.factor);
+                    break;
+                case RenderedRow.TYPE_BOOLEAN:
+                    update(col, m.factor * (row.getNumber(i) != 0 ? 4 : 5));
+                    break;
+                case RenderedRow.TYPE_OBJECT:
+                    measureValue(col, row.getRef(i), m);
+                    break;
+                default:
+                    // 公式的结果在写出时未知，空白单元格没有内容
+                    break;
+            }
+        }
+        for (int j = 0; j < row.cells.size(); j++) {
+            RenderedCell cell = row.cells.get(j);
+            if (cell.customRenderer != null || cell.isFormula || (merged && mergedColumns.get(cell.colIndex))) {
+                continue;
+            }
+            StyleMetrics m = metrics(format.getStyleIndex(cell.colIndex));
+            if (!m.wrapText) {
+                measureValue(cell.colIndex, cell.value, m);
+            }
+        }
+    }
+
+    /**
+     * 把估算的列宽写入 Sheet，只设置比模板列宽更宽的列。
+     *
+     * @param output         输出 Sheet。
+     * @param templateWidths 模板中的列宽。
+     * @return 设置的列数。
+     */
+    int applyTo(SheetOutput output, Map<Integer, Integer> templateWidths) {
+        int applied = 0;
+        for (int col = 0; col < columnCount; col++) {
+            if (maxWidths[col] <= 0) {
+                continue;
+            }
+            int width = Math.min(MAX_COLUMN_WIDTH, (int) Math.ceil((maxWidths[col] + PADDING) * 256));
+            Integer templateWidth = templateWidths.get(col);
+            if (templateWidth == null || width > templateWidth) {
+                output.setColumnWidth(col, width);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 清空已记录的宽度，开始估算下一个 Sheet。
+     */
+    void reset() {
+        Arrays.fill(maxWidths, 0, columnCount, 0f);
+        columnCount = 0;
+    }
+
+    private boolean markMergedColumns(RenderedRow row, int rowIndex, List<CellRangeAddress> sheetRegions) {
+        mergedColumns.clear();
+        boolean merged = false;
+        List<CellRangeAddress> rowRegions = row.getStaticMergedRegions();
+        if (rowRegions != null) {
+            for (CellRangeAddress region : rowRegions) {
+                if (region.getLastColumn() > region.getFirstColumn()) {
+                    mergedColumns.set(region.getFirstColumn(), region.getLastColumn() + 1);
+                    merged = true;
+                }
+            }
+        }
+        for (CellRangeAddress region : sheetRegions) {
+            if (region.getFirstRow() <= rowIndex && rowIndex <= region.getLastRow()) {
+                mergedColumns.set(region.getFirstColumn(), region.getLastColumn() + 1);
+                merged = true;
+            }
+        }
+        return merged;
+    }
+
+    private void measureValue(int col, Object value, StyleMetrics m) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            measureString(col, (String) value, m.factor);
+        } else if (value instanceof Number) {
+            update(col, m.factor * numberChars(m, ((Number) value).doubleValue()));
+        } else if (value instanceof Date || value instanceof Calendar) {
+            update(col, m.factor * (m.kind == StyleMetrics.DATE ? m.fixedChars : GENERAL_NUMBER_CHARS));
+        } else if (value instanceof Boolean) {
+            update(col, m.factor * ((Boolean) value ? 4 : 5));
+        } else if (value instanceof RichTextString) {
+            measureString(col, ((RichTextString) value).getString(), m.factor);
+        } else {
+            measureString(col, value.toString(), m.factor);
+        }
+    }
+
+    private void measureString(int col, String value, float factor) {
+        int length = value.length();
+        // 即使全部是全角字符也不会超过当前最大宽度时，不必逐字符扫描
+        if (col < columnCount && length * 2 * factor <= maxWidths[col]) {
+            return;
+        }
+        float widest = 0;
+        float line = 0;
+        for (int k = 0; k < length; k++) {
+            char ch = value.charAt(k);
+            if (ch == '\n') {
+                widest = Math.max(widest, line);
+                line = 0;
+            } else {
+                line += isWide(ch) ? 2 : 1;
+            }
+        }
+        update(col, Math.max(widest, line) * factor);
+    }
+
+    private void update(int col, float width) {
+        if (col >= maxWidths.length) {
+            maxWidths = Arrays.copyOf(maxWidths, Math.max(col + 1, maxWidths.length * 2));
+        }
+        if (col >= columnCount) {
+            columnCount = col + 1;
+        }
+        if (width > maxWidths[col]) {
+            maxWidths[col] = width;
+        }
+    }
+
+    /**
+     * 东亚全角字符（CJK、假名、谚文、全角符号）。
+     */
+    private static boolean isWide(char ch) {
+        return ch >= 0x1100 && (ch <= 0x115F
+                || (ch >= 0x2E80 && ch <= 0xA4CF)
+                || (ch >= 0xAC00 && ch <= 0xD7A3)
+                || (ch >= 0xF900 && ch <= 0xFAFF)
+                || (ch >= 0xFE30 && ch <= 0xFE4F)
+                || (ch >= 0xFF00 && ch <= 0xFF60)
+                || (ch >= 0xFFE0 && ch <= 0xFFE6));
+    }
+
+    private static int numberChars(StyleMetrics m, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return 5;
+        }
+        switch (m.kind) {
+            case StyleMetrics.DATE:
+                return m.fixedChars;
+            case StyleMetrics.FORMATTED:
+                double scaled = Math.abs(m.percent ? value * 100 : value);
+                int digits = Math.max(integerDigits(scaled), m.minIntegerDigits);
+                return (value < 0 ? 1 : 0) + digits + (m.grouping && digits > 0 ? (digits - 1) / 3 : 0)
+                        + (m.decimals > 0 ? m.decimals + 1 : 0) + m.fixedChars;
+            default:
+                return generalChars(value);
+        }
+    }
+
+    /**
+     * 常规格式下数值的显示长度：整数部分加上必要的小数位，总长不超过 11 个字符。
+     */
+    private static int generalChars(double value) {
+        double abs = Math.abs(value);
+        if (abs >= 1e11 || (abs != 0 && abs < 1e-9)) {
+            return GENERAL_NUMBER_CHARS;
+        }
+        int sign = value < 0 ? 1 : 0;
+        int digits = Math.max(1, integerDigits(abs));
+        int maxDecimals = GENERAL_NUMBER_CHARS - 1 - digits - sign;
+        double fraction = abs - Math.floor(abs);
+        int decimals = 0;
+        while (decimals < maxDecimals && Math.abs(fraction - Math.rint(fraction)) > 1e-7) {
+            fraction *= 10;
+            decimals++;
+        }
+        return sign + digits + (decimals > 0 ? decimals + 1 : 0);
+    }
+
+    private static int integerDigits(double abs) {
+        if (abs < 1) {
+            return 0;
+        }
+        int digits = 1;
+        while (abs >= 10 && digits < 309) {
+            abs /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private StyleMetrics metrics(int styleIndex) {
+        if (styleIndex == RowFormat.NO_STYLE) {
+            return StyleMetrics.DEFAULT;
+        }
+        StyleMetrics m = metrics[styleIndex];
+        if (m == null) {
+            m = StyleMetrics.of(templateStyles.get(styleIndex));
+            metrics[styleIndex] = m;
+        }
+        return m;
+    }
+
+    /**
+     * 模板样式中与显示宽度有关的信息。
+     */
+    private static final class StyleMetrics {
+        static final int GENERAL = 0;
+        static final int DATE = 1;
+        static final int FORMATTED = 2;
+        static final StyleMetrics DEFAULT = new StyleMetrics(1f, false, GENERAL);
+
+        final float factor;
+        final boolean wrapText;
+        final int kind;
+        // 数字格式中的固定字符数（日期格式为整个格式的显示长度）
+        int fixedChars;
+        int minIntegerDigits;
+        int decimals;
+        boolean grouping;
+        boolean percent;
+
+        private StyleMetrics(float factor, boolean wrapText, int kind) {
+            this.factor = factor;
+            this.wrapText = wrapText;
+            this.kind = kind;
+        }
+
+        static StyleMetrics of(CellStyle style) {
+            float factor = 1f;
+            if (style instanceof XSSFCellStyle) {
+                XSSFFont font = ((XSSFCellStyle) style).getFont();
+                if (font != null) {
+                    factor = font.getFontHeightInPoints() / BASE_FONT_POINTS * (font.getBold() ? BOLD_FACTOR : 1);
+                }
+            }
+            String format = style.getDataFormatString();
+            String section = format == null ? "" : firstSection(format);
+            if (section.isEmpty() || "General".equalsIgnoreCase(section) || section.contains("@")
+                    || section.contains("E+") || section.contains("E-")) {
+                return new StyleMetrics(factor, style.getWrapText(), GENERAL);
+            }
+            if (DateUtil.isADateFormat(style.getDataFormat(), format)) {
+                StyleMetrics m = new StyleMetrics(factor, style.getWrapText(), DATE);
+                m.fixedChars = displayLength(section);
+                return m;
+            }
+            StyleMetrics m = new StyleMetrics(factor, style.getWrapText(), FORMATTED);
+            m.parseNumberFormat(section);
+            return m;
+        }
+
+        /**
+         * 统计数字格式中的占位符和固定字符：引号、转义和货币符号中的字符原样显示，{@code _x} 占一个字符宽度，
+         * {@code *x} 为填充字符，颜色、条件等方括号内容不显示。
+         */
+        private void parseNumberFormat(String section) {
+            boolean afterPoint = false;
+            for (int k = 0; k < section.length(); k++) {
+                char c = section.charAt(k);
+                switch (c) {
+                    case '"': {
+                        int end = section.indexOf('"', k + 1);
+                        end = end < 0 ? section.length() : end;
+                        fixedChars += end - k - 1;
+                        k = end;
+                        break;
+                    }
+                    case '[': {
+                        int end = section.indexOf(']', k);
+                        end = end < 0 ? section.length() : end;
+                        if (k + 1 < end && section.charAt(k + 1) == '$') {
+                            int dash = section.indexOf('-', k);
+                            fixedChars += Math.max(0, (dash > 0 && dash < end ? dash : end) - k - 2);
+                        }
+                        k = end;
+                        break;
+                    }
+                    case '\\':
+                    case '_':
+                        k++;
+                        fixedChars++;
+                        break;
+                    case '*':
+                        k++;
+                        break;
+                    case '0':
+                    case '?':
+                        if (afterPoint) decimals++;
+                        else minIntegerDigits++;
+                        break;
+                    case '#':
+                        if (afterPoint) decimals++;
+                        break;
+                    case '.':
+                        afterPoint = true;
+                        break;
+                    case ',':
+                        grouping |= !afterPoint;
+                        break;
+                    case '%':
+                        percent = true;
+                        fixedChars++;
+                        break;
+                    default:
+                        fixedChars++;
+                        break;
+                }
+            }
+        }
+
+        /**
+         * 日期格式的显示长度：每个格式字符按一个字符计，方括号中的内容（例如 {@code [h]}）按其中的字符计。
+         */
+        private static int displayLength(String section) {
+            int length = 0;
+            for (int k = 0; k < section.length(); k++) {
+                char c = section.charAt(k);
+                if (c != '"' && c != '\\' && c != '[' && c != ']') {
+                    length++;
+                }
+            }
+            return length;
+        }
+
+        /**
+         * 取格式的第一节（正数格式），忽略引号中的分号。
+         */
+        private static String firstSection(String format) {
+            boolean quoted = false;
+            for (int k = 0; k < format.length(); k++) {
+                char c = format.charAt(k);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ';' && !quoted) {
+                    return format.substring(0, k);
+                }
+            }
+            return format;
+        }
+    }
+}
@@ -23,13 +23,29 @@
 
 package com.github.jwj.flexcel.engine;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 
 /**
  * Excel模板引擎接口
  * 支持excelutils的所有特殊占位符功能
+ * <p>
+ * <b>线程安全：</b>引擎实例在构建后不可变，同一个实例可以被任意多个线程并发调用 {@code process}，
+ * 推荐在整个应用中共享。每次渲染的可变状态（作用域、字符串缓存、样式变体、写出器和 {@link RenderHandle}）
+ * 只属于这一次渲染；引擎级共享的对象池、表达式缓存和内存预算都是线程安全的。
+ * 注册到引擎上的服务实例、全局上下文中的值和自定义插件会被所有并发渲染共用，引擎不会对它们加锁，
+ * 它们自身必须是线程安全的（通常应当是无状态的）。传入的数据模型在渲染期间只读，渲染进行中不要修改它。
+ * </p>
  */
 public interface ExcelTemplateEngine {
 
@@ -41,4 +57,85 @@ public interface ExcelTemplateEngine {
      */
     void process(InputStream templateStream, Map<String, Object> data, OutputStream outputStream);
 
+    /**
+     * 使用模板生成Excel文件，并通过句柄控制截止时间和取消。
+     * <p>
+     * 默认实现只在开始前检查一次句柄，然后调用 {@link #process(InputStream, Map, OutputStream)}，
+     * 渲染过程中的取消和超时不会生效，进度计数也不会更新；需要这些能力的实现应当覆盖此方法。
+     * {@link PoiTemplateEngine} 已覆盖。
+     * </p>
+     * @param templateStream 模板文件输入流
+     * @param data 数据模型
+     * @param outputStream 输出流
+     * @param handle 渲染控制句柄，只能使用一次
+     * @throws RenderCancelledException 如果渲染被取消或超过截止时间
+     */
+    default void process(InputStream templateStream, Map<String, Object> data, OutputStream outputStream, RenderHandle handle) {
+        if (handle == null) {
+            throw new IllegalArgumentException("RenderHandle cannot be null.");
+        }
+        handle.begin();
+        handle.checkpoint();
+        process(templateStream, data, outputStream);
+    }
+
+    /**
+     * 使用模板文件生成Excel文件
+     * @param templateFile 模板文件路径
+     * @param data 数据模型
+     * @param outputFile 输出文件路径，已存在时被覆盖
+     */
+    default void process(Path templateFile, Map<String, Object> data, Path outputFile) {
+        process(templateFile, data, outputFile, RenderHandle.create());
+    }
+
+    /**
+     * 使用模板文件生成Excel文件，并通过句柄控制截止时间和取消。
+     * @param templateFile 模板文件路径
+     * @param data 数据模型
+     * @param outputFile 输出文件路径，已存在时被覆盖；渲染失败时文件中可能留下不完整的内容
+     * @param handle 渲染控制句柄，只能使用一次
+     * @throws RenderCancelledException 如果渲染被取消或超过截止时间
+     */
+    default void process(Path templateFile, Map<String, Object> data, Path outputFile, RenderHandle handle) {
+        try (FileChannel templateChannel = FileChannel.open(templateFile, StandardOpenOption.READ);
+             FileChannel outputChannel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            process(templateChannel, data, outputChannel, handle);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 使用通道中的模板生成Excel文件
+     * @param templateChannel 模板内容所在的通道，从当前位置读到末尾，不会被关闭
+     * @param data 数据模型
+     * @param outputChannel 输出通道，不会被关闭
+     */
+    default void process(ReadableByteChannel templateChannel, Map<String, Object> data, WritableByteChannel outputChannel) {
+        process(templateChannel, data, outputChannel, RenderHandle.create());
+    }
+
+    /**
+     * 使用通道中的模板生成Excel文件，并通过句柄控制截止时间和取消。
+     * 默认实现把通道包装为流后调用 {@link #process(InputStream, Map, OutputStream, RenderHandle)}。
+     * @param templateChannel 模板内容所在的通道，从当前位置读到末尾，不会被关闭
+     * @param data 数据模型
+     * @param outputChannel 输出通道，不会被关闭
+     * @param handle 渲染控制句柄，只能使用一次
+     * @throws RenderCancelledException 如果渲染被取消或超过截止时间
+     */
+    default void process(ReadableByteChannel templateChannel, Map<String, Object> data, WritableByteChannel outputChannel,
+                         RenderHandle handle) {
+        // zip 流以几百字节为单位写出，直接写入通道会产生大量系统调用；关闭这个流会关闭通道，这里只刷新它
+        OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(outputChannel), 64 * 1024);
+        process(Channels.newInputStream(templateChannel), data, outputStream, handle);
+        try {
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import com.github.jwj.flexcel.plugin.block.BlockDirectiveHandler;
 import com.github.jwj.flexcel.plugin.cell.CellTemplateFactory;
 import com.github.jwj.flexcel.style.StyleMappingManager;
 import com.github.jwj.flexcel.style.TemplateStyleInfo;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
@@ -17,6 +18,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -56,29 +58,44 @@ public final class FlexcelCompiler {
     public AnalyzedTemplate compile(InputStream templateStream) throws IOException {
         // 1. 将输入流缓冲到内存
         byte[] templateBytes = readStreamToBytes(templateStream);
+        return compile(() -> WorkbookFactory.create(new ByteArrayInputStream(templateBytes)));
+    }
+
+    /**
+     * 从模板文件执行分析和编译。两个阶段都由 POI 以只读方式随机访问文件，不先把整个文件缓冲到内存。
+     * @param templateFile 模板文件路径
+     * @return 封装了编译结果的 {@link AnalyzedTemplate}
+     * @throws IOException 如果读取模板文件失败
+     */
+    public AnalyzedTemplate compile(Path templateFile) throws IOException {
+        return compile(() -> WorkbookFactory.create(templateFile.toFile(), null, true));
+    }
 
+    private AnalyzedTemplate compile(TemplateSource templateSource) throws IOException {
         // 2. 分析阶段：提取样式和元数据
         logger.info("Analysis Phase: Starting style and position mapping analysis...");
         long analysisStart = System.currentTimeMillis();
         // 这里声明的变量名是 allSheetsStyleInfo
         Map<String, TemplateStyleInfo> allSheetsStyleInfo = new HashMap<>();
         List<String> sheetOrder = new ArrayList<>();
-        try (Workbook analysisWorkbook = WorkbookFactory.create(new ByteArrayInputStream(templateBytes))) {
+        TemplateStyleTable styleTable = new TemplateStyleTable();
+        try (Workbook analysisWorkbook = templateSource.open()) {
             StyleMappingManager styleMappingManager = new StyleMappingManager();
             for (Sheet sheet : analysisWorkbook) {
                 String sheetName = sheet.getSheetName();
                 sheetOrder.add(sheetName);
-                allSheetsStyleInfo.put(sheetName, styleMappingManager.extractTemplateStyles(sheet));
+                allSheetsStyleInfo.put(sheetName, styleMappingManager.extractTemplateStyles(sheet, styleTable));
             }
         }
-        logger.info("Analysis Phase: Completed in {}ms", System.currentTimeMillis() - analysisStart);
+        logger.info("Analysis Phase: Completed in {}ms. {} template styles, {} unique after structural dedupe.",
+                System.currentTimeMillis() - analysisStart, styleTable.getRegisteredStyleCount(), styleTable.size());
 
 
         // 3. 编译阶段：构建AST
         logger.info("Compilation Phase: Starting template pre-compilation...");
         long compileStart = System.currentTimeMillis();
         Map<String, PrecompiledTemplate> compiledTemplates = new HashMap<>();
-        try (Workbook compileWorkbook = WorkbookFactory.create(new ByteArrayInputStream(templateBytes))) {
+        try (Workbook compileWorkbook = templateSource.open()) {
             TemplateCompiler compiler = new TemplateCompiler(this.cellTemplateFactory, this.blockDirectiveHandlers);
             for (String sheetName : sheetOrder) {
                 Sheet sheet = compileWorkbook.getSheet(sheetName);
@@ -89,7 +106,7 @@ public final class FlexcelCompiler {
         }
         logger.info("Compilation Phase: Completed in {}ms", System.currentTimeMillis() - compileStart);
 
-        return new AnalyzedTemplate(sheetOrder, compiledTemplates, allSheetsStyleInfo);
+        return new AnalyzedTemplate(sheetOrder, compiledTemplates, allSheetsStyleInfo, styleTable);
     }
 
     private byte[] readStreamToBytes(InputStream inputStream) throws IOException {
@@ -101,4 +118,11 @@ public final class FlexcelCompiler {
         }
         return baos.toByteArray();
     }
-}
\ No newline at end of file
+
+    /**
+     * 可以重复打开的模板，分析和编译两个阶段各打开一次。
+     */
+    private interface TemplateSource {
+        Workbook open() throws IOException;
+    }
+}
@@ -28,13 +28,24 @@ import com.github.jwj.flexcel.plugin.cell.CellSyntaxHandler;
 import com.github.jwj.flexcel.plugin.cell.DefaultCellHandler;
 import com.github.jwj.flexcel.plugin.cell.FormulaCellHandler;
 import com.github.jwj.flexcel.plugin.cell.MergeCellHandler;
+import com.github.jwj.flexcel.plugin.cell.StyleCellHandler;
+import com.github.jwj.flexcel.output.DirectXlsxOutputBackend;
+import com.github.jwj.flexcel.output.OutputBackend;
+import com.github.jwj.flexcel.output.PoiOutputBackend;
+import com.github.jwj.flexcel.output.TempStorage;
+import com.github.jwj.flexcel.output.SheetOutput;
+import com.github.jwj.flexcel.output.WorkbookOutput;
 import com.github.jwj.flexcel.runtime.dto.MergeableRenderedCell;
 import com.github.jwj.flexcel.runtime.dto.RenderedCell;
 import com.github.jwj.flexcel.runtime.dto.RenderedRow;
 import com.github.jwj.flexcel.runtime.pool.DefaultObjectPool;
 import com.github.jwj.flexcel.runtime.pool.NoOpObjectPool;
 import com.github.jwj.flexcel.runtime.pool.ObjectPool;
+import com.github.jwj.flexcel.runtime.pool.ObjectPoolStatistics;
 import com.github.jwj.flexcel.runtime.TemplateContext;
+import com.github.jwj.flexcel.runtime.memory.MemoryBudget;
+import com.github.jwj.flexcel.runtime.memory.RenderMemoryBudget;
+import com.github.jwj.flexcel.runtime.memory.RowSizeEstimator;
 import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
 import com.github.jwj.flexcel.parser.expression.SpelExpressionEvaluator;
 import com.github.jwj.flexcel.parser.TemplateCompiler;
@@ -44,34 +55,53 @@ import com.github.jwj.flexcel.parser.ast.block.TemplateBlock;
 import com.github.jwj.flexcel.parser.ast.block.ForEachBlock;
 import com.github.jwj.flexcel.parser.ast.block.IfBlock;
 import com.github.jwj.flexcel.parser.ast.template.PrecompiledTemplate;
+import com.github.jwj.flexcel.parser.ast.template.RowRelativeFormula;
 import com.github.jwj.flexcel.parser.ast.template.RowTemplate;
 import com.github.jwj.flexcel.plugin.block.*;
 import com.github.jwj.flexcel.style.StyleMappingManager;
+import com.github.jwj.flexcel.style.RowFormat;
 import com.github.jwj.flexcel.style.TemplateStyleInfo;
-import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.streaming.SXSSFSheet;
-import org.apache.poi.xssf.streaming.SXSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 /**
  * <p>
  * 基于 Apache POI 的高性能流式 Excel 模板引擎。
  * </p>
+ * <p>
+ * 线程安全约定见 {@link ExcelTemplateEngine}：构建后的引擎和 {@link #compile} 得到的 {@link AnalyzedTemplate}
+ * 都可以在并发渲染之间共享。
+ * </p>
  */
 public class PoiTemplateEngine implements ExcelTemplateEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(PoiTemplateEngine.class);
+    private static final long QUEUE_POLL_INTERVAL_MS = 50;
+    // 生产者失败或渲染取消后等待消费者退出的上限；消费者正阻塞在输出流写入上时，中断不一定能让它立即返回
+    private static final long CONSUMER_STOP_TIMEOUT_MS = 30_000;
+    private static final int WINDOW_ADJUST_INTERVAL_ROWS = 256;
+    private static final int MIN_BUDGETED_WINDOW_SIZE = 16;
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+    // 列宽必须在第一行之前写出的后端上，自动列宽根据前若干行估算
+    private static final int AUTO_WIDTH_LOOKAHEAD_ROWS = 200;
+    // 自动模式预估行数时只直接取值的集合表达式：变量名或以 . 分隔的键路径
+    private static final Pattern SIMPLE_PATH_PATTERN = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*");
 
     private final int sxssfWindowSize;
     private final int queueCapacity;
@@ -80,7 +110,33 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
     private final ExpressionEvaluator expressionEvaluator;
     private final ObjectPool objectPool;
     private final FlexcelCompiler flexcelCompiler;
-    private final boolean streamingEnabled;
+    private final OutputBackend outputBackend;
+    private final RenderMode renderMode;
+    private final int inlineRowThreshold;
+    private final int maxStyleVariants;
+    private final boolean autoColumnWidth;
+    private final MemoryBudget memoryBudget;
+    private final SheetOverflowPolicy sheetOverflowPolicy;
+    private final int maxRowsPerSheet;
+
+    /**
+     * 获取引擎对象池的统计快照，用于观察命中率并调整 {@link Builder#objectPoolCapacities}。
+     *
+     * @return 统计快照。
+     */
+    public ObjectPoolStatistics getObjectPoolStatistics() {
+        return this.objectPool.getStatistics();
+    }
+
+    /**
+     * 获取该引擎上所有渲染当前估算占用的内存预算字节数，用于监控 {@link Builder#memoryBudget(long, long)}。
+     * 没有进行中的渲染时应为 0。
+     *
+     * @return 估算字节数。
+     */
+    public long getMemoryBytesInUse() {
+        return this.memoryBudget.getEngineBytesInUse();
+    }
 
     public static Builder builder() {
         return new Builder();
@@ -89,12 +145,22 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
     private PoiTemplateEngine(Builder builder, FlexcelCompiler flexcelCompiler) {
         this.sxssfWindowSize = builder.sxssfWindowSize;
         this.queueCapacity = builder.queueCapacity;
-        this.services = new HashMap<>(builder.services);
-        this.globalContext = new HashMap<>(builder.globalContext);
-        this.streamingEnabled = builder.streamingEnabled;
+        // 构建后不可变：所有并发渲染只读这两个 Map
+        this.services = Collections.unmodifiableMap(new HashMap<>(builder.services));
+        this.globalContext = Collections.unmodifiableMap(new HashMap<>(builder.globalContext));
+        this.outputBackend = builder.outputBackend;
         this.expressionEvaluator = builder.expressionEvaluator;
         this.objectPool = builder.objectPool;
         this.flexcelCompiler = flexcelCompiler;
+        this.renderMode = builder.renderMode;
+        this.inlineRowThreshold = builder.inlineRowThreshold;
+        this.maxStyleVariants = builder.maxStyleVariants;
+        this.autoColumnWidth = builder.autoColumnWidth;
+        this.memoryBudget = builder.memoryBudget;
+        this.sheetOverflowPolicy = builder.sheetOverflowPolicy;
+        this.maxRowsPerSheet = builder.maxRowsPerSheet > 0
+                ? Math.min(builder.maxRowsPerSheet, builder.outputBackend.getMaxRowsPerSheet())
+                : builder.outputBackend.getMaxRowsPerSheet();
 
         logger.info("PoiTemplateEngine created. CellHandlers: {}. BlockHandlers: {}",
                 builder.getRegisteredCellHandlerNames(),
@@ -105,6 +171,11 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
     public static class Builder {
         private int sxssfWindowSize = 1000;
         private boolean streamingEnabled = true;
+        private boolean sharedStringsEnabled = false;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private int tempFileCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private TempStorage tempStorage;
+        private OutputBackend outputBackend;
         private int queueCapacity = 2048;
         private final Map<String, Object> services = new HashMap<>();
         private final Map<String, Object> globalContext = new HashMap<>();
@@ -114,7 +185,15 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         private int rowPoolCapacity = 1024;
         private int cellPoolCapacity = 4096;
         private int mergeableCellPoolCapacity = 1024;
+        private boolean adaptiveObjectPool = false;
         private ObjectPool objectPool;
+        private RenderMode renderMode = RenderMode.AUTO;
+        private int inlineRowThreshold = 2000;
+        private int maxStyleVariants = 1000;
+        private boolean autoColumnWidth = false;
+        private MemoryBudget memoryBudget = MemoryBudget.unlimited();
+        private SheetOverflowPolicy sheetOverflowPolicy = SheetOverflowPolicy.FAIL;
+        private int maxRowsPerSheet = 0;
 
         private final List<CellSyntaxHandler> customCellSyntaxHandlers = new ArrayList<>();
         private final List<BlockDirectiveHandler> customBlockDirectiveHandlers = new ArrayList<>();
@@ -136,6 +215,83 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
             return this;
         }
 
+        /**
+         * 让默认的 POI 输出后端在流式模式下使用共享字符串表，重复的文本只在 sharedStrings.xml 中保存一次。
+         * POI 的共享字符串表没有容量上限，所有不同的字符串都会保留在内存中，适合取值有限的文本列；
+         * 需要有界字典时请使用 {@code outputBackend(new DirectXlsxOutputBackend(capacity))}。
+         * 设置 {@link #outputBackend(OutputBackend)} 后不再生效。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder sharedStrings() {
+            this.sharedStringsEnabled = true;
+            return this;
+        }
+
+        /**
+         * 设置默认 POI 输出后端写出 xlsx 包时的压缩级别（-1 为默认级别，0 到 9 由快到小）。
+         * 交互式导出可以用较低的级别换取更短的响应时间。只在流式模式下生效；
+         * 设置 {@link #outputBackend(OutputBackend)} 后不再生效，其他后端请在各自的 Builder 中设置。
+         *
+         * @param level 压缩级别，-1 到 9。
+         * @return 当前 Builder 实例。
+         */
+        public Builder compressionLevel(int level) {
+            if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Compression level must be between -1 and 9.");
+            }
+            this.compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * 设置默认 POI 输出后端在流式模式下压缩临时文件的级别，0 表示不压缩临时文件。
+         * 设置 {@link #outputBackend(OutputBackend)} 后不再生效。
+         *
+         * @param level 压缩级别，-1 到 9。
+         * @return 当前 Builder 实例。
+         */
+        public Builder tempFileCompressionLevel(int level) {
+            if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Compression level must be between -1 and 9.");
+            }
+            this.tempFileCompressionLevel = level;
+            return this;
+        }
+
+        /**
+         * 设置默认 POI 输出后端在流式模式下缓冲行数据的临时存储：带配额的专用目录、堆内存或堆外内存，
+         * 见 {@link TempStorage}。缓冲区在每次 {@code process} 结束时释放。
+         * 设置 {@link #outputBackend(OutputBackend)} 后不再生效。
+         *
+         * @param tempStorage 临时存储，不能为空。
+         * @return 当前 Builder 实例。
+         */
+        public Builder tempStorage(TempStorage tempStorage) {
+            if (tempStorage == null) {
+                throw new IllegalArgumentException("TempStorage cannot be null.");
+            }
+            this.tempStorage = tempStorage;
+            return this;
+        }
+
+        /**
+         * 设置输出后端。
+         * 默认使用 {@link PoiOutputBackend}（由 {@link #disableStreaming()} 和 {@link #sxssfWindowSize(int)} 配置）；
+         * 纯表格导出可以使用 {@link DirectXlsxOutputBackend} 直接写出 XLSX，跳过 POI 的行对象和临时文件。
+         * 设置后 {@link #disableStreaming()} 不再生效。
+         *
+         * @param outputBackend 输出后端，不能为空。
+         * @return 当前 Builder 实例。
+         */
+        public Builder outputBackend(OutputBackend outputBackend) {
+            if (outputBackend == null) {
+                throw new IllegalArgumentException("OutputBackend cannot be null.");
+            }
+            this.outputBackend = outputBackend;
+            return this;
+        }
+
         /**
          * 启用不安全的 SpEL 操作。
          * 这将允许引擎使用全反射能力，可能会带来安全风险。
@@ -170,9 +326,102 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
             this.queueCapacity = queueCapacity;
             return this;
         }
+        /**
+         * 设置渲染模式。
+         * 默认为 {@link RenderMode#AUTO}，即根据预估行数在内联模式和流水线模式之间自动选择。
+         *
+         * @param renderMode 渲染模式，不能为空。
+         * @return 当前 Builder 实例。
+         */
+        public Builder renderMode(RenderMode renderMode) {
+            if (renderMode == null) {
+                throw new IllegalArgumentException("RenderMode cannot be null.");
+            }
+            this.renderMode = renderMode;
+            return this;
+        }
+        /**
+         * 设置单个模板 Sheet 的行数超过上限时的处理方式，默认为 {@link SheetOverflowPolicy#FAIL}。
+         *
+         * @param sheetOverflowPolicy 溢出策略，不能为空。
+         * @return 当前 Builder 实例。
+         */
+        public Builder sheetOverflowPolicy(SheetOverflowPolicy sheetOverflowPolicy) {
+            if (sheetOverflowPolicy == null) {
+                throw new IllegalArgumentException("SheetOverflowPolicy cannot be null.");
+            }
+            this.sheetOverflowPolicy = sheetOverflowPolicy;
+            return this;
+        }
+        /**
+         * 启用自动列宽：写出时按列记录渲染内容的显示宽度，并把列宽调整为能容纳内容的宽度，但不会小于模板中的列宽。
+         * 宽度按字符数、字号和数字格式估算，不依赖 SXSSF 的 {@code trackColumnsForAutoSizing}，每个单元格的开销很小。
+         * POI 后端在 Sheet 结束时按全部行设置列宽；{@link DirectXlsxOutputBackend} 必须在第一行之前写出列宽，
+         * 因此按每个 Sheet 的前 200 行估算。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder autoColumnWidth() {
+            this.autoColumnWidth = true;
+            return this;
+        }
+
+        /**
+         * 设置每个输出 Sheet 的行数上限，超过时按 {@link #sheetOverflowPolicy(SheetOverflowPolicy)} 处理。
+         * 默认使用输出后端的上限（XLSX 为 1,048,576 行），设置的值大于后端上限时以后端上限为准。
+         *
+         * @param maxRowsPerSheet 行数上限，必须大于 0。
+         * @return 当前 Builder 实例。
+         */
+        public Builder maxRowsPerSheet(int maxRowsPerSheet) {
+            if (maxRowsPerSheet <= 0) throw new IllegalArgumentException("Max rows per sheet must be positive.");
+            this.maxRowsPerSheet = maxRowsPerSheet;
+            return this;
+        }
+        /**
+         * 设置自动模式下选择内联渲染的行数阈值。
+         * 预估行数不超过该值时，在调用线程上直接写入 Sheet；否则启动消费者线程。
+         *
+         * @param inlineRowThreshold 行数阈值，不能为负数。
+         * @return 当前 Builder 实例。
+         */
+        public Builder inlineRowThreshold(int inlineRowThreshold) {
+            if (inlineRowThreshold < 0) throw new IllegalArgumentException("Inline row threshold must not be negative.");
+            this.inlineRowThreshold = inlineRowThreshold;
+            return this;
+        }
+        /**
+         * 设置一次渲染中 {@code #style} 指令最多派生的样式数，默认为 1000。
+         * 每种（模板样式，样式描述）组合只派生一个样式，超过上限时渲染失败，避免数据驱动的样式耗尽 Excel 的样式数上限。
+         *
+         * @param maxStyleVariants 上限，必须大于 0。
+         * @return 当前 Builder 实例。
+         */
+        public Builder maxStyleVariants(int maxStyleVariants) {
+            if (maxStyleVariants <= 0) throw new IllegalArgumentException("Max style variants must be positive.");
+            this.maxStyleVariants = maxStyleVariants;
+            return this;
+        }
+        /**
+         * 设置内存预算。
+         * <p>
+         * 引擎会估算队列中在途行和 SXSSF 内存窗口的保留大小：单次渲染超出 {@code perRenderBytes}
+         * 或该引擎上所有并发渲染合计超出 {@code engineWideBytes} 时，生产者会被限速，
+         * 同时 SXSSF 窗口会按平均行大小缩小。估算值为近似值，应预留一定余量。
+         * </p>
+         *
+         * @param perRenderBytes  单次渲染的字节上限，必须大于 0。
+         * @param engineWideBytes 引擎内所有渲染合计的字节上限，必须大于 0。
+         * @return 当前 Builder 实例。
+         */
+        public Builder memoryBudget(long perRenderBytes, long engineWideBytes) {
+            this.memoryBudget = new MemoryBudget(perRenderBytes, engineWideBytes);
+            return this;
+        }
         /**
          * 设置表达式求值器。
          * 如果未设置，将使用默认的 SpEL 表达式求值器。
+         * 求值器被所有并发渲染共用，必须是线程安全的。
          *
          * @param expressionEvaluator 自定义的表达式求值器实例。
          * @return 当前 Builder 实例。
@@ -212,6 +461,18 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
             this.mergeableCellPoolCapacity = mergeableCellCapacity;
             return this;
         }
+        /**
+         * 启用自适应对象池。
+         * 启用后 {@link #objectPoolCapacities} 设置的容量只作为上限，
+         * 实际保留的对象数会根据最近几次渲染的借出峰值自动增减。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder adaptiveObjectPool() {
+            this.adaptiveObjectPool = true;
+            return this;
+        }
+
         /**
          * 设置自定义对象池。
          * 如果设置了自定义对象池，将使用该池来管理行和单元格的复用。
@@ -229,6 +490,7 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
 
         /**
          * 注册一个服务类，引擎会根据配置智能决定注册实例还是类本身。
+         * 注册的实例被引擎上的所有并发渲染共用，引擎不会对方法调用加锁，服务必须是线程安全的。
          *
          * <p><b>注册逻辑如下:</b></p>
          * <ol>
@@ -297,6 +559,7 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         /**
          * 设置全局上下文。
          * 全局上下文中的变量可以在模板中通过表达式访问。
+         * 构建时复制键值对，值本身被所有并发渲染共用，不应在渲染期间修改。
          *
          * @param context 全局上下文，不能为空。
          * @return 当前 Builder 实例。
@@ -310,6 +573,7 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         /**
          * 注册自定义单元格语法处理器。
          * 这些处理器可以用于处理特定的单元格语法，如公式、合并等。
+         * 处理器可能被并发的编译调用，应当是无状态的。
          *
          * @param handler 自定义单元格语法处理器，不能为空。
          * @return 当前 Builder 实例。
@@ -323,6 +587,7 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         /**
          * 注册自定义块指令处理器。
          * 这些处理器可以用于处理特定的块指令，如循环、条件等。
+         * 处理器可能被并发的编译调用，应当是无状态的。
          *
          * @param handler 自定义块指令处理器，不能为空。
          * @return 当前 Builder 实例。
@@ -341,9 +606,21 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
             if (this.expressionEvaluator == null) {
                 this.expressionEvaluator = new SpelExpressionEvaluator(this.unsafeSpelOperationsEnabled);
             }
+            if (this.outputBackend == null) {
+                PoiOutputBackend.Builder backend = PoiOutputBackend.builder()
+                        .streaming(this.streamingEnabled)
+                        .windowSize(this.sxssfWindowSize)
+                        .sharedStrings(this.sharedStringsEnabled)
+                        .compressionLevel(this.compressionLevel)
+                        .tempFileCompressionLevel(this.tempFileCompressionLevel);
+                if (this.tempStorage != null) {
+                    backend.tempStorage(this.tempStorage);
+                }
+                this.outputBackend = backend.build();
+            }
             if (this.objectPool == null) {
                 this.objectPool = this.objectPoolingEnabled
-                        ? new DefaultObjectPool(rowPoolCapacity, cellPoolCapacity, mergeableCellPoolCapacity)
+                        ? new DefaultObjectPool(rowPoolCapacity, cellPoolCapacity, mergeableCellPoolCapacity, adaptiveObjectPool)
                         : new NoOpObjectPool();
             }
 
@@ -351,6 +628,8 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
             allCellHandlers.add(new FormulaCellHandler());
             allCellHandlers.add(new MergeCellHandler());
             allCellHandlers.addAll(this.customCellSyntaxHandlers);
+            // #style 排在自定义处理器之后，自定义处理器能处理的单元格不会被拆分
+            allCellHandlers.add(new StyleCellHandler(allCellHandlers));
             allCellHandlers.add(new DefaultCellHandler());
             allCellHandlers.forEach(h -> this.registeredCellHandlerNames.add(h.getClass().getSimpleName()));
             CellTemplateFactory cellTemplateFactory = new CellTemplateFactory(allCellHandlers);
@@ -367,13 +646,125 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         }
     }
 
+    /**
+     * 编译模板。
+     * 编译结果不可变，可以在多次渲染（包括并发渲染）之间共享，省去每次渲染重复解析模板的开销。
+     *
+     * @param templateStream 模板文件输入流
+     * @return 编译结果，交给 {@link #process(AnalyzedTemplate, Map, OutputStream, RenderHandle)} 渲染。
+     */
+    public AnalyzedTemplate compile(InputStream templateStream) {
+        try {
+            return this.flexcelCompiler.compile(templateStream);
+        } catch (Exception e) {
+            throw new RuntimeException("Template compilation failed", e);
+        }
+    }
+
+    /**
+     * 编译模板文件，文件由 POI 以只读方式随机访问，不先缓冲到内存。
+     *
+     * @param templateFile 模板文件路径
+     * @return 编译结果，交给 {@link #process(AnalyzedTemplate, Map, OutputStream, RenderHandle)} 渲染。
+     */
+    public AnalyzedTemplate compile(Path templateFile) {
+        try {
+            return this.flexcelCompiler.compile(templateFile);
+        } catch (Exception e) {
+            throw new RuntimeException("Template compilation failed", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 模板文件由 POI 以只读方式随机访问，不先缓冲到内存；模板编译完成后才打开输出文件。
+     * </p>
+     */
+    @Override
+    public void process(Path templateFile, Map<String, Object> data, Path outputFile, RenderHandle handle) {
+        if (handle == null) {
+            throw new IllegalArgumentException("RenderHandle cannot be null.");
+        }
+        AnalyzedTemplate analyzedTemplate;
+        try {
+            analyzedTemplate = this.flexcelCompiler.compile(templateFile);
+        } catch (Exception e) {
+            throw new RuntimeException("Template processing failed", e);
+        }
+        // zip 流以几百字节为单位写出，直接写入文件会产生大量系统调用
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(outputFile), 64 * 1024)) {
+            process(analyzedTemplate, data, outputStream, handle);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public void process(InputStream templateStream, Map<String, Object> data, OutputStream outputStream) {
-        long startTime = System.currentTimeMillis();
+        process(templateStream, data, outputStream, RenderHandle.create());
+    }
+
+    @Override
+    public void process(InputStream templateStream, Map<String, Object> data, OutputStream outputStream, RenderHandle handle) {
+        if (handle == null) {
+            throw new IllegalArgumentException("RenderHandle cannot be null.");
+        }
+        AnalyzedTemplate analyzedTemplate;
         try {
-            // 1. 调用编译器获取分析和编译结果
-            AnalyzedTemplate analyzedTemplate = this.flexcelCompiler.compile(templateStream);
+            analyzedTemplate = this.flexcelCompiler.compile(templateStream);
+        } catch (Exception e) {
+            throw new RuntimeException("Template processing failed", e);
+        }
+        process(analyzedTemplate, data, outputStream, handle);
+    }
+
+    /**
+     * 使用已编译的模板生成 Excel 文件。
+     *
+     * @param analyzedTemplate {@link #compile(InputStream)} 的结果
+     * @param data             数据模型
+     * @param outputStream     输出流
+     */
+    public void process(AnalyzedTemplate analyzedTemplate, Map<String, Object> data, OutputStream outputStream) {
+        process(analyzedTemplate, data, outputStream, RenderHandle.create());
+    }
 
+    /**
+     * 创建分片导出：用同一个已编译模板将多个数据分片并行渲染为多个文件。
+     * 批量生成大量小文件（例如每个客户一份对账单）时使用 {@link ShardedExport#mailMerge(Iterator, ShardedExport.MergeTarget)}。
+     *
+     * @param analyzedTemplate {@link #compile(InputStream)} 的结果
+     * @return 分片导出的 Builder
+     */
+    public ShardedExport.Builder sharded(AnalyzedTemplate analyzedTemplate) {
+        return ShardedExport.builder(this, analyzedTemplate);
+    }
+
+    /**
+     * 使用已编译的模板生成 Excel 文件，并通过句柄控制截止时间和取消。
+     *
+     * @param analyzedTemplate {@link #compile(InputStream)} 的结果
+     * @param data             数据模型
+     * @param outputStream     输出流
+     * @param handle           渲染控制句柄，只能使用一次
+     * @throws RenderCancelledException 如果渲染被取消或超过截止时间
+     */
+    public void process(AnalyzedTemplate analyzedTemplate, Map<String, Object> data, OutputStream outputStream, RenderHandle handle) {
+        process(analyzedTemplate, data, outputStream, handle, this.renderMode);
+    }
+
+    /**
+     * 以指定的渲染模式渲染，忽略引擎配置的 {@link Builder#renderMode(RenderMode)}。供批量渲染使用。
+     */
+    void process(AnalyzedTemplate analyzedTemplate, Map<String, Object> data, OutputStream outputStream, RenderHandle handle,
+                 RenderMode renderMode) {
+        if (handle == null) {
+            throw new IllegalArgumentException("RenderHandle cannot be null.");
+        }
+        handle.begin();
+        long startTime = System.currentTimeMillis();
+        try {
             // 从 analyzedTemplate 中获取所需数据
             Map<String, TemplateStyleInfo> allSheetsStyleInfo = analyzedTemplate.getSheetStyles();
             List<String> sheetOrder = analyzedTemplate.getSheetOrder();
@@ -381,58 +772,65 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
 
             // 2. 开始执行阶段
             Map<String, String> stringCache = new WeakHashMap<>();
-            logger.info("Execution Phase: Starting single-producer-consumer model...");
+            logger.info("Execution Phase: Starting render (mode: {})...", renderMode);
             long generateStart = System.currentTimeMillis();
-            try (Workbook outputWorkbook = this.streamingEnabled ?
-                    new SXSSFWorkbook(null, sxssfWindowSize, true, false) : new XSSFWorkbook()) {
-                Map<CellStyle, CellStyle> styleCache = new HashMap<>();
-                prepareStyles(outputWorkbook, allSheetsStyleInfo.values(), styleCache);
-
+            try (RenderMemoryBudget renderBudget = this.memoryBudget.openRender();
+                 WorkbookOutput workbookOutput = this.outputBackend.open(analyzedTemplate.getStyleTable(), outputStream)) {
+                StyleVariantCache styleVariants = new StyleVariantCache(workbookOutput, this.maxStyleVariants);
+                ColumnWidthEstimator columnWidths = this.autoColumnWidth ? new ColumnWidthEstimator(analyzedTemplate.getStyleTable()) : null;
                 for (String sheetName : sheetOrder) {
                     logger.info("Processing sheet: {}", sheetName);
                     PrecompiledTemplate compiledTemplate = compiledTemplates.get(sheetName);
                     if (compiledTemplate == null) continue;
 
-                    Sheet outputSheet;
-                    if (outputWorkbook instanceof SXSSFWorkbook) {
-                        outputSheet = ((SXSSFWorkbook) outputWorkbook).createSheet(sheetName);
-                    } else {
-                        outputSheet = outputWorkbook.createSheet(sheetName);
-                    }
+                    handle.enterSheet(sheetName);
+                    handle.checkpoint();
+                    SheetOutput sheetOutput = workbookOutput.createSheet(sheetName);
                     TemplateContext baseContext = new TemplateContext(data, services, globalContext);
                     TemplateStyleInfo styleInfo = allSheetsStyleInfo.get(sheetName);
-                    styleInfo.getAllColumnWidths().forEach(outputSheet::setColumnWidth);
-
-                    BlockingQueue<RenderedRow> queue = new ArrayBlockingQueue<>(queueCapacity);
-                    Future<?> consumerFuture = startConsumerThread(queue, outputSheet, styleInfo, styleCache, this.objectPool);
-
-                    try {
-                        AtomicInteger globalRowCounter = new AtomicInteger(0);
-                        executeTemplate(compiledTemplate.getRootBlocks(), baseContext, queue, this.objectPool, globalRowCounter, stringCache);
-                    } catch (Exception e) {
-                        consumerFuture.cancel(true);
-                        throw new RuntimeException("Producer thread failed during template execution", e);
-                    } finally {
-                        queue.put(RenderedRow.POISON_PILL);
+                    styleInfo.getAllColumnWidths().forEach(sheetOutput::setColumnWidth);
+
+                    List<RowTemplate> headerRows = collectHeaderRows(compiledTemplate.getRootBlocks());
+                    TemplateRowTracker rowTracker = new TemplateRowTracker(compiledTemplate.getRootBlocks(), headerRows.size());
+                    baseContext.setRowReferenceResolver(rowTracker);
+                    RowCursor cursor = new RowCursor(this.maxRowsPerSheet, headerRows, baseContext, rowTracker);
+                    SheetWriter sheetWriter = new SheetWriter(workbookOutput, sheetOutput, sheetName, styleInfo,
+                            cursor.getHeaderRows().size(), styleVariants, columnWidths, this.objectPool, handle, renderBudget);
+                    if (shouldRenderInline(renderMode, compiledTemplate, baseContext, sheetName)) {
+                        renderInline(compiledTemplate, baseContext, cursor, sheetWriter, stringCache, handle);
+                    } else {
+                        renderPipelined(compiledTemplate, baseContext, cursor, sheetWriter, stringCache, handle);
                     }
-
-                    consumerFuture.get();
-                    applyStaticMergedRegions(outputSheet, styleInfo);
+                    sheetWriter.completeSheet();
+                    handle.completeSheet();
+                }
+                handle.checkpoint();
+                if (renderBudget.isBounded() && renderBudget.getThrottledMillis() > 0) {
+                    logger.info("Producer was throttled by the memory budget for {}ms.", renderBudget.getThrottledMillis());
                 }
                 logger.info("Writing data to output stream...");
-                outputWorkbook.write(outputStream);
+                workbookOutput.finish();
             }
             logger.info("Execution Phase: Completed in {}ms", System.currentTimeMillis() - generateStart);
+        } catch (RenderCancelledException e) {
+            logger.warn("Template processing aborted after {}ms: {}", System.currentTimeMillis() - startTime, e.getMessage());
+            throw e;
         } catch (Exception e) {
             // 将 IOException 等异常包装成 RuntimeException，保持接口一致性
             throw new RuntimeException("Template processing failed", e);
+        } finally {
+            this.objectPool.onRenderComplete();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Object pool statistics: {}", this.objectPool.getStatistics());
+            }
         }
         logger.info("Template processing successful. Total time: {}ms", System.currentTimeMillis() - startTime);
     }
 
     private void executeTemplate(List<TemplateBlock> blocks, TemplateContext context,
-                                 BlockingQueue<RenderedRow> queue, ObjectPool pool,
-                                 AtomicInteger globalRowCounter, Map<String, String> stringCache) throws InterruptedException {
+                                 RowSink sink, ObjectPool pool,
+                                 RowCursor cursor, Map<String, String> stringCache,
+                                 RenderHandle handle) throws InterruptedException {
 
         // 遍历当前层级的所有块
         for (TemplateBlock block : blocks) {
@@ -445,15 +843,17 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
 
                 // 判断条件，并递归执行相应的分支
                 if (ifBlock.evaluateCondition(ifContext, this.expressionEvaluator)) {
-                    executeTemplate(ifBlock.getThenBlocks(), ifContext, queue, pool, globalRowCounter, stringCache);
+                    executeTemplate(ifBlock.getThenBlocks(), ifContext, sink, pool, cursor, stringCache, handle);
                 } else {
-                    executeTemplate(ifBlock.getElseBlocks(), ifContext, queue, pool, globalRowCounter, stringCache);
+                    executeTemplate(ifBlock.getElseBlocks(), ifContext, sink, pool, cursor, stringCache, handle);
                 }
 
                 // 2. 如果是 FOREACH 块
             } else if (block instanceof ForEachBlock) {
                 ForEachBlock feBlock = (ForEachBlock) block;
-                int loopStartRowNo = globalRowCounter.get() + 1;
+                int loopSheetIndex = cursor.getSheetIndex();
+                int loopStartRowNo = cursor.peekNextRowNo();
+                cursor.getRowTracker().beginLoop(feBlock);
 
 
                 // 求值集合表达式
@@ -463,20 +863,26 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
                     int index = 0;
                     // 遍历集合
                     for (Object item : (Iterable<?>) itemsObject) {
+                        handle.checkpoint();
+                        cursor.getRowTracker().beginIteration(feBlock);
                         // 为每一次循环创建一个独立的子作用域，非常重要！
                         TemplateContext itemContext = new TemplateContext(context);
                         // 在子作用域中设置循环变量
                         itemContext.setVariable(feBlock.getItemName(), item);
                         itemContext.setVariable(feBlock.getIndexName(), index++);
-                        itemContext.setVariable("currentRowNo", globalRowCounter.get() + 1); // 如果需要 currentRowNo
+                        itemContext.setVariable("currentRowNo", cursor.peekNextRowNo()); // 如果需要 currentRowNo
 
                         // 递归执行 for-each 块的子块
-                        executeTemplate(feBlock.getChildren(), itemContext, queue, pool, globalRowCounter, stringCache);
+                        executeTemplate(feBlock.getChildren(), itemContext, sink, pool, cursor, stringCache, handle);
                     }
                 } else {
                     logger.warn("Expression '{}' in #foreach is not iterable, skipping.", feBlock.getCollectionExpression());
                 }
-                int loopEndRowNo = globalRowCounter.get();
+                int loopEndRowNo = cursor.getRowNo();
+                if (cursor.getSheetIndex() != loopSheetIndex) {
+                    // 循环跨越了续表：行号只在最后一个续表内有意义，起始行取表头之后的第一行
+                    loopStartRowNo = cursor.getHeaderRows().size() + 1;
+                }
                 context.setVariable("startRowNo", loopStartRowNo);
                 context.setVariable("endRowNo", loopEndRowNo);
                 logger.debug("Set loop boundaries for collection '{}': startRowNo={}, endRowNo={}",
@@ -486,27 +892,270 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
                 // 遍历所有静态行模板
                 for (RowTemplate rt : ((StaticRowsBlock) block).getRowTemplates()) {
                     // 注意：这里我们使用传入的 context，因为它已经包含了上层（如 for-each）设置的变量
-                    context.setVariable("currentRowNo", globalRowCounter.incrementAndGet()); // 更新行号
-                    queue.put(rt.produce(context, pool, stringCache, this.expressionEvaluator));
+                    handle.checkpoint();
+                    if (cursor.isFull()) {
+                        startContinuationSheet(cursor, sink, pool, stringCache, handle);
+                    }
+                    context.setVariable("currentRowNo", cursor.advance(rt)); // 更新行号并记录模板行的输出位置
+                    sink.accept(rt.produce(context, pool, stringCache, this.expressionEvaluator));
+                    handle.rowProduced();
                 }
 
                 // 4. 如果是根块 (仅在开始时出现)
             } else if (block instanceof RootBlock) {
                 // 直接递归其子节点
-                executeTemplate(((RootBlock) block).getChildren(), context, queue, pool, globalRowCounter, stringCache);
+                executeTemplate(((RootBlock) block).getChildren(), context, sink, pool, cursor, stringCache, handle);
+            }
+        }
+    }
+
+    /**
+     * 当前 Sheet 已满时切换到续表：通知写入端打开新的 Sheet，并重新输出表头行。
+     */
+    private void startContinuationSheet(RowCursor cursor, RowSink sink, ObjectPool pool,
+                                        Map<String, String> stringCache, RenderHandle handle) throws InterruptedException {
+        if (this.sheetOverflowPolicy == SheetOverflowPolicy.FAIL) {
+            throw new IllegalStateException("Sheet '" + handle.getCurrentSheet() + "' exceeds the maximum of "
+                    + cursor.getMaxRows() + " rows. Use SheetOverflowPolicy.ROLLOVER to continue on new sheets.");
+        }
+        List<RowTemplate> headerRows = cursor.getHeaderRows();
+        if (headerRows.size() >= cursor.getMaxRows()) {
+            throw new IllegalStateException("The " + headerRows.size() + " header rows do not fit on a continuation sheet of "
+                    + cursor.getMaxRows() + " rows.");
+        }
+        cursor.startNextSheet();
+        sink.accept(RenderedRow.SHEET_BREAK);
+        TemplateContext headerContext = new TemplateContext(cursor.getHeaderContext());
+        for (RowTemplate rt : headerRows) {
+            headerContext.setVariable("currentRowNo", cursor.advance(rt));
+            sink.accept(rt.produce(headerContext, pool, stringCache, this.expressionEvaluator));
+            handle.rowProduced();
+        }
+    }
+
+    /**
+     * 收集模板开头、第一个块级指令之前的静态行，作为续表的表头。
+     */
+    private static List<RowTemplate> collectHeaderRows(List<TemplateBlock> blocks) {
+        List<RowTemplate> headerRows = new ArrayList<>();
+        collectHeaderRows(blocks, headerRows);
+        return headerRows;
+    }
+
+    /**
+     * @return 是否遍历完所有块都没有遇到块级指令。
+     */
+    private static boolean collectHeaderRows(List<TemplateBlock> blocks, List<RowTemplate> headerRows) {
+        for (TemplateBlock block : blocks) {
+            if (block instanceof StaticRowsBlock) {
+                headerRows.addAll(((StaticRowsBlock) block).getRowTemplates());
+            } else if (!(block instanceof RootBlock) || !collectHeaderRows(((RootBlock) block).getChildren(), headerRows)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断当前 Sheet 是否使用内联模式渲染。
+     */
+    private boolean shouldRenderInline(RenderMode renderMode, PrecompiledTemplate compiledTemplate,
+                                       TemplateContext baseContext, String sheetName) {
+        if (renderMode != RenderMode.AUTO) {
+            return renderMode == RenderMode.INLINE;
+        }
+        long estimatedRows = estimateRowCount(compiledTemplate.getRootBlocks(), baseContext, this.inlineRowThreshold);
+        boolean inline = estimatedRows >= 0 && estimatedRows <= this.inlineRowThreshold;
+        logger.debug("Sheet '{}': estimated rows={}, threshold={}, using {} mode.",
+                sheetName, estimatedRows < 0 ? "unknown" : estimatedRows, this.inlineRowThreshold, inline ? "INLINE" : "PIPELINED");
+        return inline;
+    }
+
+    /**
+     * 预估一组块将产生的行数。
+     * <p>
+     * 预估不执行表达式：只有集合表达式是变量名或以 {@code .} 分隔的 Map 键路径（例如 {@code items}、
+     * {@code report.rows}）时，才从基础上下文中直接取值，结果为 {@link Collection} 时使用其大小。
+     * 方法调用、运算等其他表达式可能是服务调用或数据库查询，求值两次会重复副作用，
+     * 也可能返回只能遍历一次的迭代器，因此一律视为未知；依赖循环变量的嵌套集合和取值为 null 的情况同样视为未知。
+     * IF 块不求值条件，取两个分支中的较大值。一旦累计值超过 {@code limit} 就提前返回。
+     * </p>
+     *
+     * @return 预估行数；无法预估时返回 -1。
+     */
+    private long estimateRowCount(List<TemplateBlock> blocks, TemplateContext context, long limit) {
+        long total = 0;
+        for (TemplateBlock block : blocks) {
+            long blockRows;
+            if (block instanceof StaticRowsBlock) {
+                blockRows = ((StaticRowsBlock) block).getRowTemplates().size();
+            } else if (block instanceof RootBlock) {
+                blockRows = estimateRowCount(((RootBlock) block).getChildren(), context, limit - total);
+            } else if (block instanceof IfBlock) {
+                IfBlock ifBlock = (IfBlock) block;
+                long thenRows = estimateRowCount(ifBlock.getThenBlocks(), context, limit - total);
+                long elseRows = estimateRowCount(ifBlock.getElseBlocks(), context, limit - total);
+                blockRows = (thenRows < 0 || elseRows < 0) ? -1 : Math.max(thenRows, elseRows);
+            } else if (block instanceof ForEachBlock) {
+                ForEachBlock feBlock = (ForEachBlock) block;
+                Object items = lookupCollection(feBlock.getCollectionExpression(), context);
+                if (!(items instanceof Collection)) {
+                    return -1;
+                }
+                int size = ((Collection<?>) items).size();
+                if (size == 0) {
+                    blockRows = 0;
+                } else {
+                    long perItem = estimateRowCount(feBlock.getChildren(), context, (limit - total) / size + 1);
+                    blockRows = perItem < 0 ? -1 : perItem * size;
+                }
+            } else {
+                return -1;
+            }
+            if (blockRows < 0) {
+                return -1;
+            }
+            total += blockRows;
+            if (total > limit) {
+                return total;
             }
         }
+        return total;
     }
 
-    private Future<?> startConsumerThread(BlockingQueue<RenderedRow> queue, Sheet sheet, TemplateStyleInfo styleInfo,
-                                          Map<CellStyle, CellStyle> styleCache, ObjectPool pool) {
+    /**
+     * 不经过表达式求值器，按变量名和 Map 键路径直接查找循环集合。
+     *
+     * @return 查到的值；表达式不是简单路径或路径中途不是 Map 时返回 null。
+     */
+    private static Object lookupCollection(String expression, TemplateContext context) {
+        String path = expression.trim();
+        if (!SIMPLE_PATH_PATTERN.matcher(path).matches()) {
+            return null;
+        }
+        String[] names = path.split("\\.");
+        Object value = context.getVariable(names[0]);
+        for (int i = 1; i < names.length && value != null; i++) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?, ?>) value).get(names[i]);
+        }
+        return value;
+    }
+
+    /**
+     * 内联模式：在调用线程上执行模板，并直接把每一行写入 Sheet。
+     */
+    private void renderInline(PrecompiledTemplate compiledTemplate, TemplateContext baseContext, RowCursor cursor,
+                              SheetWriter sheetWriter, Map<String, String> stringCache,
+                              RenderHandle handle) throws InterruptedException {
+        executeTemplate(compiledTemplate.getRootBlocks(), baseContext, sheetWriter, this.objectPool, cursor, stringCache, handle);
+        sheetWriter.finish();
+    }
+
+    /**
+     * 流水线模式：生产者在调用线程上执行模板，消费者线程从有界队列中取出行并写入 Sheet。
+     * <p>
+     * 生产者与消费者都以短超时轮询队列，并在每次等待超时后检查渲染句柄，
+     * 因此即使一方已停止（取消、超时或异常），另一方也不会永久阻塞。
+     * 生产者出错时先等消费者退出再返回，确保关闭输出和内存预算时没有消费者仍在写入。
+     * </p>
+     */
+    private void renderPipelined(PrecompiledTemplate compiledTemplate, TemplateContext baseContext, RowCursor cursor,
+                                 SheetWriter sheetWriter, Map<String, String> stringCache,
+                                 RenderHandle handle) throws Exception {
+        BlockingQueue<RenderedRow> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ConsumerLifecycle consumer = new ConsumerLifecycle();
+        Future<?> consumerFuture = startConsumerThread(queue, sheetWriter, handle, consumer);
+        RenderMemoryBudget renderBudget = sheetWriter.renderBudget;
+        RowSink queueSink = row -> {
+            if (renderBudget.isBounded() && row != RenderedRow.SHEET_BREAK) {
+                row.retainedSizeEstimate = RowSizeEstimator.estimate(row);
+                // 消费者异常退出后队列不再排空，等待预算时也要检查它，否则没有截止时间的渲染会永久阻塞
+                renderBudget.acquire(row.retainedSizeEstimate, () -> {
+                    handle.checkpoint();
+                    ensureConsumerRunning(consumerFuture);
+                });
+            }
+            offerUntilAccepted(queue, row, consumerFuture, handle);
+        };
+
+        try {
+            executeTemplate(compiledTemplate.getRootBlocks(), baseContext, queueSink, this.objectPool, cursor, stringCache, handle);
+            offerUntilAccepted(queue, RenderedRow.POISON_PILL, consumerFuture, handle);
+        } catch (RenderCancelledException e) {
+            consumer.stop(consumerFuture);
+            throw e;
+        } catch (Exception e) {
+            consumer.stop(consumerFuture);
+            throw new RuntimeException("Producer thread failed during template execution", e);
+        }
+
+        try {
+            consumerFuture.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RenderCancelledException) {
+                throw (RenderCancelledException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 将行放入队列；队列已满时周期性检查渲染句柄和消费者状态，避免消费者停止后生产者永久阻塞。
+     */
+    private void offerUntilAccepted(BlockingQueue<RenderedRow> queue, RenderedRow row,
+                                    Future<?> consumerFuture, RenderHandle handle) throws InterruptedException {
+        while (!queue.offer(row, QUEUE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            handle.checkpoint();
+            ensureConsumerRunning(consumerFuture);
+        }
+    }
+
+    /**
+     * 消费者已经结束时抛出异常，供生产者在各处等待时检查。
+     */
+    private static void ensureConsumerRunning(Future<?> consumerFuture) {
+        if (consumerFuture.isDone()) {
+            throw new IllegalStateException("Consumer thread terminated before the sheet was complete.", consumerFailure(consumerFuture));
+        }
+    }
+
+    /**
+     * @return 已结束的消费者抛出的异常，没有异常时返回 null。
+     */
+    private static Throwable consumerFailure(Future<?> consumerFuture) {
+        try {
+            consumerFuture.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+
+    private Future<?> startConsumerThread(BlockingQueue<RenderedRow> queue, SheetWriter sheetWriter, RenderHandle handle,
+                                          ConsumerLifecycle lifecycle) {
         ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "fastexcel-consumer"));
         Runnable consumerTask = () -> {
+            if (!lifecycle.start()) {
+                return;
+            }
             try {
-                consume(queue, sheet, styleInfo, styleCache, pool);
+                consume(queue, sheetWriter, handle);
+            } catch (RenderCancelledException e) {
+                logger.debug("Consumer thread stopped: {}", e.getMessage());
+                throw e;
             } catch (Exception e) {
                 logger.error("Consumer thread terminated due to a critical error!", e);
                 throw new RuntimeException(e);
+            } finally {
+                lifecycle.exit();
             }
         };
         Future<?> future = consumerExecutor.submit(consumerTask);
@@ -514,210 +1163,432 @@ public class PoiTemplateEngine implements ExcelTemplateEngine {
         return future;
     }
 
-    private void consume(BlockingQueue<RenderedRow> queue, Sheet sheet, TemplateStyleInfo styleInfo,
-                         Map<CellStyle, CellStyle> styleCache, ObjectPool pool) throws InterruptedException {
-        Map<Integer, CellStyle[]> rowStyleCache = new HashMap<>();
-        int currentRowIndex = 0;
-        Map<Integer, Object> lastValuesForMerge = new HashMap<>();
-        Map<Integer, Integer> mergeStartRows = new HashMap<>();
+    /**
+     * 跟踪消费者任务是否开始和退出，供生产者出错时中断消费者并等待它退出。
+     * <p>
+     * 被取消的 {@link Future#get()} 会立即返回，不会等待仍在运行的任务，因此通过消费者退出时计数的闩锁等待。
+     * 调用方随后会关闭输出（SXSSF 的 dispose 会删除临时数据）和内存预算，消费者此时必须已经不再写入。
+     * </p>
+     */
+    private static final class ConsumerLifecycle {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch exited = new CountDownLatch(1);
+
+        /**
+         * @return 任务是否可以开始；已被 {@link #stop} 抢先时返回 false。
+         */
+        boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        void exit() {
+            exited.countDown();
+        }
+
+        void stop(Future<?> consumerFuture) {
+            if (started.compareAndSet(false, true)) {
+                // 任务还没开始运行，之后也不会再运行
+                consumerFuture.cancel(false);
+                return;
+            }
+            consumerFuture.cancel(true);
+            try {
+                if (!exited.await(CONSUMER_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Consumer thread did not stop within {}ms after the render was aborted.", CONSUMER_STOP_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
+    private void consume(BlockingQueue<RenderedRow> queue, SheetWriter sheetWriter, RenderHandle handle) throws InterruptedException {
         while (true) {
-            RenderedRow rowData = queue.take();
+            RenderedRow rowData = queue.poll(QUEUE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            handle.checkpoint();
+            if (rowData == null) {
+                continue;
+            }
             if (rowData == RenderedRow.POISON_PILL) {
                 break;
             }
+            long queuedBytes = rowData.retainedSizeEstimate;
+            sheetWriter.accept(rowData);
+            if (queuedBytes > 0) {
+                sheetWriter.renderBudget.release(queuedBytes);
+            }
+        }
+        sheetWriter.finish();
+    }
 
-            Row outputRow = sheet.createRow(currentRowIndex);
-            CellStyle[] styles = rowStyleCache.computeIfAbsent(rowData.templateRowNum, k -> {
-                CellStyle[] newStyles = new CellStyle[rowData.cells.size()];
-                for (int i = 0; i < rowData.cells.size(); i++) {
-                    newStyles[i] = findCellStyle(rowData.cells.get(i).templateAddress, styleInfo, styleCache);
+    /**
+     * 将 {@link RenderedRow} 写入单个输出 Sheet 的写入器。
+     * <p>
+     * 持有一个 Sheet 的全部写入状态（当前行号、行样式缓存、纵向合并跟踪），
+     * 流水线模式下由消费者线程独占使用，内联模式下由调用线程直接使用。
+     * 收到 {@link RenderedRow#SHEET_BREAK} 时结束当前 Sheet，并在同一个模板 Sheet 的续表中继续写入。
+     * </p>
+     */
+    private final class SheetWriter implements RowSink {
+        private final WorkbookOutput workbookOutput;
+        private final String templateSheetName;
+        private final TemplateStyleInfo styleInfo;
+        private final int headerRowCount;
+        private final StyleVariantCache styleVariants;
+        // 为 null 表示未启用自动列宽
+        private final ColumnWidthEstimator columnWidths;
+        // 列宽必须先于行写出时，暂存用于估算列宽的前若干行；为 null 表示不暂存
+        private List<RenderedRow> lookaheadRows;
+        private List<CellRangeAddress> horizontalMerges;
+        private boolean measuring;
+        private SheetOutput output;
+        private int continuationCount;
+        private final ObjectPool pool;
+        private final RenderHandle handle;
+        private final RenderMemoryBudget renderBudget;
+        private final Map<Integer, Object> lastValuesForMerge = new HashMap<>();
+        private final Map<Integer, Integer> mergeStartRows = new HashMap<>();
+        private int currentRowIndex = 0;
+        private long writtenBytes = 0;
+        private int windowSize = sxssfWindowSize;
+
+        SheetWriter(WorkbookOutput workbookOutput, SheetOutput output, String templateSheetName, TemplateStyleInfo styleInfo,
+                    int headerRowCount, StyleVariantCache styleVariants, ColumnWidthEstimator columnWidths,
+                    ObjectPool pool, RenderHandle handle, RenderMemoryBudget renderBudget) {
+            this.workbookOutput = workbookOutput;
+            this.output = output;
+            this.templateSheetName = templateSheetName;
+            this.styleInfo = styleInfo;
+            this.headerRowCount = headerRowCount;
+            this.styleVariants = styleVariants;
+            this.columnWidths = columnWidths;
+            this.pool = pool;
+            this.handle = handle;
+            this.renderBudget = renderBudget;
+            startColumnWidthEstimate();
+        }
+
+        /**
+         * 为当前 Sheet 开始估算列宽。只统计会被登记为横向合并的静态区域：续表只保留表头行内的区域。
+         */
+        private void startColumnWidthEstimate() {
+            if (columnWidths == null) {
+                return;
+            }
+            columnWidths.reset();
+            measuring = true;
+            lookaheadRows = output.supportsDeferredColumnWidths() ? null : new ArrayList<>();
+            horizontalMerges = new ArrayList<>();
+            for (CellRangeAddress region : styleInfo.getMergedRegions()) {
+                if (region.getLastColumn() > region.getFirstColumn()
+                        && (continuationCount == 0 || region.getLastRow() < headerRowCount)) {
+                    horizontalMerges.add(region);
                 }
-                return newStyles;
-            });
+            }
+        }
 
-            Float height = styleInfo.getAllRowHeights().get(rowData.templateRowNum);
-            if (height != null) {
-                outputRow.setHeightInPoints(height);
+        /**
+         * 设置估算的列宽，并写出暂存的行。之后的行不再参与估算。
+         */
+        private void applyColumnWidths() {
+            if (!measuring) {
+                return;
             }
+            measuring = false;
+            int applied = columnWidths.applyTo(output, styleInfo.getAllColumnWidths());
+            logger.debug("Auto-sized {} columns on sheet '{}'.", applied, handle.getCurrentSheet());
+            List<RenderedRow> rows = lookaheadRows;
+            lookaheadRows = null;
+            if (rows != null) {
+                for (RenderedRow row : rows) {
+                    writeRow(row);
+                }
+            }
+        }
 
-            for (int i = 0; i < rowData.cells.size(); i++) {
-                RenderedCell cellData = rowData.cells.get(i);
-                int colIdx = cellData.colIndex;
+        @Override
+        public void accept(RenderedRow rowData) {
+            if (rowData == RenderedRow.SHEET_BREAK) {
+                startContinuationSheet();
+                return;
+            }
+            if (measuring) {
+                int rowIndex = currentRowIndex + (lookaheadRows != null ? lookaheadRows.size() : 0);
+                columnWidths.measure(rowData, rowIndex, horizontalMerges);
+                if (lookaheadRows != null) {
+                    lookaheadRows.add(rowData);
+                    if (lookaheadRows.size() >= AUTO_WIDTH_LOOKAHEAD_ROWS) {
+                        applyColumnWidths();
+                    }
+                    return;
+                }
+            }
+            writeRow(rowData);
+        }
 
-                if (cellData instanceof MergeableRenderedCell) {
-                    handleMergeableCell(sheet, outputRow, (MergeableRenderedCell) cellData, styles[i], currentRowIndex, lastValuesForMerge, mergeStartRows);
+        private void writeRow(RenderedRow rowData) {
+            if (renderBudget.isBounded()) {
+                trackWindowMemory(rowData);
+            }
+            RowFormat format = rowData.format;
+            output.startRow(currentRowIndex, format.hasHeight() ? format.getHeightInPoints() : -1);
+
+            // 列式存储的普通值单元格与旁路通道中的自定义渲染、可合并单元格各自按列递增排列，
+            // 这里按列号归并两路写出，保证后端收到的单元格是按列有序的（XLSX 要求行内单元格按列排列）
+            int columnarSize = rowData.getColumnarSize();
+            int sideSize = rowData.cells.size();
+            int i = 0;
+            int j = 0;
+            while (i < columnarSize || j < sideSize) {
+                if (j == sideSize || (i < columnarSize && rowData.getColumn(i) <= rowData.cells.get(j).colIndex)) {
+                    int colIdx = rowData.getColumn(i);
+                    completePendingMerge(colIdx);
+                    writeColumnarCell(rowData, i, styleIndex(rowData, colIdx));
+                    lastValuesForMerge.remove(colIdx);
+                    i++;
                 } else {
-                    handleRegularCell(sheet, outputRow, cellData, styles[i], currentRowIndex, lastValuesForMerge, mergeStartRows);
+                    RenderedCell cellData = rowData.cells.get(j);
+                    int styleIndex = styleIndex(rowData, cellData.colIndex);
+                    if (cellData instanceof MergeableRenderedCell) {
+                        handleMergeableCell((MergeableRenderedCell) cellData, styleIndex);
+                    } else {
+                        handleRegularCell(cellData, styleIndex);
+                    }
+                    j++;
                 }
             }
+            output.endRow();
 
             // 在写入行后，应用该行模板附带的静态合并区域
-            applyRowStaticMergedRegions(sheet, rowData, currentRowIndex);
+            applyRowStaticMergedRegions(rowData);
 
             pool.returnRow(rowData);
             currentRowIndex++;
+            handle.rowWritten();
         }
 
-        for (Map.Entry<Integer, Integer> entry : mergeStartRows.entrySet()) {
-            int colIdx = entry.getKey();
-            int startRow = entry.getValue();
-            if (currentRowIndex - 1 > startRow) {
-                sheet.addMergedRegion(new CellRangeAddress(startRow, currentRowIndex - 1, colIdx, colIdx));
+        /**
+         * 取单元格的样式索引：模板样式，或者 {@code #style} 在模板样式基础上派生的样式。
+         */
+        private int styleIndex(RenderedRow rowData, int colIdx) {
+            int styleIndex = rowData.format.getStyleIndex(colIdx);
+            if (rowData.hasStyleOverrides()) {
+                String styleSpec = rowData.getStyleOverride(colIdx);
+                if (styleSpec != null) {
+                    styleIndex = styleVariants.resolve(styleIndex, styleSpec);
+                }
             }
+            return styleIndex;
         }
-    }
 
-    // handleMergeableCell, handleRegularCell, completePendingMerge, createAndSetCell, 等方法保持不变...
-    private void handleMergeableCell(Sheet sheet, Row outputRow, MergeableRenderedCell cellData, CellStyle style,
-                                     int currentRowIndex, Map<Integer, Object> lastValuesForMerge, Map<Integer, Integer> mergeStartRows) {
-        int colIdx = cellData.colIndex;
-        Object currentValue = cellData.value;
-        Object lastValue = lastValuesForMerge.get(colIdx);
-
-        boolean isSameAsLast = (currentValue instanceof String && lastValue instanceof String)
-                ? (currentValue == lastValue)
-                : Objects.equals(currentValue, lastValue);
-
-        if (isSameAsLast && currentRowIndex > 0) {
-            if (!mergeStartRows.containsKey(colIdx)) {
-                mergeStartRows.put(colIdx, currentRowIndex - 1);
+        /**
+         * 累计已写出行的估算大小，并定期按预算调整 SXSSF 窗口。
+         * 窗口变小后，超出窗口的行会在下一次 createRow 时被刷出到临时文件。
+         */
+        private void trackWindowMemory(RenderedRow rowData) {
+            long rowBytes = rowData.retainedSizeEstimate > 0 ? rowData.retainedSizeEstimate : RowSizeEstimator.estimate(rowData);
+            writtenBytes += rowBytes;
+            int rowsWritten = currentRowIndex + 1;
+            if (!output.supportsRowWindow() || rowsWritten % WINDOW_ADJUST_INTERVAL_ROWS != 0) {
+                return;
+            }
+            long sheetRowBytes = (writtenBytes / rowsWritten) * RowSizeEstimator.SHEET_ROW_FACTOR;
+            int recommended = renderBudget.recommendWindowRows(sheetRowBytes, sxssfWindowSize, MIN_BUDGETED_WINDOW_SIZE);
+            if (recommended != windowSize) {
+                logger.debug("Adjusting SXSSF window from {} to {} rows (~{} bytes/row).", windowSize, recommended, sheetRowBytes);
+                output.setRowWindow(recommended);
+                windowSize = recommended;
             }
-            Cell emptyCell = outputRow.createCell(colIdx);
-            if (style != null) emptyCell.setCellStyle(style);
-        } else {
-            completePendingMerge(sheet, colIdx, currentRowIndex, mergeStartRows);
-            createAndSetCell(outputRow, cellData, style);
+            renderBudget.updateWindowBytes((long) Math.min(windowSize, rowsWritten) * sheetRowBytes);
         }
-        lastValuesForMerge.put(colIdx, currentValue);
-    }
 
-    private void handleRegularCell(Sheet sheet, Row outputRow, RenderedCell cellData, CellStyle style,
-                                   int currentRowIndex, Map<Integer, Object> lastValuesForMerge, Map<Integer, Integer> mergeStartRows) {
-        int colIdx = cellData.colIndex;
-        completePendingMerge(sheet, colIdx, currentRowIndex, mergeStartRows);
-        createAndSetCell(outputRow, cellData, style);
-        lastValuesForMerge.remove(colIdx);
-    }
+        /**
+         * 写入一个列式单元格。数值、字符串和布尔值直接调用对应的写入方法，不经过类型分派。
+         */
+        private void writeColumnarCell(RenderedRow rowData, int i, int styleIndex) {
+            int colIdx = rowData.getColumn(i);
+            switch (rowData.getType(i)) {
+                case RenderedRow.TYPE_NUMERIC:
+                    output.writeNumber(colIdx, rowData.getNumber(i), styleIndex);
+                    break;
+                case RenderedRow.TYPE_STRING:
+                    output.writeString(colIdx, (String) rowData.getRef(i), styleIndex);
+                    break;
+                case RenderedRow.TYPE_BOOLEAN:
+                    output.writeBoolean(colIdx, rowData.getNumber(i) != 0, styleIndex);
+                    break;
+                case RenderedRow.TYPE_FORMULA:
+                    writeFormula(colIdx, (String) rowData.getRef(i), styleIndex);
+                    break;
+                case RenderedRow.TYPE_OBJECT:
+                    output.writeValue(colIdx, rowData.getRef(i), styleIndex);
+                    break;
+                case RenderedRow.TYPE_ROW_FORMULA:
+                    writeRowFormula(colIdx, (RowRelativeFormula) rowData.getRef(i), (int) rowData.getNumber(i), styleIndex);
+                    break;
+                case RenderedRow.TYPE_PARSED_FORMULA:
+                    writeParsedFormula(colIdx, (String) rowData.getRef(i), styleIndex);
+                    break;
+                default:
+                    output.writeBlank(colIdx, styleIndex);
+                    break;
+            }
+        }
 
-    private void completePendingMerge(Sheet sheet, int colIdx, int currentRowIndex, Map<Integer, Integer> mergeStartRows) {
-        if (mergeStartRows.containsKey(colIdx)) {
-            int startRow = mergeStartRows.remove(colIdx);
-            if (currentRowIndex - 1 > startRow) {
-                sheet.addMergedRegion(new CellRangeAddress(startRow, currentRowIndex - 1, colIdx, colIdx));
+        private void writeFormula(int colIdx, String formula, int styleIndex) {
+            try {
+                output.writeFormula(colIdx, formula, styleIndex);
+            } catch (Exception e) {
+                logger.error("Failed to set formula: '{}' at row {}, col {}", formula, currentRowIndex, colIdx, e);
+                output.writeString(colIdx, "##FORMULA_ERROR##", styleIndex);
             }
         }
-    }
 
-    /**
-     * 此方法现在负责执行自定义渲染逻辑。
-     */
-    private void createAndSetCell(Row outputRow, RenderedCell cellData, CellStyle style) {
-        // 创建单元格是必须的，因为自定义渲染器需要一个 Cell 对象作为操作目标
-        Cell outputCell = outputRow.createCell(cellData.colIndex);
+        private void writeRowFormula(int colIdx, RowRelativeFormula formula, int rowNo, int styleIndex) {
+            if (!formula.isValidated()) {
+                writeFormula(colIdx, formula.render(rowNo), styleIndex);
+                return;
+            }
+            writeParsedFormula(colIdx, formula.render(rowNo), styleIndex);
+        }
 
-        // 检查是否存在自定义渲染器
-        if (cellData.customRenderer != null) {
+        private void writeParsedFormula(int colIdx, String formula, int styleIndex) {
             try {
-                // 如果有，就执行它，而不是进行常规的值设置
-                cellData.customRenderer.accept(outputCell);
+                output.writeParsedFormula(colIdx, formula, styleIndex);
             } catch (Exception e) {
-                logger.error("Custom renderer failed for cell at {}:{}. Error: {}",
-                        outputRow.getRowNum(), cellData.colIndex, e.getMessage(), e);
-                outputCell.setCellValue("##RENDER_ERROR##");
+                logger.error("Failed to set formula: '{}' at row {}, col {}", formula, currentRowIndex, colIdx, e);
+                output.writeString(colIdx, "##FORMULA_ERROR##", styleIndex);
             }
-        } else {
-            // 否则，走原来的逻辑
-            if (cellData.isFormula) {
-                try {
-                    if (cellData.value != null) {
-                        outputCell.setCellFormula(cellData.value.toString());
-                    }
-                } catch (Exception e) {
-                    logger.error("Failed to set formula: '{}' at row {}, col {}", cellData.value, outputRow.getRowNum(), outputCell.getColumnIndex(), e);
-                    outputCell.setCellValue("##FORMULA_ERROR##");
+        }
+
+        private void handleMergeableCell(MergeableRenderedCell cellData, int styleIndex) {
+            int colIdx = cellData.colIndex;
+            Object currentValue = cellData.value;
+            Object lastValue = lastValuesForMerge.get(colIdx);
+
+            boolean isSameAsLast = (currentValue instanceof String && lastValue instanceof String)
+                    ? (currentValue == lastValue)
+                    : Objects.equals(currentValue, lastValue);
+
+            if (isSameAsLast && currentRowIndex > 0) {
+                if (!mergeStartRows.containsKey(colIdx)) {
+                    mergeStartRows.put(colIdx, currentRowIndex - 1);
                 }
+                output.writeBlank(colIdx, styleIndex);
             } else {
-                setCellValue(outputCell, cellData.value);
+                completePendingMerge(colIdx);
+                writeCell(cellData, styleIndex);
             }
+            lastValuesForMerge.put(colIdx, currentValue);
         }
 
-        if (style != null) {
-            outputCell.setCellStyle(style);
+        private void handleRegularCell(RenderedCell cellData, int styleIndex) {
+            int colIdx = cellData.colIndex;
+            completePendingMerge(colIdx);
+            writeCell(cellData, styleIndex);
+            lastValuesForMerge.remove(colIdx);
         }
-    }
 
-    /**
-     * 应用与单行模板关联的静态合并区域。
-     *
-     * @param sheet           输出的 Sheet。
-     * @param rowData         当前渲染的行数据，其中包含模板合并信息。
-     * @param currentRowIndex 当前写入的行索引。
-     */
-    private void applyRowStaticMergedRegions(Sheet sheet, RenderedRow rowData, int currentRowIndex) {
-        List<CellRangeAddress> rowMerges = rowData.getStaticMergedRegions();
-        if (rowMerges == null || rowMerges.isEmpty()) {
-            return;
-        }
-
-        for (CellRangeAddress templateRegion : rowMerges) {
-            // 计算新的合并区域，行号基于当前写入位置，列和跨度保持不变
-            int rowSpan = templateRegion.getLastRow() - templateRegion.getFirstRow();
-            CellRangeAddress newRegion = new CellRangeAddress(
-                    currentRowIndex,
-                    currentRowIndex + rowSpan,
-                    templateRegion.getFirstColumn(),
-                    templateRegion.getLastColumn()
-            );
-            try {
-                sheet.addMergedRegion(newRegion);
-            } catch (Exception e) {
-                logger.warn("Failed to add row-template-based merged region (might overlap): {}", newRegion.formatAsString());
+        private void completePendingMerge(int colIdx) {
+            if (mergeStartRows.containsKey(colIdx)) {
+                int startRow = mergeStartRows.remove(colIdx);
+                if (currentRowIndex - 1 > startRow) {
+                    output.addMergedRegion(startRow, currentRowIndex - 1, colIdx, colIdx);
+                }
             }
         }
-    }
 
-    // findCellStyle, setCellValue, prepareStyles, 等方法保持不变...
-    private CellStyle findCellStyle(String templateAddress, TemplateStyleInfo styleInfo, Map<CellStyle, CellStyle> styleCache) {
-        if (templateAddress == null) return null;
-        CellStyle templateStyle = styleInfo.getCellStyle(templateAddress);
-        return (templateStyle != null) ? styleCache.get(templateStyle) : null;
-    }
+        /**
+         * 写入旁路通道中的单元格，自定义渲染器在这里执行。
+         */
+        private void writeCell(RenderedCell cellData, int styleIndex) {
+            if (cellData.customRenderer != null) {
+                try {
+                    output.writeCustom(cellData.colIndex, cellData.customRenderer, styleIndex);
+                } catch (Exception e) {
+                    logger.error("Custom renderer failed for cell at {}:{}. Error: {}",
+                            currentRowIndex, cellData.colIndex, e.getMessage(), e);
+                    output.writeString(cellData.colIndex, "##RENDER_ERROR##", styleIndex);
+                }
+            } else if (cellData.isFormula) {
+                if (cellData.value != null) {
+                    writeFormula(cellData.colIndex, cellData.value.toString(), styleIndex);
+                } else {
+                    output.writeBlank(cellData.colIndex, styleIndex);
+                }
+            } else {
+                output.writeValue(cellData.colIndex, cellData.value, styleIndex);
+            }
+        }
 
-    protected void setCellValue(Cell cell, Object value) {
-        if (value == null) {
-            cell.setBlank();
-            return;
-        }
-        if (value instanceof String) cell.setCellValue((String) value);
-        else if (value instanceof Number) cell.setCellValue(((Number) value).doubleValue());
-        else if (value instanceof Date) cell.setCellValue((Date) value);
-        else if (value instanceof Calendar) cell.setCellValue((Calendar) value);
-        else if (value instanceof Boolean) cell.setCellValue((Boolean) value);
-        else if (value instanceof RichTextString) cell.setCellValue((RichTextString) value);
-        else cell.setCellValue(value.toString());
-    }
+        /**
+         * 应用与单行模板关联的静态合并区域，行号基于当前写入位置，列和跨度保持不变。
+         */
+        private void applyRowStaticMergedRegions(RenderedRow rowData) {
+            List<CellRangeAddress> rowMerges = rowData.getStaticMergedRegions();
+            if (rowMerges == null || rowMerges.isEmpty()) {
+                return;
+            }
+            for (CellRangeAddress templateRegion : rowMerges) {
+                int rowSpan = templateRegion.getLastRow() - templateRegion.getFirstRow();
+                output.addMergedRegion(currentRowIndex, currentRowIndex + rowSpan,
+                        templateRegion.getFirstColumn(), templateRegion.getLastColumn());
+            }
+        }
 
-    private void prepareStyles(Workbook workbook, Collection<TemplateStyleInfo> allStyleInfos, Map<CellStyle, CellStyle> styleCache) {
-        Set<CellStyle> uniqueTemplateStyles = new HashSet<>();
-        for (TemplateStyleInfo styleInfo : allStyleInfos) {
-            uniqueTemplateStyles.addAll(styleInfo.getAllTemplateStyles());
+        /**
+         * 结束当前 Sheet，打开下一个续表。纵向合并不跨越 Sheet。
+         */
+        private void startContinuationSheet() {
+            finish();
+            completeSheet();
+            handle.completeSheet();
+            continuationCount++;
+            String suffix = " (" + (continuationCount + 1) + ")";
+            String sheetName = templateSheetName.substring(0, Math.min(templateSheetName.length(), MAX_SHEET_NAME_LENGTH - suffix.length())) + suffix;
+            logger.info("Sheet '{}' reached {} rows, continuing on '{}'.", handle.getCurrentSheet(), currentRowIndex, sheetName);
+            try {
+                output = workbookOutput.createSheet(sheetName);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            handle.enterSheet(sheetName);
+            styleInfo.getAllColumnWidths().forEach(output::setColumnWidth);
+            lastValuesForMerge.clear();
+            currentRowIndex = 0;
+            writtenBytes = 0;
+            windowSize = sxssfWindowSize;
+            startColumnWidthEstimate();
         }
-        for (CellStyle templateStyle : uniqueTemplateStyles) {
-            CellStyle newStyle = workbook.createCellStyle();
-            newStyle.cloneStyleFrom(templateStyle);
-            styleCache.put(templateStyle, newStyle);
+
+        /**
+         * 登记模板中的静态合并区域并结束当前 Sheet。
+         * 静态合并区域排在动态合并之后，与动态合并重叠时由后端丢弃；续表只保留完全位于表头行内的静态合并区域。
+         */
+        void completeSheet() {
+            applyColumnWidths();
+            for (CellRangeAddress staticRegion : styleInfo.getMergedRegions()) {
+                if (continuationCount == 0 || staticRegion.getLastRow() < headerRowCount) {
+                    output.addMergedRegion(staticRegion.getFirstRow(), staticRegion.getLastRow(),
+                            staticRegion.getFirstColumn(), staticRegion.getLastColumn());
+                }
+            }
+            output.finish();
         }
-        logger.info("Pre-created {} unique styles.", styleCache.size());
-    }
 
-    private void applyStaticMergedRegions(Sheet outputSheet, TemplateStyleInfo styleInfo) {
-        for (CellRangeAddress staticRegion : styleInfo.getMergedRegions()) {
-            try {
-                outputSheet.addMergedRegion(staticRegion);
-            } catch (Exception e) {
-                logger.warn("Failed to add static merged region (might overlap with dynamic merges): {}", staticRegion.formatAsString());
+        /**
+         * 在最后一行写入后，闭合所有仍在进行中的纵向合并。
+         */
+        void finish() {
+            applyColumnWidths();
+            for (Map.Entry<Integer, Integer> entry : mergeStartRows.entrySet()) {
+                int colIdx = entry.getKey();
+                int startRow = entry.getValue();
+                if (currentRowIndex - 1 > startRow) {
+                    output.addMergedRegion(startRow, currentRowIndex - 1, colIdx, colIdx);
+                }
             }
+            mergeStartRows.clear();
         }
     }
 }
\ No newline at end of file
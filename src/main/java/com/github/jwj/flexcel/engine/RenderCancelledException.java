@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.engine;
+
+/**
+ * 渲染因调用 {@link RenderHandle#cancel()} 或超过截止时间而被中止时抛出的异常。
+ * <p>
+ * 抛出时引擎已经停止生产者和消费者线程，并释放了临时存储。默认的 POI 后端在渲染结束后才写出，
+ * 此时输出流中不会写入任何内容；{@link com.github.jwj.flexcel.output.DirectXlsxOutputBackend}、
+ * {@link com.github.jwj.flexcel.output.DelimitedOutputBackend} 等在渲染过程中就写出的后端可能已经写入了部分数据，
+ * 调用方应当丢弃这份不完整的输出。
+ * 异常携带中止时的渲染进度，便于记录和监控。
+ * </p>
+ */
+public class RenderCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String sheetName;
+    private final long rowsProduced;
+    private final long rowsWritten;
+    private final int completedSheets;
+    private final boolean deadlineExceeded;
+
+    public RenderCancelledException(String sheetName, long rowsProduced, long rowsWritten,
+                                    int completedSheets, boolean deadlineExceeded) {
+        super(String.format("Render %s on sheet '%s' after %d rows written (%d produced, %d sheets completed).",
+                deadlineExceeded ? "exceeded its deadline" : "was cancelled",
+                sheetName, rowsWritten, rowsProduced, completedSheets));
+        this.sheetName = sheetName;
+        this.rowsProduced = rowsProduced;
+        this.rowsWritten = rowsWritten;
+        this.completedSheets = completedSheets;
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+    /** @return 中止时正在渲染的 Sheet 名称。 */
+    public String getSheetName() { return sheetName; }
+
+    /** @return 中止时已产生的行数。 */
+    public long getRowsProduced() { return rowsProduced; }
+
+    /** @return 中止时已写入的行数。 */
+    public long getRowsWritten() { return rowsWritten; }
+
+    /** @return 中止前已完整渲染的 Sheet 数量。 */
+    public int getCompletedSheets() { return completedSheets; }
+
+    /** @return 是否因超过截止时间而中止。 */
+    public boolean isDeadlineExceeded() { return deadlineExceeded; }
+}
@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次渲染的控制句柄。
+ * <p>
+ * 调用方可以为渲染设置截止时间，或在任意线程上调用 {@link #cancel()} 主动取消。
+ * 生产者在产生每一行之前、消费者在写入每一行之前都会检查句柄状态，
+ * 一旦发现已取消或已超时，两个线程都会尽快停止，引擎随后清理 SXSSF 临时文件，
+ * 并抛出携带进度信息的 {@link RenderCancelledException}。
+ * </p>
+ * <p>
+ * 句柄同时记录渲染进度（已产生行数、已写入行数、当前 Sheet），可在渲染过程中从其他线程读取。
+ * 一个句柄只能用于一次渲染。
+ * </p>
+ */
+public final class RenderHandle {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long deadlineNanos;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicLong rowsProduced = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private volatile boolean deadlineExceeded = false;
+    private volatile String currentSheet;
+    private volatile int completedSheets;
+
+    private RenderHandle(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 创建一个没有截止时间的句柄，只能通过 {@link #cancel()} 取消。
+     *
+     * @return 新的句柄。
+     */
+    public static RenderHandle create() {
+        return new RenderHandle(NO_DEADLINE);
+    }
+
+    /**
+     * 创建一个从现在开始计时、在给定时长后超时的句柄。
+     *
+     * @param timeout 超时时长，必须大于 0。
+     * @param unit    时长单位。
+     * @return 新的句柄。
+     */
+    public static RenderHandle withTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) throw new IllegalArgumentException("Timeout must be positive.");
+        return new RenderHandle(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * 请求取消渲染。可以从任意线程调用，重复调用无副作用。
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return 渲染是否已被取消或已超时。
+     */
+    public boolean isCancelled() {
+        if (cancelled) return true;
+        if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0) {
+            deadlineExceeded = true;
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return 取消是否由截止时间触发。
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * @return 生产者已产生的行数（所有 Sheet 累计）。
+     */
+    public long getRowsProduced() {
+        return rowsProduced.get();
+    }
+
+    /**
+     * @return 已写入输出 Sheet 的行数（所有 Sheet 累计）。
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return 正在渲染的 Sheet 名称；尚未开始时为 null。
+     */
+    public String getCurrentSheet() {
+        return currentSheet;
+    }
+
+    /**
+     * @return 已完整渲染的 Sheet 数量。
+     */
+    public int getCompletedSheets() {
+        return completedSheets;
+    }
+
+    // ---- 以下方法仅供引擎内部使用 ----
+
+    void begin() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("A RenderHandle can only be used for a single render.");
+        }
+    }
+
+    void enterSheet(String sheetName) {
+        this.currentSheet = sheetName;
+    }
+
+    void completeSheet() {
+        this.completedSheets++;
+    }
+
+    void rowProduced() {
+        rowsProduced.incrementAndGet();
+    }
+
+    void rowWritten() {
+        rowsWritten.incrementAndGet();
+    }
+
+    /**
+     * 检查点：如果渲染已被取消或超时，抛出 {@link RenderCancelledException}。
+     */
+    void checkpoint() {
+        if (isCancelled()) {
+            throw new RenderCancelledException(currentSheet, rowsProduced.get(), rowsWritten.get(), completedSheets, deadlineExceeded);
+        }
+    }
+}
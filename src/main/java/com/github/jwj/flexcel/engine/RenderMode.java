@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.engine;
+
+/**
+ * 渲染模式。
+ * <p>
+ * 决定生产者与写入 Sheet 的消费者是否运行在不同线程上。
+ * </p>
+ */
+public enum RenderMode {
+
+    /**
+     * 根据预估行数自动选择：预估行数已知且不超过阈值时使用 {@link #INLINE}，否则使用 {@link #PIPELINED}。
+     * 预估时不执行模板中的表达式，只读取数据模型中按变量名（或 Map 键路径）可直接取到的集合大小，
+     * 其他形式的循环集合视为行数未知。
+     */
+    AUTO,
+
+    /**
+     * 内联模式：生产者在调用线程上直接把行写入 Sheet，不创建消费者线程和队列。
+     * 适用于小报表，省去线程创建和队列交接的固定开销。
+     */
+    INLINE,
+
+    /**
+     * 流水线模式：生产者把行放入有界队列，由独立的消费者线程写入 Sheet。
+     * 适用于大报表，表达式求值与 POI 写入可以并行。
+     */
+    PIPELINED
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.parser.ast.template.RowTemplate;
+import com.github.jwj.flexcel.runtime.TemplateContext;
+
+import java.util.List;
+
+/**
+ * 生产者在当前输出 Sheet 中的行位置。
+ * <p>
+ * 行号从 1 开始并按 Sheet 计算：溢出到续表后，续表的行号在重新输出的表头之后继续。
+ * 只由生产者线程使用。
+ * </p>
+ */
+final class RowCursor {
+
+    private final int maxRows;
+    private final List<RowTemplate> headerRows;
+    private final TemplateContext headerContext;
+    private final TemplateRowTracker rowTracker;
+    private int rowNo;
+    private int sheetIndex;
+
+    /**
+     * @param maxRows       每个 Sheet 的行数上限。
+     * @param headerRows    溢出时在续表开头重新输出的表头行。
+     * @param headerContext 渲染表头行使用的上下文。
+     * @param rowTracker    记录模板行输出位置的跟踪器。
+     */
+    RowCursor(int maxRows, List<RowTemplate> headerRows, TemplateContext headerContext, TemplateRowTracker rowTracker) {
+        this.maxRows = maxRows;
+        this.headerRows = headerRows;
+        this.headerContext = headerContext;
+        this.rowTracker = rowTracker;
+    }
+
+    /**
+     * @return 当前 Sheet 中最后一行的行号，尚未产生任何行时为 0。
+     */
+    int getRowNo() {
+        return rowNo;
+    }
+
+    /**
+     * @return 下一行将使用的行号；当前 Sheet 已满时为续表中表头之后的第一行。
+     */
+    int peekNextRowNo() {
+        return isFull() ? headerRows.size() + 1 : rowNo + 1;
+    }
+
+    /**
+     * 为一个模板行前进一行，并记录它的输出位置。
+     *
+     * @return 新行的行号。
+     */
+    int advance(RowTemplate rowTemplate) {
+        rowTracker.record(rowTemplate.getTemplateRowNum(), ++rowNo);
+        return rowNo;
+    }
+
+    boolean isFull() {
+        return rowNo >= maxRows;
+    }
+
+    int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return 已经开始的续表数量，0 表示仍在模板对应的第一个 Sheet 中。
+     */
+    int getSheetIndex() {
+        return sheetIndex;
+    }
+
+    /**
+     * 切换到下一个续表，行号归零。
+     */
+    void startNextSheet() {
+        sheetIndex++;
+        rowNo = 0;
+        rowTracker.startSheet();
+    }
+
+    List<RowTemplate> getHeaderRows() {
+        return headerRows;
+    }
+
+    TemplateContext getHeaderContext() {
+        return headerContext;
+    }
+
+    TemplateRowTracker getRowTracker() {
+        return rowTracker;
+    }
+}
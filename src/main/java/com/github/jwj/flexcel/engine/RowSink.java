@@ -0,0 +1,44 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+
+/**
+ * 生产者输出行数据的目标。
+ * <p>
+ * 流水线模式下它是阻塞队列的 {@code put}，内联模式下它直接把行写入 Sheet。
+ * 生产者（{@code executeTemplate}）只面向该接口，不关心行最终由哪个线程写出。
+ * </p>
+ */
+@FunctionalInterface
+interface RowSink {
+
+    /**
+     * 接收一行已渲染的数据。
+     *
+     * @param row 已渲染的行。
+     * @throws InterruptedException 如果在等待队列空间时被中断。
+     */
+    void accept(RenderedRow row) throws InterruptedException;
+}
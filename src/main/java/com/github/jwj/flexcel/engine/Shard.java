@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * 分片导出中的一个数据分片：一个名称和渲染该分片使用的数据模型。每个分片输出为一个独立的文件。
+ */
+public final class Shard {
+
+    private final String name;
+    private final Map<String, Object> data;
+
+    private Shard(String name, Map<String, Object> data) {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("Shard name cannot be empty.");
+        if (data == null) throw new IllegalArgumentException("Shard data cannot be null.");
+        this.name = name;
+        this.data = data;
+    }
+
+    /**
+     * @param name 分片名称，用作输出文件名（不含扩展名）。
+     * @param data 数据模型。
+     * @return 分片。
+     */
+    public static Shard of(String name, Map<String, Object> data) {
+        return new Shard(name, data);
+    }
+
+    /**
+     * 按键分组（例如月份、地区），每组一个分片，分片按键第一次出现的顺序排列。
+     *
+     * @param items         全部数据行。
+     * @param key           分组键，分片名称为 {@code String.valueOf(key)}。
+     * @param itemsVariable 每个分片的数据行在数据模型中的变量名，对应模板中的 {@code #foreach item in ${变量名}}。
+     * @param commonData    所有分片共用的其他数据，可以为空。
+     * @param <T>           数据行类型。
+     * @return 分片列表。
+     */
+    public static <T> List<Shard> byKey(List<T> items, Function<? super T, ?> key, String itemsVariable, Map<String, Object> commonData) {
+        Map<Object, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(key.apply(item), k -> new ArrayList<>()).add(item);
+        }
+        List<Shard> shards = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, List<T>> group : groups.entrySet()) {
+            shards.add(new Shard(String.valueOf(group.getKey()), dataFor(group.getValue(), itemsVariable, commonData)));
+        }
+        return shards;
+    }
+
+    /**
+     * 按固定行数切分，分片依次命名为 {@code 前缀-1}、{@code 前缀-2} ……
+     * 分片中的数据行是原列表的视图，不会复制。
+     *
+     * @param items         全部数据行。
+     * @param itemsPerShard 每个分片的行数，必须大于 0。
+     * @param namePrefix    分片名称前缀。
+     * @param itemsVariable 每个分片的数据行在数据模型中的变量名。
+     * @param commonData    所有分片共用的其他数据，可以为空。
+     * @param <T>           数据行类型。
+     * @return 按需生成分片的迭代器。
+     */
+    public static <T> Iterator<Shard> bySize(List<T> items, int itemsPerShard, String namePrefix,
+                                             String itemsVariable, Map<String, Object> commonData) {
+        if (itemsPerShard <= 0) throw new IllegalArgumentException("Items per shard must be positive.");
+        return new Iterator<Shard>() {
+            private int from;
+            private int number;
+
+            @Override
+            public boolean hasNext() {
+                return from < items.size() || (items.isEmpty() && number == 0);
+            }
+
+            @Override
+            public Shard next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int to = Math.min(items.size(), from + itemsPerShard);
+                List<T> slice = items.subList(from, to);
+                from = to;
+                return new Shard(namePrefix + "-" + (++number), dataFor(slice, itemsVariable, commonData));
+            }
+        };
+    }
+
+    private static Map<String, Object> dataFor(List<?> items, String itemsVariable, Map<String, Object> commonData) {
+        Map<String, Object> data = commonData == null ? new HashMap<>() : new HashMap<>(commonData);
+        data.put(itemsVariable, Collections.unmodifiableList(items));
+        return data;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "Shard{" + name + "}";
+    }
+}
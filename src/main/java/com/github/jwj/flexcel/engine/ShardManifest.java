@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分片导出的结果清单，条目按分片的提交顺序排列。
+ */
+public final class ShardManifest {
+
+    private final List<Entry> entries;
+
+    ShardManifest(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return 所有分片写出的行数之和。
+     */
+    public long getTotalRows() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.getRows();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardManifest{shards=" + entries.size() + ", totalRows=" + getTotalRows() + "}";
+    }
+
+    /**
+     * 一个分片的导出结果。
+     */
+    public static final class Entry {
+        private final String name;
+        private final String fileName;
+        private final long rows;
+        private final int sheets;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        Entry(String name, String fileName, long rows, int sheets, long bytes, long elapsedMillis) {
+            this.name = name;
+            this.fileName = fileName;
+            this.rows = rows;
+            this.sheets = sheets;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 输出文件名，打包为 zip 时即 zip 条目名。
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return 写出的行数，包括静态行和续表中重复的表头。
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return 输出的 Sheet 数量，包括续表。
+         */
+        public int getSheets() {
+            return sheets;
+        }
+
+        /**
+         * @return 输出文件的字节数。
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + fileName + ", rows=" + rows + ", sheets=" + sheets + ", bytes=" + bytes + "}";
+        }
+    }
+}
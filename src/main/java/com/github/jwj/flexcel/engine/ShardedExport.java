@@ -0,0 +1,557 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.engine.model.AnalyzedTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 分片导出：将一批数据切分为多个分片，用同一个已编译模板并行渲染为多个文件。
+ * <p>
+ * 所有分片共享一份 {@link AnalyzedTemplate} 和一个工作线程池，模板只解析一次。
+ * 调用线程负责提交分片：同时在途的分片数达到 {@link Builder#maxInFlight(int)} 时，
+ * 会先等待一个分片完成再提交下一个，因此分片迭代器是按需消费的，未提交的分片数据不会提前生成。
+ * <p>
+ * 任一分片失败时，其余在途分片会被取消，不再提交新的分片，并在所有在途分片结束后抛出异常。
+ * <p>
+ * 注意：{@link RenderMode#PIPELINED} 模式下每个分片还会额外占用一个消费者线程；
+ * 分片本身已经并行，通常配合 {@link RenderMode#INLINE} 使用即可。
+ * <p>
+ * {@link #mailMerge(Iterator, MergeTarget)} 用于邮件合并式的批量渲染：每个数据模型（例如每个客户的对账单）各输出一个文件。
+ */
+public final class ShardedExport {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedExport.class);
+
+    /**
+     * 为每个分片打开输出流。返回的流在分片渲染结束后由导出器关闭。
+     */
+    @FunctionalInterface
+    public interface ShardTarget {
+        OutputStream open(Shard shard) throws IOException;
+    }
+
+    /**
+     * 邮件合并时为每个数据模型打开输出流。返回的流在渲染结束后由导出器关闭。
+     */
+    @FunctionalInterface
+    public interface MergeTarget {
+        /**
+         * @param index 数据模型在迭代器中的序号，从 0 开始。
+         * @param model 数据模型。
+         * @return 输出流。
+         */
+        OutputStream open(int index, Map<String, Object> model) throws IOException;
+    }
+
+    /**
+     * 写入输出目标时使用的缓冲区大小。zip 流以几百字节为单位写出，直接写入文件会产生大量系统调用。
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final PoiTemplateEngine engine;
+    private final AnalyzedTemplate template;
+    private final int parallelism;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private final String fileExtension;
+
+    private ShardedExport(Builder builder) {
+        this.engine = builder.engine;
+        this.template = builder.template;
+        this.parallelism = builder.parallelism;
+        this.maxInFlight = builder.maxInFlight > 0 ? builder.maxInFlight : builder.parallelism * 2;
+        this.executor = builder.executor;
+        this.fileExtension = builder.fileExtension;
+    }
+
+    public static Builder builder(PoiTemplateEngine engine, AnalyzedTemplate template) {
+        return new Builder(engine, template);
+    }
+
+    /**
+     * 渲染所有分片，每个分片写入 {@code target} 为其打开的输出流。
+     *
+     * @param shards 分片。
+     * @param target 输出目标。
+     * @return 导出清单。
+     */
+    public ShardManifest export(Iterable<Shard> shards, ShardTarget target) {
+        return export(shards.iterator(), target);
+    }
+
+    /**
+     * 渲染所有分片，每个分片写入 {@code target} 为其打开的输出流。
+     *
+     * @param shards 分片，按需消费。
+     * @param target 输出目标。
+     * @return 导出清单。
+     */
+    public ShardManifest export(Iterator<Shard> shards, ShardTarget target) {
+        if (target == null) throw new IllegalArgumentException("Shard target cannot be null.");
+        Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        return run(shards, (index, shard, handle) -> {
+            long bytes;
+            try (BufferedTargetStream out = new BufferedTargetStream(target.open(shard), buffers)) {
+                engine.process(template, shard.getData(), out, handle);
+                out.flush();
+                bytes = out.count;
+            }
+            return new Rendered(bytes, null);
+        }, null);
+    }
+
+    /**
+     * 邮件合并：用已编译模板为每个数据模型渲染一个文件，写入 {@code target} 为其打开的输出流。
+     * <p>
+     * 与逐个调用 {@link PoiTemplateEngine#process} 相比，模板只编译一次，样式表快照、对象池和输出缓冲区在所有渲染间复用；
+     * 每个数据模型都在工作线程上以 {@link RenderMode#INLINE} 模式渲染，不再为每个文件额外启动消费者线程。
+     * 数据模型按需消费，清单中的条目按数据模型顺序排列，名称为从 1 开始的序号。
+     *
+     * @param models 数据模型，按需消费。
+     * @param target 输出目标。
+     * @return 导出清单。
+     */
+    public ShardManifest mailMerge(Iterator<? extends Map<String, Object>> models, MergeTarget target) {
+        if (models == null) throw new IllegalArgumentException("Models cannot be null.");
+        if (target == null) throw new IllegalArgumentException("Merge target cannot be null.");
+        Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        Iterator<Shard> shards = new Iterator<Shard>() {
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                return models.hasNext();
+            }
+
+            @Override
+            public Shard next() {
+                Map<String, Object> model = models.next();
+                if (model == null) throw new IllegalArgumentException("Model #" + (count + 1) + " is null.");
+                return Shard.of(String.valueOf(++count), model);
+            }
+        };
+        return run(shards, (index, shard, handle) -> {
+            long bytes;
+            try (BufferedTargetStream out = new BufferedTargetStream(target.open(index, shard.getData()), buffers)) {
+                engine.process(template, shard.getData(), out, handle, RenderMode.INLINE);
+                out.flush();
+                bytes = out.count;
+            }
+            return new Rendered(bytes, null);
+        }, null);
+    }
+
+    /**
+     * @see #mailMerge(Iterator, MergeTarget)
+     */
+    public ShardManifest mailMerge(Iterable<? extends Map<String, Object>> models, MergeTarget target) {
+        if (models == null) throw new IllegalArgumentException("Models cannot be null.");
+        return mailMerge(models.iterator(), target);
+    }
+
+    /**
+     * 渲染所有分片并打包为一个 zip 文件，每个分片是一个条目。
+     * <p>
+     * 分片在内存中渲染完成后由调用线程按完成顺序写入 zip。xlsx 本身已经是压缩格式，
+     * 条目以 STORED 方式存储，不再重复压缩。同名分片会追加序号以避免条目重名。
+     *
+     * @param shards       分片，按需消费。
+     * @param outputStream zip 输出流，调用方负责关闭。
+     * @return 导出清单。
+     */
+    public ShardManifest exportToZip(Iterator<Shard> shards, OutputStream outputStream) {
+        if (outputStream == null) throw new IllegalArgumentException("Output stream cannot be null.");
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        zip.setMethod(ZipOutputStream.STORED);
+        ShardManifest manifest = run(shards, (index, shard, handle) -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            engine.process(template, shard.getData(), buffer, handle);
+            return new Rendered(buffer.size(), buffer.toByteArray());
+        }, (fileName, content) -> {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            ZipEntry entry = new ZipEntry(fileName);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(content);
+            zip.closeEntry();
+        });
+        try {
+            zip.finish();
+            zip.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to finish shard archive", e);
+        }
+        return manifest;
+    }
+
+    /**
+     * @see #exportToZip(Iterator, OutputStream)
+     */
+    public ShardManifest exportToZip(Iterable<Shard> shards, OutputStream outputStream) {
+        return exportToZip(shards.iterator(), outputStream);
+    }
+
+    private ShardManifest run(Iterator<Shard> shards, ShardRenderer renderer, CompletedShardWriter writer) {
+        if (shards == null) throw new IllegalArgumentException("Shards cannot be null.");
+        boolean ownsExecutor = this.executor == null;
+        ExecutorService pool = ownsExecutor ? newWorkerPool(parallelism) : this.executor;
+        CompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+        List<ShardManifest.Entry> entries = new ArrayList<>();
+        Map<Integer, RenderHandle> inFlight = new HashMap<>();
+        Map<String, Integer> usedFileNames = new HashMap<>();
+        RuntimeException failure = null;
+        // 已提交但尚未从 completion 中取出的任务数
+        int pending = 0;
+        boolean drained = false;
+        long startTime = System.currentTimeMillis();
+        try {
+            while (true) {
+                if (failure == null && inFlight.size() < maxInFlight && shards.hasNext()) {
+                    Shard shard = shards.next();
+                    int index = entries.size();
+                    String fileName = uniqueFileName(shard.getName(), usedFileNames);
+                    RenderHandle handle = RenderHandle.create();
+                    entries.add(null);
+                    inFlight.put(index, handle);
+                    completion.submit(renderTask(index, shard, fileName, handle, renderer));
+                    pending++;
+                    continue;
+                }
+                if (inFlight.isEmpty()) {
+                    break;
+                }
+                // 在途分片已满或已无分片可提交：等待一个分片完成（背压）
+                Result result;
+                try {
+                    Future<Result> done = completion.take();
+                    pending--;
+                    result = done.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Sharded export was interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Shard task failed unexpectedly", e.getCause());
+                }
+                inFlight.remove(result.index);
+                if (result.error != null) {
+                    if (failure == null) {
+                        failure = new RuntimeException("Shard '" + result.shardName + "' failed", result.error);
+                        cancelAll(inFlight);
+                    } else if (!(result.error instanceof RenderCancelledException)) {
+                        failure.addSuppressed(result.error);
+                    }
+                    continue;
+                }
+                if (failure == null && writer != null) {
+                    try {
+                        writer.write(result.entry.getFileName(), result.content);
+                    } catch (IOException e) {
+                        failure = new RuntimeException("Failed to write shard '" + result.shardName + "'", e);
+                        cancelAll(inFlight);
+                        continue;
+                    }
+                }
+                entries.set(result.index, result.entry);
+            }
+            drained = true;
+        } finally {
+            if (!drained) {
+                // 分片迭代器、输出目标或收集逻辑抛出异常：调用方提供的线程池不会被关闭，
+                // 必须取消并等待在途渲染结束，避免方法返回后它们仍在写入输出目标
+                abandon(completion, inFlight, pending);
+            }
+            if (ownsExecutor) {
+                pool.shutdownNow();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        ShardManifest manifest = new ShardManifest(entries);
+        logger.info("Sharded export finished: {} shards, {} rows in {}ms.",
+                entries.size(), manifest.getTotalRows(), System.currentTimeMillis() - startTime);
+        return manifest;
+    }
+
+    private static Callable<Result> renderTask(int index, Shard shard, String fileName,
+                                               RenderHandle handle, ShardRenderer renderer) {
+        return () -> {
+            long start = System.currentTimeMillis();
+            try {
+                // 排队期间已被取消的分片不再打开输出目标
+                handle.checkpoint();
+                Rendered rendered = renderer.render(index, shard, handle);
+                ShardManifest.Entry entry = new ShardManifest.Entry(shard.getName(), fileName,
+                        handle.getRowsWritten(), handle.getCompletedSheets(), rendered.bytes,
+                        System.currentTimeMillis() - start);
+                return new Result(index, shard.getName(), entry, rendered.content, null);
+            } catch (Throwable e) {
+                return new Result(index, shard.getName(), null, null, e);
+            }
+        };
+    }
+
+    private static void cancelAll(Map<Integer, RenderHandle> inFlight) {
+        for (RenderHandle handle : inFlight.values()) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * 取消所有在途分片并等待它们的任务结束。等待期间不响应中断，中断状态在返回前恢复。
+     */
+    private static void abandon(CompletionService<Result> completion, Map<Integer, RenderHandle> inFlight, int pending) {
+        cancelAll(inFlight);
+        boolean interrupted = Thread.interrupted();
+        try {
+            for (int i = 0; i < pending; ) {
+                try {
+                    completion.take();
+                    i++;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private String uniqueFileName(String shardName, Map<String, Integer> usedFileNames) {
+        String base = shardName.replaceAll("[\\\\/:*?\"<>|]", "_");
+        int seen = usedFileNames.merge(base, 1, Integer::sum);
+        return (seen == 1 ? base : base + " (" + seen + ")") + fileExtension;
+    }
+
+    private static ExecutorService newWorkerPool(int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "fastexcel-shard-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @FunctionalInterface
+    private interface ShardRenderer {
+        Rendered render(int index, Shard shard, RenderHandle handle) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface CompletedShardWriter {
+        void write(String fileName, byte[] content) throws IOException;
+    }
+
+    private static final class Rendered {
+        final long bytes;
+        final byte[] content;
+
+        Rendered(long bytes, byte[] content) {
+            this.bytes = bytes;
+            this.content = content;
+        }
+    }
+
+    private static final class Result {
+        final int index;
+        final String shardName;
+        final ShardManifest.Entry entry;
+        final byte[] content;
+        final Throwable error;
+
+        Result(int index, String shardName, ShardManifest.Entry entry, byte[] content, Throwable error) {
+            this.index = index;
+            this.shardName = shardName;
+            this.entry = entry;
+            this.content = content;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 带缓冲和计数的输出流。缓冲区取自同一次导出共享的缓冲池，关闭时归还，供后续渲染复用。
+     */
+    private static final class BufferedTargetStream extends OutputStream {
+        private final OutputStream out;
+        private final Queue<byte[]> bufferPool;
+        private byte[] buffer;
+        private int position;
+        long count;
+
+        BufferedTargetStream(OutputStream out, Queue<byte[]> bufferPool) {
+            if (out == null) throw new IllegalArgumentException("Output target returned a null stream.");
+            byte[] pooled = bufferPool.poll();
+            this.out = out;
+            this.bufferPool = bufferPool;
+            this.buffer = pooled != null ? pooled : new byte[OUTPUT_BUFFER_SIZE];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) b;
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= buffer.length) {
+                flushBuffer();
+                out.write(b, off, len);
+            } else {
+                if (len > buffer.length - position) {
+                    flushBuffer();
+                }
+                System.arraycopy(b, off, buffer, position, len);
+                position += len;
+            }
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                flushBuffer();
+            } finally {
+                bufferPool.offer(buffer);
+                buffer = null;
+                out.close();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final PoiTemplateEngine engine;
+        private final AnalyzedTemplate template;
+        private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        private int maxInFlight;
+        private ExecutorService executor;
+        private String fileExtension = ".xlsx";
+
+        private Builder(PoiTemplateEngine engine, AnalyzedTemplate template) {
+            if (engine == null) throw new IllegalArgumentException("Engine cannot be null.");
+            if (template == null) throw new IllegalArgumentException("Template cannot be null.");
+            this.engine = engine;
+            this.template = template;
+        }
+
+        /**
+         * 设置工作线程数，默认为 CPU 核数。使用 {@link #executor(ExecutorService)} 时忽略此设置。
+         *
+         * @param parallelism 线程数，必须大于 0。
+         * @return Builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive.");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * 设置同时在途（已提交未完成）的分片数上限，默认为工作线程数的两倍。
+         * 打包为 zip 时每个在途分片的渲染结果都暂存在内存中，此上限同时也限制了这部分内存。
+         *
+         * @param maxInFlight 上限，必须大于 0。
+         * @return Builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) throw new IllegalArgumentException("Max in-flight shards must be positive.");
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * 使用调用方提供的线程池，导出结束后不会关闭它。
+         *
+         * @param executor 线程池。
+         * @return Builder
+         */
+        public Builder executor(ExecutorService executor) {
+            if (executor == null) throw new IllegalArgumentException("Executor cannot be null.");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 设置输出文件扩展名，默认为 {@code .xlsx}，例如配合 CSV 后端时改为 {@code .csv}。
+         *
+         * @param fileExtension 扩展名。
+         * @return Builder
+         */
+        public Builder fileExtension(String fileExtension) {
+            if (fileExtension == null) throw new IllegalArgumentException("File extension cannot be null.");
+            this.fileExtension = fileExtension;
+            return this;
+        }
+
+        public ShardedExport build() {
+            return new ShardedExport(this);
+        }
+    }
+}
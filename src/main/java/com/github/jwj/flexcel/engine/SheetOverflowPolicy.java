@@ -0,0 +1,41 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+/**
+ * 一个模板 Sheet 产生的行数超过输出后端单个 Sheet 的行数上限时的处理方式。
+ */
+public enum SheetOverflowPolicy {
+
+    /**
+     * 在产生第一行超限的行时立即以异常终止渲染（默认）。
+     */
+    FAIL,
+
+    /**
+     * 在新的续表中继续输出，续表依次命名为 {@code 原名 (2)}、{@code 原名 (3)} ……
+     * 模板开头、第一个块级指令之前的静态行视为表头，在每个续表的开头重新输出。
+     * {@code currentRowNo}、{@code startRowNo} 和 {@code endRowNo} 按 Sheet 计算：
+     * 跨越续表的循环结束后，{@code startRowNo} 指向最后一个续表中表头之后的第一行。
+     */
+    ROLLOVER
+}
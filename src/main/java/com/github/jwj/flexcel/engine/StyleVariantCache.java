@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.output.WorkbookOutput;
+import com.github.jwj.flexcel.style.StyleOverride;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次渲染内 {@code #style} 派生样式的缓存，按（模板样式，样式描述）去重：
+ * 每种组合只在输出工作簿中创建一个样式，无论有多少行用到。
+ * <p>
+ * 派生样式的数量有上限，防止样式描述依赖于数据取值（例如直接输出颜色字段）时耗尽 Excel 的样式数上限。
+ * 只在写出线程上使用，不需要线程安全。
+ * </p>
+ */
+final class StyleVariantCache {
+
+    private final WorkbookOutput workbookOutput;
+    private final int maxVariants;
+    // 下标为模板样式索引 + 1（0 对应 NO_STYLE），值为样式描述到派生样式索引的映射
+    private final List<Map<String, Integer>> variantsByBase = new ArrayList<>();
+    private final Map<String, StyleOverride> parsed = new HashMap<>();
+    private int size;
+
+    StyleVariantCache(WorkbookOutput workbookOutput, int maxVariants) {
+        this.workbookOutput = workbookOutput;
+        this.maxVariants = maxVariants;
+    }
+
+    /**
+     * @param baseStyleIndex 模板样式索引。
+     * @param styleSpec      样式描述。
+     * @return 派生样式的索引。
+     */
+    int resolve(int baseStyleIndex, String styleSpec) {
+        int slot = baseStyleIndex + 1;
+        while (variantsByBase.size() <= slot) {
+            variantsByBase.add(null);
+        }
+        Map<String, Integer> variants = variantsByBase.get(slot);
+        if (variants == null) {
+            variants = new HashMap<>();
+            variantsByBase.set(slot, variants);
+        }
+        Integer index = variants.get(styleSpec);
+        if (index == null) {
+            if (size >= maxVariants) {
+                throw new IllegalStateException("More than " + maxVariants + " distinct #style variants in one render. "
+                        + "Make the style expression depend on a small set of cases, or raise maxStyleVariants.");
+            }
+            StyleOverride override = parsed.computeIfAbsent(styleSpec, StyleOverride::parse);
+            index = workbookOutput.deriveStyle(baseStyleIndex, override);
+            variants.put(styleSpec, index);
+            size++;
+        }
+        return index;
+    }
+
+    int size() {
+        return size;
+    }
+}
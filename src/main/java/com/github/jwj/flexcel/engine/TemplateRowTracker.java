@@ -0,0 +1,228 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.engine;
+
+import com.github.jwj.flexcel.parser.ast.block.ForEachBlock;
+import com.github.jwj.flexcel.parser.ast.block.IfBlock;
+import com.github.jwj.flexcel.parser.ast.block.RootBlock;
+import com.github.jwj.flexcel.parser.ast.block.StaticRowsBlock;
+import com.github.jwj.flexcel.parser.ast.block.TemplateBlock;
+import com.github.jwj.flexcel.parser.ast.template.RowTemplate;
+import com.github.jwj.flexcel.runtime.RowReferenceResolver;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 记录一个模板 Sheet 中每个模板行被输出到了哪些行，供原生公式调整行引用。
+ * <p>
+ * 映射规则与在 Excel 中插入行时引用的自动调整一致：
+ * <ul>
+ *   <li>引用与公式位于同一次循环迭代中的行时，指向本次迭代输出的那一行；</li>
+ *   <li>引用已经结束的循环中的行时，区域的起止分别指向该循环最近一次展开的第一行和最后一行，
+ *       单个单元格指向最后一行；</li>
+ *   <li>引用循环外已经输出的静态行时，指向它的输出行。</li>
+ * </ul>
+ * 其余情况（引用尚未输出的行、没有执行的循环或条件分支、已经溢出到上一个续表的行）按公式所在行的位移平移。
+ * 只由生产者线程使用。
+ * </p>
+ */
+final class TemplateRowTracker implements RowReferenceResolver {
+
+    private static final int[] NO_LOOPS = new int[0];
+
+    // 每个模板行所在的循环，由内向外
+    private final int[][] loopChains;
+    private final Map<ForEachBlock, Integer> loopIds = new IdentityHashMap<>();
+    private final int headerRows;
+
+    // 每个模板行最近一次输出的行号和时间戳
+    private final int[] last;
+    private final long[] lastStamps;
+    // 每个模板行在其所在各层循环最近一次展开中首次输出的行号和时间戳，下标与 loopChains 一致
+    private final int[][] firsts;
+    private final long[][] firstStamps;
+    // 每个循环最近一次展开、最近一次迭代开始的时间戳
+    private final long[] runStarts;
+    private final long[] iterationStarts;
+
+    private long clock = 1;
+    private long sheetStart;
+
+    /**
+     * @param rootBlocks 模板 Sheet 的根块。
+     * @param headerRows 续表开头重新输出的表头行数。
+     */
+    TemplateRowTracker(List<TemplateBlock> rootBlocks, int headerRows) {
+        this.headerRows = headerRows;
+        int rowCount = Math.max(0, maxTemplateRow(rootBlocks) + 1);
+        this.loopChains = new int[rowCount][];
+        Arrays.fill(this.loopChains, NO_LOOPS);
+        assignLoops(rootBlocks, NO_LOOPS);
+        this.last = new int[rowCount];
+        this.lastStamps = new long[rowCount];
+        this.firsts = new int[rowCount][];
+        this.firstStamps = new long[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+            this.firsts[row] = new int[loopChains[row].length];
+            this.firstStamps[row] = new long[loopChains[row].length];
+        }
+        this.runStarts = new long[loopIds.size()];
+        this.iterationStarts = new long[loopIds.size()];
+    }
+
+    /**
+     * 记录一个模板行被输出到了当前 Sheet 的第 rowNo 行。
+     */
+    void record(int templateRow, int rowNo) {
+        if (templateRow < 0 || templateRow >= last.length) {
+            return;
+        }
+        long stamp = clock++;
+        last[templateRow] = rowNo;
+        lastStamps[templateRow] = stamp;
+        int[] chain = loopChains[templateRow];
+        for (int d = 0; d < chain.length; d++) {
+            if (firstStamps[templateRow][d] < runStarts[chain[d]]) {
+                firsts[templateRow][d] = rowNo;
+                firstStamps[templateRow][d] = stamp;
+            }
+        }
+    }
+
+    /**
+     * 循环开始展开。
+     */
+    void beginLoop(ForEachBlock loop) {
+        Integer id = loopIds.get(loop);
+        if (id != null) {
+            runStarts[id] = clock++;
+        }
+    }
+
+    /**
+     * 循环开始新的一次迭代。
+     */
+    void beginIteration(ForEachBlock loop) {
+        Integer id = loopIds.get(loop);
+        if (id != null) {
+            iterationStarts[id] = clock++;
+        }
+    }
+
+    /**
+     * 开始一个续表，之前输出的行不再能被引用（表头行会在续表中重新记录）。
+     */
+    void startSheet() {
+        sheetStart = clock++;
+    }
+
+    @Override
+    public int resolve(int templateRow, int formulaTemplateRow, int currentRowNo, Bound bound) {
+        int shifted = currentRowNo + templateRow - formulaTemplateRow;
+        if (templateRow < 0 || templateRow >= last.length || formulaTemplateRow < 0 || formulaTemplateRow >= last.length) {
+            return shifted;
+        }
+        int[] chain = loopChains[templateRow];
+        int[] formulaChain = loopChains[formulaTemplateRow];
+        // 被引用行所在的、不包含公式的最外层循环
+        int depth = -1;
+        for (int d = chain.length - 1; d >= 0; d--) {
+            if (!contains(formulaChain, chain[d])) {
+                depth = d;
+                break;
+            }
+        }
+        // 被引用行和公式共同所在的最内层循环，引用只在它的当前迭代内有效
+        long scopeStart = sheetStart;
+        int common = depth + 1 < chain.length ? chain[depth + 1] : -1;
+        if (common >= 0) {
+            scopeStart = Math.max(scopeStart, iterationStarts[common]);
+        }
+        if (depth < 0) {
+            return lastStamps[templateRow] > scopeStart ? last[templateRow] : shifted;
+        }
+        long runStart = runStarts[chain[depth]];
+        if (runStart < scopeStart || lastStamps[templateRow] < runStart || lastStamps[templateRow] < sheetStart) {
+            return shifted;
+        }
+        if (bound != Bound.FIRST) {
+            return last[templateRow];
+        }
+        // 循环跨越了续表时，区域从表头之后的第一行开始
+        return firstStamps[templateRow][depth] > sheetStart ? firsts[templateRow][depth] : headerRows + 1;
+    }
+
+    private static boolean contains(int[] chain, int loopId) {
+        for (int id : chain) {
+            if (id == loopId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void assignLoops(List<TemplateBlock> blocks, int[] chain) {
+        for (TemplateBlock block : blocks) {
+            if (block instanceof StaticRowsBlock) {
+                for (RowTemplate rt : ((StaticRowsBlock) block).getRowTemplates()) {
+                    if (rt.getTemplateRowNum() >= 0) {
+                        loopChains[rt.getTemplateRowNum()] = chain;
+                    }
+                }
+            } else if (block instanceof ForEachBlock) {
+                int id = loopIds.size();
+                loopIds.put((ForEachBlock) block, id);
+                int[] childChain = new int[chain.length + 1];
+                childChain[0] = id;
+                System.arraycopy(chain, 0, childChain, 1, chain.length);
+                assignLoops(((ForEachBlock) block).getChildren(), childChain);
+            } else if (block instanceof IfBlock) {
+                assignLoops(((IfBlock) block).getThenBlocks(), chain);
+                assignLoops(((IfBlock) block).getElseBlocks(), chain);
+            } else if (block instanceof RootBlock) {
+                assignLoops(((RootBlock) block).getChildren(), chain);
+            }
+        }
+    }
+
+    private static int maxTemplateRow(List<TemplateBlock> blocks) {
+        int max = -1;
+        for (TemplateBlock block : blocks) {
+            if (block instanceof StaticRowsBlock) {
+                for (RowTemplate rt : ((StaticRowsBlock) block).getRowTemplates()) {
+                    max = Math.max(max, rt.getTemplateRowNum());
+                }
+            } else if (block instanceof ForEachBlock) {
+                max = Math.max(max, maxTemplateRow(((ForEachBlock) block).getChildren()));
+            } else if (block instanceof IfBlock) {
+                max = Math.max(max, maxTemplateRow(((IfBlock) block).getThenBlocks()));
+                max = Math.max(max, maxTemplateRow(((IfBlock) block).getElseBlocks()));
+            } else if (block instanceof RootBlock) {
+                max = Math.max(max, maxTemplateRow(((RootBlock) block).getChildren()));
+            }
+        }
+        return max;
+    }
+}
@@ -2,6 +2,7 @@ package com.github.jwj.flexcel.engine.model;
 
 import com.github.jwj.flexcel.parser.ast.template.PrecompiledTemplate;
 import com.github.jwj.flexcel.style.TemplateStyleInfo;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -22,10 +23,19 @@ public final class AnalyzedTemplate {
     private final List<String> sheetOrder;
     private final Map<String, PrecompiledTemplate> compiledSheets;
     private final Map<String, TemplateStyleInfo> sheetStyles;
+    private final TemplateStyleTable styleTable;
 
     public AnalyzedTemplate(List<String> sheetOrder,
                             Map<String, PrecompiledTemplate> compiledSheets,
                             Map<String, TemplateStyleInfo> sheetStyles) {
+        this(sheetOrder, compiledSheets, sheetStyles, new TemplateStyleTable());
+    }
+
+    public AnalyzedTemplate(List<String> sheetOrder,
+                            Map<String, PrecompiledTemplate> compiledSheets,
+                            Map<String, TemplateStyleInfo> sheetStyles,
+                            TemplateStyleTable styleTable) {
+        this.styleTable = styleTable;
         // 使用防御性拷贝确保不可变性
         this.sheetOrder = Collections.unmodifiableList(new ArrayList<>(sheetOrder));
         this.compiledSheets = Collections.unmodifiableMap(new HashMap<>(compiledSheets));
@@ -57,4 +67,12 @@ public final class AnalyzedTemplate {
     public Map<String, TemplateStyleInfo> getSheetStyles() {
         return sheetStyles;
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取模板工作簿的样式表，RowFormat 中的样式索引指向此表。
+     * @return 样式表。
+     */
+    public TemplateStyleTable getStyleTable() {
+        return styleTable;
+    }
+}
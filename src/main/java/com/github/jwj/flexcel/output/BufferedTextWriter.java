@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * 带可复用字符缓冲区的轻量文本写入器，供直接写出 XML 和分隔符文本的后端使用。
+ * 只提供拼接原始文本、转义文本和数字的能力，写入失败时抛出 {@link UncheckedIOException}。
+ * 非线程安全。
+ */
+final class BufferedTextWriter {
+
+    private final Writer out;
+    private final char[] buffer;
+    private int position;
+
+    BufferedTextWriter(Writer out, int bufferSize) {
+        this(out, new char[bufferSize]);
+    }
+
+    /**
+     * 使用调用方提供的缓冲区，便于在多个输出之间复用同一块缓冲区。缓冲区在写入器刷新前不能被其他写入器使用。
+     */
+    BufferedTextWriter(Writer out, char[] buffer) {
+        this.out = out;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 追加不需要转义的原始文本（标签、属性名、分隔符等）。
+     */
+    BufferedTextWriter append(String text) {
+        int length = text.length();
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                write(text);
+                return this;
+            }
+        }
+        text.getChars(0, length, buffer, position);
+        position += length;
+        return this;
+    }
+
+    BufferedTextWriter append(char c) {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = c;
+        return this;
+    }
+
+    /**
+     * 追加整数，不产生临时字符串。
+     */
+    BufferedTextWriter append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        if (position + 20 > buffer.length) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            char tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+        return this;
+    }
+
+    /**
+     * 追加数值：能精确表示的整数按整数输出，其余按 {@link Double#toString(double)} 输出。
+     */
+    BufferedTextWriter append(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return append((long) value);
+        }
+        return append(Double.toString(value));
+    }
+
+    /**
+     * 追加经过 XML 转义的文本，可用于元素内容和双引号包围的属性值。
+     * XML 1.0 不允许的控制字符会被丢弃。
+     */
+    BufferedTextWriter appendXmlEscaped(String text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': append("&amp;"); break;
+                case '<': append("&lt;"); break;
+                case '>': append("&gt;"); break;
+                case '"': append("&quot;"); break;
+                default:
+                    if (c >= 0x20 ? (c < 0xFFFE) : (c == '\t' || c == '\n' || c == '\r')) {
+                        append(c);
+                    }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 把缓冲区内容写出并刷新底层 Writer。
+     */
+    void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushBuffer() {
+        if (position > 0) {
+            try {
+                out.write(buffer, 0, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position = 0;
+        }
+    }
+
+    private void write(String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
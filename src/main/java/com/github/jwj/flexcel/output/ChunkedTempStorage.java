@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把缓冲区保存在固定大小内存块中的 {@link TempStorage}，所有缓冲区共享一个字节配额。
+ * 堆外模式下释放的块放回池中复用，直接内存只在池中没有空闲块时分配。
+ */
+final class ChunkedTempStorage implements TempStorage {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final long quotaBytes;
+    private final boolean direct;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<>();
+
+    ChunkedTempStorage(long quotaBytes, boolean direct) {
+        if (quotaBytes <= 0) throw new IllegalArgumentException("Temp storage quota must be positive.");
+        this.quotaBytes = quotaBytes;
+        this.direct = direct;
+    }
+
+    @Override
+    public Buffer allocate() {
+        return new ChunkedBuffer();
+    }
+
+    private ByteBuffer acquireChunk() throws IOException {
+        if (usedBytes.addAndGet(CHUNK_SIZE) > quotaBytes) {
+            usedBytes.addAndGet(-CHUNK_SIZE);
+            throw new IOException("Temp storage quota of " + quotaBytes + " bytes exceeded.");
+        }
+        if (!direct) {
+            return ByteBuffer.allocate(CHUNK_SIZE);
+        }
+        ByteBuffer chunk = freeChunks.poll();
+        return chunk != null ? chunk : ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+
+    private void releaseChunks(List<ByteBuffer> chunks) {
+        if (direct) {
+            for (ByteBuffer chunk : chunks) {
+                chunk.clear();
+                freeChunks.offer(chunk);
+            }
+        }
+        usedBytes.addAndGet(-(long) chunks.size() * CHUNK_SIZE);
+    }
+
+    /**
+     * @return 当前已分配给缓冲区的字节数。
+     */
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    private final class ChunkedBuffer implements Buffer {
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new OutputStream() {
+                private ByteBuffer current;
+
+                @Override
+                public void write(int b) throws IOException {
+                    ensureSpace().put((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        ByteBuffer chunk = ensureSpace();
+                        int n = Math.min(len, chunk.remaining());
+                        chunk.put(b, off, n);
+                        off += n;
+                        len -= n;
+                    }
+                }
+
+                private ByteBuffer ensureSpace() throws IOException {
+                    if (released.get()) throw new IOException("Temp buffer has been released.");
+                    if (current == null || !current.hasRemaining()) {
+                        current = acquireChunk();
+                        chunks.add(current);
+                    }
+                    return current;
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new InputStream() {
+                private int index;
+                private ByteBuffer current;
+
+                @Override
+                public int read() throws IOException {
+                    ByteBuffer chunk = nextChunk();
+                    return chunk == null ? -1 : chunk.get() & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) return 0;
+                    ByteBuffer chunk = nextChunk();
+                    if (chunk == null) return -1;
+                    int n = Math.min(len, chunk.remaining());
+                    chunk.get(b, off, n);
+                    return n;
+                }
+
+                private ByteBuffer nextChunk() throws IOException {
+                    if (released.get()) throw new IOException("Temp buffer has been released.");
+                    while (current == null || !current.hasRemaining()) {
+                        if (index == chunks.size()) return null;
+                        // 读取视图与写入位置相互独立，写入的内容范围为 [0, position)
+                        ByteBuffer chunk = chunks.get(index++);
+                        current = chunk.duplicate();
+                        current.flip();
+                    }
+                    return current;
+                }
+            };
+        }
+
+        @Override
+        public boolean release() {
+            if (released.compareAndSet(false, true)) {
+                releaseChunks(chunks);
+                chunks.clear();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,620 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 输出 CSV / TSV 等分隔符文本的后端，与 XLSX 后端共用同一份编译后的模板和行流水线。
+ * <p>
+ * 只输出数据：样式、行高、列宽被忽略；合并区域只保留左上角单元格的值；
+ * 写出端不做公式求值，公式单元格按 {@link Builder#formulaPolicy(FormulaPolicy)} 输出，默认为空；
+ * 日期按 {@link Builder#dateFormat(String)} 格式化。
+ * 行号与 XLSX 输出一致，模板中跳过的行输出为空行。
+ * </p>
+ * <p>
+ * 多个 Sheet 的输出方式：
+ * </p>
+ * <ul>
+ *     <li>默认：所有 Sheet 依次写入同一个输出流。</li>
+ *     <li>{@link Builder#zipPerSheet()}：输出流为一个 zip 包，每个 Sheet 一个文件，文件名为 {@code Sheet名.扩展名}。</li>
+ *     <li>{@link Builder#sheetStreams(SheetStreamFactory)}：每个 Sheet 写入工厂打开的独立输出流，写完后关闭；
+ *     引擎传入的输出流不会被写入。</li>
+ * </ul>
+ * <p>
+ * 字段内容在写出时按 {@link Quoting} 决定是否加引号，引号字符在字段内以两个引号转义。
+ * 所有 Sheet 复用同一块字符缓冲区。实例不可变，可以被多个并发渲染共用。
+ * </p>
+ */
+public class DelimitedOutputBackend implements OutputBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelimitedOutputBackend.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte KIND_EMPTY = 0;
+    /** 数值，按 {@link BufferedTextWriter#append(double)} 输出。 */
+    private static final byte KIND_NUMBER = 1;
+    /** 不需要检查分隔符的文本（布尔值），在 {@link Quoting#NON_NUMERIC} 下与数值一样不加引号。 */
+    private static final byte KIND_LITERAL = 2;
+    private static final byte KIND_TEXT = 3;
+
+    /**
+     * 字段加引号的策略。
+     */
+    public enum Quoting {
+        /** 只在字段包含分隔符、引号或换行符时加引号（RFC 4180）。 */
+        MINIMAL,
+        /** 除数值和布尔值之外的字段一律加引号。 */
+        NON_NUMERIC,
+        /** 所有非空字段都加引号。 */
+        ALL
+    }
+
+    /**
+     * 公式单元格的输出方式。公式中的引用是 XLSX 输出中的行号，以 {@code =} 开头写出会在 Excel 打开文件时被执行，
+     * 因此两种方式都不输出可执行的公式。
+     */
+    public enum FormulaPolicy {
+        /** 输出空字段。 */
+        BLANK,
+        /** 输出不带 {@code =} 的公式文本，例如 {@code SUM(D2:D21)}。 */
+        TEXT
+    }
+
+    /**
+     * 为每个 Sheet 打开独立输出流的工厂，例如 {@code name -> Files.newOutputStream(dir.resolve(name + ".csv"))}。
+     */
+    @FunctionalInterface
+    public interface SheetStreamFactory {
+        OutputStream open(String sheetName) throws IOException;
+    }
+
+    private final char delimiter;
+    private final char quote;
+    private final Quoting quoting;
+    private final FormulaPolicy formulaPolicy;
+    private final Charset charset;
+    private final String lineSeparator;
+    private final boolean byteOrderMark;
+    private final DateTimeFormatter dateFormatter;
+    private final String fileExtension;
+    private final boolean zipPerSheet;
+    private final SheetStreamFactory sheetStreamFactory;
+
+    private DelimitedOutputBackend(Builder builder) {
+        this.delimiter = builder.delimiter;
+        this.quote = builder.quote;
+        this.quoting = builder.quoting;
+        this.formulaPolicy = builder.formulaPolicy;
+        this.charset = builder.charset;
+        this.lineSeparator = builder.lineSeparator;
+        this.byteOrderMark = builder.byteOrderMark;
+        this.dateFormatter = builder.dateFormatter;
+        this.fileExtension = builder.fileExtension;
+        this.zipPerSheet = builder.zipPerSheet;
+        this.sheetStreamFactory = builder.sheetStreamFactory;
+    }
+
+    /**
+     * 创建 Builder，默认输出 UTF-8 编码、逗号分隔、CRLF 换行的 CSV。
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 文本输出没有行数上限。
+     */
+    @Override
+    public int getMaxRowsPerSheet() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public WorkbookOutput open(TemplateStyleTable styleTable, OutputStream outputStream) {
+        return new DelimitedWorkbookOutput(outputStream);
+    }
+
+    public static class Builder {
+        private char delimiter = ',';
+        private char quote = '"';
+        private Quoting quoting = Quoting.MINIMAL;
+        private FormulaPolicy formulaPolicy = FormulaPolicy.BLANK;
+        private Charset charset = StandardCharsets.UTF_8;
+        private String lineSeparator = "\r\n";
+        private boolean byteOrderMark = false;
+        private DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        private String fileExtension = "csv";
+        private boolean zipPerSheet = false;
+        private SheetStreamFactory sheetStreamFactory;
+
+        private Builder() {}
+
+        /**
+         * 切换为 TSV：制表符分隔，zip 包中的文件扩展名为 tsv。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder tsv() {
+            this.delimiter = '\t';
+            this.fileExtension = "tsv";
+            return this;
+        }
+
+        /**
+         * 设置字段分隔符。
+         *
+         * @param delimiter 分隔符，不能是引号字符或换行符。
+         * @return 当前 Builder 实例。
+         */
+        public Builder delimiter(char delimiter) {
+            if (delimiter == '\r' || delimiter == '\n') throw new IllegalArgumentException("Delimiter cannot be a line break.");
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * 设置引号字符。
+         *
+         * @param quote 引号字符，不能是换行符。
+         * @return 当前 Builder 实例。
+         */
+        public Builder quote(char quote) {
+            if (quote == '\r' || quote == '\n') throw new IllegalArgumentException("Quote character cannot be a line break.");
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * 设置字段加引号的策略，默认为 {@link Quoting#MINIMAL}。
+         *
+         * @param quoting 加引号策略。
+         * @return 当前 Builder 实例。
+         */
+        public Builder quoting(Quoting quoting) {
+            if (quoting == null) throw new IllegalArgumentException("Quoting cannot be null.");
+            this.quoting = quoting;
+            return this;
+        }
+
+        /**
+         * 设置公式单元格的输出方式，默认为 {@link FormulaPolicy#BLANK}。
+         *
+         * @param formulaPolicy 公式输出方式。
+         * @return 当前 Builder 实例。
+         */
+        public Builder formulaPolicy(FormulaPolicy formulaPolicy) {
+            if (formulaPolicy == null) throw new IllegalArgumentException("Formula policy cannot be null.");
+            this.formulaPolicy = formulaPolicy;
+            return this;
+        }
+
+        /**
+         * 设置输出编码，默认为 UTF-8。
+         *
+         * @param charset 字符集。
+         * @return 当前 Builder 实例。
+         */
+        public Builder charset(Charset charset) {
+            if (charset == null) throw new IllegalArgumentException("Charset cannot be null.");
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * 设置行分隔符，默认为 CRLF。
+         *
+         * @param lineSeparator 行分隔符，只能是 "\r\n"、"\n" 或 "\r"。
+         * @return 当前 Builder 实例。
+         */
+        public Builder lineSeparator(String lineSeparator) {
+            if (!"\r\n".equals(lineSeparator) && !"\n".equals(lineSeparator) && !"\r".equals(lineSeparator)) {
+                throw new IllegalArgumentException("Line separator must be one of \\r\\n, \\n or \\r.");
+            }
+            this.lineSeparator = lineSeparator;
+            return this;
+        }
+
+        /**
+         * 在每个文件开头写入 BOM（U+FEFF），便于 Excel 以正确编码打开 UTF-8 的 CSV。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder byteOrderMark() {
+            this.byteOrderMark = true;
+            return this;
+        }
+
+        /**
+         * 设置 {@link Date} 和 {@link Calendar} 值的输出格式，默认为 {@code yyyy-MM-dd HH:mm:ss}。
+         *
+         * @param pattern {@link DateTimeFormatter} 格式。
+         * @return 当前 Builder 实例。
+         */
+        public Builder dateFormat(String pattern) {
+            if (pattern == null || pattern.isEmpty()) throw new IllegalArgumentException("Date format cannot be empty.");
+            this.dateFormatter = DateTimeFormatter.ofPattern(pattern);
+            return this;
+        }
+
+        /**
+         * 把输出流写成 zip 包，每个 Sheet 一个文件。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder zipPerSheet() {
+            this.zipPerSheet = true;
+            this.sheetStreamFactory = null;
+            return this;
+        }
+
+        /**
+         * 每个 Sheet 写入工厂打开的独立输出流，写完后由后端关闭。
+         *
+         * @param sheetStreamFactory 输出流工厂。
+         * @return 当前 Builder 实例。
+         */
+        public Builder sheetStreams(SheetStreamFactory sheetStreamFactory) {
+            if (sheetStreamFactory == null) throw new IllegalArgumentException("Sheet stream factory cannot be null.");
+            this.sheetStreamFactory = sheetStreamFactory;
+            this.zipPerSheet = false;
+            return this;
+        }
+
+        public DelimitedOutputBackend build() {
+            if (delimiter == quote) {
+                throw new IllegalArgumentException("Delimiter and quote character must differ.");
+            }
+            return new DelimitedOutputBackend(this);
+        }
+    }
+
+    private final class DelimitedWorkbookOutput implements WorkbookOutput {
+        private final OutputStream target;
+        private final ZipOutputStream zip;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final List<String> sheetNames = new ArrayList<>();
+        private DelimitedSheetOutput currentSheet;
+        private Writer currentWriter;
+        private XSSFWorkbook scratchWorkbook;
+        private XSSFSheet scratchSheet;
+
+        DelimitedWorkbookOutput(OutputStream outputStream) {
+            this.target = outputStream;
+            this.zip = zipPerSheet ? new ZipOutputStream(outputStream) : null;
+        }
+
+        @Override
+        public SheetOutput createSheet(String sheetName) throws IOException {
+            if (currentSheet != null) {
+                throw new IllegalStateException("Sheet '" + sheetNames.get(sheetNames.size() - 1) + "' has not been finished.");
+            }
+            if (sheetNames.stream().anyMatch(sheetName::equalsIgnoreCase)) {
+                throw new IllegalArgumentException("The workbook already contains a sheet named '" + sheetName + "'");
+            }
+            boolean newFile = sheetStreamFactory != null || zip != null || sheetNames.isEmpty();
+            OutputStream sheetStream;
+            if (sheetStreamFactory != null) {
+                sheetStream = sheetStreamFactory.open(sheetName);
+            } else if (zip != null) {
+                zip.putNextEntry(new ZipEntry(sheetName + "." + fileExtension));
+                sheetStream = zip;
+            } else {
+                sheetStream = target;
+            }
+            sheetNames.add(sheetName);
+            currentWriter = new OutputStreamWriter(sheetStream, charset);
+            BufferedTextWriter text = new BufferedTextWriter(currentWriter, buffer);
+            if (byteOrderMark && newFile) {
+                text.append('\uFEFF');
+            }
+            currentSheet = new DelimitedSheetOutput(this, text);
+            return currentSheet;
+        }
+
+        void sheetFinished(BufferedTextWriter text) {
+            text.flush();
+            try {
+                if (sheetStreamFactory != null) {
+                    currentWriter.close();
+                } else if (zip != null) {
+                    zip.closeEntry();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            currentWriter = null;
+            currentSheet = null;
+        }
+
+        /**
+         * 准备一个临时单元格供自定义渲染器操作，承载它的工作簿在第一次需要时才创建。
+         */
+        XSSFCell scratchCell(int rowIndex, int columnIndex) {
+            if (scratchWorkbook == null) {
+                logger.warn("Custom cell renderers run against a detached cell in the delimited text backend; only the value is kept.");
+                scratchWorkbook = new XSSFWorkbook();
+                scratchSheet = scratchWorkbook.createSheet("scratch");
+            }
+            XSSFRow row = scratchSheet.getRow(rowIndex);
+            if (row == null) {
+                row = scratchSheet.createRow(rowIndex);
+            }
+            return row.createCell(columnIndex);
+        }
+
+        void releaseScratchCell(XSSFCell cell) {
+            scratchSheet.removeRow(cell.getRow());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (currentSheet != null) {
+                throw new IllegalStateException("Sheet '" + sheetNames.get(sheetNames.size() - 1) + "' has not been finished.");
+            }
+            if (zip != null) {
+                zip.finish();
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // 渲染失败时关闭工厂打开的、尚未写完的 Sheet 输出流
+                if (currentWriter != null && sheetStreamFactory != null) {
+                    currentWriter.close();
+                }
+            } finally {
+                if (scratchWorkbook != null) {
+                    scratchWorkbook.close();
+                }
+            }
+        }
+    }
+
+    private final class DelimitedSheetOutput implements SheetOutput {
+        private final DelimitedWorkbookOutput workbook;
+        private final BufferedTextWriter text;
+        private byte[] kinds = new byte[32];
+        private double[] numbers = new double[32];
+        private String[] texts = new String[32];
+        private int width;
+        private int nextRow;
+        private int rowIndex;
+
+        DelimitedSheetOutput(DelimitedWorkbookOutput workbook, BufferedTextWriter text) {
+            this.workbook = workbook;
+            this.text = text;
+        }
+
+        @Override
+        public void setColumnWidth(int columnIndex, int width) {
+        }
+
+        @Override
+        public boolean supportsDeferredColumnWidths() {
+            // 文本格式没有列宽，设置总是被忽略
+            return true;
+        }
+
+        @Override
+        public void startRow(int rowIndex, float heightInPoints) {
+            for (; nextRow < rowIndex; nextRow++) {
+                text.append(lineSeparator);
+            }
+            this.rowIndex = rowIndex;
+        }
+
+        /**
+         * 占用一列，超出当前容量时扩容。
+         */
+        private void slot(int columnIndex, byte kind) {
+            if (columnIndex >= kinds.length) {
+                int capacity = Math.max(columnIndex + 1, kinds.length * 2);
+                kinds = Arrays.copyOf(kinds, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+            }
+            kinds[columnIndex] = kind;
+            if (columnIndex >= width) {
+                width = columnIndex + 1;
+            }
+        }
+
+        private void putText(int columnIndex, byte kind, String value) {
+            slot(columnIndex, kind);
+            texts[columnIndex] = value;
+        }
+
+        @Override
+        public void writeNumber(int columnIndex, double value, int styleIndex) {
+            slot(columnIndex, KIND_NUMBER);
+            numbers[columnIndex] = value;
+        }
+
+        @Override
+        public void writeString(int columnIndex, String value, int styleIndex) {
+            putText(columnIndex, KIND_TEXT, value);
+        }
+
+        @Override
+        public void writeBoolean(int columnIndex, boolean value, int styleIndex) {
+            putText(columnIndex, KIND_LITERAL, value ? "TRUE" : "FALSE");
+        }
+
+        @Override
+        public void writeFormula(int columnIndex, String formula, int styleIndex) {
+            if (formulaPolicy == FormulaPolicy.TEXT) {
+                putText(columnIndex, KIND_TEXT, formula);
+            } else {
+                slot(columnIndex, KIND_EMPTY);
+            }
+        }
+
+        @Override
+        public void writeBlank(int columnIndex, int styleIndex) {
+            slot(columnIndex, KIND_EMPTY);
+        }
+
+        @Override
+        public void writeValue(int columnIndex, Object value, int styleIndex) {
+            if (value == null) writeBlank(columnIndex, styleIndex);
+            else if (value instanceof String) writeString(columnIndex, (String) value, styleIndex);
+            else if (value instanceof Number) writeNumber(columnIndex, ((Number) value).doubleValue(), styleIndex);
+            else if (value instanceof Boolean) writeBoolean(columnIndex, (Boolean) value, styleIndex);
+            else if (value instanceof Date) writeString(columnIndex, formatDate(Instant.ofEpochMilli(((Date) value).getTime()), ZoneId.systemDefault()), styleIndex);
+            else if (value instanceof Calendar) writeString(columnIndex, formatDate(((Calendar) value).toInstant(), ((Calendar) value).getTimeZone().toZoneId()), styleIndex);
+            else if (value instanceof RichTextString) writeString(columnIndex, ((RichTextString) value).getString(), styleIndex);
+            else writeString(columnIndex, value.toString(), styleIndex);
+        }
+
+        private String formatDate(Instant instant, ZoneId zone) {
+            return dateFormatter.format(LocalDateTime.ofInstant(instant, zone));
+        }
+
+        @Override
+        public void writeCustom(int columnIndex, Consumer<Cell> renderer, int styleIndex) {
+            XSSFCell cell = workbook.scratchCell(rowIndex, columnIndex);
+            try {
+                renderer.accept(cell);
+                switch (cell.getCellType()) {
+                    case NUMERIC:
+                        writeNumber(columnIndex, cell.getNumericCellValue(), styleIndex);
+                        break;
+                    case STRING:
+                        writeString(columnIndex, cell.getStringCellValue(), styleIndex);
+                        break;
+                    case BOOLEAN:
+                        writeBoolean(columnIndex, cell.getBooleanCellValue(), styleIndex);
+                        break;
+                    case FORMULA:
+                        writeFormula(columnIndex, cell.getCellFormula(), styleIndex);
+                        break;
+                    case ERROR:
+                        writeString(columnIndex, FormulaError.forInt(cell.getErrorCellValue()).getString(), styleIndex);
+                        break;
+                    default:
+                        writeBlank(columnIndex, styleIndex);
+                }
+            } finally {
+                workbook.releaseScratchCell(cell);
+            }
+        }
+
+        @Override
+        public void endRow() {
+            for (int c = 0; c < width; c++) {
+                if (c > 0) {
+                    text.append(delimiter);
+                }
+                switch (kinds[c]) {
+                    case KIND_NUMBER:
+                        if (quoting == Quoting.ALL) {
+                            text.append(quote).append(numbers[c]).append(quote);
+                        } else {
+                            text.append(numbers[c]);
+                        }
+                        break;
+                    case KIND_LITERAL:
+                        appendField(texts[c], quoting == Quoting.ALL);
+                        break;
+                    case KIND_TEXT:
+                        appendField(texts[c], quoting != Quoting.MINIMAL);
+                        break;
+                    default:
+                        break;
+                }
+                kinds[c] = KIND_EMPTY;
+                texts[c] = null;
+            }
+            text.append(lineSeparator);
+            width = 0;
+            nextRow = rowIndex + 1;
+        }
+
+        private void appendField(String value, boolean forceQuote) {
+            if (!forceQuote && !needsQuote(value)) {
+                text.append(value);
+                return;
+            }
+            text.append(quote);
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c == quote) {
+                    text.append(quote);
+                }
+                text.append(c);
+            }
+            text.append(quote);
+        }
+
+        private boolean needsQuote(String value) {
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c == delimiter || c == quote || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void addMergedRegion(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        }
+
+        @Override
+        public void finish() {
+            workbook.sheetFinished(text);
+        }
+    }
+}
@@ -0,0 +1,788 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.RowFormat;
+import com.github.jwj.flexcel.style.StyleOverride;
+import com.github.jwj.flexcel.style.StyleSnapshot;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 直接写出 XLSX 的输出后端。
+ * <p>
+ * 每个 Sheet 的 XML 在渲染过程中直接写入输出 zip 流，不创建 POI 的 Row/Cell 对象，也不产生临时文件。
+ * 样式通过一个只用于承载样式表的 XSSFWorkbook 克隆并序列化为 {@code xl/styles.xml}。
+ * 支持合并区域、公式、列宽和行高。
+ * </p>
+ * <p>
+ * 字符串默认以内联字符串写出。通过 {@link #DirectXlsxOutputBackend(int)} 启用有界共享字符串表后，
+ * 重复出现的短字符串写入 {@code xl/sharedStrings.xml} 并在单元格中只引用其索引，适合类别、状态等取值有限的文本列；
+ * 只出现一次的值和字典满后出现的新值仍然内联，因此字典内存有上限。
+ * </p>
+ * <p>
+ * 通过 {@link #builder()} 可以设置 zip 压缩级别，并启用并行压缩：每个 Sheet 的 XML 在渲染的同时交给执行器压缩，
+ * 多 Sheet 工作簿的各个 Sheet 可以在不同线程上压缩，最后以原始条目写入 zip。
+ * 并行压缩时压缩后的 Sheet 在工作簿结束前保存在内存中，输出流在 {@link WorkbookOutput#finish()} 时才被写入，
+ * 适合交互式导出等体积可控、对延迟敏感的场景。
+ * </p>
+ * <p>
+ * 顺序压缩时 Sheet 的 XML 在行产生的同时被压缩写入输出流，但压缩器和调用方的输出流（例如 HTTP 响应的缓冲区）
+ * 仍可能把数据保留到工作簿结束。通过 {@link Builder#progressiveFlush(int)} 可以每写出固定行数就以
+ * {@link Deflater#SYNC_FLUSH} 冲刷压缩器并刷新输出流，使客户端在渲染进行中就陆续收到数据，避免长时间导出时
+ * 代理或客户端因为没有响应而超时。工作簿、关系和样式等部件在最后一个 Sheet 之后写出，因为它们依赖续表和派生样式。
+ * </p>
+ * <p>
+ * 与 {@link PoiOutputBackend} 的差异：
+ * </p>
+ * <ul>
+ *     <li>公式不在写入时解析校验，语法错误只会在 Excel 打开文件时暴露。</li>
+ *     <li>自定义渲染器作用于一个脱离输出文件的临时单元格，只保留其值、公式和样式，超链接、批注等附加对象会丢失。</li>
+ *     <li>内容在渲染过程中就写入输出流，渲染失败或被取消时输出流中会留下不完整的数据。</li>
+ * </ul>
+ */
+public class DirectXlsxOutputBackend implements OutputBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectXlsxOutputBackend.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PACKAGE_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    private final int sharedStringCapacity;
+    private final int compressionLevel;
+    private final Executor compressionExecutor;
+    private final int flushInterval;
+
+    /**
+     * 创建只使用内联字符串的后端。
+     */
+    public DirectXlsxOutputBackend() {
+        this(0);
+    }
+
+    /**
+     * @param sharedStringCapacity 共享字符串表最多容纳的不同字符串数量，0 表示不使用共享字符串表。
+     */
+    public DirectXlsxOutputBackend(int sharedStringCapacity) {
+        this(builder().sharedStrings(sharedStringCapacity));
+    }
+
+    private DirectXlsxOutputBackend(Builder builder) {
+        this.sharedStringCapacity = builder.sharedStringCapacity;
+        this.compressionLevel = builder.compressionLevel;
+        this.compressionExecutor = builder.compressionExecutor;
+        this.flushInterval = builder.flushInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int sharedStringCapacity = 0;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private Executor compressionExecutor;
+        private int flushInterval = 0;
+
+        private Builder() {}
+
+        /**
+         * @param capacity 共享字符串表最多容纳的不同字符串数量，0 表示不使用共享字符串表（默认）。
+         * @return 当前 Builder 实例。
+         */
+        public Builder sharedStrings(int capacity) {
+            if (capacity < 0) throw new IllegalArgumentException("Shared string capacity cannot be negative.");
+            this.sharedStringCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param level zip 压缩级别，-1（默认级别）到 9。级别越低写出越快、文件越大。
+         * @return 当前 Builder 实例。
+         */
+        public Builder compressionLevel(int level) {
+            this.compressionLevel = PoiOutputBackend.checkCompressionLevel(level);
+            return this;
+        }
+
+        /**
+         * 在公共 ForkJoinPool 上并行压缩 Sheet。
+         *
+         * @return 当前 Builder 实例。
+         */
+        public Builder parallelCompression() {
+            return parallelCompression(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * 在指定执行器上并行压缩 Sheet。
+         *
+         * @param executor 执行压缩任务的执行器。
+         * @return 当前 Builder 实例。
+         */
+        public Builder parallelCompression(Executor executor) {
+            this.compressionExecutor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * 每写出 rowInterval 行，就把已经产生的数据压缩冲刷到输出流并刷新输出流。
+         * 冲刷会让压缩率略有下降，间隔过小时还会放大输出流的刷新开销，通常取几百到几千行。
+         * 不能与并行压缩同时使用。
+         *
+         * @param rowInterval 冲刷间隔的行数，0 表示只在工作簿结束时刷新（默认）。
+         * @return 当前 Builder 实例。
+         */
+        public Builder progressiveFlush(int rowInterval) {
+            if (rowInterval < 0) throw new IllegalArgumentException("Flush interval cannot be negative.");
+            this.flushInterval = rowInterval;
+            return this;
+        }
+
+        public DirectXlsxOutputBackend build() {
+            if (flushInterval > 0 && compressionExecutor != null) {
+                throw new IllegalArgumentException("Progressive flushing cannot be combined with parallel compression.");
+            }
+            return new DirectXlsxOutputBackend(this);
+        }
+    }
+
+    @Override
+    public WorkbookOutput open(TemplateStyleTable styleTable, OutputStream outputStream) {
+        SharedStringDictionary sharedStrings = sharedStringCapacity > 0 ? new SharedStringDictionary(sharedStringCapacity) : null;
+        return new DirectWorkbookOutput(styleTable, outputStream, sharedStrings, compressionLevel, compressionExecutor, flushInterval);
+    }
+
+    /**
+     * 可以在条目中途以 {@link Deflater#SYNC_FLUSH} 冲刷压缩器的 zip 流。
+     * 冲刷只在条目打开时进行，因为条目之间输出的空块会破坏 zip 结构。
+     */
+    private static final class FlushableZipOutputStream extends ZipOutputStream {
+        private boolean entryOpen;
+
+        FlushableZipOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void putNextEntry(ZipEntry e) throws IOException {
+            super.putNextEntry(e);
+            entryOpen = true;
+        }
+
+        @Override
+        public void closeEntry() throws IOException {
+            entryOpen = false;
+            super.closeEntry();
+        }
+
+        /**
+         * 输出压缩器中已经积累的数据并刷新底层输出流。
+         */
+        void syncFlush() throws IOException {
+            if (entryOpen && !def.finished()) {
+                int len;
+                while ((len = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH)) > 0) {
+                    out.write(buf, 0, len);
+                    if (len < buf.length) break;
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * 包装 zip 流，使 POI 序列化样式表时不会把它关闭。
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static boolean needsSpacePreserve(String value) {
+        return !value.isEmpty()
+                && (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1)));
+    }
+
+    private static final class DirectWorkbookOutput implements WorkbookOutput {
+        private final XSSFWorkbook styleWorkbook = new XSSFWorkbook();
+        private final StyleSnapshot styleSnapshot;
+        // 0 表示尚未创建：新建的 XSSFWorkbook 已占用了 0 号默认样式，创建的样式下标都大于 0
+        private final int[] styleIds;
+        // #style 派生样式在 styles.xml 中的下标，索引从模板样式数开始
+        private final List<Integer> derivedStyleIds = new ArrayList<>();
+        private int createdStyles;
+        private final OutputStream outputStream;
+        private final int compressionLevel;
+        private final Executor compressionExecutor;
+        private final int flushInterval;
+        private int rowsSinceFlush;
+        private final SharedStringDictionary sharedStrings;
+        private final List<String> sheetNames = new ArrayList<>();
+        private final List<ParallelDeflater> compressedSheets = new ArrayList<>();
+        // 顺序压缩时在创建时打开，并行压缩时在 finish 时打开
+        private ZipOutputStream zip;
+        private ZipArchiveOutputStream archive;
+        private BufferedTextWriter xml;
+        private BufferedTextWriter sheetXml;
+        private DirectSheetOutput currentSheet;
+        private XSSFSheet scratchSheet;
+        private boolean customRendererWarned;
+
+        DirectWorkbookOutput(TemplateStyleTable styleTable, OutputStream outputStream, SharedStringDictionary sharedStrings,
+                             int compressionLevel, Executor compressionExecutor, int flushInterval) {
+            this.outputStream = outputStream;
+            this.compressionLevel = compressionLevel;
+            this.compressionExecutor = compressionExecutor;
+            this.flushInterval = flushInterval;
+            this.sharedStrings = sharedStrings;
+            this.styleSnapshot = styleTable.getSnapshot();
+            this.styleSnapshot.seed(styleWorkbook.getStylesSource());
+            this.styleIds = new int[styleSnapshot.size()];
+            if (compressionExecutor == null) {
+                OutputStream target = new NonClosingOutputStream(outputStream);
+                this.zip = flushInterval > 0 ? new FlushableZipOutputStream(target) : new ZipOutputStream(target);
+                this.zip.setLevel(compressionLevel);
+                this.xml = new BufferedTextWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+            }
+        }
+
+        /**
+         * 按模板样式索引取 styles.xml 中的样式下标，第一次用到时才从样式快照中创建。
+         */
+        int styleId(int styleIndex) {
+            if (styleIndex >= styleIds.length) {
+                return derivedStyleIds.get(styleIndex - styleIds.length);
+            }
+            int styleId = styleIds[styleIndex];
+            if (styleId == 0) {
+                styleId = styleSnapshot.createStyle(styleWorkbook.getStylesSource(), styleIndex);
+                styleIds[styleIndex] = styleId;
+                createdStyles++;
+            }
+            return styleId;
+        }
+
+        @Override
+        public int deriveStyle(int baseStyleIndex, StyleOverride override) {
+            CellStyle base = baseStyleIndex == RowFormat.NO_STYLE ? null : styleWorkbook.getCellStyleAt(styleId(baseStyleIndex));
+            derivedStyleIds.add(override.derive(styleWorkbook, base).getIndex() & 0xFFFF);
+            return styleIds.length + derivedStyleIds.size() - 1;
+        }
+
+        private OutputStream packageStream() {
+            return archive != null ? archive : zip;
+        }
+
+        private void beginPart(String name) throws IOException {
+            if (archive != null) archive.putArchiveEntry(new ZipArchiveEntry(name));
+            else zip.putNextEntry(new ZipEntry(name));
+        }
+
+        private void endPart() throws IOException {
+            xml.flush();
+            if (archive != null) archive.closeArchiveEntry();
+            else zip.closeEntry();
+        }
+
+        @Override
+        public SheetOutput createSheet(String sheetName) throws IOException {
+            if (currentSheet != null) {
+                throw new IllegalStateException("Sheet '" + sheetNames.get(sheetNames.size() - 1) + "' has not been finished.");
+            }
+            WorkbookUtil.validateSheetName(sheetName);
+            if (sheetNames.stream().anyMatch(sheetName::equalsIgnoreCase)) {
+                throw new IllegalArgumentException("The workbook already contains a sheet named '" + sheetName + "'");
+            }
+            sheetNames.add(sheetName);
+            if (compressionExecutor != null) {
+                ParallelDeflater deflater = new ParallelDeflater(compressionLevel, compressionExecutor);
+                compressedSheets.add(deflater);
+                sheetXml = new BufferedTextWriter(new OutputStreamWriter(deflater, StandardCharsets.UTF_8), BUFFER_SIZE);
+            } else {
+                beginPart(sheetPartName(sheetNames.size()));
+                sheetXml = xml;
+            }
+            currentSheet = new DirectSheetOutput(this, sheetName, sheetXml);
+            return currentSheet;
+        }
+
+        private static String sheetPartName(int sheetNumber) {
+            return "xl/worksheets/sheet" + sheetNumber + ".xml";
+        }
+
+        /**
+         * 一行写完，达到冲刷间隔时把 Sheet 已产生的数据推送到输出流。
+         */
+        void rowFinished() {
+            if (flushInterval > 0 && ++rowsSinceFlush >= flushInterval) {
+                rowsSinceFlush = 0;
+                try {
+                    sheetXml.flush();
+                    ((FlushableZipOutputStream) zip).syncFlush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void sheetFinished() {
+            try {
+                if (compressionExecutor != null) {
+                    sheetXml.flush();
+                    compressedSheets.get(compressedSheets.size() - 1).close();
+                } else {
+                    endPart();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sheetXml = null;
+            currentSheet = null;
+        }
+
+        /**
+         * 在承载样式表的工作簿中准备一个临时单元格，供自定义渲染器操作。
+         */
+        XSSFCell scratchCell(int rowIndex, int columnIndex) {
+            if (!customRendererWarned) {
+                logger.warn("Custom cell renderers run against a detached cell in the direct XLSX backend; "
+                        + "only the value, formula and style are kept.");
+                customRendererWarned = true;
+            }
+            if (scratchSheet == null) {
+                scratchSheet = styleWorkbook.createSheet("scratch");
+            }
+            XSSFRow row = scratchSheet.getRow(rowIndex);
+            if (row == null) {
+                row = scratchSheet.createRow(rowIndex);
+            }
+            return row.createCell(columnIndex);
+        }
+
+        void releaseScratchCell(XSSFCell cell) {
+            scratchSheet.removeRow(cell.getRow());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (currentSheet != null) {
+                throw new IllegalStateException("Sheet '" + sheetNames.get(sheetNames.size() - 1) + "' has not been finished.");
+            }
+            if (compressionExecutor != null) {
+                writeCompressedSheets();
+            }
+            writeWorkbookPart();
+            writeWorkbookRelationships();
+            writeRootRelationships();
+            writeContentTypes();
+            if (sharedStrings != null) {
+                writeSharedStrings();
+            }
+
+            logger.info("Created {} of {} template styles and {} derived styles.", createdStyles, styleIds.length, derivedStyleIds.size());
+            beginPart("xl/styles.xml");
+            styleWorkbook.getStylesSource().writeTo(new NonClosingOutputStream(packageStream()));
+            endPart();
+            if (archive != null) archive.finish();
+            else zip.finish();
+            packageStream().flush();
+        }
+
+        /**
+         * 等待各 Sheet 压缩完成，以原始条目写入 zip，并打开用于写出其余部件的 zip 流。
+         */
+        private void writeCompressedSheets() throws IOException {
+            archive = new ZipArchiveOutputStream(new NonClosingOutputStream(outputStream));
+            archive.setLevel(compressionLevel);
+            xml = new BufferedTextWriter(new OutputStreamWriter(archive, StandardCharsets.UTF_8), BUFFER_SIZE);
+            for (int i = 0; i < compressedSheets.size(); i++) {
+                ParallelDeflater deflater = compressedSheets.get(i);
+                deflater.await();
+                ZipArchiveEntry entry = new ZipArchiveEntry(sheetPartName(i + 1));
+                entry.setMethod(ZipEntry.DEFLATED);
+                entry.setCrc(deflater.getCrc());
+                entry.setSize(deflater.getSize());
+                entry.setCompressedSize(deflater.getCompressedSize());
+                archive.addRawArchiveEntry(entry, deflater.openCompressed());
+                compressedSheets.set(i, null);
+            }
+            compressedSheets.clear();
+        }
+
+        private void writeWorkbookPart() throws IOException {
+            beginPart("xl/workbook.xml");
+            xml.append(XML_DECLARATION)
+                    .append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_RELATIONSHIPS).append("\"><sheets>");
+            for (int i = 0; i < sheetNames.size(); i++) {
+                xml.append("<sheet name=\"").appendXmlEscaped(sheetNames.get(i))
+                        .append("\" sheetId=\"").append(i + 1).append("\" r:id=\"rId").append(i + 1).append("\"/>");
+            }
+            xml.append("</sheets></workbook>");
+            endPart();
+        }
+
+        private void writeWorkbookRelationships() throws IOException {
+            beginPart("xl/_rels/workbook.xml.rels");
+            xml.append(XML_DECLARATION).append("<Relationships xmlns=\"").append(NS_PACKAGE_RELATIONSHIPS).append("\">");
+            for (int i = 0; i < sheetNames.size(); i++) {
+                xml.append("<Relationship Id=\"rId").append(i + 1)
+                        .append("\" Type=\"").append(NS_RELATIONSHIPS).append("/worksheet\" Target=\"worksheets/sheet")
+                        .append(i + 1).append(".xml\"/>");
+            }
+            xml.append("<Relationship Id=\"rId").append(sheetNames.size() + 1)
+                    .append("\" Type=\"").append(NS_RELATIONSHIPS).append("/styles\" Target=\"styles.xml\"/>");
+            if (sharedStrings != null) {
+                xml.append("<Relationship Id=\"rId").append(sheetNames.size() + 2)
+                        .append("\" Type=\"").append(NS_RELATIONSHIPS).append("/sharedStrings\" Target=\"sharedStrings.xml\"/>");
+            }
+            xml.append("</Relationships>");
+            endPart();
+        }
+
+        private void writeRootRelationships() throws IOException {
+            beginPart("_rels/.rels");
+            xml.append(XML_DECLARATION).append("<Relationships xmlns=\"").append(NS_PACKAGE_RELATIONSHIPS).append("\">")
+                    .append("<Relationship Id=\"rId1\" Type=\"").append(NS_RELATIONSHIPS)
+                    .append("/officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>");
+            endPart();
+        }
+
+        private void writeContentTypes() throws IOException {
+            beginPart("[Content_Types].xml");
+            xml.append(XML_DECLARATION)
+                    .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                    .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                    .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                    .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+                    .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+            if (sharedStrings != null) {
+                xml.append("<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>");
+            }
+            for (int i = 0; i < sheetNames.size(); i++) {
+                xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i + 1)
+                        .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            }
+            xml.append("</Types>");
+            endPart();
+        }
+
+        private void writeSharedStrings() throws IOException {
+            beginPart("xl/sharedStrings.xml");
+            xml.append(XML_DECLARATION).append("<sst xmlns=\"").append(NS_MAIN)
+                    .append("\" count=\"").append(sharedStrings.getReferences())
+                    .append("\" uniqueCount=\"").append(sharedStrings.size()).append("\">");
+            for (String value : sharedStrings.getStrings()) {
+                xml.append(needsSpacePreserve(value) ? "<si><t xml:space=\"preserve\">" : "<si><t>")
+                        .appendXmlEscaped(value).append("</t></si>");
+            }
+            xml.append("</sst>");
+            endPart();
+            logger.debug("Wrote {} shared strings referenced by {} cells.", sharedStrings.size(), sharedStrings.getReferences());
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ParallelDeflater deflater : compressedSheets) {
+                deflater.discard();
+            }
+            styleWorkbook.close();
+        }
+    }
+
+    private static final class DirectSheetOutput implements SheetOutput {
+        private final DirectWorkbookOutput workbook;
+        private final BufferedTextWriter xml;
+        private final Map<Integer, Integer> columnWidths = new TreeMap<>();
+        private final MergedRegionSet mergedRegions = new MergedRegionSet();
+        private final String sheetName;
+        private String[] columnNames = new String[32];
+        private boolean sheetDataOpen;
+        private int rowNumber;
+
+        DirectSheetOutput(DirectWorkbookOutput workbook, String sheetName, BufferedTextWriter xml) {
+            this.workbook = workbook;
+            this.sheetName = sheetName;
+            this.xml = xml;
+            xml.append(XML_DECLARATION)
+                    .append("<worksheet xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_RELATIONSHIPS).append("\">");
+        }
+
+        @Override
+        public void setColumnWidth(int columnIndex, int width) {
+            if (sheetDataOpen) {
+                throw new IllegalStateException("Column widths must be set before the first row is written.");
+            }
+            columnWidths.put(columnIndex, width);
+        }
+
+        private void openSheetData() {
+            if (!columnWidths.isEmpty()) {
+                xml.append("<cols>");
+                for (Map.Entry<Integer, Integer> entry : columnWidths.entrySet()) {
+                    int column = entry.getKey() + 1;
+                    xml.append("<col min=\"").append(column).append("\" max=\"").append(column)
+                            .append("\" width=\"").append(entry.getValue() / 256.0).append("\" customWidth=\"1\"/>");
+                }
+                xml.append("</cols>");
+            }
+            xml.append("<sheetData>");
+            sheetDataOpen = true;
+        }
+
+        @Override
+        public void startRow(int rowIndex, float heightInPoints) {
+            if (!sheetDataOpen) {
+                openSheetData();
+            }
+            rowNumber = rowIndex + 1;
+            xml.append("<row r=\"").append(rowNumber).append('"');
+            if (heightInPoints >= 0) {
+                xml.append(" ht=\"").append((double) heightInPoints).append("\" customHeight=\"1\"");
+            }
+            xml.append('>');
+        }
+
+        private String columnName(int columnIndex) {
+            if (columnIndex >= columnNames.length) {
+                columnNames = Arrays.copyOf(columnNames, Math.max(columnIndex + 1, columnNames.length * 2));
+            }
+            String name = columnNames[columnIndex];
+            if (name == null) {
+                name = CellReference.convertNumToColString(columnIndex);
+                columnNames[columnIndex] = name;
+            }
+            return name;
+        }
+
+        /**
+         * 写出单元格的开始标签（不含结尾的 {@code >}）。
+         */
+        private void openCell(int columnIndex, int styleId, String type) {
+            xml.append("<c r=\"").append(columnName(columnIndex)).append(rowNumber).append('"');
+            if (styleId > 0) {
+                xml.append(" s=\"").append(styleId).append('"');
+            }
+            if (type != null) {
+                xml.append(" t=\"").append(type).append('"');
+            }
+        }
+
+        private int styleId(int styleIndex) {
+            return styleIndex == RowFormat.NO_STYLE ? 0 : workbook.styleId(styleIndex);
+        }
+
+        @Override
+        public void writeNumber(int columnIndex, double value, int styleIndex) {
+            writeNumberCell(columnIndex, value, styleId(styleIndex));
+        }
+
+        private void writeNumberCell(int columnIndex, double value, int styleId) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                writeErrorCell(columnIndex, FormulaError.NUM.getString(), styleId);
+                return;
+            }
+            openCell(columnIndex, styleId, null);
+            xml.append("><v>").append(value).append("</v></c>");
+        }
+
+        @Override
+        public void writeString(int columnIndex, String value, int styleIndex) {
+            writeStringCell(columnIndex, value, styleId(styleIndex));
+        }
+
+        private void writeStringCell(int columnIndex, String value, int styleId) {
+            SharedStringDictionary sharedStrings = workbook.sharedStrings;
+            int sharedIndex = sharedStrings != null ? sharedStrings.lookup(value) : -1;
+            if (sharedIndex >= 0) {
+                openCell(columnIndex, styleId, "s");
+                xml.append("><v>").append(sharedIndex).append("</v></c>");
+                return;
+            }
+            openCell(columnIndex, styleId, "inlineStr");
+            xml.append(needsSpacePreserve(value) ? "><is><t xml:space=\"preserve\">" : "><is><t>").appendXmlEscaped(value).append("</t></is></c>");
+        }
+
+        @Override
+        public void writeBoolean(int columnIndex, boolean value, int styleIndex) {
+            writeBooleanCell(columnIndex, value, styleId(styleIndex));
+        }
+
+        private void writeBooleanCell(int columnIndex, boolean value, int styleId) {
+            openCell(columnIndex, styleId, "b");
+            xml.append(value ? "><v>1</v></c>" : "><v>0</v></c>");
+        }
+
+        @Override
+        public void writeFormula(int columnIndex, String formula, int styleIndex) {
+            writeFormulaCell(columnIndex, formula, styleId(styleIndex));
+        }
+
+        private void writeFormulaCell(int columnIndex, String formula, int styleId) {
+            openCell(columnIndex, styleId, null);
+            xml.append("><f>").appendXmlEscaped(formula).append("</f></c>");
+        }
+
+        private void writeErrorCell(int columnIndex, String error, int styleId) {
+            openCell(columnIndex, styleId, "e");
+            xml.append("><v>").appendXmlEscaped(error).append("</v></c>");
+        }
+
+        @Override
+        public void writeBlank(int columnIndex, int styleIndex) {
+            openCell(columnIndex, styleId(styleIndex), null);
+            xml.append("/>");
+        }
+
+        @Override
+        public void writeValue(int columnIndex, Object value, int styleIndex) {
+            if (value == null) {
+                writeBlank(columnIndex, styleIndex);
+                return;
+            }
+            int styleId = styleId(styleIndex);
+            if (value instanceof String) writeStringCell(columnIndex, (String) value, styleId);
+            else if (value instanceof Number) writeNumberCell(columnIndex, ((Number) value).doubleValue(), styleId);
+            else if (value instanceof Date) writeNumberCell(columnIndex, DateUtil.getExcelDate((Date) value), styleId);
+            else if (value instanceof Calendar) writeNumberCell(columnIndex, DateUtil.getExcelDate((Calendar) value, false), styleId);
+            else if (value instanceof Boolean) writeBooleanCell(columnIndex, (Boolean) value, styleId);
+            else if (value instanceof RichTextString) writeStringCell(columnIndex, ((RichTextString) value).getString(), styleId);
+            else writeStringCell(columnIndex, value.toString(), styleId);
+        }
+
+        @Override
+        public void writeCustom(int columnIndex, Consumer<Cell> renderer, int styleIndex) {
+            XSSFCell cell = workbook.scratchCell(rowNumber - 1, columnIndex);
+            try {
+                renderer.accept(cell);
+                // 与 POI 后端一致：模板样式优先；没有模板样式时使用渲染器设置的样式（位于同一个样式表中）
+                int styleId = styleIndex != RowFormat.NO_STYLE ? styleId(styleIndex) : cell.getCellStyle().getIndex();
+                switch (cell.getCellType()) {
+                    case NUMERIC:
+                        writeNumberCell(columnIndex, cell.getNumericCellValue(), styleId);
+                        break;
+                    case STRING:
+                        writeStringCell(columnIndex, cell.getStringCellValue(), styleId);
+                        break;
+                    case BOOLEAN:
+                        writeBooleanCell(columnIndex, cell.getBooleanCellValue(), styleId);
+                        break;
+                    case FORMULA:
+                        writeFormulaCell(columnIndex, cell.getCellFormula(), styleId);
+                        break;
+                    case ERROR:
+                        writeErrorCell(columnIndex, FormulaError.forInt(cell.getErrorCellValue()).getString(), styleId);
+                        break;
+                    default:
+                        if (styleId > 0) {
+                            openCell(columnIndex, styleId, null);
+                            xml.append("/>");
+                        }
+                }
+            } finally {
+                workbook.releaseScratchCell(cell);
+            }
+        }
+
+        @Override
+        public void endRow() {
+            xml.append("</row>");
+            workbook.rowFinished();
+        }
+
+        @Override
+        public void addMergedRegion(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+            mergedRegions.add(firstRow, lastRow, firstColumn, lastColumn);
+        }
+
+        @Override
+        public void finish() {
+            if (!sheetDataOpen) {
+                openSheetData();
+            }
+            xml.append("</sheetData>");
+            mergedRegions.validate(sheetName);
+            if (!mergedRegions.isEmpty()) {
+                xml.append("<mergeCells count=\"").append(mergedRegions.size()).append("\">");
+                for (int i = 0; i < mergedRegions.size(); i++) {
+                    xml.append("<mergeCell ref=\"")
+                            .append(columnName(mergedRegions.getFirstColumn(i))).append(mergedRegions.getFirstRow(i) + 1).append(':')
+                            .append(columnName(mergedRegions.getLastColumn(i))).append(mergedRegions.getLastRow(i) + 1)
+                            .append("\"/>");
+                }
+                xml.append("</mergeCells>");
+            }
+            xml.append("</worksheet>");
+            workbook.sheetFinished();
+        }
+    }
+}
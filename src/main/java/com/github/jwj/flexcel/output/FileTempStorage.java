@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把缓冲区保存为指定目录下临时文件的 {@link TempStorage}，所有缓冲区共享一个字节配额。
+ */
+final class FileTempStorage implements TempStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileTempStorage.class);
+
+    private final Path directory;
+    private final long quotaBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    FileTempStorage(Path directory, long quotaBytes) {
+        if (directory == null) throw new IllegalArgumentException("Temp directory cannot be null.");
+        if (quotaBytes <= 0) throw new IllegalArgumentException("Temp storage quota must be positive.");
+        this.directory = directory;
+        this.quotaBytes = quotaBytes;
+    }
+
+    @Override
+    public Buffer allocate() throws IOException {
+        Files.createDirectories(directory);
+        return new FileBuffer(Files.createTempFile(directory, "flexcel-sxssf-", ".tmp"));
+    }
+
+    private void reserve(long bytes) throws IOException {
+        if (usedBytes.addAndGet(bytes) > quotaBytes) {
+            usedBytes.addAndGet(-bytes);
+            throw new IOException("Temp storage quota of " + quotaBytes + " bytes in " + directory + " exceeded.");
+        }
+    }
+
+    private final class FileBuffer implements Buffer {
+        private final Path file;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private long reservedBytes;
+
+        FileBuffer(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+            return new FilterOutputStream(Files.newOutputStream(file)) {
+                @Override
+                public void write(int b) throws IOException {
+                    reserve(1);
+                    reservedBytes++;
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    reserve(len);
+                    reservedBytes += len;
+                    out.write(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return true;
+            }
+            usedBytes.addAndGet(-reservedBytes);
+            try {
+                Files.deleteIfExists(file);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Failed to delete temp file {}.", file, e);
+                return false;
+            }
+        }
+    }
+}
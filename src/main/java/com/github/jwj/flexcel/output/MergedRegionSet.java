@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个 Sheet 的合并区域集合。
+ * <p>
+ * 渲染过程中只把区域的四个坐标追加到一个 int 数组，不做任何检查；
+ * Sheet 写完后调用 {@link #validate(String)} 一次性剔除无效区域，再由后端通过不检查重叠的路径批量登记。
+ * 这样避免了 POI {@code addMergedRegion} 每次都与全部已有区域比较带来的平方级开销。
+ * </p>
+ * <p>
+ * 重叠检查使用按列分组的行区间索引：每列一个以起始行为键的有序映射，已接受的区域在其覆盖的每一列登记一个互不相交的行区间。
+ * 检查一个新区域只需在其覆盖的每一列查找起始行不大于新区域末行的最后一个区间，复杂度为 O(列数 × log n)。
+ * 与 POI 的行为一致，先登记的区域优先，与之重叠的后续区域被丢弃并记录警告。
+ * 非线程安全。
+ * </p>
+ */
+final class MergedRegionSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergedRegionSet.class);
+
+    private static final int FIELDS = 4;
+
+    private int[] coordinates = new int[64 * FIELDS];
+    private int size;
+
+    void add(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        int offset = size * FIELDS;
+        if (offset == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+        coordinates[offset] = Math.min(firstRow, lastRow);
+        coordinates[offset + 1] = Math.max(firstRow, lastRow);
+        coordinates[offset + 2] = Math.min(firstColumn, lastColumn);
+        coordinates[offset + 3] = Math.max(firstColumn, lastColumn);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int getFirstRow(int index) {
+        return coordinates[index * FIELDS];
+    }
+
+    int getLastRow(int index) {
+        return coordinates[index * FIELDS + 1];
+    }
+
+    int getFirstColumn(int index) {
+        return coordinates[index * FIELDS + 2];
+    }
+
+    int getLastColumn(int index) {
+        return coordinates[index * FIELDS + 3];
+    }
+
+    CellRangeAddress toCellRangeAddress(int index) {
+        return new CellRangeAddress(getFirstRow(index), getLastRow(index), getFirstColumn(index), getLastColumn(index));
+    }
+
+    /**
+     * 按登记顺序检查所有区域，原地剔除只有一个单元格的区域和与先前区域重叠的区域。
+     *
+     * @param sheetName 用于警告日志的 Sheet 名称。
+     * @return 被剔除的区域数量。
+     */
+    int validate(String sheetName) {
+        List<TreeMap<Integer, Integer>> rowsByColumn = new ArrayList<>();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int firstRow = getFirstRow(i);
+            int lastRow = getLastRow(i);
+            int firstColumn = getFirstColumn(i);
+            int lastColumn = getLastColumn(i);
+            if (firstRow == lastRow && firstColumn == lastColumn) {
+                logger.warn("Skipping single-cell merged region {} on sheet '{}'.", toCellRangeAddress(i).formatAsString(), sheetName);
+                continue;
+            }
+            if (overlaps(rowsByColumn, firstRow, lastRow, firstColumn, lastColumn)) {
+                logger.warn("Skipping merged region {} on sheet '{}': it overlaps an earlier merged region.",
+                        toCellRangeAddress(i).formatAsString(), sheetName);
+                continue;
+            }
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                while (rowsByColumn.size() <= column) {
+                    rowsByColumn.add(null);
+                }
+                TreeMap<Integer, Integer> rows = rowsByColumn.get(column);
+                if (rows == null) {
+                    rows = new TreeMap<>();
+                    rowsByColumn.set(column, rows);
+                }
+                rows.put(firstRow, lastRow);
+            }
+            if (kept != i) {
+                System.arraycopy(coordinates, i * FIELDS, coordinates, kept * FIELDS, FIELDS);
+            }
+            kept++;
+        }
+        int dropped = size - kept;
+        size = kept;
+        return dropped;
+    }
+
+    private static boolean overlaps(List<TreeMap<Integer, Integer>> rowsByColumn, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+        for (int column = firstColumn; column <= lastColumn && column < rowsByColumn.size(); column++) {
+            TreeMap<Integer, Integer> rows = rowsByColumn.get(column);
+            if (rows == null) {
+                continue;
+            }
+            // 同一列中已登记的区间互不相交，只需检查起始行不大于 lastRow 的最后一个区间
+            Map.Entry<Integer, Integer> candidate = rows.floorEntry(lastRow);
+            if (candidate != null && candidate.getValue() >= firstRow) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.poi.ss.SpreadsheetVersion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 输出后端。
+ * <p>
+ * 引擎负责模板求值、纵向合并跟踪和行号分配，后端只负责把单元格、行高、列宽、合并区域和样式写成具体的文件格式。
+ * 内置实现：
+ * </p>
+ * <ul>
+ *     <li>{@link PoiOutputBackend}：通过 POI 的 SXSSFWorkbook / XSSFWorkbook 输出，功能最完整（默认）。</li>
+ *     <li>{@link DirectXlsxOutputBackend}：直接把 Sheet XML 写入 zip 流，不经过 POI 的 Row/Cell 对象和临时文件。</li>
+ *     <li>{@link DelimitedOutputBackend}：只输出数据的 CSV/TSV，忽略样式和合并区域。</li>
+ * </ul>
+ * <p>
+ * 实现必须是线程安全的：同一个后端实例会被引擎上的所有并发渲染共用，每次渲染通过 {@link #open} 获得独立的 {@link WorkbookOutput}。
+ * </p>
+ */
+public interface OutputBackend {
+
+    /**
+     * 为一次渲染打开输出工作簿。
+     *
+     * @param styleTable   模板样式表，{@link SheetOutput} 写入时使用的样式索引指向此表。
+     * @param outputStream 目标输出流。后端不会关闭它；流式后端在渲染过程中就可能向其写入数据，
+     *                     因此渲染失败或被取消时，流中可能已经有不完整的内容。
+     * @return 本次渲染独占的输出工作簿。
+     * @throws IOException 如果初始化输出失败。
+     */
+    WorkbookOutput open(TemplateStyleTable styleTable, OutputStream outputStream) throws IOException;
+
+    /**
+     * @return 单个 Sheet 最多可以写入的行数，引擎据此判断是否需要溢出到续表。默认为 XLSX 的上限 1,048,576 行。
+     */
+    default int getMaxRowsPerSheet() {
+        return SpreadsheetVersion.EXCEL2007.getMaxRows();
+    }
+}
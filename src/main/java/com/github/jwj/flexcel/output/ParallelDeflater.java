@@ -0,0 +1,245 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 在执行器上压缩一个 zip 条目内容的输出流。
+ * <p>
+ * 写入的字节按块交给执行器，同一条目的块串行压缩（共用一个 Deflater，保证输出是一个完整的 deflate 流），
+ * 不同条目的压缩可以并行，也可以与后续条目的渲染并行。待压缩的块数有上限，写入速度超过压缩速度时写入线程会等待。
+ * 压缩结果保存在内存中，{@link #close()} 之后通过 {@link #await()} 等待压缩完成，再以原始条目写入 zip。
+ * </p>
+ */
+final class ParallelDeflater extends OutputStream {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_PENDING_CHUNKS = 4;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    private final Executor executor;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final Semaphore pending = new Semaphore(MAX_PENDING_CHUNKS);
+    private final ConcurrentLinkedQueue<byte[]> freeChunks = new ConcurrentLinkedQueue<>();
+    private final List<byte[]> blocks = new ArrayList<>();
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private volatile Throwable failure;
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int position;
+    private boolean closed;
+
+    // 以下字段只由压缩任务修改，任务之间通过 CompletableFuture 链保证可见性
+    private long size;
+    private long compressedSize;
+    private int blockPosition = BLOCK_SIZE;
+
+    ParallelDeflater(int level, Executor executor) {
+        this.executor = executor;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == chunk.length) {
+            submit(false);
+        }
+        chunk[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == chunk.length) {
+                submit(false);
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        checkFailure();
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression.");
+        }
+        byte[] data = chunk;
+        int length = position;
+        tail = tail.thenRunAsync(() -> {
+            try {
+                if (failure == null) {
+                    deflate(data, length, last);
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                if (last) {
+                    deflater.end();
+                }
+                freeChunks.offer(data);
+                pending.release();
+            }
+        }, executor);
+        if (!last) {
+            byte[] free = freeChunks.poll();
+            chunk = free != null ? free : new byte[CHUNK_SIZE];
+        }
+        position = 0;
+    }
+
+    private void deflate(byte[] data, int length, boolean last) {
+        crc.update(data, 0, length);
+        size += length;
+        deflater.setInput(data, 0, length);
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                store(deflater.deflate(deflateBuffer));
+            }
+        } else {
+            while (!deflater.needsInput()) {
+                store(deflater.deflate(deflateBuffer));
+            }
+        }
+    }
+
+    private void store(int length) {
+        int offset = 0;
+        while (offset < length) {
+            if (blockPosition == BLOCK_SIZE) {
+                blocks.add(new byte[BLOCK_SIZE]);
+                blockPosition = 0;
+            }
+            int n = Math.min(length - offset, BLOCK_SIZE - blockPosition);
+            System.arraycopy(deflateBuffer, offset, blocks.get(blocks.size() - 1), blockPosition, n);
+            blockPosition += n;
+            offset += n;
+        }
+        compressedSize += length;
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable e = failure;
+        if (e != null) {
+            throw new IOException("Failed to compress zip entry.", e);
+        }
+    }
+
+    /**
+     * 提交最后一块数据，不等待压缩完成。
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            submit(true);
+            chunk = null;
+        }
+    }
+
+    /**
+     * 等待全部数据压缩完成。必须在 {@link #close()} 之后调用。
+     */
+    void await() throws IOException {
+        if (!closed) throw new IllegalStateException("The deflater has not been closed.");
+        try {
+            tail.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to compress zip entry.", e.getCause());
+        }
+        checkFailure();
+    }
+
+    /**
+     * 放弃尚未完成的压缩并释放 Deflater。
+     */
+    void discard() {
+        failure = new IOException("Compression was discarded.");
+        if (!closed) {
+            closed = true;
+            tail.whenComplete((v, e) -> deflater.end());
+        }
+    }
+
+    long getCrc() {
+        return crc.getValue();
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * @return 读取压缩结果的输入流，只能在 {@link #await()} 之后调用。
+     */
+    InputStream openCompressed() {
+        return new InputStream() {
+            private int block;
+            private int offset;
+            private long remaining = compressedSize;
+
+            @Override
+            public int read() {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining == 0) return -1;
+                if (offset == BLOCK_SIZE) {
+                    block++;
+                    offset = 0;
+                }
+                int n = (int) Math.min(Math.min(len, BLOCK_SIZE - offset), remaining);
+                System.arraycopy(blocks.get(block), offset, b, off, n);
+                offset += n;
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.RowFormat;
+import com.github.jwj.flexcel.style.StyleOverride;
+import com.github.jwj.flexcel.style.StyleSnapshot;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTMergeCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTMergeCells;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * 基于 Apache POI 的输出后端。
+ * 流式模式下使用 SXSSFWorkbook，超出窗口的行被压缩写入临时文件；非流式模式下使用 XSSFWorkbook，全部行保留在内存中。
+ * <p>
+ * 简单配置可以直接使用构造方法，需要调整压缩级别等选项时使用 {@link #builder()}。
+ * </p>
+ */
+public class PoiOutputBackend implements OutputBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoiOutputBackend.class);
+
+    private final boolean streaming;
+    private final int windowSize;
+    private final boolean sharedStrings;
+    private final int compressionLevel;
+    private final int tempFileCompressionLevel;
+    private final TempStorage tempStorage;
+
+    /**
+     * @param streaming  是否使用 SXSSFWorkbook。
+     * @param windowSize SXSSF 内存窗口的行数，必须大于 0。
+     */
+    public PoiOutputBackend(boolean streaming, int windowSize) {
+        this(streaming, windowSize, false);
+    }
+
+    /**
+     * @param streaming     是否使用 SXSSFWorkbook。
+     * @param windowSize    SXSSF 内存窗口的行数，必须大于 0。
+     * @param sharedStrings 流式模式下是否使用共享字符串表。POI 的共享字符串表会把所有不同的字符串保留在内存中直到写出，
+     *                      只适合不同取值有限的数据；需要有上限的字典请使用 {@link DirectXlsxOutputBackend#DirectXlsxOutputBackend(int)}。
+     *                      非流式模式（XSSFWorkbook）始终使用共享字符串表。
+     */
+    public PoiOutputBackend(boolean streaming, int windowSize, boolean sharedStrings) {
+        this(builder().streaming(streaming).windowSize(windowSize).sharedStrings(sharedStrings));
+    }
+
+    private PoiOutputBackend(Builder builder) {
+        this.streaming = builder.streaming;
+        this.windowSize = builder.windowSize;
+        this.sharedStrings = builder.sharedStrings;
+        this.compressionLevel = builder.compressionLevel;
+        this.tempFileCompressionLevel = builder.tempFileCompressionLevel;
+        this.tempStorage = builder.tempStorage;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    static int checkCompressionLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9.");
+        }
+        return level;
+    }
+
+    public static class Builder {
+        private boolean streaming = true;
+        private int windowSize = 1000;
+        private boolean sharedStrings = false;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private int tempFileCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private TempStorage tempStorage;
+
+        private Builder() {}
+
+        /**
+         * @param streaming 是否使用 SXSSFWorkbook，默认为 true。
+         * @return 当前 Builder 实例。
+         */
+        public Builder streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        /**
+         * @param windowSize SXSSF 内存窗口的行数，必须大于 0，默认为 1000。
+         * @return 当前 Builder 实例。
+         */
+        public Builder windowSize(int windowSize) {
+            if (windowSize <= 0) throw new IllegalArgumentException("SXSSF window size must be positive.");
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param sharedStrings 流式模式下是否使用共享字符串表，见 {@link PoiOutputBackend#PoiOutputBackend(boolean, int, boolean)}。
+         * @return 当前 Builder 实例。
+         */
+        public Builder sharedStrings(boolean sharedStrings) {
+            this.sharedStrings = sharedStrings;
+            return this;
+        }
+
+        /**
+         * 设置最终 xlsx 包的压缩级别。级别越低写出越快、文件越大，适合交互式下载。
+         * 只在流式模式下生效：XSSFWorkbook 的写出过程不提供压缩级别设置。
+         *
+         * @param level -1（默认级别）到 9。
+         * @return 当前 Builder 实例。
+         */
+        public Builder compressionLevel(int level) {
+            this.compressionLevel = checkCompressionLevel(level);
+            return this;
+        }
+
+        /**
+         * 设置 SXSSF 临时文件的压缩级别，0 表示不压缩临时文件（写入更快，但占用更多磁盘空间）。
+         *
+         * @param level -1（默认级别）到 9。
+         * @return 当前 Builder 实例。
+         */
+        public Builder tempFileCompressionLevel(int level) {
+            this.tempFileCompressionLevel = checkCompressionLevel(level);
+            return this;
+        }
+
+        /**
+         * 设置 SXSSF 缓冲行数据的临时存储，默认使用系统临时目录下的文件。只在流式模式下生效。
+         *
+         * @param tempStorage 临时存储，见 {@link TempStorage}。
+         * @return 当前 Builder 实例。
+         */
+        public Builder tempStorage(TempStorage tempStorage) {
+            if (tempStorage == null) throw new IllegalArgumentException("TempStorage cannot be null.");
+            this.tempStorage = tempStorage;
+            return this;
+        }
+
+        public PoiOutputBackend build() {
+            return new PoiOutputBackend(this);
+        }
+    }
+
+    @Override
+    public WorkbookOutput open(TemplateStyleTable styleTable, OutputStream outputStream) {
+        Workbook workbook = streaming
+                ? new TunedSXSSFWorkbook(windowSize, sharedStrings, tempFileCompressionLevel, compressionLevel, tempStorage)
+                : new XSSFWorkbook();
+        StylesTable stylesTable = workbook instanceof SXSSFWorkbook
+                ? ((SXSSFWorkbook) workbook).getXSSFWorkbook().getStylesSource()
+                : ((XSSFWorkbook) workbook).getStylesSource();
+        StyleSnapshot snapshot = styleTable.getSnapshot();
+        snapshot.seed(stylesTable);
+        return new PoiWorkbookOutput(workbook, stylesTable, snapshot, outputStream);
+    }
+
+    private static final class PoiWorkbookOutput implements WorkbookOutput {
+        private final Workbook workbook;
+        private final StylesTable stylesTable;
+        private final StyleSnapshot snapshot;
+        private final CellStyle[] styles;
+        // #style 派生的样式，索引从模板样式数开始
+        private final List<CellStyle> derivedStyles = new ArrayList<>();
+        private final OutputStream outputStream;
+        private int createdStyles;
+
+        PoiWorkbookOutput(Workbook workbook, StylesTable stylesTable, StyleSnapshot snapshot, OutputStream outputStream) {
+            this.workbook = workbook;
+            this.stylesTable = stylesTable;
+            this.snapshot = snapshot;
+            this.styles = new CellStyle[snapshot.size()];
+            this.outputStream = outputStream;
+        }
+
+        /**
+         * 按模板样式索引取输出样式，第一次用到时才从样式快照中创建。
+         */
+        CellStyle style(int styleIndex) {
+            if (styleIndex >= styles.length) {
+                return derivedStyles.get(styleIndex - styles.length);
+            }
+            CellStyle style = styles[styleIndex];
+            if (style == null) {
+                style = workbook.getCellStyleAt(snapshot.createStyle(stylesTable, styleIndex));
+                styles[styleIndex] = style;
+                createdStyles++;
+            }
+            return style;
+        }
+
+        @Override
+        public int deriveStyle(int baseStyleIndex, StyleOverride override) {
+            derivedStyles.add(override.derive(workbook, baseStyleIndex == RowFormat.NO_STYLE ? null : style(baseStyleIndex)));
+            return styles.length + derivedStyles.size() - 1;
+        }
+
+        @Override
+        public SheetOutput createSheet(String sheetName) {
+            Sheet sheet = workbook.createSheet(sheetName);
+            // SXSSF 只流式写出 sheetData，合并区域等其余部分保存在底层的 XSSFSheet 中
+            XSSFSheet xssfSheet = workbook instanceof SXSSFWorkbook
+                    ? ((SXSSFWorkbook) workbook).getXSSFWorkbook().getSheet(sheetName)
+                    : (XSSFSheet) sheet;
+            return new PoiSheetOutput(sheet, xssfSheet, this);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            logger.info("Created {} of {} template styles and {} derived styles.", createdStyles, styles.length, derivedStyles.size());
+            workbook.write(outputStream);
+        }
+
+        /**
+         * 删除 SXSSF 在磁盘上缓冲行数据的临时文件。
+         * {@link SXSSFWorkbook#close()} 不会删除这些文件，因此无论渲染成功、失败还是被取消都需要调用。
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (workbook instanceof SXSSFWorkbook && !((SXSSFWorkbook) workbook).dispose()) {
+                    logger.warn("Failed to delete some SXSSF temporary files.");
+                }
+            } finally {
+                workbook.close();
+            }
+        }
+    }
+
+    private static final class PoiSheetOutput implements SheetOutput {
+        private final Sheet sheet;
+        private final XSSFSheet xssfSheet;
+        private final PoiWorkbookOutput workbookOutput;
+        private final MergedRegionSet mergedRegions = new MergedRegionSet();
+        private Row row;
+
+        PoiSheetOutput(Sheet sheet, XSSFSheet xssfSheet, PoiWorkbookOutput workbookOutput) {
+            this.sheet = sheet;
+            this.xssfSheet = xssfSheet;
+            this.workbookOutput = workbookOutput;
+        }
+
+        @Override
+        public void setColumnWidth(int columnIndex, int width) {
+            sheet.setColumnWidth(columnIndex, width);
+        }
+
+        @Override
+        public boolean supportsDeferredColumnWidths() {
+            // XSSF 和 SXSSF 都在写出工作簿时才生成 <cols>
+            return true;
+        }
+
+        @Override
+        public void startRow(int rowIndex, float heightInPoints) {
+            row = sheet.createRow(rowIndex);
+            if (heightInPoints >= 0) {
+                row.setHeightInPoints(heightInPoints);
+            }
+        }
+
+        private Cell createCell(int columnIndex, int styleIndex) {
+            Cell cell = row.createCell(columnIndex);
+            if (styleIndex != RowFormat.NO_STYLE) {
+                cell.setCellStyle(workbookOutput.style(styleIndex));
+            }
+            return cell;
+        }
+
+        @Override
+        public void writeNumber(int columnIndex, double value, int styleIndex) {
+            createCell(columnIndex, styleIndex).setCellValue(value);
+        }
+
+        @Override
+        public void writeString(int columnIndex, String value, int styleIndex) {
+            createCell(columnIndex, styleIndex).setCellValue(value);
+        }
+
+        @Override
+        public void writeBoolean(int columnIndex, boolean value, int styleIndex) {
+            createCell(columnIndex, styleIndex).setCellValue(value);
+        }
+
+        @Override
+        public void writeFormula(int columnIndex, String formula, int styleIndex) {
+            createCell(columnIndex, styleIndex).setCellFormula(formula);
+        }
+
+        @Override
+        public void writeParsedFormula(int columnIndex, String formula, int styleIndex) {
+            // SXSSF 本身不解析公式；XSSF 在 setCellFormula 中解析校验，编译期已校验过的公式不必重复
+            if (sheet instanceof XSSFSheet) {
+                XSSFWorkbook workbook = (XSSFWorkbook) sheet.getWorkbook();
+                workbook.setCellFormulaValidation(false);
+                try {
+                    createCell(columnIndex, styleIndex).setCellFormula(formula);
+                } finally {
+                    workbook.setCellFormulaValidation(true);
+                }
+            } else {
+                createCell(columnIndex, styleIndex).setCellFormula(formula);
+            }
+        }
+
+        @Override
+        public void writeBlank(int columnIndex, int styleIndex) {
+            createCell(columnIndex, styleIndex);
+        }
+
+        @Override
+        public void writeValue(int columnIndex, Object value, int styleIndex) {
+            Cell cell = createCell(columnIndex, styleIndex);
+            if (value == null) {
+                cell.setBlank();
+                return;
+            }
+            if (value instanceof String) cell.setCellValue((String) value);
+            else if (value instanceof Number) cell.setCellValue(((Number) value).doubleValue());
+            else if (value instanceof Date) cell.setCellValue((Date) value);
+            else if (value instanceof Calendar) cell.setCellValue((Calendar) value);
+            else if (value instanceof Boolean) cell.setCellValue((Boolean) value);
+            else if (value instanceof RichTextString) cell.setCellValue((RichTextString) value);
+            else cell.setCellValue(value.toString());
+        }
+
+        @Override
+        public void writeCustom(int columnIndex, Consumer<Cell> renderer, int styleIndex) {
+            // 自定义渲染器可能会设置自己的样式，模板样式在其之后应用
+            Cell cell = row.createCell(columnIndex);
+            try {
+                renderer.accept(cell);
+            } finally {
+                if (styleIndex != RowFormat.NO_STYLE) {
+                    cell.setCellStyle(workbookOutput.style(styleIndex));
+                }
+            }
+        }
+
+        @Override
+        public void endRow() {
+            row = null;
+        }
+
+        @Override
+        public void addMergedRegion(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+            mergedRegions.add(firstRow, lastRow, firstColumn, lastColumn);
+        }
+
+        @Override
+        public boolean supportsRowWindow() {
+            return sheet instanceof SXSSFSheet;
+        }
+
+        @Override
+        public void setRowWindow(int rows) {
+            ((SXSSFSheet) sheet).setRandomAccessWindowSize(rows);
+        }
+
+        @Override
+        public void finish() {
+            row = null;
+            mergedRegions.validate(sheet.getSheetName());
+            if (!mergedRegions.isEmpty()) {
+                registerMergedRegions();
+            }
+        }
+
+        /**
+         * 一次性把已检查过的合并区域写入 worksheet 的 mergeCells 元素。
+         * POI 的 addMergedRegionUnsafe 虽然跳过了重叠检查，但每次调用仍会统计一遍已有的 mergeCell 元素，整体仍是平方级。
+         */
+        private void registerMergedRegions() {
+            CTWorksheet worksheet = xssfSheet.getCTWorksheet();
+            CTMergeCells ctMergeCells = worksheet.isSetMergeCells() ? worksheet.getMergeCells() : worksheet.addNewMergeCells();
+            int existing = ctMergeCells.sizeOfMergeCellArray();
+            CTMergeCell[] all = ctMergeCells.getMergeCellList().toArray(new CTMergeCell[existing + mergedRegions.size()]);
+            for (int i = 0; i < mergedRegions.size(); i++) {
+                CTMergeCell mergeCell = CTMergeCell.Factory.newInstance();
+                mergeCell.setRef(mergedRegions.toCellRangeAddress(i).formatAsString());
+                all[existing + i] = mergeCell;
+            }
+            ctMergeCells.setMergeCellArray(all);
+            ctMergeCells.setCount(all.length);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 有界共享字符串字典，供直接写出 XLSX 的后端使用。
+ * <p>
+ * 只有重复出现的短字符串（例如类别、状态）才进入共享字符串表，只出现一次的值（名称、编号等）仍以内联字符串写出，
+ * 字典条目数达到上限后新的字符串也一律内联。这样共享字符串表的内存占用有上限，且不会被唯一值挤满。
+ * </p>
+ * <p>
+ * 准入规则：字符串第一次出现时只在一个定长的哈希指纹表中登记并内联写出，第二次出现时才进入字典。
+ * 指纹表按槽位直接覆盖，冲突只会让个别热点值晚一些进入字典，不影响正确性。
+ * 非线程安全，每次渲染独占一个实例。
+ * </p>
+ */
+final class SharedStringDictionary {
+
+    /** 超过该长度的字符串不进入字典。 */
+    static final int MAX_SHARED_LENGTH = 256;
+
+    private final int capacity;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final int[] seen;
+    private final int seenMask;
+    private long references;
+
+    /**
+     * @param capacity 字典最多容纳的不同字符串数量，必须大于 0。
+     */
+    SharedStringDictionary(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Shared string capacity must be positive.");
+        this.capacity = capacity;
+        int slots = Integer.highestOneBit(Math.min(Math.max(capacity, 16), 1 << 18) * 4 - 1) << 1;
+        this.seen = new int[slots];
+        this.seenMask = slots - 1;
+    }
+
+    /**
+     * 查找或登记一个字符串。
+     *
+     * @param value 字符串。
+     * @return 共享字符串索引；返回 -1 表示应以内联字符串写出。
+     */
+    int lookup(String value) {
+        Integer index = indexes.get(value);
+        if (index != null) {
+            references++;
+            return index;
+        }
+        if (strings.size() >= capacity || value.length() > MAX_SHARED_LENGTH) {
+            return -1;
+        }
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & seenMask;
+        int fingerprint = hash | 1;
+        if (seen[slot] != fingerprint) {
+            seen[slot] = fingerprint;
+            return -1;
+        }
+        index = strings.size();
+        indexes.put(value, index);
+        strings.add(value);
+        references++;
+        return index;
+    }
+
+    /**
+     * @return 按索引排列的共享字符串。
+     */
+    List<String> getStrings() {
+        return strings;
+    }
+
+    /**
+     * @return 引用共享字符串的单元格数量（sst 元素的 count 属性）。
+     */
+    long getReferences() {
+        return references;
+    }
+
+    int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.util.function.Consumer;
+
+/**
+ * 单个 Sheet 的输出。
+ * <p>
+ * 行必须按行号递增的顺序写入：{@link #startRow} 之后写入该行的单元格，再调用 {@link #endRow()}。
+ * 样式参数是 {@link com.github.jwj.flexcel.style.TemplateStyleTable} 中的索引，
+ * {@link com.github.jwj.flexcel.style.RowFormat#NO_STYLE} 表示不设置样式。
+ * 写入过程中的 I/O 错误以 {@link java.io.UncheckedIOException} 抛出。
+ * </p>
+ */
+public interface SheetOutput {
+
+    /**
+     * 设置列宽，必须在写入第一行之前调用；{@link #supportsDeferredColumnWidths()} 为 true 时也可以在 {@link #finish()} 之前调用。
+     *
+     * @param columnIndex 列索引。
+     * @param width       列宽，单位为 1/256 个字符宽度（与 POI 相同）。
+     */
+    void setColumnWidth(int columnIndex, int width);
+
+    /**
+     * 开始写入一行。
+     *
+     * @param rowIndex       行号（从 0 开始）。
+     * @param heightInPoints 行高（磅），小于 0 表示使用默认行高。
+     */
+    void startRow(int rowIndex, float heightInPoints);
+
+    void writeNumber(int columnIndex, double value, int styleIndex);
+
+    void writeString(int columnIndex, String value, int styleIndex);
+
+    void writeBoolean(int columnIndex, boolean value, int styleIndex);
+
+    void writeFormula(int columnIndex, String formula, int styleIndex);
+
+    /**
+     * 写入一个已在模板编译期通过解析校验的公式，后端可以跳过逐个单元格的公式解析。
+     * 默认实现与 {@link #writeFormula} 相同。
+     */
+    default void writeParsedFormula(int columnIndex, String formula, int styleIndex) {
+        writeFormula(columnIndex, formula, styleIndex);
+    }
+
+    void writeBlank(int columnIndex, int styleIndex);
+
+    /**
+     * 按值的运行时类型写入单元格（日期、日历、富文本等），null 写入空白单元格，无法识别的类型写入 toString()。
+     */
+    void writeValue(int columnIndex, Object value, int styleIndex);
+
+    /**
+     * 执行插件提供的自定义渲染器。渲染器抛出的异常会原样抛出，由调用方决定如何处理。
+     *
+     * @param columnIndex 列索引。
+     * @param renderer    自定义渲染器。
+     * @param styleIndex  模板样式索引，在渲染器执行后应用。
+     */
+    void writeCustom(int columnIndex, Consumer<Cell> renderer, int styleIndex);
+
+    /**
+     * 结束当前行。
+     */
+    void endRow();
+
+    /**
+     * 添加合并区域（行列号均从 0 开始，包含两端）。
+     * <p>
+     * 区域在写入过程中只被记录，Sheet 结束时统一检查并登记：只有一个单元格的区域和与先前区域重叠的区域会被丢弃并记录警告。
+     * </p>
+     */
+    void addMergedRegion(int firstRow, int lastRow, int firstColumn, int lastColumn);
+
+    /**
+     * @return 是否可以在写入行之后再设置列宽（列宽在 Sheet 结束时才写出）。
+     */
+    default boolean supportsDeferredColumnWidths() {
+        return false;
+    }
+
+    /**
+     * @return 后端是否在内存中保留一个可调整大小的行窗口（例如 SXSSF）。
+     */
+    default boolean supportsRowWindow() {
+        return false;
+    }
+
+    /**
+     * 调整内存中保留的行数，仅在 {@link #supportsRowWindow()} 为 true 时有效。
+     *
+     * @param rows 行数。
+     */
+    default void setRowWindow(int rows) {
+    }
+
+    /**
+     * 结束 Sheet 的写入。
+     */
+    void finish();
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * SXSSF 缓冲超出内存窗口的行数据时使用的临时存储。
+ * <p>
+ * 默认情况下 SXSSF 把行数据写入系统临时目录下的文件；容器中的临时目录通常是所有渲染共享的小型文件系统，
+ * 磁盘争用会直接反映到导出耗时上。通过 {@link PoiOutputBackend.Builder#tempStorage(TempStorage)} 可以改用：
+ * </p>
+ * <ul>
+ *     <li>{@link #directory(Path, long)}：专用目录，所有渲染共享一个字节配额。</li>
+ *     <li>{@link #memory(long)}：堆内存缓冲，适合中小规模的 Sheet。</li>
+ *     <li>{@link #offHeap(long)}：堆外直接内存缓冲，缓冲块在渲染之间复用，不增加 GC 压力。</li>
+ * </ul>
+ * <p>
+ * 缓冲区中的数据仍按 {@link PoiOutputBackend.Builder#tempFileCompressionLevel(int)} 压缩。
+ * 同一个实例可以被多个并发的渲染共享，配额在它们之间共同计算；超出配额时当前渲染以 IOException 失败。
+ * 每个缓冲区都会在 {@code process} 结束时释放，无论渲染成功、失败还是被取消。
+ * </p>
+ */
+public interface TempStorage {
+
+    /**
+     * 分配一个缓冲区，每个 Sheet 使用一个。
+     *
+     * @return 新的缓冲区。
+     * @throws IOException 无法分配时抛出。
+     */
+    Buffer allocate() throws IOException;
+
+    /**
+     * 使用指定目录下的临时文件，目录不存在时自动创建。
+     *
+     * @param directory  临时文件所在目录。
+     * @param quotaBytes 所有缓冲区合计可以占用的字节数，必须大于 0；{@link Long#MAX_VALUE} 表示不限制。
+     * @return 临时存储。
+     */
+    static TempStorage directory(Path directory, long quotaBytes) {
+        return new FileTempStorage(directory, quotaBytes);
+    }
+
+    /**
+     * 使用堆内存缓冲。
+     *
+     * @param quotaBytes 所有缓冲区合计可以占用的字节数，必须大于 0。
+     * @return 临时存储。
+     */
+    static TempStorage memory(long quotaBytes) {
+        return new ChunkedTempStorage(quotaBytes, false);
+    }
+
+    /**
+     * 使用堆外直接内存缓冲。缓冲块按需分配，释放后留在池中供后续渲染复用，因此占用的直接内存最多为 {@code capacityBytes}。
+     *
+     * @param capacityBytes 所有缓冲区合计可以占用的字节数，必须大于 0。
+     * @return 临时存储。
+     */
+    static TempStorage offHeap(long capacityBytes) {
+        return new ChunkedTempStorage(capacityBytes, true);
+    }
+
+    /**
+     * 一个 Sheet 的行数据缓冲区：先完整写入，再从头读出一次。
+     */
+    interface Buffer {
+
+        /**
+         * @return 写入缓冲区的输出流，只会被调用一次。
+         * @throws IOException 无法打开时抛出。
+         */
+        OutputStream openOutputStream() throws IOException;
+
+        /**
+         * @return 读取已写入内容的输入流，在输出流关闭后调用。
+         * @throws IOException 无法打开时抛出。
+         */
+        InputStream openInputStream() throws IOException;
+
+        /**
+         * 释放缓冲区占用的资源和配额，可以重复调用。
+         *
+         * @return 资源是否全部释放成功。
+         */
+        boolean release();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.output;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 可以设置压缩级别的 SXSSFWorkbook。
+ * <p>
+ * 临时文件级别作用于超出窗口的行数据（0 表示不压缩临时文件），输出级别作用于最终 xlsx 包中的所有条目。
+ * 级别取值与 {@link Deflater} 相同：-1 为默认级别，0 到 9 由快到小。
+ * </p>
+ * <p>
+ * 指定 {@link TempStorage} 时，行数据写入其分配的缓冲区而不是系统临时目录，缓冲区在 {@link #dispose()} 时全部释放。
+ * </p>
+ */
+class TunedSXSSFWorkbook extends SXSSFWorkbook {
+
+    private final int tempFileLevel;
+    private final int packageLevel;
+    private final TempStorage tempStorage;
+    // 以占位文件为键：SheetDataWriter 在自身构造完成前就需要找到对应的缓冲区
+    private final Map<File, TempStorage.Buffer> buffers = new ConcurrentHashMap<>();
+
+    TunedSXSSFWorkbook(int windowSize, boolean sharedStrings, int tempFileLevel, int packageLevel, TempStorage tempStorage) {
+        super(null, windowSize, tempFileLevel != 0, sharedStrings);
+        this.tempFileLevel = tempFileLevel;
+        this.packageLevel = packageLevel;
+        this.tempStorage = tempStorage;
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        if (tempStorage != null) {
+            return new StorageSheetDataWriter();
+        }
+        if (tempFileLevel == 0) {
+            return new SheetDataWriter(getSharedStringSource());
+        }
+        return new LevelledGzipSheetDataWriter();
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        if (tempFileLevel == 0) {
+            return out;
+        }
+        return new GZIPOutputStream(out) {
+            {
+                def.setLevel(tempFileLevel);
+            }
+        };
+    }
+
+    private InputStream decompress(InputStream in) throws IOException {
+        return tempFileLevel == 0 ? in : new GZIPInputStream(in);
+    }
+
+    /**
+     * 删除临时文件，并释放从 {@link TempStorage} 分配的全部缓冲区。
+     */
+    @Override
+    public boolean dispose() {
+        boolean disposed = super.dispose();
+        if (tempStorage == null) {
+            return disposed;
+        }
+        // 占位文件从未创建，父类删除它们的结果没有意义
+        boolean released = true;
+        for (TempStorage.Buffer buffer : buffers.values()) {
+            released &= buffer.release();
+        }
+        buffers.clear();
+        return released;
+    }
+
+    @Override
+    protected ZipArchiveOutputStream createArchiveOutputStream(OutputStream out) {
+        ZipArchiveOutputStream zip = super.createArchiveOutputStream(out);
+        zip.setLevel(packageLevel);
+        return zip;
+    }
+
+    /**
+     * 按指定级别 gzip 压缩的临时文件写入器。
+     * 必须是非静态内部类：父类构造方法中就会调用 {@link #decorateOutputStream}，
+     * 此时子类字段尚未赋值，而外部类实例的引用在调用父类构造方法之前就已经可用。
+     */
+    private final class LevelledGzipSheetDataWriter extends SheetDataWriter {
+
+        LevelledGzipSheetDataWriter() throws IOException {
+            super(getSharedStringSource());
+        }
+
+        @Override
+        public File createTempFile() throws IOException {
+            return TempFile.createTempFile("poi-sxssf-sheet-xml", ".gz");
+        }
+
+        @Override
+        protected OutputStream decorateOutputStream(FileOutputStream fos) throws IOException {
+            return compress(fos);
+        }
+
+        @Override
+        protected InputStream decorateInputStream(FileInputStream fis) throws IOException {
+            return decompress(fis);
+        }
+    }
+
+    /**
+     * 把行数据写入 {@link TempStorage} 缓冲区的写入器。
+     * 父类要求一个临时文件，这里只提供一个从不创建的占位文件，用作查找缓冲区的键。
+     */
+    private final class StorageSheetDataWriter extends SheetDataWriter {
+
+        StorageSheetDataWriter() throws IOException {
+            super(getSharedStringSource());
+        }
+
+        @Override
+        public File createTempFile() throws IOException {
+            File placeholder = new File(System.getProperty("java.io.tmpdir"), "flexcel-sxssf-buffer-" + UUID.randomUUID());
+            buffers.put(placeholder, tempStorage.allocate());
+            return placeholder;
+        }
+
+        @Override
+        public Writer createWriter(File fd) throws IOException {
+            OutputStream out = buffers.get(fd).openOutputStream();
+            return new BufferedWriter(new OutputStreamWriter(compress(out), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public InputStream getWorksheetXMLInputStream() throws IOException {
+            return decompress(buffers.get(getTempFile()).openInputStream());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.StyleOverride;
+
+import java.io.IOException;
+
+/**
+ * 一次渲染的输出工作簿。由单个渲染独占使用，不需要线程安全。
+ */
+public interface WorkbookOutput extends AutoCloseable {
+
+    /**
+     * 创建下一个 Sheet。Sheet 按创建顺序依次写入，创建新 Sheet 前必须先调用上一个 Sheet 的 {@link SheetOutput#finish()}。
+     *
+     * @param sheetName Sheet 名称。
+     * @return Sheet 输出。
+     * @throws IOException 如果写入失败。
+     */
+    SheetOutput createSheet(String sheetName) throws IOException;
+
+    /**
+     * 在模板样式的基础上派生一个新样式，供 {@code #style} 指令使用。
+     * 返回的索引与模板样式索引一样传给 {@link SheetOutput} 的写入方法。调用方负责缓存结果，
+     * 同一组合只应派生一次。默认实现直接返回基础样式，适用于不支持样式的后端。
+     *
+     * @param baseStyleIndex 模板样式索引，可以为 {@link com.github.jwj.flexcel.style.RowFormat#NO_STYLE}。
+     * @param override       样式覆盖项。
+     * @return 新样式的索引。
+     */
+    default int deriveStyle(int baseStyleIndex, StyleOverride override) {
+        return baseStyleIndex;
+    }
+
+    /**
+     * 在所有 Sheet 写完后调用，把工作簿的剩余部分写入输出流。
+     *
+     * @throws IOException 如果写入失败。
+     */
+    void finish() throws IOException;
+
+    /**
+     * 释放资源（例如临时文件）。无论渲染成功、失败还是被取消都会调用，不会关闭调用方的输出流。
+     *
+     * @throws IOException 如果释放失败。
+     */
+    @Override
+    void close() throws IOException;
+}
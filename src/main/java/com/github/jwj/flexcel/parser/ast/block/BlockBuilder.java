@@ -168,7 +168,7 @@ public class BlockBuilder {
             }
         }
 
-        return new RowTemplate(row.getRowNum(), cellTemplates, rowMergedRegions); // 【修改】传入合并区域
+        return new RowTemplate(row.getRowNum(), cellTemplates, rowMergedRegions, this.sheetStyleInfo.getRowFormat(row.getRowNum()));
     }
 
     /**
@@ -23,6 +23,7 @@
 package com.github.jwj.flexcel.parser.ast.template;
 
 import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
 import com.github.jwj.flexcel.runtime.pool.ObjectPool; // 修改导入
 import com.github.jwj.flexcel.runtime.TemplateContext;
 import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
@@ -33,4 +34,13 @@ public interface CellTemplate {
      * 方法签名，使用 ObjectPool 接口
      */
     RenderedCell produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator);
+
+    /**
+     * 将单元格直接产出到行中。
+     * 默认实现调用 {@link #produce} 并把结果放入行的旁路通道 {@link RenderedRow#cells}，
+     * 因此自定义插件无需任何修改；内置模板会覆盖此方法，把普通值写入行的列式存储。
+     */
+    default void produceInto(RenderedRow row, TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        row.cells.add(produce(context, pool, stringCache, evaluator));
+    }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ package com.github.jwj.flexcel.parser.ast.template;
 
 import com.github.jwj.flexcel.runtime.dto.MergeableRenderedCell;
 import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
 import com.github.jwj.flexcel.runtime.pool.ObjectPool; // 修改导入
 import com.github.jwj.flexcel.runtime.TemplateContext;
 import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
@@ -47,6 +48,37 @@ public class DefaultCellTemplate implements CellTemplate {
 
     @Override
     public RenderedCell produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        Object finalValue = evaluateValue(context, stringCache, evaluator);
+
+        if (isMergeCandidate) {
+            MergeableRenderedCell cell = pool.acquireMergeableCell();
+            cell.set(templateAddress, colIndex, finalValue, false, false);
+            return cell;
+        } else {
+            RenderedCell cell = pool.acquireCell();
+            cell.set(templateAddress, colIndex, finalValue, isFormula);
+            return cell;
+        }
+    }
+
+    /**
+     * 可合并单元格需要跨行比较值，仍走旁路通道；其余单元格直接写入行的列式存储。
+     */
+    @Override
+    public void produceInto(RenderedRow row, TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        if (isMergeCandidate) {
+            row.cells.add(produce(context, pool, stringCache, evaluator));
+            return;
+        }
+        Object finalValue = evaluateValue(context, stringCache, evaluator);
+        if (isFormula) {
+            row.addFormula(colIndex, finalValue != null ? finalValue.toString() : null);
+        } else {
+            row.addValue(colIndex, finalValue);
+        }
+    }
+
+    private Object evaluateValue(TemplateContext context, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
         Object finalValue;
 
         if (this.expression != null) {
@@ -61,15 +93,6 @@ public class DefaultCellTemplate implements CellTemplate {
         } else {
             finalValue = null;
         }
-
-        if (isMergeCandidate) {
-            MergeableRenderedCell cell = pool.acquireMergeableCell();
-            cell.set(templateAddress, colIndex, finalValue, false, false);
-            return cell;
-        } else {
-            RenderedCell cell = pool.acquireCell();
-            cell.set(templateAddress, colIndex, finalValue, isFormula);
-            return cell;
-        }
+        return finalValue;
     }
 }
\ No newline at end of file
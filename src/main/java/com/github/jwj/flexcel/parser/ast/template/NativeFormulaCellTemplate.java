@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.parser.ast.template;
+
+import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
+import com.github.jwj.flexcel.runtime.TemplateContext;
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import com.github.jwj.flexcel.runtime.pool.ObjectPool;
+
+import java.util.Map;
+
+/**
+ * 模板中原生公式单元格的模板。
+ * <p>
+ * 公式在编译期切分为 {@link TemplateFormula}，产出时只按上下文中的 {@link com.github.jwj.flexcel.runtime.RowReferenceResolver}
+ * 调整行引用，不经过表达式求值。上下文中没有行号时按模板中的位置输出。
+ * </p>
+ */
+public class NativeFormulaCellTemplate implements CellTemplate {
+    private static final String CURRENT_ROW_NO = "currentRowNo";
+
+    private final String templateAddress;
+    private final int colIndex;
+    private final int templateRow;
+    private final TemplateFormula formula;
+    private final boolean validated;
+
+    /**
+     * @param templateAddress 模板单元格地址。
+     * @param colIndex        列索引。
+     * @param templateRow     公式所在的模板行索引（从 0 开始）。
+     * @param formula         编译好的公式。
+     * @param validated       公式是否已用模板工作簿解析校验，校验过的公式写出时不再逐个解析。
+     */
+    public NativeFormulaCellTemplate(String templateAddress, int colIndex, int templateRow, TemplateFormula formula, boolean validated) {
+        this.templateAddress = templateAddress;
+        this.colIndex = colIndex;
+        this.templateRow = templateRow;
+        this.formula = formula;
+        this.validated = validated;
+    }
+
+    public TemplateFormula getFormula() {
+        return formula;
+    }
+
+    @Override
+    public RenderedCell produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        RenderedCell cell = pool.acquireCell();
+        cell.set(templateAddress, colIndex, render(context), true);
+        return cell;
+    }
+
+    @Override
+    public void produceInto(RenderedRow row, TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        if (validated) {
+            row.addParsedFormula(colIndex, render(context));
+        } else {
+            row.addFormula(colIndex, render(context));
+        }
+    }
+
+    private String render(TemplateContext context) {
+        Object rowNo = context.getVariable(CURRENT_ROW_NO);
+        int currentRowNo = rowNo instanceof Integer ? (Integer) rowNo : templateRow + 1;
+        return formula.render(context.getRowReferenceResolver(), templateRow, currentRowNo);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.parser.ast.template;
+
+import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
+import com.github.jwj.flexcel.runtime.TemplateContext;
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import com.github.jwj.flexcel.runtime.pool.ObjectPool;
+
+import java.util.Map;
+
+/**
+ * 只随当前行号变化的 {@code #formula} 单元格模板，例如 {@code #formula C${currentRowNo}*D${currentRowNo}}。
+ * <p>
+ * 公式在编译期切分为 {@link RowRelativeFormula}，产出时只记录公式和行号，由写出端拼接公式文本，
+ * 不经过表达式求值。上下文中没有行号时退回到逐行求值。
+ * </p>
+ */
+public class RowFormulaCellTemplate implements CellTemplate {
+    private static final String CURRENT_ROW_NO = "currentRowNo";
+
+    private final String templateAddress;
+    private final int colIndex;
+    private final String expression;
+    private final RowRelativeFormula formula;
+
+    public RowFormulaCellTemplate(String templateAddress, int colIndex, String expression, RowRelativeFormula formula) {
+        this.templateAddress = templateAddress;
+        this.colIndex = colIndex;
+        this.expression = expression;
+        this.formula = formula;
+    }
+
+    public RowRelativeFormula getFormula() {
+        return formula;
+    }
+
+    @Override
+    public RenderedCell produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        Object rowNo = context.getVariable(CURRENT_ROW_NO);
+        Object value = rowNo instanceof Integer
+                ? formula.render((Integer) rowNo)
+                : evaluator.evaluateString(expression, context.getAllData());
+        RenderedCell cell = pool.acquireCell();
+        cell.set(templateAddress, colIndex, value, true);
+        return cell;
+    }
+
+    @Override
+    public void produceInto(RenderedRow row, TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        Object rowNo = context.getVariable(CURRENT_ROW_NO);
+        if (rowNo instanceof Integer) {
+            row.addRowFormula(colIndex, formula, (Integer) rowNo);
+        } else {
+            Object value = evaluator.evaluateString(expression, context.getAllData());
+            row.addFormula(colIndex, value != null ? value.toString() : null);
+        }
+    }
+}
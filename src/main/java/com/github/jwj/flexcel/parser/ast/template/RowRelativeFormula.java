@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.parser.ast.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 编译期解析好的行相对公式：公式文本被切分为固定的文本片段和行号槽位，每个槽位是当前行号加上一个固定偏移。
+ * <p>
+ * 例如 {@code C${currentRowNo}*D${currentRowNo - 1}} 被切分为 {@code "C"}、{@code +0}、{@code "*D"}、{@code -1}，
+ * 每一行只需要按行号拼接片段，不经过表达式求值，也不需要再解析公式。实例不可变，可以在并发的渲染之间共享。
+ * </p>
+ */
+public final class RowRelativeFormula {
+
+    private static final Pattern ROW_SLOT_PATTERN = Pattern.compile("\\s*currentRowNo\\s*(?:([+-])\\s*(\\d{1,7})\\s*)?");
+
+    private final String[] literals;
+    private final int[] offsets;
+    private final boolean validated;
+    private final int estimatedLength;
+
+    private RowRelativeFormula(String[] literals, int[] offsets, boolean validated) {
+        this.literals = literals;
+        this.offsets = offsets;
+        this.validated = validated;
+        int length = offsets.length * 7;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.estimatedLength = length;
+    }
+
+    /**
+     * 尝试把 {@code #formula} 的表达式编译为行相对公式。
+     *
+     * @param expression 公式表达式，其中的 {@code ${...}} 只能是 {@code currentRowNo} 或 {@code currentRowNo ± 整数}。
+     * @return 编译结果；表达式中有其他 {@code ${...}} 时返回 null，需要逐行求值。
+     */
+    public static RowRelativeFormula compile(String expression) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int start = expression.indexOf("${", position);
+            if (start < 0) {
+                break;
+            }
+            int end = expression.indexOf('}', start + 2);
+            if (end < 0) {
+                return null;
+            }
+            Matcher matcher = ROW_SLOT_PATTERN.matcher(expression.substring(start + 2, end));
+            if (!matcher.matches()) {
+                return null;
+            }
+            int offset = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+            literals.add(expression.substring(position, start));
+            offsets.add("-".equals(matcher.group(1)) ? -offset : offset);
+            position = end + 1;
+        }
+        literals.add(expression.substring(position));
+        return new RowRelativeFormula(literals.toArray(new String[0]), offsets.stream().mapToInt(Integer::intValue).toArray(), false);
+    }
+
+    /**
+     * @return 标记为已在编译期通过公式解析校验的副本。
+     */
+    public RowRelativeFormula validated() {
+        return new RowRelativeFormula(literals, offsets, true);
+    }
+
+    /**
+     * @return 公式是否已在编译期通过校验，写出端可以跳过逐行的公式解析。
+     */
+    public boolean isValidated() {
+        return validated;
+    }
+
+    /**
+     * @return 公式中偏移量最小的行号槽位的偏移，没有槽位时为 0。
+     */
+    public int getMinOffset() {
+        int min = 0;
+        for (int offset : offsets) {
+            min = Math.min(min, offset);
+        }
+        return min;
+    }
+
+    /**
+     * 生成某一行的公式文本。
+     *
+     * @param rowNo 当前行号（从 1 开始）。
+     * @return 公式文本。
+     */
+    public String render(int rowNo) {
+        if (offsets.length == 0) {
+            return literals[0];
+        }
+        StringBuilder formula = new StringBuilder(estimatedLength);
+        for (int i = 0; i < offsets.length; i++) {
+            formula.append(literals[i]).append(rowNo + offsets[i]);
+        }
+        return formula.append(literals[offsets.length]).toString();
+    }
+}
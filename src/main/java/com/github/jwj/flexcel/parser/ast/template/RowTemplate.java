@@ -27,6 +27,7 @@ import com.github.jwj.flexcel.runtime.dto.RenderedRow;
 import com.github.jwj.flexcel.runtime.pool.ObjectPool;
 import com.github.jwj.flexcel.runtime.TemplateContext;
 import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
+import com.github.jwj.flexcel.style.RowFormat;
 import org.apache.poi.ss.util.CellRangeAddress;
 
 import java.util.List;
@@ -37,6 +38,8 @@ public class RowTemplate {
     private final List<CellTemplate> cellTemplates;
     // 存储与此行模板关联的静态合并区域
     private final List<CellRangeAddress> staticMergedRegions;
+    // 编译期解析好的行高和各列样式索引
+    private final RowFormat rowFormat;
 
     /**
      * 构造函数，增加合并区域参数。
@@ -46,26 +49,44 @@ public class RowTemplate {
      * @param staticMergedRegions 与此行关联的合并区域列表
      */
     public RowTemplate(int templateRowNum, List<CellTemplate> cellTemplates, List<CellRangeAddress> staticMergedRegions) {
+        this(templateRowNum, cellTemplates, staticMergedRegions, RowFormat.EMPTY);
+    }
+
+    /**
+     * 构造函数，附带编译期解析好的行格式。
+     *
+     * @param templateRowNum      模板行号
+     * @param cellTemplates       单元格模板列表
+     * @param staticMergedRegions 与此行关联的合并区域列表
+     * @param rowFormat           行高和各列样式索引
+     */
+    public RowTemplate(int templateRowNum, List<CellTemplate> cellTemplates, List<CellRangeAddress> staticMergedRegions, RowFormat rowFormat) {
         this.templateRowNum = templateRowNum;
         this.cellTemplates = cellTemplates;
         this.staticMergedRegions = staticMergedRegions;
+        this.rowFormat = rowFormat;
     }
 
     public int getTemplateRowNum() {
         return templateRowNum;
     }
 
+    public RowFormat getRowFormat() {
+        return rowFormat;
+    }
+
     /**
      * produce 方法，将合并信息传递给 RenderedRow。
      */
     public RenderedRow produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
         RenderedRow row = pool.acquireRow();
         row.templateRowNum = this.templateRowNum;
+        row.format = this.rowFormat;
         // 【新增】传递合并信息
         row.setStaticMergedRegions(this.staticMergedRegions);
 
         for (CellTemplate cellTemplate : this.cellTemplates) {
-            row.cells.add(cellTemplate.produce(context, pool, stringCache, evaluator));
+            cellTemplate.produceInto(row, context, pool, stringCache, evaluator);
         }
         return row;
     }
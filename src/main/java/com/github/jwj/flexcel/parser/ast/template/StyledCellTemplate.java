@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.parser.ast.template;
+
+import com.github.jwj.flexcel.parser.expression.ExpressionEvaluator;
+import com.github.jwj.flexcel.runtime.TemplateContext;
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import com.github.jwj.flexcel.runtime.pool.ObjectPool;
+
+import java.util.Map;
+
+/**
+ * 带 {@code #style} 修饰的单元格模板：单元格值由被包装的模板产出，样式描述在每行求值后登记到行上，
+ * 由写出端在模板样式的基础上派生出对应的样式。
+ */
+public class StyledCellTemplate implements CellTemplate {
+    private final CellTemplate valueTemplate;
+    private final int colIndex;
+    private final String styleSpec;
+
+    public StyledCellTemplate(CellTemplate valueTemplate, int colIndex, String styleSpec) {
+        this.valueTemplate = valueTemplate;
+        this.colIndex = colIndex;
+        this.styleSpec = styleSpec;
+    }
+
+    /**
+     * 单独产出单元格时没有所在的行，样式描述无处登记，只产出值。
+     */
+    @Override
+    public RenderedCell produce(TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        return valueTemplate.produce(context, pool, stringCache, evaluator);
+    }
+
+    @Override
+    public void produceInto(RenderedRow row, TemplateContext context, ObjectPool pool, Map<String, String> stringCache, ExpressionEvaluator evaluator) {
+        valueTemplate.produceInto(row, context, pool, stringCache, evaluator);
+        Object spec = evaluator.evaluateString(styleSpec, context.getAllData());
+        if (spec != null) {
+            String specText = spec.toString().trim();
+            if (!specText.isEmpty()) {
+                // 同一描述在各行之间共用一个字符串实例，写出端的样式缓存查找更快
+                row.addStyleOverride(colIndex, stringCache.computeIfAbsent(specText, k -> k));
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.parser.ast.template;
+
+import com.github.jwj.flexcel.runtime.RowReferenceResolver;
+import com.github.jwj.flexcel.runtime.RowReferenceResolver.Bound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模板中的原生公式，在编译期切分为固定的文本片段和指向本 Sheet 的 A1 样式单元格引用。
+ * <p>
+ * 渲染时每个引用的行号通过 {@link RowReferenceResolver} 映射为输出行号，列和 {@code $} 标记保持不变，
+ * 不经过表达式求值。字符串常量、结构化引用和带 Sheet 名的引用（指向其他 Sheet）保持原样；
+ * 整行整列引用（{@code 4:4}、{@code C:C}）也不调整。实例不可变，可以在并发的渲染之间共享。
+ * </p>
+ * <p>
+ * 调整后的行号超出 Sheet 范围时，与 Excel 删除被引用的行一样，该引用（区域引用时为整个区域）输出为 {@code #REF!}。
+ * </p>
+ */
+public final class TemplateFormula {
+
+    private static final int MAX_COLUMN = 16384;
+    private static final int MAX_ROW = 1048576;
+    private static final String REF_ERROR = "#REF!";
+
+    private final String[] literals;
+    private final String[] columns;
+    private final boolean[] absoluteRows;
+    private final int[] rows;
+    private final Bound[] bounds;
+    private final int estimatedLength;
+
+    private TemplateFormula(List<String> literals, List<String> columns, List<Boolean> absoluteRows,
+                            List<Integer> rows, List<Bound> bounds) {
+        this.literals = literals.toArray(new String[0]);
+        this.columns = columns.toArray(new String[0]);
+        this.absoluteRows = new boolean[rows.size()];
+        this.rows = new int[rows.size()];
+        for (int i = 0; i < this.rows.length; i++) {
+            this.absoluteRows[i] = absoluteRows.get(i);
+            this.rows[i] = rows.get(i);
+        }
+        this.bounds = bounds.toArray(new Bound[0]);
+        int length = this.rows.length * 8;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.estimatedLength = length;
+    }
+
+    /**
+     * 切分公式文本。
+     *
+     * @param formula 不带 {@code =} 的公式文本，例如 POI 的 {@code Cell.getCellFormula()}。
+     * @return 编译结果。
+     */
+    public static TemplateFormula compile(String formula) {
+        List<String> literals = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        List<Boolean> absoluteRows = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        List<Bound> bounds = new ArrayList<>();
+        int n = formula.length();
+        int literalStart = 0;
+        int k = 0;
+        while (k < n) {
+            char c = formula.charAt(k);
+            if (c == '"') {
+                k = skipQuoted(formula, k, '"');
+            } else if (c == '\'') {
+                // 带引号的 Sheet 名，其后的引用指向其他 Sheet
+                k = skipQuoted(formula, k, '\'');
+                if (k < n && formula.charAt(k) == '!') {
+                    k = skipReference(formula, k + 1);
+                }
+            } else if (c == '[') {
+                k = skipBrackets(formula, k);
+            } else if (c == '$' || isNameChar(c)) {
+                int end = matchCellReference(formula, k);
+                if (end < 0 || (end < n && (formula.charAt(end) == '(' || formula.charAt(end) == '!'))) {
+                    // 函数名、定义的名称或不带引号的 Sheet 名
+                    k = skipName(formula, k);
+                    if (k < n && formula.charAt(k) == '!') {
+                        k = skipReference(formula, k + 1);
+                    }
+                    continue;
+                }
+                int areaEnd = end < n && formula.charAt(end) == ':' ? matchCellReference(formula, end + 1) : -1;
+                if (areaEnd > 0 && areaEnd < n && (formula.charAt(areaEnd) == '(' || formula.charAt(areaEnd) == '!')) {
+                    areaEnd = -1;
+                }
+                literals.add(formula.substring(literalStart, k));
+                addReference(formula, k, end, areaEnd > 0 ? Bound.FIRST : Bound.CELL, columns, absoluteRows, rows, bounds);
+                if (areaEnd > 0) {
+                    literals.add(":");
+                    addReference(formula, end + 1, areaEnd, Bound.LAST, columns, absoluteRows, rows, bounds);
+                    end = areaEnd;
+                }
+                literalStart = end;
+                k = end;
+            } else {
+                k++;
+            }
+        }
+        literals.add(formula.substring(literalStart));
+        return new TemplateFormula(literals, columns, absoluteRows, rows, bounds);
+    }
+
+    /**
+     * @return 公式中是否有需要调整的行引用。
+     */
+    public boolean hasRowReferences() {
+        return rows.length > 0;
+    }
+
+    /**
+     * 生成输出行上的公式文本。
+     *
+     * @param resolver           行引用解析器，为 null 时所有引用按公式所在行的位移平移。
+     * @param formulaTemplateRow 公式所在的模板行索引（从 0 开始）。
+     * @param currentRowNo       公式所在的输出行号（从 1 开始）。
+     * @return 公式文本。
+     */
+    public String render(RowReferenceResolver resolver, int formulaTemplateRow, int currentRowNo) {
+        if (rows.length == 0) {
+            return literals[0];
+        }
+        StringBuilder formula = new StringBuilder(estimatedLength);
+        for (int i = 0; i < rows.length; i++) {
+            formula.append(literals[i]);
+            int rowNo = resolve(i, resolver, formulaTemplateRow, currentRowNo);
+            if (bounds[i] == Bound.FIRST) {
+                // 区域的两端总是相邻的 FIRST、LAST 两个引用，中间的片段是 ":"
+                int lastRowNo = resolve(i + 1, resolver, formulaTemplateRow, currentRowNo);
+                if (isValidRow(rowNo) && isValidRow(lastRowNo)) {
+                    appendReference(formula, i, rowNo);
+                    formula.append(literals[i + 1]);
+                    appendReference(formula, i + 1, lastRowNo);
+                } else {
+                    formula.append(REF_ERROR);
+                }
+                i++;
+            } else if (isValidRow(rowNo)) {
+                appendReference(formula, i, rowNo);
+            } else {
+                formula.append(REF_ERROR);
+            }
+        }
+        return formula.append(literals[rows.length]).toString();
+    }
+
+    private int resolve(int i, RowReferenceResolver resolver, int formulaTemplateRow, int currentRowNo) {
+        return resolver != null
+                ? resolver.resolve(rows[i], formulaTemplateRow, currentRowNo, bounds[i])
+                : currentRowNo + rows[i] - formulaTemplateRow;
+    }
+
+    private static boolean isValidRow(int rowNo) {
+        return rowNo >= 1 && rowNo <= MAX_ROW;
+    }
+
+    private void appendReference(StringBuilder formula, int i, int rowNo) {
+        formula.append(columns[i]);
+        if (absoluteRows[i]) {
+            formula.append('$');
+        }
+        formula.append(rowNo);
+    }
+
+    private static void addReference(String formula, int start, int end, Bound bound, List<String> columns,
+                                     List<Boolean> absoluteRows, List<Integer> rows, List<Bound> bounds) {
+        int rowStart = start;
+        if (formula.charAt(rowStart) == '$') {
+            rowStart++;
+        }
+        while (Character.isLetter(formula.charAt(rowStart))) {
+            rowStart++;
+        }
+        boolean absoluteRow = formula.charAt(rowStart) == '$';
+        columns.add(formula.substring(start, rowStart));
+        absoluteRows.add(absoluteRow);
+        rows.add(Integer.parseInt(formula.substring(absoluteRow ? rowStart + 1 : rowStart, end)) - 1);
+        bounds.add(bound);
+    }
+
+    /**
+     * 匹配 {@code [$]列[$]行} 形式的单元格引用。
+     *
+     * @return 引用结束的位置；不是单元格引用（或者是更长的名称的一部分）时返回 -1。
+     */
+    private static int matchCellReference(String formula, int start) {
+        int n = formula.length();
+        int i = start;
+        if (i < n && formula.charAt(i) == '$') i++;
+        int column = 0;
+        int letters = 0;
+        while (i < n && letters <= 3 && isAsciiLetter(formula.charAt(i))) {
+            column = column * 26 + (Character.toUpperCase(formula.charAt(i)) - 'A' + 1);
+            letters++;
+            i++;
+        }
+        if (letters == 0 || letters > 3 || column > MAX_COLUMN) return -1;
+        if (i < n && formula.charAt(i) == '$') i++;
+        int digitsStart = i;
+        long row = 0;
+        while (i < n && Character.isDigit(formula.charAt(i)) && i - digitsStart < 8) {
+            row = row * 10 + (formula.charAt(i) - '0');
+            i++;
+        }
+        if (i == digitsStart || row < 1 || row > MAX_ROW) return -1;
+        if (i < n && isNameChar(formula.charAt(i))) return -1;
+        return i;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '\\';
+    }
+
+    private static int skipName(String formula, int start) {
+        int i = start;
+        while (i < formula.length() && (isNameChar(formula.charAt(i)) || formula.charAt(i) == '$')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipReference(String formula, int start) {
+        int i = start;
+        while (i < formula.length() && (isNameChar(formula.charAt(i)) || formula.charAt(i) == '$' || formula.charAt(i) == ':')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 跳过引号包围的文本，两个连续的引号表示引号本身。
+     */
+    private static int skipQuoted(String formula, int start, char quote) {
+        int i = start + 1;
+        while (i < formula.length()) {
+            if (formula.charAt(i) == quote) {
+                if (i + 1 < formula.length() && formula.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipBrackets(String formula, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < formula.length()) {
+            char c = formula.charAt(i++);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                break;
+            }
+        }
+        return i;
+    }
+}
@@ -28,6 +28,9 @@ import java.util.Map;
  * 表达式求值器接口。
  * 定义了将字符串表达式或模板根据给定的上下文数据求值的契约。
  * 这使得引擎可以解耦具体的表达式语言实现。
+ * <p>
+ * 实现必须是线程安全的：同一个求值器被引擎上的所有并发渲染共用。
+ * </p>
  */
 public interface ExpressionEvaluator {
 
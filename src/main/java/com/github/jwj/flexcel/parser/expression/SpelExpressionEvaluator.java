@@ -40,6 +40,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +49,11 @@ import java.util.regex.Pattern;
  * 此版本将安全策略完全封装在内部。默认使用 SimpleEvaluationContext，
  * 它禁用了 T() 表达式等危险操作，但允许通过配置安全的 PropertyAccessor
  * 来访问 Map 和 POJO 的属性，同时支持服务方法调用。
+ * <p>
+ * 实例是线程安全的。解析后的表达式与求值上下文无关，在所有实例之间共享缓存；
+ * 缓存的表达式数量有上限，超出后新表达式每次重新解析，避免动态生成的模板让缓存无限增长。
+ * 属性访问器是无状态或内部使用并发缓存的，也在所有求值之间共享，每次求值只创建轻量的上下文对象。
+ * </p>
  */
 public class SpelExpressionEvaluator implements ExpressionEvaluator {
 
@@ -57,9 +63,13 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
     private static final TemplateParserContext TEMPLATE_PARSER_CONTEXT = new TemplateParserContext("${", "}");
     private static final Pattern SINGLE_EXPRESSION_PATTERN = Pattern.compile("^\\$\\{([^}]+)\\}$");
 
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
     private static final Map<String, Expression> expressionCache = new ConcurrentHashMap<>(256);
     private static final Map<String, Expression> templateExpressionCache = new ConcurrentHashMap<>(256);
 
+    private static final PropertyAccessor MAP_ACCESSOR = new MapAccessor();
+    private static final PropertyAccessor REFLECTIVE_ACCESSOR = new ReflectivePropertyAccessor();
+
     private final boolean unsafeOperationsEnabled;
 
     /**
@@ -92,7 +102,7 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
 
         if (expressionOrTemplate.contains("${")) {
             try {
-                Expression expr = templateExpressionCache.computeIfAbsent(expressionOrTemplate,
+                Expression expr = cached(templateExpressionCache, expressionOrTemplate,
                         key -> PARSER.parseExpression(key, TEMPLATE_PARSER_CONTEXT));
                 return expr.getValue(createContext(contextData), String.class);
             } catch (Exception e) {
@@ -109,7 +119,7 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
             return null;
         }
         try {
-            Expression expr = expressionCache.computeIfAbsent(expression, PARSER::parseExpression);
+            Expression expr = cached(expressionCache, expression, PARSER::parseExpression);
             return expr.getValue(createContext(contextData));
         } catch (Exception e) {
             logger.debug("Expression evaluation failed: '{}'. This is expected in SAFE mode for certain expressions. Error: {}", expression.trim(), e.getMessage());
@@ -118,6 +128,23 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
     }
 
 
+    /**
+     * 从共享缓存中取解析结果。解析在锁外进行，并发解析同一个表达式时只有一个结果进入缓存。
+     */
+    private static Expression cached(Map<String, Expression> cache, String key, Function<String, Expression> parser) {
+        Expression expr = cache.get(key);
+        if (expr == null) {
+            expr = parser.apply(key);
+            if (cache.size() < MAX_CACHED_EXPRESSIONS) {
+                Expression existing = cache.putIfAbsent(key, expr);
+                if (existing != null) {
+                    expr = existing;
+                }
+            }
+        }
+        return expr;
+    }
+
     /**
      * 根据构造时传入的开关，创建并返回合适的 EvaluationContext。
      */
@@ -128,7 +155,7 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
         } else {
             // 创建一个支持读写的 Builder，这将允许方法调用（对于我们的服务调用是必需的）
             SimpleEvaluationContext.Builder builder = new SimpleEvaluationContext
-                    .Builder(new MapAccessor(), new ReflectivePropertyAccessor());
+                    .Builder(MAP_ACCESSOR, REFLECTIVE_ACCESSOR);
             builder.withInstanceMethods();
             builder.withRootObject(contextData);
             return builder.build();
@@ -37,6 +37,7 @@ public final class CellParseContext {
     private final int rowIndex;
     private final int colIndex;
     private final String templateAddress;
+    private final String rawStringValue; // 覆盖单元格原始文本，null 表示使用单元格内容
 
     /**
      * 构造一个新的解析上下文。
@@ -46,9 +47,23 @@ public final class CellParseContext {
      * @param colIndex 单元格所在的列索引。
      */
     public CellParseContext(Cell cell, int rowIndex, int colIndex) {
+        this(cell, rowIndex, colIndex, null);
+    }
+
+    /**
+     * 构造一个以给定文本代替单元格内容的解析上下文。
+     * 用于 {@code #style} 等修饰语法：去掉修饰部分后，把剩余的文本交给其他处理器解析。
+     *
+     * @param cell           原始的 POI Cell 对象，可能为 null。
+     * @param rowIndex       单元格所在的行索引。
+     * @param colIndex       单元格所在的列索引。
+     * @param rawStringValue 代替单元格内容的字符串。
+     */
+    public CellParseContext(Cell cell, int rowIndex, int colIndex, String rawStringValue) {
         this.cell = cell;
         this.rowIndex = rowIndex;
         this.colIndex = colIndex;
+        this.rawStringValue = rawStringValue;
         // 预先计算并缓存地址，避免重复计算
         this.templateAddress = new CellAddress(rowIndex, colIndex).formatAsString();
     }
@@ -87,9 +102,12 @@ public final class CellParseContext {
 
     /**
      * 方便地获取单元格的原始字符串值。
-     * @return 如果单元格类型为 STRING，则返回其值；否则返回 null。
+     * @return 如果构造时指定了代替文本则返回该文本；如果单元格类型为 STRING，则返回其值；否则返回 null。
      */
     public String getRawStringValue() {
+        if (rawStringValue != null) {
+            return rawStringValue;
+        }
         if (cell != null && cell.getCellType() == CellType.STRING) {
             return cell.getStringCellValue();
         }
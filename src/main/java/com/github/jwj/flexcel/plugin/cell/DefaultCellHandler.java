@@ -24,6 +24,8 @@ package com.github.jwj.flexcel.plugin.cell;
 
 import com.github.jwj.flexcel.parser.ast.template.CellTemplate;
 import com.github.jwj.flexcel.parser.ast.template.DefaultCellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.NativeFormulaCellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.TemplateFormula;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DateUtil;
@@ -36,6 +38,7 @@ import org.apache.poi.ss.usermodel.DateUtil;
  *   <li>普通文本</li>
  *   <li>标准表达式 (如 {@code ${user.name}})</li>
  *   <li>数字、布尔值、原生日期等非字符串类型单元格</li>
+ *   <li>原生公式，其中的行引用随模板行的展开调整</li>
  *   <li>空单元格</li>
  * </ul>
  * </p>
@@ -68,12 +71,19 @@ public class DefaultCellHandler implements CellSyntaxHandler {
         // 根据单元格类型提取其内容作为表达式
         switch (cellType) {
             case STRING:
-                // 对于字符串，直接使用其内容作为表达式或模板字符串
-                expression = cell.getStringCellValue();
+                // 对于字符串，直接使用其内容作为表达式或模板字符串（可能已被 #style 等修饰语法去掉修饰部分）
+                expression = context.getRawStringValue();
                 break;
             case FORMULA:
-                // 对于原生公式，使用公式字符串作为表达式
-                expression = cell.getCellFormula();
+                String formula = cell.getCellFormula();
+                if (!formula.contains("${")) {
+                    // 原生公式在编译期切分，渲染时只调整行引用，不经过表达式求值
+                    return new NativeFormulaCellTemplate(context.getTemplateAddress(), context.getColIndex(), context.getRowIndex(),
+                            TemplateFormula.compile(formula),
+                            FormulaCellHandler.parses(formula, cell, context.getRowIndex(), context.getTemplateAddress()));
+                }
+                // 含有表达式的公式仍作为表达式逐行求值
+                expression = formula;
                 isFormula = true;
                 break;
             case NUMERIC:
@@ -24,7 +24,16 @@ package com.github.jwj.flexcel.plugin.cell;
 
 import com.github.jwj.flexcel.parser.ast.template.CellTemplate;
 import com.github.jwj.flexcel.parser.ast.template.DefaultCellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.RowFormulaCellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.RowRelativeFormula;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,17 +43,23 @@ import java.util.regex.Pattern;
  * 该处理器识别并解析两种形式的公式：
  * 1. 以 {@code #formula } 为前缀的自定义公式指令 (例如: {@code #formula SUM(A1:A10)}).
  * 2. 模板中原生的 Excel 公式单元格 ({@link CellType#FORMULA}).
+ * <p>
+ * 表达式中只引用当前行号（{@code ${currentRowNo}} 或 {@code ${currentRowNo ± n}}）的公式在编译期切分为
+ * {@link RowRelativeFormula} 并解析校验一次，渲染时不经过表达式求值和逐行的公式解析。
+ * </p>
  */
 public class FormulaCellHandler implements CellSyntaxHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(FormulaCellHandler.class);
+
     // 匹配 "#formula " 指令，并捕获后面的所有内容作为表达式。
     // 使用 Pattern.DOTALL 模式以允许表达式跨行。
     private static final Pattern FORMULA_DIRECTIVE_PATTERN = Pattern.compile("^#formula\\s+(.*)$", Pattern.DOTALL);
 
     @Override
     public boolean canHandle(String rawText) {
-        // 如果原始文本不为空且以 "#formula" 开头，则此处理器可以处理
-        return rawText != null && rawText.trim().startsWith("#formula");
+        // 如果原始文本不为空且以 "#formula" 开头，则此处理器可以处理；带 #style 修饰时先交给 StyleCellHandler 拆分
+        return rawText != null && rawText.trim().startsWith("#formula") && !StyleCellHandler.hasStyleDirective(rawText);
     }
 
     @Override
@@ -61,6 +76,14 @@ public class FormulaCellHandler implements CellSyntaxHandler {
             expression = rawText;
         }
 
+        RowRelativeFormula rowFormula = RowRelativeFormula.compile(expression);
+        if (rowFormula != null) {
+            rowFormula = validate(rowFormula, context);
+            if (rowFormula != null) {
+                return new RowFormulaCellTemplate(context.getTemplateAddress(), context.getColIndex(), expression, rowFormula);
+            }
+        }
+
         return new DefaultCellTemplate(
                 context.getTemplateAddress(),
                 context.getColIndex(),
@@ -69,4 +92,43 @@ public class FormulaCellHandler implements CellSyntaxHandler {
                 false // 不是合并候选项
         );
     }
+
+    /**
+     * 用模板工作簿解析一次行相对公式，解析通过的公式在写出时不再逐行校验。
+     *
+     * @return 标记为已校验的公式；无法解析时返回 null，退回逐行求值，由写出端报告错误。
+     */
+    private static RowRelativeFormula validate(RowRelativeFormula formula, CellParseContext context) {
+        Cell cell = context.getCell();
+        if (cell == null || !(cell.getSheet().getWorkbook() instanceof XSSFWorkbook)) {
+            return formula;
+        }
+        // 取一个使所有行号槽位都有效的行号
+        int sampleRowNo = Math.max(context.getRowIndex() + 1, 1 - formula.getMinOffset());
+        return parses(formula.render(sampleRowNo), cell, sampleRowNo - 1, context.getTemplateAddress()) ? formula.validated() : null;
+    }
+
+    /**
+     * 用模板所在的 XSSF 工作簿解析一次公式。
+     *
+     * @param formula  公式文本。
+     * @param cell     模板单元格，决定公式所在的 Sheet。
+     * @param rowIndex 解析时假定的公式所在行索引。
+     * @param address  模板单元格地址，仅用于日志。
+     * @return 能否解析；模板不是 XSSF 工作簿时返回 false。
+     */
+    static boolean parses(String formula, Cell cell, int rowIndex, String address) {
+        if (!(cell.getSheet().getWorkbook() instanceof XSSFWorkbook)) {
+            return false;
+        }
+        XSSFWorkbook workbook = (XSSFWorkbook) cell.getSheet().getWorkbook();
+        try {
+            FormulaParser.parse(formula, XSSFEvaluationWorkbook.create(workbook), FormulaType.CELL,
+                    workbook.getSheetIndex(cell.getSheet()), rowIndex);
+            return true;
+        } catch (RuntimeException e) {
+            logger.debug("Formula at {} cannot be precompiled: {}", address, e.getMessage());
+            return false;
+        }
+    }
 }
\ No newline at end of file
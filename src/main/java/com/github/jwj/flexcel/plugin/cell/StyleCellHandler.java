@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.plugin.cell;
+
+import com.github.jwj.flexcel.parser.ast.template.CellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.DefaultCellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.StyledCellTemplate;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 负责处理 {@code #style} 修饰语法的 {@link CellSyntaxHandler} 实现。
+ * <p>
+ * 语法为 {@code <单元格内容> #style <样式描述>}，例如 {@code ${item.balance} #style ${item.balance < 0 ? 'fill:RED' : ''}}。
+ * {@code #style} 之前的部分交给其他处理器按原有语法解析；样式描述是一个可以包含表达式的字符串模板，
+ * 每行求值一次，求值结果为空时使用模板样式，否则在模板样式的基础上应用覆盖项
+ * （格式见 {@link com.github.jwj.flexcel.style.StyleOverride}）。
+ * </p>
+ * <p>
+ * {@code #style} 必须是单元格开头或以空白与前面的内容隔开的独立记号，因此 {@code 备注#style 说明} 这样的普通文本不受影响；
+ * 出现多个时以最后一个为准。需要在文本中原样输出 {@code #style} 时写作 {@code \#style}。
+ * 本处理器排在用户注册的自定义处理器之后，自定义处理器能处理的单元格不会被拆分。
+ * </p>
+ */
+public class StyleCellHandler implements CellSyntaxHandler {
+
+    // 匹配 "<内容> #style <描述>"：内容可以为空，不为空时必须以空白与 #style 隔开
+    private static final Pattern STYLE_PATTERN = Pattern.compile("^(?:(.*\\S)\\s+)?#style\\s+(\\S.*)$", Pattern.DOTALL);
+    private static final String ESCAPED_DIRECTIVE = "\\#style";
+    private static final String DIRECTIVE = "#style";
+
+    private final List<CellSyntaxHandler> valueHandlers;
+
+    /**
+     * @param valueHandlers 用于解析 {@code #style} 之前内容的处理器链，可以包含本处理器自身（会被跳过）。
+     */
+    public StyleCellHandler(List<CellSyntaxHandler> valueHandlers) {
+        this.valueHandlers = valueHandlers;
+    }
+
+    /**
+     * @param rawText 单元格的原始字符串内容。
+     * @return 是否带有 {@code #style} 修饰。
+     */
+    public static boolean hasStyleDirective(String rawText) {
+        return rawText != null && STYLE_PATTERN.matcher(rawText.trim()).matches();
+    }
+
+    @Override
+    public boolean canHandle(String rawText) {
+        return hasStyleDirective(rawText) || (rawText != null && rawText.contains(ESCAPED_DIRECTIVE));
+    }
+
+    @Override
+    public CellTemplate handle(CellParseContext context) {
+        String rawText = context.getRawStringValue().trim();
+        Matcher matcher = STYLE_PATTERN.matcher(rawText);
+        if (!matcher.matches()) {
+            // 只有转义的 #style：去掉转义后按普通内容解析
+            return parseValue(context, unescape(rawText));
+        }
+        String valueText = matcher.group(1);
+        String styleSpec = matcher.group(2).trim();
+
+        CellTemplate valueTemplate;
+        if (valueText == null) {
+            valueTemplate = new DefaultCellTemplate(context.getTemplateAddress(), context.getColIndex(), null, false, false);
+        } else {
+            valueTemplate = parseValue(context, unescape(valueText));
+        }
+        return new StyledCellTemplate(valueTemplate, context.getColIndex(), styleSpec);
+    }
+
+    private CellTemplate parseValue(CellParseContext context, String valueText) {
+        CellParseContext valueContext = new CellParseContext(context.getCell(), context.getRowIndex(), context.getColIndex(), valueText);
+        for (CellSyntaxHandler handler : valueHandlers) {
+            if (handler != this && handler.canHandle(valueText)) {
+                return handler.handle(valueContext);
+            }
+        }
+        throw new IllegalStateException("No CellSyntaxHandler can handle '" + valueText + "' at " + context.getTemplateAddress() + ".");
+    }
+
+    private static String unescape(String text) {
+        return text.replace(ESCAPED_DIRECTIVE, DIRECTIVE);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.runtime;
+
+/**
+ * 把模板中的行引用映射为输出 Sheet 中的行号。
+ * <p>
+ * 引擎在展开块时记录每个模板行被输出到了哪些行，模板中的原生公式据此调整自身的行引用，
+ * 效果与在 Excel 中插入行时公式引用的自动调整相同。
+ * </p>
+ */
+public interface RowReferenceResolver {
+
+    /**
+     * 引用在公式中的位置。
+     */
+    enum Bound {
+        /** 单个单元格引用，例如 {@code C4}。 */
+        CELL,
+        /** 区域的起始行，例如 {@code C4:C9} 中的 {@code C4}。 */
+        FIRST,
+        /** 区域的结束行，例如 {@code C4:C9} 中的 {@code C9}。 */
+        LAST
+    }
+
+    /**
+     * @param templateRow        被引用的模板行索引（从 0 开始）。
+     * @param formulaTemplateRow 公式所在的模板行索引（从 0 开始）。
+     * @param currentRowNo       公式所在的输出行号（从 1 开始）。
+     * @param bound              引用在公式中的位置。
+     * @return 映射后的输出行号（从 1 开始）。
+     */
+    int resolve(int templateRow, int formulaTemplateRow, int currentRowNo, Bound bound);
+}
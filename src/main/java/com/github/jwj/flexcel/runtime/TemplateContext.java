@@ -50,6 +50,9 @@ public class TemplateContext {
     // 仅存储当前作用域定义的局部变量。
     private final Map<String, Object> localScopedVariables;
 
+    // 模板原生公式使用的行引用解析器，通常只登记在根上下文上
+    private RowReferenceResolver rowReferenceResolver;
+
     /**
      * 构造一个根上下文。
      *
@@ -99,6 +102,26 @@ public class TemplateContext {
         }
     }
 
+    /**
+     * 登记行引用解析器，子上下文会沿父级链找到它。
+     *
+     * @param rowReferenceResolver 行引用解析器。
+     */
+    public void setRowReferenceResolver(RowReferenceResolver rowReferenceResolver) {
+        this.rowReferenceResolver = rowReferenceResolver;
+    }
+
+    /**
+     * @return 沿作用域链找到的行引用解析器，没有登记时返回 null。
+     */
+    public RowReferenceResolver getRowReferenceResolver() {
+        TemplateContext context = this;
+        while (context.rowReferenceResolver == null && context.parent != null) {
+            context = context.parent;
+        }
+        return context.rowReferenceResolver;
+    }
+
     /**
      * 根据作用域链查找变量。
      * <p>
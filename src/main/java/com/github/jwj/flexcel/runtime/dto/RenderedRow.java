@@ -24,23 +24,197 @@ package com.github.jwj.flexcel.runtime.dto;
 
 import org.apache.poi.ss.util.CellRangeAddress;
 
+import com.github.jwj.flexcel.parser.ast.template.RowRelativeFormula;
+import com.github.jwj.flexcel.style.RowFormat;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * 代表一行已准备好被写入 Excel 的数据。
+ * <p>
+ * 普通值单元格以列式结构存放：类型标记 {@code byte[]}、数值 {@code double[]}、引用 {@code Object[]}
+ * 和列索引 {@code int[]}，数值单元格不需要装箱，也不需要逐格创建 {@link RenderedCell} 对象。
+ * 需要自定义渲染或纵向合并的单元格仍通过 {@link #cells} 列表这一旁路通道传递。
+ * </p>
+ */
 public class RenderedRow {
     public static final RenderedRow POISON_PILL = new RenderedRow();
+    /**
+     * 续表标记：写入端收到后结束当前 Sheet 并打开下一个续表。
+     */
+    public static final RenderedRow SHEET_BREAK = new RenderedRow();
+
+    public static final byte TYPE_BLANK = 0;
+    public static final byte TYPE_NUMERIC = 1;
+    public static final byte TYPE_STRING = 2;
+    public static final byte TYPE_BOOLEAN = 3;
+    public static final byte TYPE_FORMULA = 4;
+    public static final byte TYPE_OBJECT = 5;
+    // 行相对公式：引用列存放编译好的 RowRelativeFormula，数值列存放行号
+    public static final byte TYPE_ROW_FORMULA = 6;
+    // 已在编译期解析校验过的公式，写出时不再逐个解析
+    public static final byte TYPE_PARSED_FORMULA = 7;
+
+    private static final int INITIAL_COLUMNS = 16;
 
     public int templateRowNum;
+    // 模板行在编译期解析好的行高和样式索引
+    public RowFormat format = RowFormat.EMPTY;
+    // 旁路通道：自定义渲染和可合并的单元格
     public List<RenderedCell> cells;
+    // 生产者在启用内存预算时写入的保留内存估算值，消费者写出该行后据此归还预算
+    public long retainedSizeEstimate;
     // 用于存储与此行模板关联的静态合并区域
     private List<CellRangeAddress> staticMergedRegions;
 
+    // 列式存储的普通值单元格
+    private int columnarSize;
+    private byte[] types = new byte[INITIAL_COLUMNS];
+    private int[] columns = new int[INITIAL_COLUMNS];
+    private double[] numbers = new double[INITIAL_COLUMNS];
+    private Object[] refs = new Object[INITIAL_COLUMNS];
+
+    // #style 指令求值得到的样式描述，按列稀疏存放，大多数行为空
+    private int styleOverrideCount;
+    private int[] styleOverrideColumns;
+    private String[] styleOverrideSpecs;
+
     public RenderedRow() {
         this.cells = new ArrayList<>(16);
         // 初始化列表
         this.staticMergedRegions = null;
     }
 
+    /**
+     * 追加一个数值单元格，不产生装箱对象。
+     * @param colIndex 列索引。
+     * @param value 数值。
+     */
+    public void addNumeric(int colIndex, double value) {
+        int i = nextSlot(colIndex, TYPE_NUMERIC);
+        numbers[i] = value;
+    }
+
+    /**
+     * 追加一个公式单元格。
+     * @param colIndex 列索引。
+     * @param formula 公式字符串，为 null 时写入空白单元格。
+     */
+    public void addFormula(int colIndex, String formula) {
+        if (formula == null) {
+            nextSlot(colIndex, TYPE_BLANK);
+            return;
+        }
+        int i = nextSlot(colIndex, TYPE_FORMULA);
+        refs[i] = formula;
+    }
+
+    /**
+     * 追加一个行相对公式单元格，公式文本由写出端按行号生成。
+     * @param colIndex 列索引。
+     * @param formula 编译好的行相对公式。
+     * @param rowNo 公式中 {@code currentRowNo} 的取值。
+     */
+    public void addRowFormula(int colIndex, RowRelativeFormula formula, int rowNo) {
+        int i = nextSlot(colIndex, TYPE_ROW_FORMULA);
+        refs[i] = formula;
+        numbers[i] = rowNo;
+    }
+
+    /**
+     * 追加一个已在编译期解析校验过的公式单元格。
+     * @param colIndex 列索引。
+     * @param formula 公式字符串。
+     */
+    public void addParsedFormula(int colIndex, String formula) {
+        int i = nextSlot(colIndex, TYPE_PARSED_FORMULA);
+        refs[i] = formula;
+    }
+
+    /**
+     * 按值的类型追加一个普通单元格：数字和布尔值存入数值列，字符串和其他对象存入引用列。
+     * @param colIndex 列索引。
+     * @param value 单元格值，可以为 null。
+     */
+    public void addValue(int colIndex, Object value) {
+        if (value == null) {
+            nextSlot(colIndex, TYPE_BLANK);
+        } else if (value instanceof String) {
+            refs[nextSlot(colIndex, TYPE_STRING)] = value;
+        } else if (value instanceof Number) {
+            numbers[nextSlot(colIndex, TYPE_NUMERIC)] = ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            numbers[nextSlot(colIndex, TYPE_BOOLEAN)] = ((Boolean) value) ? 1 : 0;
+        } else {
+            refs[nextSlot(colIndex, TYPE_OBJECT)] = value;
+        }
+    }
+
+    private int nextSlot(int colIndex, byte type) {
+        if (columnarSize == types.length) {
+            int newLength = types.length * 2;
+            types = Arrays.copyOf(types, newLength);
+            columns = Arrays.copyOf(columns, newLength);
+            numbers = Arrays.copyOf(numbers, newLength);
+            refs = Arrays.copyOf(refs, newLength);
+        }
+        int i = columnarSize++;
+        types[i] = type;
+        columns[i] = colIndex;
+        return i;
+    }
+
+    /** @return 列式存储的单元格数量。 */
+    public int getColumnarSize() { return columnarSize; }
+
+    /** @return 第 i 个列式单元格的类型标记（{@code TYPE_*}）。 */
+    public byte getType(int i) { return types[i]; }
+
+    /** @return 第 i 个列式单元格的列索引。 */
+    public int getColumn(int i) { return columns[i]; }
+
+    /** @return 第 i 个列式单元格的数值（数值和布尔类型，行相对公式的行号）。 */
+    public double getNumber(int i) { return numbers[i]; }
+
+    /** @return 第 i 个列式单元格的引用值（字符串、公式和其他对象类型）。 */
+    public Object getRef(int i) { return refs[i]; }
+
+    /**
+     * 为某一列登记 {@code #style} 样式描述，写出端据此在模板样式的基础上派生样式。
+     * @param colIndex 列索引。
+     * @param styleSpec 样式描述，见 {@link com.github.jwj.flexcel.style.StyleOverride}。
+     */
+    public void addStyleOverride(int colIndex, String styleSpec) {
+        if (styleOverrideColumns == null) {
+            styleOverrideColumns = new int[4];
+            styleOverrideSpecs = new String[4];
+        } else if (styleOverrideCount == styleOverrideColumns.length) {
+            styleOverrideColumns = Arrays.copyOf(styleOverrideColumns, styleOverrideCount * 2);
+            styleOverrideSpecs = Arrays.copyOf(styleOverrideSpecs, styleOverrideCount * 2);
+        }
+        styleOverrideColumns[styleOverrideCount] = colIndex;
+        styleOverrideSpecs[styleOverrideCount] = styleSpec;
+        styleOverrideCount++;
+    }
+
+    /** @return 此行是否有 {@code #style} 样式描述。 */
+    public boolean hasStyleOverrides() { return styleOverrideCount > 0; }
+
+    /**
+     * @param colIndex 列索引。
+     * @return 该列的样式描述，没有时返回 null。
+     */
+    public String getStyleOverride(int colIndex) {
+        for (int i = 0; i < styleOverrideCount; i++) {
+            if (styleOverrideColumns[i] == colIndex) {
+                return styleOverrideSpecs[i];
+            }
+        }
+        return null;
+    }
+
     /**
      * 【新增】设置此行关联的静态合并区域。
      * @param mergedRegions 合并区域列表。
@@ -64,6 +238,15 @@ public class RenderedRow {
         this.templateRowNum = -1;
         // 清空列列表，但内部的 cell 对象由调用者（对象池）负责归还
         this.cells.clear();
+        this.format = RowFormat.EMPTY;
+        // 清除引用列，避免池中的行继续持有上一次渲染的值
+        Arrays.fill(this.refs, 0, this.columnarSize, null);
+        this.columnarSize = 0;
+        if (this.styleOverrideCount > 0) {
+            Arrays.fill(this.styleOverrideSpecs, 0, this.styleOverrideCount, null);
+            this.styleOverrideCount = 0;
+        }
+        this.retainedSizeEstimate = 0;
         // 【新增】重置合并区域信息
         this.staticMergedRegions = null;
     }
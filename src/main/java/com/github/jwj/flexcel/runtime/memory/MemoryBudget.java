@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.runtime.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 引擎级内存预算。
+ * <p>
+ * 一个引擎实例持有一个 {@code MemoryBudget}，该引擎上所有并发渲染的在途状态
+ * （队列中尚未写出的行、SXSSF 内存窗口中的行）都计入同一个引擎级上限；
+ * 每次渲染再通过 {@link #openRender()} 获得一个带有单次渲染上限的 {@link RenderMemoryBudget}。
+ * </p>
+ * <p>
+ * 预算是基于估算值的软限制：超出预算时生产者会被限速（等待消费者释放），而不是失败，
+ * 因此导出在内存紧张时会变慢，而不是抛出 {@link OutOfMemoryError}。
+ * </p>
+ */
+public final class MemoryBudget {
+
+    /** 表示不限制的预算值。 */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long perRenderLimitBytes;
+    private final long engineLimitBytes;
+    private final AtomicLong engineBytesInUse = new AtomicLong();
+    private final Object monitor = new Object();
+    private volatile int waiters = 0;
+
+    /**
+     * @param perRenderLimitBytes 单次渲染的字节上限，{@link #UNLIMITED} 表示不限制。
+     * @param engineLimitBytes    引擎内所有渲染合计的字节上限，{@link #UNLIMITED} 表示不限制。
+     */
+    public MemoryBudget(long perRenderLimitBytes, long engineLimitBytes) {
+        if (perRenderLimitBytes <= 0 || engineLimitBytes <= 0) {
+            throw new IllegalArgumentException("Memory budgets must be positive.");
+        }
+        this.perRenderLimitBytes = perRenderLimitBytes;
+        this.engineLimitBytes = engineLimitBytes;
+    }
+
+    /**
+     * @return 一个不做任何限制的预算。
+     */
+    public static MemoryBudget unlimited() {
+        return new MemoryBudget(UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @return 是否设置了任一上限。未设置时引擎会跳过所有估算。
+     */
+    public boolean isBounded() {
+        return perRenderLimitBytes != UNLIMITED || engineLimitBytes != UNLIMITED;
+    }
+
+    public long getPerRenderLimitBytes() {
+        return perRenderLimitBytes;
+    }
+
+    public long getEngineLimitBytes() {
+        return engineLimitBytes;
+    }
+
+    /**
+     * @return 当前引擎内所有渲染估算占用的字节数。
+     */
+    public long getEngineBytesInUse() {
+        return engineBytesInUse.get();
+    }
+
+    /**
+     * 为一次渲染开启预算跟踪。渲染结束（包括失败和取消）时必须调用 {@link RenderMemoryBudget#close()}。
+     *
+     * @return 单次渲染的预算。
+     */
+    public RenderMemoryBudget openRender() {
+        return new RenderMemoryBudget(this, perRenderLimitBytes);
+    }
+
+    boolean tryReserveEngine(long bytes, boolean force) {
+        while (true) {
+            long current = engineBytesInUse.get();
+            long next = current + bytes;
+            if (!force && engineLimitBytes != UNLIMITED && next > engineLimitBytes) {
+                return false;
+            }
+            if (engineBytesInUse.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseEngine(long bytes) {
+        if (bytes == 0) return;
+        engineBytesInUse.addAndGet(-bytes);
+        if (waiters > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待其他线程释放预算，最多等待 {@code maxWaitMs} 毫秒。
+     */
+    void awaitRelease(long maxWaitMs) throws InterruptedException {
+        synchronized (monitor) {
+            waiters++;
+            try {
+                monitor.wait(maxWaitMs);
+            } finally {
+                waiters--;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.runtime.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次渲染的内存预算。
+ * <p>
+ * 跟踪两部分在途状态：
+ * <ul>
+ *   <li>队列中已产生但尚未写出的行，由生产者 {@link #acquire} 计入、消费者 {@link #release} 扣除；</li>
+ *   <li>输出 Sheet 内存窗口中保留的行，由消费者通过 {@link #updateWindowBytes} 定期上报。</li>
+ * </ul>
+ * 两部分之和超出单次上限，或引擎合计超出引擎上限时，{@link #acquire} 会阻塞生产者。
+ * 为保证渲染总能推进，本次渲染没有任何在途行时，申请总是立即成功。
+ * </p>
+ * <p>
+ * {@link #close()} 之后的释放和窗口上报都会被忽略，已归还的预算不会被重复扣除。
+ * </p>
+ */
+public final class RenderMemoryBudget implements AutoCloseable {
+
+    private static final long WAIT_SLICE_MS = 20;
+
+    private final MemoryBudget engineBudget;
+    private final long limitBytes;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private volatile long windowBytes = 0;
+    private volatile long throttledNanos = 0;
+    private volatile boolean closed = false;
+
+    RenderMemoryBudget(MemoryBudget engineBudget, long limitBytes) {
+        this.engineBudget = engineBudget;
+        this.limitBytes = limitBytes;
+    }
+
+    /**
+     * @return 是否需要估算和限速。
+     */
+    public boolean isBounded() {
+        return engineBudget.isBounded();
+    }
+
+    /**
+     * 为一行即将进入队列的数据申请预算，超出预算时阻塞直到消费者释放足够空间。
+     *
+     * @param bytes        该行的估算字节数。
+     * @param whileWaiting 每次等待前执行的回调（例如检查渲染是否被取消），可以抛出运行时异常中止等待。
+     * @throws InterruptedException 如果等待时被中断。
+     */
+    public void acquire(long bytes, Runnable whileWaiting) throws InterruptedException {
+        long waitStart = 0;
+        while (true) {
+            long queued = queuedBytes.get();
+            boolean force = queued == 0;
+            boolean fitsRender = limitBytes == MemoryBudget.UNLIMITED || queued + windowBytes + bytes <= limitBytes;
+            if ((force || fitsRender) && engineBudget.tryReserveEngine(bytes, force)) {
+                queuedBytes.addAndGet(bytes);
+                if (waitStart != 0) {
+                    throttledNanos += System.nanoTime() - waitStart;
+                }
+                return;
+            }
+            if (waitStart == 0) {
+                waitStart = System.nanoTime();
+            }
+            whileWaiting.run();
+            engineBudget.awaitRelease(WAIT_SLICE_MS);
+        }
+    }
+
+    /**
+     * 释放一行已写出数据的预算。
+     *
+     * @param bytes 申请时使用的估算字节数。
+     */
+    public void release(long bytes) {
+        if (closed) {
+            return;
+        }
+        // 只扣除仍计在队列中的部分：与 close() 并发时不会扣成负数，也不会重复归还引擎预算
+        while (true) {
+            long queued = queuedBytes.get();
+            long released = Math.min(queued, bytes);
+            if (queuedBytes.compareAndSet(queued, queued - released)) {
+                engineBudget.releaseEngine(released);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 上报输出 Sheet 内存窗口当前的估算大小。
+     *
+     * @param bytes 窗口中保留的行的估算字节数。
+     */
+    public synchronized void updateWindowBytes(long bytes) {
+        if (closed) {
+            return;
+        }
+        long delta = bytes - windowBytes;
+        windowBytes = bytes;
+        if (delta > 0) {
+            engineBudget.tryReserveEngine(delta, true);
+        } else {
+            engineBudget.releaseEngine(-delta);
+        }
+    }
+
+    /**
+     * 根据平均行大小计算在预算内应保留的窗口行数。
+     * 窗口最多占用单次预算的一半，另一半留给队列。
+     *
+     * @param averageRowBytes   已写出行的平均估算字节数。
+     * @param configuredWindow  配置的窗口大小，作为上限。
+     * @param minimumWindow     窗口下限。
+     * @return 推荐的窗口行数。
+     */
+    public int recommendWindowRows(long averageRowBytes, int configuredWindow, int minimumWindow) {
+        if (limitBytes == MemoryBudget.UNLIMITED || averageRowBytes <= 0) {
+            return configuredWindow;
+        }
+        long rows = (limitBytes / 2) / averageRowBytes;
+        return (int) Math.max(minimumWindow, Math.min(configuredWindow, rows));
+    }
+
+    /**
+     * @return 生产者因预算不足而被限速的累计时长（毫秒）。
+     */
+    public long getThrottledMillis() {
+        return throttledNanos / 1_000_000;
+    }
+
+    /**
+     * @return 当前估算的在途字节数（队列 + 窗口）。
+     */
+    public long getBytesInUse() {
+        return queuedBytes.get() + windowBytes;
+    }
+
+    /**
+     * 结束本次渲染，归还所有尚未释放的预算（例如取消时仍留在队列中的行）。
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long remaining = queuedBytes.getAndSet(0) + windowBytes;
+        windowBytes = 0;
+        engineBudget.releaseEngine(remaining);
+    }
+}
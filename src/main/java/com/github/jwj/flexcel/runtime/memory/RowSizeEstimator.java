@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.runtime.memory;
+
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * 渲染行的保留内存估算器。
+ * <p>
+ * 估算值按 64 位 JVM、开启压缩指针的典型对象布局粗略计算，只用于预算控制，不追求精确。
+ * </p>
+ */
+public final class RowSizeEstimator {
+
+    private static final long ROW_OVERHEAD = 96;       // RenderedRow + ArrayList + 数组
+    private static final long CELL_OVERHEAD = 48;      // RenderedCell 对象头与字段 + 列表引用
+    private static final long COLUMNAR_SLOT = 17;      // 类型 + 列索引 + 数值 + 引用槽位
+    private static final long STRING_OVERHEAD = 40;    // String 对象 + char[]/byte[] 头
+    private static final long BOXED_VALUE = 24;
+    private static final long DATE_VALUE = 32;
+    private static final long CUSTOM_VALUE = 64;
+
+    /**
+     * POI 在输出 Sheet 中为每个单元格保留的对象（Row/Cell/值对象）相对渲染 DTO 的放大系数。
+     */
+    public static final int SHEET_ROW_FACTOR = 2;
+
+    private RowSizeEstimator() {}
+
+    /**
+     * 估算一行渲染数据保留的字节数。
+     *
+     * @param row 渲染行。
+     * @return 估算字节数。
+     */
+    public static long estimate(RenderedRow row) {
+        long bytes = ROW_OVERHEAD;
+        for (int i = 0, n = row.getColumnarSize(); i < n; i++) {
+            bytes += COLUMNAR_SLOT;
+            byte type = row.getType(i);
+            if (type == RenderedRow.TYPE_STRING || type == RenderedRow.TYPE_FORMULA
+                    || type == RenderedRow.TYPE_PARSED_FORMULA || type == RenderedRow.TYPE_OBJECT) {
+                bytes += estimateValue(row.getRef(i));
+            }
+        }
+        for (RenderedCell cell : row.cells) {
+            bytes += CELL_OVERHEAD + estimateValue(cell.value);
+            if (cell.customRenderer != null) {
+                bytes += CUSTOM_VALUE;
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateValue(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return STRING_OVERHEAD + 2L * ((String) value).length();
+        if (value instanceof Number || value instanceof Boolean) return BOXED_VALUE;
+        if (value instanceof Date || value instanceof Calendar) return DATE_VALUE;
+        return CUSTOM_VALUE;
+    }
+}
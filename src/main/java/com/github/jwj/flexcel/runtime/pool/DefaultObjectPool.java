@@ -25,27 +25,46 @@ package com.github.jwj.flexcel.runtime.pool;
 import com.github.jwj.flexcel.runtime.dto.MergeableRenderedCell;
 import com.github.jwj.flexcel.runtime.dto.RenderedCell;
 import com.github.jwj.flexcel.runtime.dto.RenderedRow;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * 基于 {@link BlockingQueue} 的默认对象池实现。
+ * 基于无锁有界数组队列 {@link MpmcArrayQueue} 的默认对象池实现。
+ * <p>
+ * 生产者线程获取对象、消费者线程归还对象，两端并发访问同一个池。
+ * 无锁队列使 {@code acquire}/{@code return} 既不加锁，也不像链表队列那样为每次归还分配节点。
+ * 各池的容量会向上取整为 2 的幂。
+ * </p>
+ * <p>
+ * 池会记录命中、未命中、归还时因池满而丢弃的次数以及借出峰值，可通过 {@link #getStatistics()} 查看。
+ * 自适应模式下，构造参数中的容量只作为上限，实际保留的对象数会随最近几次渲染的工作集增减：
+ * 负载高时保留足够的对象避免重新分配，空闲后释放多余对象，不长期占用内存。
+ * </p>
  */
 public class DefaultObjectPool implements ObjectPool {
-    private final BlockingQueue<RenderedRow> rowPool;
-    private final BlockingQueue<RenderedCell> cellPool;
-    private final BlockingQueue<MergeableRenderedCell> mergeableCellPool;
+    private final PoolSlot<RenderedRow> rowPool;
+    private final PoolSlot<RenderedCell> cellPool;
+    private final PoolSlot<MergeableRenderedCell> mergeableCellPool;
 
     /**
-     * 使用指定的容量构造对象池。
+     * 使用指定的固定容量构造对象池。
      * @param rowCapacity RenderedRow 池的容量。
      * @param cellCapacity RenderedCell 池的容量。
      * @param mergeableCellCapacity MergeableRenderedCell 池的容量。
      */
     public DefaultObjectPool(int rowCapacity, int cellCapacity, int mergeableCellCapacity) {
-        this.rowPool = new LinkedBlockingQueue<>(rowCapacity);
-        this.cellPool = new LinkedBlockingQueue<>(cellCapacity);
-        this.mergeableCellPool = new LinkedBlockingQueue<>(mergeableCellCapacity);
+        this(rowCapacity, cellCapacity, mergeableCellCapacity, false);
+    }
+
+    /**
+     * 构造对象池。
+     * @param rowCapacity RenderedRow 池的容量（自适应模式下为上限）。
+     * @param cellCapacity RenderedCell 池的容量（自适应模式下为上限）。
+     * @param mergeableCellCapacity MergeableRenderedCell 池的容量（自适应模式下为上限）。
+     * @param adaptive 是否根据最近渲染的工作集自动调整保留容量。
+     */
+    public DefaultObjectPool(int rowCapacity, int cellCapacity, int mergeableCellCapacity, boolean adaptive) {
+        this.rowPool = new PoolSlot<>(rowCapacity, adaptive);
+        this.cellPool = new PoolSlot<>(cellCapacity, adaptive);
+        this.mergeableCellPool = new PoolSlot<>(mergeableCellCapacity, adaptive);
     }
 
     @Override
@@ -68,7 +87,8 @@ public class DefaultObjectPool implements ObjectPool {
 
     @Override
     public void returnRow(RenderedRow row) {
-        if (row == null || row == RenderedRow.POISON_PILL) return;
+        // 标记行是全局共享的单例，进入池中就会被并发的渲染同时修改
+        if (row == null || row == RenderedRow.POISON_PILL || row == RenderedRow.SHEET_BREAK) return;
 
         for (RenderedCell cell : row.cells) {
             if (cell instanceof MergeableRenderedCell) {
@@ -96,4 +116,16 @@ public class DefaultObjectPool implements ObjectPool {
             mergeableCellPool.offer(cell);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public ObjectPoolStatistics getStatistics() {
+        return new ObjectPoolStatistics(rowPool.snapshot(), cellPool.snapshot(), mergeableCellPool.snapshot());
+    }
+
+    @Override
+    public void onRenderComplete() {
+        rowPool.adapt();
+        cellPool.adapt();
+        mergeableCellPool.adapt();
+    }
+}
@@ -67,4 +67,18 @@ public interface ObjectPool {
      * @param cell 要归还的对象。
      */
     void returnMergeableCell(MergeableRenderedCell cell);
+
+    /**
+     * 获取对象池的统计快照。
+     * @return 统计快照；不支持统计的实现返回 {@link ObjectPoolStatistics#EMPTY}。
+     */
+    default ObjectPoolStatistics getStatistics() {
+        return ObjectPoolStatistics.EMPTY;
+    }
+
+    /**
+     * 每次渲染结束（无论成功、失败还是取消）后由引擎调用，自适应的实现可在此调整保留容量。
+     */
+    default void onRenderComplete() {
+    }
 }
\ No newline at end of file
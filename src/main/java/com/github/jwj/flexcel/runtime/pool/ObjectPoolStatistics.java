@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.runtime.pool;
+
+/**
+ * 对象池的统计快照，分别记录行、单元格和可合并单元格三个子池。
+ * <p>
+ * 快照在获取时刻生成，各计数器之间不保证严格一致，仅用于观测和调优。
+ * </p>
+ */
+public final class ObjectPoolStatistics {
+
+    /**
+     * 不提供统计信息的对象池所返回的空快照。
+     */
+    public static final ObjectPoolStatistics EMPTY = new ObjectPoolStatistics(Counters.EMPTY, Counters.EMPTY, Counters.EMPTY);
+
+    private final Counters rows;
+    private final Counters cells;
+    private final Counters mergeableCells;
+
+    public ObjectPoolStatistics(Counters rows, Counters cells, Counters mergeableCells) {
+        this.rows = rows;
+        this.cells = cells;
+        this.mergeableCells = mergeableCells;
+    }
+
+    public Counters getRows() { return rows; }
+    public Counters getCells() { return cells; }
+    public Counters getMergeableCells() { return mergeableCells; }
+
+    @Override
+    public String toString() {
+        return "ObjectPoolStatistics{rows=" + rows + ", cells=" + cells + ", mergeableCells=" + mergeableCells + '}';
+    }
+
+    /**
+     * 单个子池的计数器。
+     */
+    public static final class Counters {
+        static final Counters EMPTY = new Counters(0, 0, 0, 0, 0, 0);
+
+        private final long hits;
+        private final long misses;
+        private final long discards;
+        private final long peakOutstanding;
+        private final int retainedCapacity;
+        private final int pooled;
+
+        public Counters(long hits, long misses, long discards, long peakOutstanding, int retainedCapacity, int pooled) {
+            this.hits = hits;
+            this.misses = misses;
+            this.discards = discards;
+            this.peakOutstanding = peakOutstanding;
+            this.retainedCapacity = retainedCapacity;
+            this.pooled = pooled;
+        }
+
+        /** @return 从池中取到对象的获取次数。 */
+        public long getHits() { return hits; }
+
+        /** @return 池为空、需要新建对象的获取次数。 */
+        public long getMisses() { return misses; }
+
+        /** @return 归还时因池已满而被丢弃的对象数。 */
+        public long getDiscards() { return discards; }
+
+        /** @return 同一时刻借出未归还对象数的峰值。 */
+        public long getPeakOutstanding() { return peakOutstanding; }
+
+        /** @return 当前允许保留的对象数上限。 */
+        public int getRetainedCapacity() { return retainedCapacity; }
+
+        /** @return 当前池中空闲对象数的近似值。 */
+        public int getPooled() { return pooled; }
+
+        /** @return 命中率，尚无获取记录时返回 0。 */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{hits=%d, misses=%d, hitRate=%.3f, discards=%d, peakOutstanding=%d, retained=%d/%d}",
+                    hits, misses, getHitRate(), discards, peakOutstanding, pooled, retainedCapacity);
+        }
+    }
+}
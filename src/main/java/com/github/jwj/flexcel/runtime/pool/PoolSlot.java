@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.runtime.pool;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带统计信息的单类型子池，由 {@link DefaultObjectPool} 为每种 DTO 各持有一个。
+ * <p>
+ * 底层队列按最大容量分配，实际保留的对象数受 {@code retainLimit} 约束：
+ * 固定模式下它等于队列容量；自适应模式下由 {@link #adapt()} 根据最近几次渲染的借出峰值调整。
+ * </p>
+ * <p>
+ * 生产者和消费者分别在两个线程上获取和归还对象，若用同一个原子变量维护借出数，两端会争抢同一缓存行。
+ * 因此计数器都使用 {@link LongAdder}，借出数由获取数减归还数得出，
+ * 峰值只在未命中时以及约每 64 次获取时采样一次，是一个近似值。
+ * </p>
+ */
+final class PoolSlot<T> {
+
+    private static final int RECENT_RENDERS = 8;
+    private static final int MIN_RETAINED = 16;
+    private static final int PEAK_SAMPLE_MASK = 63;
+
+    private final MpmcArrayQueue<T> queue;
+    private final boolean adaptive;
+    private volatile int retainLimit;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+    private final AtomicLong peakOutstanding = new AtomicLong();
+    private final AtomicLong windowPeak = new AtomicLong();
+
+    // 仅在 adapt() 的同步块中访问
+    private final long[] recentPeaks = new long[RECENT_RENDERS];
+    private int recentIndex;
+
+    PoolSlot(int capacity, boolean adaptive) {
+        this.queue = new MpmcArrayQueue<>(capacity);
+        this.adaptive = adaptive;
+        this.retainLimit = adaptive ? Math.min(MIN_RETAINED, queue.capacity()) : queue.capacity();
+    }
+
+    /**
+     * @return 池中的空闲对象；池为空时返回 null，由调用方新建。
+     */
+    T poll() {
+        T element = queue.poll();
+        if (element != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        if (element == null || (ThreadLocalRandom.current().nextInt() & PEAK_SAMPLE_MASK) == 0) {
+            long current = outstanding();
+            raise(peakOutstanding, current);
+            raise(windowPeak, current);
+        }
+        return element;
+    }
+
+    private long outstanding() {
+        return Math.max(0, hits.sum() + misses.sum() - returns.sum());
+    }
+
+    void offer(T element) {
+        returns.increment();
+        if ((adaptive && queue.size() >= retainLimit && !growToWindowPeak()) || !queue.offer(element)) {
+            discards.increment();
+        }
+    }
+
+    /**
+     * 渲染过程中借出峰值已超过保留上限时立即扩容，而不是等到渲染结束，避免整次渲染都在重新分配对象。
+     *
+     * @return 是否扩大了保留上限。
+     */
+    private boolean growToWindowPeak() {
+        long peak = windowPeak.get();
+        int limit = retainLimit;
+        if (peak <= limit || limit >= queue.capacity()) {
+            return false;
+        }
+        retainLimit = (int) Math.min(queue.capacity(), peak + peak / 4);
+        return true;
+    }
+
+    private static void raise(AtomicLong peak, long value) {
+        long current;
+        while (value > (current = peak.get())) {
+            if (peak.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 以最近几次渲染借出峰值的最大值（留 25% 余量）作为新的保留上限，并释放超出上限的空闲对象。
+     * 固定模式下不做任何事。
+     */
+    synchronized void adapt() {
+        if (!adaptive) {
+            return;
+        }
+        recentPeaks[recentIndex] = windowPeak.getAndSet(outstanding());
+        recentIndex = (recentIndex + 1) % RECENT_RENDERS;
+        long workingSet = 0;
+        for (long peak : recentPeaks) {
+            workingSet = Math.max(workingSet, peak);
+        }
+        int limit = (int) Math.min(queue.capacity(), Math.max(MIN_RETAINED, workingSet + workingSet / 4));
+        retainLimit = limit;
+        while (queue.size() > limit && queue.poll() != null) {
+            // 丢弃多余的空闲对象，交给 GC 回收
+        }
+    }
+
+    ObjectPoolStatistics.Counters snapshot() {
+        return new ObjectPoolStatistics.Counters(hits.sum(), misses.sum(), discards.sum(),
+                peakOutstanding.get(), retainLimit, queue.size());
+    }
+}
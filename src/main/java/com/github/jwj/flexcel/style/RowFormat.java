@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.style;
+
+import java.util.Arrays;
+
+/**
+ * 模板行的格式描述：行高和各列的样式索引。
+ * 在编译期解析完成并挂在 RowTemplate 上，渲染时写出端按列索引直接取样式，不再逐行查表或复制 Map。
+ * 样式索引指向 {@link TemplateStyleTable}。
+ */
+public final class RowFormat {
+
+    /** 表示该列没有样式。 */
+    public static final int NO_STYLE = -1;
+
+    /** 没有行高和样式的空格式，用于模板中不存在的行。 */
+    public static final RowFormat EMPTY = new RowFormat(-1, new int[0]);
+
+    private final float heightInPoints;
+    private final int[] styleIndexes;
+
+    /**
+     * @param heightInPoints 行高（磅），小于 0 表示不设置行高。
+     * @param styleIndexes   按列索引排列的样式索引，{@link #NO_STYLE} 表示无样式。
+     */
+    public RowFormat(float heightInPoints, int[] styleIndexes) {
+        this.heightInPoints = heightInPoints;
+        this.styleIndexes = Arrays.copyOf(styleIndexes, styleIndexes.length);
+    }
+
+    public boolean hasHeight() {
+        return heightInPoints >= 0;
+    }
+
+    public float getHeightInPoints() {
+        return heightInPoints;
+    }
+
+    /**
+     * 获取指定列的样式索引。
+     * @param colIndex 列索引。
+     * @return 样式索引；超出范围或无样式时返回 {@link #NO_STYLE}。
+     */
+    public int getStyleIndex(int colIndex) {
+        return colIndex < styleIndexes.length ? styleIndexes[colIndex] : NO_STYLE;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.style;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+
+import java.util.Arrays;
+
+/**
+ * 样式的结构化键：由字体、填充、边框、数字格式、对齐和保护属性拼成的字符串。
+ * 两个样式的键相同，则克隆到输出工作簿后的效果也相同。
+ * <p>
+ * 长期编辑的模板里常有大量内容相同、只是 xf/font 下标不同的样式，按键去重后只需创建一个输出样式。
+ * 非 XSSF 样式没有统一的读取方式，直接以样式对象本身作为键（即不去重）。
+ */
+final class StructuralStyleKey {
+
+    private StructuralStyleKey() {}
+
+    static Object of(CellStyle style) {
+        if (!(style instanceof XSSFCellStyle)) {
+            return style;
+        }
+        XSSFCellStyle xssfStyle = (XSSFCellStyle) style;
+        StringBuilder key = new StringBuilder(128);
+        key.append(xssfStyle.getDataFormatString()).append('|');
+
+        XSSFFont font = xssfStyle.getFont();
+        key.append(font.getFontName()).append(',').append(font.getFontHeight())
+                .append(',').append(font.getBold()).append(',').append(font.getItalic())
+                .append(',').append(font.getUnderline()).append(',').append(font.getStrikeout())
+                .append(',').append(font.getTypeOffset()).append(',').append(font.getCharSet())
+                .append(',').append(font.getFamily()).append(',').append(font.getScheme());
+        appendColor(key, font.getXSSFColor());
+        key.append('|');
+
+        key.append(xssfStyle.getFillPattern());
+        appendColor(key, xssfStyle.getFillForegroundXSSFColor());
+        appendColor(key, xssfStyle.getFillBackgroundXSSFColor());
+        key.append('|');
+
+        key.append(xssfStyle.getBorderTop()).append(',').append(xssfStyle.getBorderBottom())
+                .append(',').append(xssfStyle.getBorderLeft()).append(',').append(xssfStyle.getBorderRight());
+        appendColor(key, xssfStyle.getTopBorderXSSFColor());
+        appendColor(key, xssfStyle.getBottomBorderXSSFColor());
+        appendColor(key, xssfStyle.getLeftBorderXSSFColor());
+        appendColor(key, xssfStyle.getRightBorderXSSFColor());
+        key.append('|');
+
+        key.append(xssfStyle.getAlignment()).append(',').append(xssfStyle.getVerticalAlignment())
+                .append(',').append(xssfStyle.getWrapText()).append(',').append(xssfStyle.getRotation())
+                .append(',').append(xssfStyle.getIndention()).append(',').append(xssfStyle.getShrinkToFit())
+                .append('|');
+
+        key.append(xssfStyle.getLocked()).append(',').append(xssfStyle.getHidden())
+                .append(',').append(xssfStyle.getQuotePrefixed());
+        return key.toString();
+    }
+
+    private static void appendColor(StringBuilder key, XSSFColor color) {
+        key.append(',');
+        if (color == null) {
+            key.append('-');
+            return;
+        }
+        CTColor ctColor = color.getCTColor();
+        key.append('[');
+        if (ctColor.isSetAuto()) key.append("auto=").append(ctColor.getAuto());
+        if (ctColor.isSetIndexed()) key.append("idx=").append(ctColor.getIndexed());
+        if (ctColor.isSetTheme()) key.append("theme=").append(ctColor.getTheme());
+        if (ctColor.isSetRgb()) key.append("rgb=").append(Arrays.toString(ctColor.getRgb()));
+        if (ctColor.isSetTint()) key.append("tint=").append(ctColor.getTint());
+        key.append(']');
+    }
+}
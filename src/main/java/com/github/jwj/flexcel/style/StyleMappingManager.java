@@ -28,6 +28,8 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * 样式提取管理器。
  * 职责: 从模板Sheet中提取静态的样式信息，包括单元格样式、行高、列宽和合并区域。
@@ -43,6 +45,16 @@ public class StyleMappingManager {
      * @return 包含所有静态样式信息的 TemplateStyleInfo 对象。
      */
     public TemplateStyleInfo extractTemplateStyles(Sheet templateSheet) {
+        return extractTemplateStyles(templateSheet, new TemplateStyleTable());
+    }
+
+    /**
+     * 从模板Sheet中提取完整的静态样式信息，并把样式登记到工作簿级的样式表中，为每一行生成 {@link RowFormat}。
+     * @param templateSheet 模板Sheet。
+     * @param styleTable 整个模板工作簿共用的样式表。
+     * @return 包含所有静态样式信息的 TemplateStyleInfo 对象。
+     */
+    public TemplateStyleInfo extractTemplateStyles(Sheet templateSheet, TemplateStyleTable styleTable) {
         logger.debug("Extracting styles from sheet: {}", templateSheet.getSheetName());
         TemplateStyleInfo styleInfo = new TemplateStyleInfo();
 
@@ -61,11 +73,15 @@ public class StyleMappingManager {
         // 提取行高和单元格样式
         for (Row row : templateSheet) {
             styleInfo.setRowHeight(row.getRowNum(), row.getHeightInPoints());
+            int[] styleIndexes = new int[Math.max(row.getLastCellNum(), 0)];
+            Arrays.fill(styleIndexes, RowFormat.NO_STYLE);
             for (Cell cell : row) {
                 if (cell.getCellStyle() != null) {
                     styleInfo.setCellStyle(cell.getAddress().formatAsString(), cell.getCellStyle());
+                    styleIndexes[cell.getColumnIndex()] = styleTable.register(cell.getCellStyle());
                 }
             }
+            styleInfo.setRowFormat(row.getRowNum(), new RowFormat(row.getHeightInPoints(), styleIndexes));
         }
 
         // 提取合并区域
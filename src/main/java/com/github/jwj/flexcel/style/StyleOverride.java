@@ -0,0 +1,228 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.style;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code #style} 指令解析出的样式覆盖项，在模板样式的基础上修改部分属性。
+ * <p>
+ * 样式描述由分号分隔的属性组成，属性名不区分大小写，含分号的取值可以用单引号括起：
+ * <pre>
+ *   bold; italic; underline; strikeout; wrap
+ *   color:RED            字体颜色，IndexedColors 名称或 #RRGGBB
+ *   fill:#FFC7CE         纯色填充，IndexedColors 名称或 #RRGGBB
+ *   size:12              字号（磅）
+ *   format:'0.00;[Red]-0.00'
+ *   align:center         水平对齐，HorizontalAlignment 名称
+ *   valign:top           垂直对齐，VerticalAlignment 名称
+ *   border:thin          四边边框，BorderStyle 名称
+ * </pre>
+ * 标志类属性可以写成 {@code bold:false} 来取消模板样式中的设置。
+ * </p>
+ */
+public final class StyleOverride {
+
+    private Boolean bold;
+    private Boolean italic;
+    private Boolean underline;
+    private Boolean strikeout;
+    private Boolean wrap;
+    private Short fontHeightInPoints;
+    private Color fontColor;
+    private Color fill;
+    private String format;
+    private HorizontalAlignment alignment;
+    private VerticalAlignment verticalAlignment;
+    private BorderStyle border;
+
+    private StyleOverride() {}
+
+    /**
+     * 解析样式描述。
+     *
+     * @param spec 样式描述，例如 {@code bold; fill:YELLOW}。
+     * @return 样式覆盖项。
+     * @throws IllegalArgumentException 如果描述中包含未知属性或非法取值。
+     */
+    public static StyleOverride parse(String spec) {
+        StyleOverride override = new StyleOverride();
+        for (String declaration : split(spec)) {
+            int colon = declaration.indexOf(':');
+            String name = (colon < 0 ? declaration : declaration.substring(0, colon)).trim().toLowerCase(Locale.ROOT);
+            String value = colon < 0 ? null : unquote(declaration.substring(colon + 1).trim());
+            try {
+                override.set(name, value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid #style declaration '" + declaration + "' in '" + spec + "'.", e);
+            }
+        }
+        return override;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "bold": bold = flag(value); break;
+            case "italic": italic = flag(value); break;
+            case "underline": underline = flag(value); break;
+            case "strikeout": strikeout = flag(value); break;
+            case "wrap": wrap = flag(value); break;
+            case "size": fontHeightInPoints = Short.valueOf(required(value)); break;
+            case "color": fontColor = Color.parse(required(value)); break;
+            case "fill": fill = Color.parse(required(value)); break;
+            case "format": format = required(value); break;
+            case "align": alignment = HorizontalAlignment.valueOf(enumName(value)); break;
+            case "valign": verticalAlignment = VerticalAlignment.valueOf(enumName(value)); break;
+            case "border": border = BorderStyle.valueOf(enumName(value)); break;
+            default: throw new IllegalArgumentException("Unknown property '" + name + "'.");
+        }
+    }
+
+    private boolean changesFont() {
+        return bold != null || italic != null || underline != null || strikeout != null
+                || fontHeightInPoints != null || fontColor != null;
+    }
+
+    /**
+     * 在输出工作簿中创建一个新样式：复制基础样式后应用覆盖项。
+     *
+     * @param workbook 输出工作簿（XSSF 或 SXSSF）。
+     * @param base     基础样式，为 null 时以默认样式为基础。
+     * @return 新样式。
+     */
+    public CellStyle derive(Workbook workbook, CellStyle base) {
+        CellStyle style = workbook.createCellStyle();
+        if (base != null) {
+            style.cloneStyleFrom(base);
+        }
+        if (changesFont()) {
+            XSSFFont baseFont = (XSSFFont) workbook.getFontAt(style.getFontIndexAsInt());
+            XSSFFont font = (XSSFFont) workbook.createFont();
+            font.getCTFont().set(baseFont.getCTFont());
+            if (bold != null) font.setBold(bold);
+            if (italic != null) font.setItalic(italic);
+            if (underline != null) font.setUnderline(underline ? Font.U_SINGLE : Font.U_NONE);
+            if (strikeout != null) font.setStrikeout(strikeout);
+            if (fontHeightInPoints != null) font.setFontHeightInPoints(fontHeightInPoints);
+            if (fontColor != null) {
+                if (fontColor.rgb != null) font.setColor(new XSSFColor(fontColor.rgb, null));
+                else font.setColor(fontColor.indexed);
+            }
+            style.setFont(font);
+        }
+        if (fill != null) {
+            if (fill.rgb != null) ((XSSFCellStyle) style).setFillForegroundColor(new XSSFColor(fill.rgb, null));
+            else style.setFillForegroundColor(fill.indexed);
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+        if (format != null) style.setDataFormat(workbook.createDataFormat().getFormat(format));
+        if (alignment != null) style.setAlignment(alignment);
+        if (verticalAlignment != null) style.setVerticalAlignment(verticalAlignment);
+        if (wrap != null) style.setWrapText(wrap);
+        if (border != null) {
+            style.setBorderTop(border);
+            style.setBorderBottom(border);
+            style.setBorderLeft(border);
+            style.setBorderRight(border);
+        }
+        return style;
+    }
+
+    private static List<String> split(String spec) {
+        List<String> declarations = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                addDeclaration(declarations, current);
+                current.setLength(0);
+                continue;
+            }
+            current.append(c);
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quote in #style '" + spec + "'.");
+        addDeclaration(declarations, current);
+        return declarations;
+    }
+
+    private static void addDeclaration(List<String> declarations, StringBuilder declaration) {
+        String trimmed = declaration.toString().trim();
+        if (!trimmed.isEmpty()) {
+            declarations.add(trimmed);
+        }
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("'") && value.endsWith("'") ? value.substring(1, value.length() - 1) : value;
+    }
+
+    private static boolean flag(String value) {
+        if (value == null || value.equalsIgnoreCase("true")) return true;
+        if (value.equalsIgnoreCase("false")) return false;
+        throw new IllegalArgumentException("Expected true or false but got '" + value + "'.");
+    }
+
+    private static String required(String value) {
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("A value is required.");
+        return value;
+    }
+
+    private static String enumName(String value) {
+        return required(value).toUpperCase(Locale.ROOT);
+    }
+
+    private static final class Color {
+        final byte[] rgb;
+        final short indexed;
+
+        private Color(byte[] rgb, short indexed) {
+            this.rgb = rgb;
+            this.indexed = indexed;
+        }
+
+        static Color parse(String value) {
+            if (value.startsWith("#")) {
+                if (value.length() != 7) throw new IllegalArgumentException("Expected #RRGGBB but got '" + value + "'.");
+                int rgb = Integer.parseInt(value.substring(1), 16);
+                return new Color(new byte[]{(byte) (rgb >> 16), (byte) (rgb >> 8), (byte) rgb}, (short) 0);
+            }
+            return new Color(null, IndexedColors.valueOf(value.toUpperCase(Locale.ROOT)).getIndex());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.jwj.flexcel.style;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板样式表的快照：把所有模板样式克隆到一个空白工作簿后得到的字体、填充、边框、数字格式和 xf 记录。
+ * <p>
+ * {@code cloneStyleFrom} 每次都要查找或克隆字体、格式，并用序列化后的 XML 比较填充和边框，
+ * 样式多、数据少的报表中这部分开销占比明显。快照在每个已编译模板上只构建一次
+ * （见 {@link TemplateStyleTable#getSnapshot()}），之后每个输出工作簿只需：
+ * <ol>
+ *     <li>{@link #seed(StylesTable)}：一次性追加字体、填充、边框和数字格式的副本；</li>
+ *     <li>{@link #createStyle(StylesTable, int)}：某个模板样式第一次被用到时追加一条 xf 副本。</li>
+ * </ol>
+ * 快照中的下标都相对于空白工作簿的默认样式表，因此只能用于尚未添加过样式的输出工作簿。
+ * 快照本身不可变，可以被并发的渲染共享。
+ */
+public final class StyleSnapshot {
+
+    private final int baseFonts;
+    private final int baseFills;
+    private final int baseBorders;
+    private final int baseStyleXfs;
+    private final Map<Short, String> numberFormats;
+    private final List<CTFont> fonts;
+    private final List<CTFill> fills;
+    private final List<CTBorder> borders;
+    private final List<CTXf> styleXfs;
+    private final CTXf[] cellXfs;
+
+    private StyleSnapshot(StylesTable scratch, int baseFonts, int baseFills, int baseBorders, int baseStyleXfs, CTXf[] cellXfs) {
+        this.baseFonts = baseFonts;
+        this.baseFills = baseFills;
+        this.baseBorders = baseBorders;
+        this.baseStyleXfs = baseStyleXfs;
+        this.numberFormats = new LinkedHashMap<>(scratch.getNumberFormats());
+        this.fonts = new ArrayList<>();
+        for (int i = baseFonts; i < scratch.getFonts().size(); i++) {
+            fonts.add((CTFont) scratch.getFontAt(i).getCTFont().copy());
+        }
+        this.fills = new ArrayList<>();
+        for (int i = baseFills; i < scratch.getFills().size(); i++) {
+            fills.add((CTFill) scratch.getFillAt(i).getCTFill().copy());
+        }
+        this.borders = new ArrayList<>();
+        for (int i = baseBorders; i < scratch.getBorders().size(); i++) {
+            borders.add((CTBorder) scratch.getBorderAt(i).getCTBorder().copy());
+        }
+        this.styleXfs = new ArrayList<>();
+        for (int i = baseStyleXfs; i < scratch._getStyleXfsSize(); i++) {
+            styleXfs.add((CTXf) scratch.getCellStyleXfAt(i).copy());
+        }
+        this.cellXfs = cellXfs;
+    }
+
+    /**
+     * 把模板样式逐个克隆到一个空白工作簿，记录克隆结果。
+     */
+    static StyleSnapshot of(List<CellStyle> templateStyles) {
+        try (XSSFWorkbook scratchWorkbook = new XSSFWorkbook()) {
+            StylesTable scratch = scratchWorkbook.getStylesSource();
+            int baseFonts = scratch.getFonts().size();
+            int baseFills = scratch.getFills().size();
+            int baseBorders = scratch.getBorders().size();
+            int baseStyleXfs = scratch._getStyleXfsSize();
+            CTXf[] cellXfs = new CTXf[templateStyles.size()];
+            for (int i = 0; i < cellXfs.length; i++) {
+                XSSFCellStyle style = scratchWorkbook.createCellStyle();
+                style.cloneStyleFrom(templateStyles.get(i));
+                cellXfs[i] = (CTXf) style.getCoreXf().copy();
+            }
+            return new StyleSnapshot(scratch, baseFonts, baseFills, baseBorders, baseStyleXfs, cellXfs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 向一个新建输出工作簿的样式表追加快照中的字体、填充、边框、数字格式和单元格样式 xf。
+     *
+     * @param target 新建输出工作簿的样式表。
+     * @throws IllegalStateException 如果样式表已经被修改过，快照中的下标将无法对应。
+     */
+    public void seed(StylesTable target) {
+        if (target.getFonts().size() != baseFonts || target.getFills().size() != baseFills
+                || target.getBorders().size() != baseBorders || target._getStyleXfsSize() != baseStyleXfs) {
+            throw new IllegalStateException("Style snapshot can only seed the styles table of a new workbook.");
+        }
+        for (Map.Entry<Short, String> format : numberFormats.entrySet()) {
+            target.putNumberFormat(format.getKey(), format.getValue());
+        }
+        for (CTFont font : fonts) {
+            target.putFont(new XSSFFont((CTFont) font.copy(), target.getFonts().size(), target.getIndexedColors()), true);
+        }
+        // 快照中的填充和边框已经互不相同，put 时的去重不会合并它们，下标保持不变
+        for (CTFill fill : fills) {
+            target.putFill(new XSSFCellFill((CTFill) fill.copy(), target.getIndexedColors()));
+        }
+        for (CTBorder border : borders) {
+            target.putBorder(new XSSFCellBorder((CTBorder) border.copy(), target.getIndexedColors()));
+        }
+        for (CTXf styleXf : styleXfs) {
+            target.putCellStyleXf((CTXf) styleXf.copy());
+        }
+    }
+
+    /**
+     * 在已经 {@link #seed(StylesTable) seed} 过的样式表中追加一个模板样式。
+     *
+     * @param target     样式表。
+     * @param styleIndex 模板样式索引。
+     * @return 新样式在输出工作簿中的下标。
+     */
+    public int createStyle(StylesTable target, int styleIndex) {
+        int index = target.getNumCellStyles();
+        target.putCellXf((CTXf) cellXfs[styleIndex].copy());
+        return index;
+    }
+
+    public int size() {
+        return cellXfs.length;
+    }
+}
@@ -47,6 +47,9 @@ public class TemplateStyleInfo {
     
     // 列宽信息
     private final Map<Integer, Integer> columnWidths = new HashMap<>();
+
+    // 编译期解析好的行格式（行高 + 各列样式索引）
+    private final Map<Integer, RowFormat> rowFormats = new HashMap<>();
     
     /**
      * 设置单元格样式
@@ -125,6 +128,20 @@ public class TemplateStyleInfo {
         return new HashMap<>(rowHeights);
     }
     
+    /**
+     * 设置行格式
+     */
+    public void setRowFormat(int rowIndex, RowFormat rowFormat) {
+        rowFormats.put(rowIndex, rowFormat);
+    }
+
+    /**
+     * 获取行格式，模板中不存在的行返回 {@link RowFormat#EMPTY}
+     */
+    public RowFormat getRowFormat(int rowIndex) {
+        return rowFormats.getOrDefault(rowIndex, RowFormat.EMPTY);
+    }
+
     /**
      * 设置列宽
      */
@@ -155,6 +172,7 @@ public class TemplateStyleInfo {
         mergedRegions.clear();
         rowHeights.clear();
         columnWidths.clear();
+        rowFormats.clear();
     }
     /**
      * 从合并区域列表中移除一个特定的合并区域。
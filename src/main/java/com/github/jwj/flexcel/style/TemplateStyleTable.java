@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright © 2025 jwj
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the “Software”), to deal in the Software without restriction, including
+ *  without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ *  to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN
+ * AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.jwj.flexcel.style;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板样式表。
+ * 为整个模板工作簿中出现的每个唯一 CellStyle 分配一个从 0 开始的连续索引，
+ * 渲染时输出后端按索引把它们克隆到输出工作簿。
+ * <p>
+ * 样式按结构（字体、填充、边框、格式、对齐等，见 {@link StructuralStyleKey}）去重：
+ * 内容相同的不同样式对象共用一个索引。输出后端在某个索引第一次被写出的单元格用到时才创建对应的输出样式，
+ * 只出现在指令行或未执行分支中的样式不会进入输出文件。
+ */
+public class TemplateStyleTable {
+
+    private final Map<CellStyle, Integer> identityIndexes = new IdentityHashMap<>();
+    private final Map<Object, Integer> indexes = new HashMap<>();
+    private final List<CellStyle> styles = new ArrayList<>();
+    private volatile StyleSnapshot snapshot;
+
+    /**
+     * 登记一个模板样式。
+     * @param style 模板样式，为 null 时返回 {@link RowFormat#NO_STYLE}。
+     * @return 样式索引，同一个样式或结构相同的样式多次登记返回同一个索引。
+     */
+    public int register(CellStyle style) {
+        if (style == null) {
+            return RowFormat.NO_STYLE;
+        }
+        Integer index = identityIndexes.get(style);
+        if (index == null) {
+            index = indexes.computeIfAbsent(StructuralStyleKey.of(style), key -> {
+                styles.add(style);
+                return styles.size() - 1;
+            });
+            identityIndexes.put(style, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return 登记过的不同样式对象数量，与 {@link #size()} 的差即结构去重合并掉的样式数。
+     */
+    public int getRegisteredStyleCount() {
+        return identityIndexes.size();
+    }
+
+    /**
+     * 获取所有已登记的模板样式，列表下标即样式索引。
+     * @return 不可修改的样式列表。
+     */
+    public List<CellStyle> getStyles() {
+        return Collections.unmodifiableList(styles);
+    }
+
+    public int size() {
+        return styles.size();
+    }
+
+    /**
+     * 获取样式表的快照，第一次调用时构建，之后的渲染共用同一个快照。
+     * 快照在编译完成后才会被请求，此后样式表不再变化。
+     *
+     * @return 样式快照。
+     */
+    public StyleSnapshot getSnapshot() {
+        StyleSnapshot result = snapshot;
+        if (result == null) {
+            synchronized (this) {
+                result = snapshot;
+                if (result == null) {
+                    result = StyleSnapshot.of(styles);
+                    snapshot = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,674 @@
+package com.github.jwj.flexcel;
+
+import com.github.jwj.flexcel.engine.PoiTemplateEngine;
+import com.github.jwj.flexcel.engine.RenderMode;
+import com.github.jwj.flexcel.engine.SheetOverflowPolicy;
+import com.github.jwj.flexcel.engine.model.AnalyzedTemplate;
+import com.github.jwj.flexcel.output.DelimitedOutputBackend;
+import com.github.jwj.flexcel.output.DirectXlsxOutputBackend;
+import com.github.jwj.flexcel.output.TempStorage;
+import com.github.jwj.flexcel.runtime.dto.MergeableRenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedCell;
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import com.github.jwj.flexcel.runtime.pool.DefaultObjectPool;
+import com.github.jwj.flexcel.runtime.pool.NoOpObjectPool;
+import com.github.jwj.flexcel.runtime.pool.ObjectPool;
+import com.github.jwj.flexcel.runtime.pool.ObjectPoolStatistics;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 引擎性能基准。
+ * <p>
+ * 默认不运行，需通过 {@code mvn test -Dtest=EngineBenchmarkTest -Dflexcel.benchmark=true} 显式开启。
+ * 建议同时把 logback-test.xml 中 {@code com.github.jwj.flexcel} 的日志级别调为 WARN，避免日志输出干扰计时。
+ * 每项基准先预热，再取多次运行的中位数。
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "flexcel.benchmark", matches = "true")
+public class EngineBenchmarkTest {
+
+    private static final Logger benchLogger = LoggerFactory.getLogger(EngineBenchmarkTest.class);
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 7;
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 预热后多次运行任务，返回耗时中位数（微秒）。
+     */
+    static long medianMicros(Task task) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        long[] samples = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            samples[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_RUNS / 2];
+    }
+
+    @Test
+    @DisplayName("内联模式与流水线模式的交叉点")
+    void inlineVersusPipelinedCrossover() throws Exception {
+        byte[] template = TemplateFixtures.listTemplate();
+        PoiTemplateEngine inline = PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build();
+        PoiTemplateEngine pipelined = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build();
+
+        benchLogger.info(String.format("%10s %14s %14s %8s", "rows", "inline(us)", "pipelined(us)", "ratio"));
+        for (int rows : new int[]{10, 100, 500, 1_000, 2_000, 5_000, 20_000, 100_000}) {
+            Map<String, Object> data = TemplateFixtures.data(rows);
+            long inlineMicros = medianMicros(() -> inline.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            long pipelinedMicros = medianMicros(() -> pipelined.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            benchLogger.info(String.format("%10d %14d %14d %8.2f", rows, inlineMicros, pipelinedMicros, (double) pipelinedMicros / inlineMicros));
+        }
+    }
+
+    /**
+     * 旧版基于 {@link LinkedBlockingQueue} 的对象池，仅作为基准对照。
+     */
+    static class LinkedQueueObjectPool implements ObjectPool {
+        private final BlockingQueue<RenderedRow> rowPool;
+        private final BlockingQueue<RenderedCell> cellPool;
+        private final BlockingQueue<MergeableRenderedCell> mergeableCellPool;
+
+        LinkedQueueObjectPool(int rowCapacity, int cellCapacity, int mergeableCellCapacity) {
+            this.rowPool = new LinkedBlockingQueue<>(rowCapacity);
+            this.cellPool = new LinkedBlockingQueue<>(cellCapacity);
+            this.mergeableCellPool = new LinkedBlockingQueue<>(mergeableCellCapacity);
+        }
+
+        @Override public RenderedRow acquireRow() { RenderedRow r = rowPool.poll(); return r != null ? r : new RenderedRow(); }
+        @Override public RenderedCell acquireCell() { RenderedCell c = cellPool.poll(); return c != null ? c : new RenderedCell(); }
+        @Override public MergeableRenderedCell acquireMergeableCell() { MergeableRenderedCell c = mergeableCellPool.poll(); return c != null ? c : new MergeableRenderedCell(); }
+
+        @Override
+        public void returnRow(RenderedRow row) {
+            for (RenderedCell cell : row.cells) {
+                if (cell instanceof MergeableRenderedCell) returnMergeableCell((MergeableRenderedCell) cell);
+                else returnCell(cell);
+            }
+            row.reset();
+            rowPool.offer(row);
+        }
+
+        @Override public void returnCell(RenderedCell cell) { cell.reset(); cellPool.offer(cell); }
+        @Override public void returnMergeableCell(MergeableRenderedCell cell) { cell.reset(); mergeableCellPool.offer(cell); }
+    }
+
+    /**
+     * 模拟引擎的使用方式：生产者线程获取行和单元格，经有界队列交给消费者线程归还。
+     */
+    private static void poolHandOff(ObjectPool pool, int rows, int cellsPerRow) throws Exception {
+        BlockingQueue<RenderedRow> queue = new ArrayBlockingQueue<>(2048);
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < rows; i++) {
+                    pool.returnRow(queue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < rows; i++) {
+            RenderedRow row = pool.acquireRow();
+            row.templateRowNum = 2;
+            for (int c = 0; c < cellsPerRow; c++) {
+                RenderedCell cell = pool.acquireCell();
+                cell.set("A3", c, i, false);
+                row.cells.add(cell);
+            }
+            queue.put(row);
+        }
+        consumer.join();
+    }
+
+    @Test
+    @DisplayName("对象池实现对比：无锁数组池 / LinkedBlockingQueue 池 / 不池化")
+    void objectPoolImplementations() throws Exception {
+        int rows = 500_000;
+        int cellsPerRow = 8;
+        DefaultObjectPool lockFree = new DefaultObjectPool(1024, 8192, 1024);
+        LinkedQueueObjectPool linked = new LinkedQueueObjectPool(1024, 8192, 1024);
+        NoOpObjectPool noOp = new NoOpObjectPool();
+
+        long lockFreeMicros = medianMicros(() -> poolHandOff(lockFree, rows, cellsPerRow));
+        long linkedMicros = medianMicros(() -> poolHandOff(linked, rows, cellsPerRow));
+        long noOpMicros = medianMicros(() -> poolHandOff(noOp, rows, cellsPerRow));
+
+        benchLogger.info(String.format("%-28s %12s %14s", "pool", "time(us)", "cells/s"));
+        long cells = (long) rows * cellsPerRow;
+        benchLogger.info(String.format("%-28s %12d %14.0f", "DefaultObjectPool (MPMC)", lockFreeMicros, cells * 1e6 / lockFreeMicros));
+        benchLogger.info(String.format("%-28s %12d %14.0f", "LinkedBlockingQueue pool", linkedMicros, cells * 1e6 / linkedMicros));
+        benchLogger.info(String.format("%-28s %12d %14.0f", "NoOpObjectPool", noOpMicros, cells * 1e6 / noOpMicros));
+    }
+
+    /**
+     * 数值密集行的交接：消费者读取全部数值，对比逐格 {@link RenderedCell}（装箱）与列式存储。
+     */
+    private static double rowHandOff(ObjectPool pool, int rows, int cellsPerRow, boolean columnar) throws Exception {
+        BlockingQueue<RenderedRow> queue = new ArrayBlockingQueue<>(2048);
+        double[] sum = new double[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < rows; i++) {
+                    RenderedRow row = queue.take();
+                    for (int c = 0, n = row.getColumnarSize(); c < n; c++) {
+                        sum[0] += row.getNumber(c);
+                    }
+                    for (RenderedCell cell : row.cells) {
+                        sum[0] += ((Number) cell.value).doubleValue();
+                    }
+                    pool.returnRow(row);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < rows; i++) {
+            RenderedRow row = pool.acquireRow();
+            row.templateRowNum = 2;
+            for (int c = 0; c < cellsPerRow; c++) {
+                double value = i * 0.5 + c;
+                if (columnar) {
+                    row.addNumeric(c, value);
+                } else {
+                    RenderedCell cell = pool.acquireCell();
+                    cell.set("A3", c, value, false);
+                    row.cells.add(cell);
+                }
+            }
+            queue.put(row);
+        }
+        consumer.join();
+        return sum[0];
+    }
+
+    @Test
+    @DisplayName("数值密集行：逐格对象与列式存储的交接吞吐")
+    void columnarVersusPerCellRows() throws Exception {
+        int rows = 500_000;
+        int cellsPerRow = 8;
+        long cells = (long) rows * cellsPerRow;
+
+        benchLogger.info(String.format("%-28s %12s %14s", "row layout", "time(us)", "cells/s"));
+        for (ObjectPool pool : new ObjectPool[]{new DefaultObjectPool(1024, 8192, 1024), new NoOpObjectPool()}) {
+            String poolName = pool.getClass().getSimpleName();
+            long perCellMicros = medianMicros(() -> rowHandOff(pool, rows, cellsPerRow, false));
+            long columnarMicros = medianMicros(() -> rowHandOff(pool, rows, cellsPerRow, true));
+            benchLogger.info(String.format("%-28s %12d %14.0f", "per-cell / " + poolName, perCellMicros, cells * 1e6 / perCellMicros));
+            benchLogger.info(String.format("%-28s %12d %14.0f", "columnar / " + poolName, columnarMicros, cells * 1e6 / columnarMicros));
+        }
+    }
+
+    @Test
+    @DisplayName("固定容量池与自适应池在重复渲染下的命中率")
+    void adaptivePoolHitRate() throws Exception {
+        byte[] template = TemplateFixtures.listTemplate();
+        Map<String, Object> data = TemplateFixtures.data(100_000);
+        PoiTemplateEngine fixed = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build();
+        PoiTemplateEngine adaptive = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED)
+                .objectPoolCapacities(16_384, 65_536, 16_384).adaptiveObjectPool().build();
+
+        for (PoiTemplateEngine engine : new PoiTemplateEngine[]{fixed, adaptive}) {
+            long micros = medianMicros(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            ObjectPoolStatistics.Counters before = engine.getObjectPoolStatistics().getRows();
+            engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream());
+            ObjectPoolStatistics.Counters after = engine.getObjectPoolStatistics().getRows();
+            benchLogger.info(String.format("%-9s %10dus  last render: row hits=%d misses=%d discards=%d  %s",
+                    engine == fixed ? "fixed" : "adaptive", micros,
+                    after.getHits() - before.getHits(), after.getMisses() - before.getMisses(),
+                    after.getDiscards() - before.getDiscards(), engine.getObjectPoolStatistics().getRows()));
+        }
+    }
+
+    /**
+     * 生成一个较宽的报表模板：{@code headerRows} 行带行高的静态表头，循环体每列使用不同的样式。
+     * 行数和样式数都接近真实报表，用来放大写出端逐行查找样式和行高的开销。
+     */
+    private static byte[] wideTemplate(int columns, int headerRows) throws Exception {
+        try (Workbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            for (int r = 0; r < headerRows; r++) {
+                Row row = sheet.createRow(r);
+                row.setHeightInPoints(16 + r % 4);
+                row.createCell(0).setCellValue("Header " + r);
+            }
+            sheet.createRow(headerRows).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(headerRows + 1);
+            body.setHeightInPoints(18);
+            for (int c = 0; c < columns; c++) {
+                CellStyle style = wb.createCellStyle();
+                style.setDataFormat(wb.createDataFormat().getFormat("#,##0." + String.join("", Collections.nCopies(c % 4 + 1, "0"))));
+                style.setAlignment(c % 2 == 0 ? HorizontalAlignment.RIGHT : HorizontalAlignment.CENTER);
+                Cell cell = body.createCell(c);
+                cell.setCellValue(c % 3 == 1 ? "${item.name}" : "${item.amount}");
+                cell.setCellStyle(style);
+            }
+            sheet.createRow(headerRows + 2).createCell(0).setCellValue("#end");
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    @DisplayName("写出端吞吐：流水线模式下写出端是瓶颈，总耗时主要由写出端决定")
+    void consumerRowThroughput() throws Exception {
+        byte[] template = wideTemplate(12, 40);
+        int rows = 100_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build();
+        long micros = medianMicros(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+        benchLogger.info(String.format("pipelined render of %d rows x 12 styled columns: %dus, %.0f rows/s", rows, micros, rows * 1e6 / micros));
+    }
+
+    @Test
+    @DisplayName("写出后端对比：SXSSF / 直接写出 XLSX / CSV")
+    void outputBackends() throws Exception {
+        byte[] template = wideTemplate(12, 40);
+        int rows = 100_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        PoiTemplateEngine sxssf = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build();
+        PoiTemplateEngine direct = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED)
+                .outputBackend(new DirectXlsxOutputBackend()).build();
+        PoiTemplateEngine csv = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED)
+                .outputBackend(DelimitedOutputBackend.builder().build()).build();
+
+        long sxssfMicros = medianMicros(() -> sxssf.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+        long directMicros = medianMicros(() -> direct.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+        long csvMicros = medianMicros(() -> csv.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+
+        benchLogger.info(String.format("%-12s %12s %12s", "backend", "time(us)", "rows/s"));
+        benchLogger.info(String.format("%-12s %12d %12.0f", "SXSSF", sxssfMicros, rows * 1e6 / sxssfMicros));
+        benchLogger.info(String.format("%-12s %12d %12.0f", "direct", directMicros, rows * 1e6 / directMicros));
+        benchLogger.info(String.format("%-12s %12d %12.0f", "csv", csvMicros, rows * 1e6 / csvMicros));
+    }
+
+    @Test
+    @DisplayName("合并密集的导出：每两行一个纵向合并")
+    void mergeHeavyExport() throws Exception {
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().build();
+        benchLogger.info(String.format("%10s %10s %14s", "rows", "merges", "time(us)"));
+        for (int rows : new int[]{10_000, 50_000, 100_000}) {
+            Map<String, Object> data = Collections.singletonMap("items", IntStream.range(0, rows)
+                    .mapToObj(i -> new TemplateFixtures.Item(i + 1, "Item-" + i, "Group-" + (i / 2), i * 1.25))
+                    .collect(Collectors.toList()));
+            long micros = medianMicros(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            benchLogger.info(String.format("%10d %10d %14d", rows, rows / 2, micros));
+        }
+    }
+
+    @Test
+    @DisplayName("压缩级别与并行压缩：4 个 Sheet 的工作簿")
+    void compressionLevels() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(wideTemplate(12, 40)));
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int i = 2; i <= 4; i++) {
+                wb.cloneSheet(0, "Data" + i);
+            }
+            wb.write(out);
+            template = out.toByteArray();
+        }
+        int rows = 25_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        Map<String, PoiTemplateEngine> engines = new LinkedHashMap<>();
+        engines.put("SXSSF", PoiTemplateEngine.builder().build());
+        engines.put("SXSSF L1/T0", PoiTemplateEngine.builder().compressionLevel(1).tempFileCompressionLevel(0).build());
+        engines.put("direct", PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build());
+        engines.put("direct L1", PoiTemplateEngine.builder()
+                .outputBackend(DirectXlsxOutputBackend.builder().compressionLevel(1).build()).build());
+        engines.put("parallel", PoiTemplateEngine.builder()
+                .outputBackend(DirectXlsxOutputBackend.builder().parallelCompression().build()).build());
+        engines.put("parallel L1", PoiTemplateEngine.builder()
+                .outputBackend(DirectXlsxOutputBackend.builder().compressionLevel(1).parallelCompression().build()).build());
+
+        benchLogger.info(String.format("%-12s %12s %12s", "backend", "time(us)", "size(KB)"));
+        for (Map.Entry<String, PoiTemplateEngine> entry : engines.entrySet()) {
+            PoiTemplateEngine engine = entry.getValue();
+            long micros = medianMicros(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            engine.process(TemplateFixtures.stream(template), data, out);
+            benchLogger.info(String.format("%-12s %12d %12d", entry.getKey(), micros, out.size() / 1024));
+        }
+    }
+
+    @Test
+    @DisplayName("SXSSF 临时存储策略：系统临时目录 / 专用目录 / 堆内存 / 堆外内存")
+    void tempStorageStrategies() throws Exception {
+        byte[] template = wideTemplate(12, 40);
+        int rows = 100_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        Path spillDir = Files.createTempDirectory("flexcel-bench");
+        Map<String, PoiTemplateEngine> engines = new LinkedHashMap<>();
+        engines.put("default", PoiTemplateEngine.builder().build());
+        engines.put("directory", PoiTemplateEngine.builder().tempStorage(TempStorage.directory(spillDir, Long.MAX_VALUE)).build());
+        engines.put("memory", PoiTemplateEngine.builder().tempStorage(TempStorage.memory(1L << 30)).build());
+        engines.put("off-heap", PoiTemplateEngine.builder().tempStorage(TempStorage.offHeap(256L << 20)).build());
+
+        benchLogger.info(String.format("%-12s %12s %12s", "storage", "time(us)", "rows/s"));
+        for (Map.Entry<String, PoiTemplateEngine> entry : engines.entrySet()) {
+            PoiTemplateEngine engine = entry.getValue();
+            long micros = medianMicros(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+            benchLogger.info(String.format("%-12s %12d %12.0f", entry.getKey(), micros, rows * 1e6 / micros));
+        }
+        Files.delete(spillDir);
+    }
+
+    @Test
+    @DisplayName("超过 XLSX 行数上限的导出：溢出到续表，一次流式完成")
+    void rolloverBeyondRowLimit() throws Exception {
+        byte[] template = TemplateFixtures.listTemplate();
+        int rows = 1_200_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED)
+                .outputBackend(new DirectXlsxOutputBackend()).sheetOverflowPolicy(SheetOverflowPolicy.ROLLOVER).build();
+        long start = System.nanoTime();
+        CountingOutputStream out = new CountingOutputStream();
+        engine.process(TemplateFixtures.stream(template), data, out);
+        long micros = (System.nanoTime() - start) / 1000;
+        benchLogger.info(String.format("rollover export of %d rows: %dus, %.0f rows/s, %d KB", rows, micros, rows * 1e6 / micros, out.count / 1024));
+    }
+
+    @Test
+    @DisplayName("样式多、数据少的小报表：重复渲染同一个已编译模板时准备样式的开销")
+    void styleHeavySmallReport() throws Exception {
+        byte[] template = styledFormTemplate(30, 10);
+        Map<String, Object> data = TemplateFixtures.data(20);
+        Map<String, PoiTemplateEngine> engines = new LinkedHashMap<>();
+        engines.put("SXSSF", PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build());
+        engines.put("direct", PoiTemplateEngine.builder().renderMode(RenderMode.INLINE)
+                .outputBackend(new DirectXlsxOutputBackend()).build());
+        benchLogger.info(String.format("%-12s %12s", "backend", "time(us)"));
+        for (Map.Entry<String, PoiTemplateEngine> entry : engines.entrySet()) {
+            PoiTemplateEngine engine = entry.getValue();
+            AnalyzedTemplate analyzed = engine.compile(TemplateFixtures.stream(template));
+            long micros = medianMicros(() -> {
+                for (int i = 0; i < 20; i++) {
+                    engine.process(analyzed, data, new ByteArrayOutputStream());
+                }
+            }) / 20;
+            benchLogger.info(String.format("%-12s %12d", entry.getKey(), micros));
+        }
+    }
+
+    @Test
+    @DisplayName("自动列宽：流式估算与 SXSSF 列跟踪的开销对比")
+    void autoColumnWidth() throws Exception {
+        byte[] template = wideTemplate(12, 0);
+        int rows = 50_000;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        PoiTemplateEngine fixed = PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build();
+        PoiTemplateEngine auto = PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).autoColumnWidth().build();
+        long fixedMicros = medianMicros(() -> fixed.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+        long autoMicros = medianMicros(() -> auto.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream()));
+        // 对照：直接使用 SXSSF 写出同样的单元格，再用 trackAllColumnsForAutoSizing + autoSizeColumn 调整列宽
+        long trackedMicros = medianMicros(() -> {
+            try (SXSSFWorkbook wb = new SXSSFWorkbook(1000)) {
+                SXSSFSheet sheet = wb.createSheet("Data");
+                sheet.trackAllColumnsForAutoSizing();
+                for (TemplateFixtures.Item item : TemplateFixtures.items(rows)) {
+                    Row row = sheet.createRow(item.getId() - 1);
+                    for (int c = 0; c < 12; c++) {
+                        if (c % 3 == 1) row.createCell(c).setCellValue(item.getName());
+                        else row.createCell(c).setCellValue(item.getAmount());
+                    }
+                }
+                for (int c = 0; c < 12; c++) {
+                    sheet.autoSizeColumn(c);
+                }
+                wb.write(new ByteArrayOutputStream());
+                wb.dispose();
+            }
+        });
+        benchLogger.info(String.format("%-24s %12s", "mode", "time(us)"));
+        benchLogger.info(String.format("%-24s %12d", "template widths", fixedMicros));
+        benchLogger.info(String.format("%-24s %12d", "autoColumnWidth", autoMicros));
+        benchLogger.info(String.format("%-24s %12d", "SXSSF tracked autosize", trackedMicros));
+    }
+
+    @Test
+    @DisplayName("公式密集的导出：每行 6 个按当前行号引用的公式，与只有值的导出对比")
+    void formulaHeavyExport() throws Exception {
+        byte[] values = formulaTemplate(false);
+        byte[] formulas = formulaTemplate(true);
+        Map<String, PoiTemplateEngine> engines = new LinkedHashMap<>();
+        engines.put("SXSSF", PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build());
+        engines.put("XSSF", PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).disableStreaming().build());
+        engines.put("direct", PoiTemplateEngine.builder().renderMode(RenderMode.INLINE)
+                .outputBackend(new DirectXlsxOutputBackend()).build());
+        benchLogger.info(String.format("%-10s %8s %14s %14s", "backend", "rows", "values(us)", "formulas(us)"));
+        for (Map.Entry<String, PoiTemplateEngine> entry : engines.entrySet()) {
+            PoiTemplateEngine engine = entry.getValue();
+            int rows = "XSSF".equals(entry.getKey()) ? 10_000 : 50_000;
+            Map<String, Object> data = TemplateFixtures.data(rows);
+            AnalyzedTemplate valueTemplate = engine.compile(TemplateFixtures.stream(values));
+            AnalyzedTemplate formulaTemplate = engine.compile(TemplateFixtures.stream(formulas));
+            long valueMicros = medianMicros(() -> engine.process(valueTemplate, data, new ByteArrayOutputStream()));
+            long formulaMicros = medianMicros(() -> engine.process(formulaTemplate, data, new ByteArrayOutputStream()));
+            benchLogger.info(String.format("%-10s %8d %14d %14d", entry.getKey(), rows, valueMicros, formulaMicros));
+        }
+    }
+
+    /**
+     * 生成一个 12 列的列表模板：前 6 列是值，后 6 列是引用当前行的 {@code #formula}（或者同样数量的值）。
+     */
+    private static byte[] formulaTemplate(boolean formulas) throws Exception {
+        try (Workbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(1);
+            String[] valueCells = {"${item.id}", "${item.name}", "${item.amount}", "${item.amount * 2}", "${item.category}", "${item.amount / 3}"};
+            String[] formulaCells = {"#formula C${currentRowNo}*D${currentRowNo}", "#formula A${currentRowNo}+1",
+                    "#formula SUM(C${currentRowNo}:D${currentRowNo})", "#formula ROUND(F${currentRowNo},2)",
+                    "#formula IF(C${currentRowNo}>100,\"high\",\"low\")", "#formula C${currentRowNo}-F${currentRowNo}"};
+            for (int c = 0; c < 12; c++) {
+                body.createCell(c).setCellValue(c < 6 ? valueCells[c] : formulas ? formulaCells[c - 6] : valueCells[c - 6]);
+            }
+            sheet.createRow(2).createCell(0).setCellValue("#end");
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 生成一个表单式模板：{@code rows} x {@code columns} 个静态单元格，每个单元格使用不同的字体、填充、边框和格式组合，
+     * 后接一个小循环。用来放大每次渲染准备样式的开销。
+     */
+    private static byte[] styledFormTemplate(int rows, int columns) throws Exception {
+        try (Workbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            IndexedColors[] colors = {IndexedColors.LIGHT_YELLOW, IndexedColors.LIGHT_GREEN, IndexedColors.LIGHT_BLUE,
+                    IndexedColors.TAN, IndexedColors.LAVENDER, IndexedColors.GREY_25_PERCENT};
+            BorderStyle[] borders = {BorderStyle.NONE, BorderStyle.THIN, BorderStyle.MEDIUM, BorderStyle.DASHED};
+            for (int r = 0; r < rows; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < columns; c++) {
+                    int n = r * columns + c;
+                    Font font = wb.createFont();
+                    font.setBold(n % 2 == 0);
+                    font.setItalic(n % 3 == 0);
+                    font.setFontHeightInPoints((short) (9 + n % 5));
+                    CellStyle style = wb.createCellStyle();
+                    style.setFont(font);
+                    style.setFillForegroundColor(colors[n % colors.length].getIndex());
+                    style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                    style.setBorderBottom(borders[n % borders.length]);
+                    style.setDataFormat(wb.createDataFormat().getFormat("#,##0." + String.join("", Collections.nCopies(n % 4 + 1, "0"))));
+                    style.setAlignment(HorizontalAlignment.values()[n % 4]);
+                    Cell cell = row.createCell(c);
+                    cell.setCellValue("Label " + n);
+                    cell.setCellStyle(style);
+                }
+            }
+            sheet.createRow(rows).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(rows + 1);
+            body.createCell(0).setCellValue("${item.id}");
+            body.createCell(1).setCellValue("${item.name}");
+            body.createCell(2).setCellValue("${item.amount}");
+            sheet.createRow(rows + 2).createCell(0).setCellValue("#end");
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    @DisplayName("共享引擎的并发渲染：1 / 4 / 16 / 64 个并发渲染的吞吐量，并校验每次输出一致")
+    void concurrentRenders() throws Exception {
+        int rows = 2_000;
+        int rendersPerLevel = 64;
+        Map<String, Object> data = TemplateFixtures.data(rows);
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().build();
+        AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate("${!item.category}")));
+        ByteArrayOutputStream reference = new ByteArrayOutputStream();
+        engine.process(template, data, reference);
+        String expected = TemplateFixtures.readZipEntry(reference.toByteArray(), "xl/worksheets/sheet1.xml");
+
+        benchLogger.info(String.format("%d available processors", Runtime.getRuntime().availableProcessors()));
+        benchLogger.info(String.format("%-12s %12s %12s %12s", "concurrency", "time(us)", "renders/s", "rows/s"));
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                long micros = medianMicros(() -> {
+                    List<Future<String>> renders = new ArrayList<>();
+                    for (int i = 0; i < rendersPerLevel; i++) {
+                        renders.add(executor.submit(() -> {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            engine.process(template, data, out);
+                            return TemplateFixtures.readZipEntry(out.toByteArray(), "xl/worksheets/sheet1.xml");
+                        }));
+                    }
+                    for (Future<String> render : renders) {
+                        if (!render.get().equals(expected)) {
+                            throw new AssertionError("Concurrent render produced a different sheet at concurrency " + threads);
+                        }
+                    }
+                });
+                benchLogger.info(String.format("%-12d %12d %12.1f %12.0f", threads, micros,
+                        rendersPerLevel * 1e6 / micros, (double) rendersPerLevel * rows * 1e6 / micros));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("邮件合并：逐个调用 process 与批量渲染生成大量对账单文件的吞吐量")
+    void mailMergeStatements() throws Exception {
+        int statements = 200;
+        byte[] template = styledFormTemplate(10, 6);
+        List<Map<String, Object>> models = IntStream.range(0, statements)
+                .mapToObj(i -> TemplateFixtures.data(20))
+                .collect(Collectors.toList());
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().build();
+        AnalyzedTemplate analyzed = engine.compile(TemplateFixtures.stream(template));
+        Path dir = Files.createTempDirectory("flexcel-merge");
+        try {
+            Map<String, Task> variants = new LinkedHashMap<>();
+            variants.put("process(stream)", () -> {
+                for (int i = 0; i < statements; i++) {
+                    try (OutputStream out = Files.newOutputStream(dir.resolve(i + ".xlsx"))) {
+                        engine.process(TemplateFixtures.stream(template), models.get(i), out);
+                    }
+                }
+            });
+            variants.put("process(compiled)", () -> {
+                for (int i = 0; i < statements; i++) {
+                    try (OutputStream out = Files.newOutputStream(dir.resolve(i + ".xlsx"))) {
+                        engine.process(analyzed, models.get(i), out);
+                    }
+                }
+            });
+            for (int threads : new int[]{1, 4}) {
+                variants.put("mailMerge x" + threads, () -> engine.sharded(analyzed).parallelism(threads).build()
+                        .mailMerge(models, (i, model) -> Files.newOutputStream(dir.resolve(i + ".xlsx"))));
+            }
+            // 小文件的渲染时间主要花在 SXSSF 写出工作簿上（临时 zip 的写出与重新读取），直接写出后端没有这部分开销
+            PoiTemplateEngine direct = PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build();
+            AnalyzedTemplate directTemplate = direct.compile(TemplateFixtures.stream(template));
+            variants.put("direct process", () -> {
+                for (int i = 0; i < statements; i++) {
+                    try (OutputStream out = Files.newOutputStream(dir.resolve(i + ".xlsx"))) {
+                        direct.process(directTemplate, models.get(i), out);
+                    }
+                }
+            });
+            variants.put("direct mailMerge x1", () -> direct.sharded(directTemplate).parallelism(1).build()
+                    .mailMerge(models, (i, model) -> Files.newOutputStream(dir.resolve(i + ".xlsx"))));
+            benchLogger.info(String.format("%d available processors, %d statements per run", Runtime.getRuntime().availableProcessors(), statements));
+            benchLogger.info(String.format("%-20s %12s %14s", "variant", "time(us)", "statements/s"));
+            for (Map.Entry<String, Task> variant : variants.entrySet()) {
+                long micros = medianMicros(variant.getValue());
+                benchLogger.info(String.format("%-20s %12d %14.1f", variant.getKey(), micros, statements * 1e6 / micros));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * 只计数不保存的输出流，避免大文件占用堆内存。
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
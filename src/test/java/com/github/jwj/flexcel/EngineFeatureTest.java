@@ -0,0 +1,1186 @@
+package com.github.jwj.flexcel;
+
+import com.github.jwj.flexcel.engine.ExcelTemplateEngine;
+import com.github.jwj.flexcel.engine.PoiTemplateEngine;
+import com.github.jwj.flexcel.engine.RenderCancelledException;
+import com.github.jwj.flexcel.engine.RenderHandle;
+import com.github.jwj.flexcel.engine.RenderMode;
+import com.github.jwj.flexcel.engine.Shard;
+import com.github.jwj.flexcel.engine.ShardManifest;
+import com.github.jwj.flexcel.engine.ShardedExport;
+import com.github.jwj.flexcel.engine.SheetOverflowPolicy;
+import com.github.jwj.flexcel.engine.model.AnalyzedTemplate;
+import com.github.jwj.flexcel.parser.ast.template.CellTemplate;
+import com.github.jwj.flexcel.parser.ast.template.DefaultCellTemplate;
+import com.github.jwj.flexcel.plugin.cell.CellParseContext;
+import com.github.jwj.flexcel.plugin.cell.CellSyntaxHandler;
+import com.github.jwj.flexcel.output.DelimitedOutputBackend;
+import com.github.jwj.flexcel.output.DirectXlsxOutputBackend;
+import com.github.jwj.flexcel.output.OutputBackend;
+import com.github.jwj.flexcel.output.PoiOutputBackend;
+import com.github.jwj.flexcel.output.SheetOutput;
+import com.github.jwj.flexcel.output.TempStorage;
+import com.github.jwj.flexcel.output.WorkbookOutput;
+import com.github.jwj.flexcel.style.StyleOverride;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * 引擎各项运行时特性的功能测试。
+ * 使用 {@link TemplateFixtures} 在内存中生成模板，数据量较小，可以快速运行。
+ */
+public class EngineFeatureTest {
+
+    private static byte[] render(PoiTemplateEngine engine, byte[] template, Map<String, Object> data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.process(TemplateFixtures.stream(template), data, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("内联模式与流水线模式的输出一致")
+    void inlineAndPipelinedProduceSameCells() {
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        Map<String, Object> data = TemplateFixtures.data(300);
+
+        byte[] inline = render(PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build(), template, data);
+        byte[] pipelined = render(PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build(), template, data);
+        byte[] auto = render(PoiTemplateEngine.builder().inlineRowThreshold(10).build(), template, data);
+
+        List<List<String>> expected = TemplateFixtures.readCells(pipelined);
+        assertThat(expected).hasSize(302);
+        assertThat(expected.get(301)).contains("=SUM(D2:D301)");
+        assertThat(TemplateFixtures.readCells(inline)).isEqualTo(expected);
+        assertThat(TemplateFixtures.readCells(auto)).isEqualTo(expected);
+    }
+
+    public static final class CountingSource {
+        final AtomicInteger calls = new AtomicInteger();
+
+        public List<Integer> fetch() {
+            calls.incrementAndGet();
+            return Arrays.asList(1, 2, 3);
+        }
+    }
+
+    @Test
+    @DisplayName("自动模式预估行数时不执行循环的集合表达式，方法调用只在渲染时发生一次")
+    void autoModeDoesNotEvaluateCollectionExpressionsTwice() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("#foreach n in ${source.fetch()}");
+            sheet.createRow(1).createCell(0).setCellValue("${n}");
+            sheet.createRow(2).createCell(0).setCellValue("#end");
+            sheet.createRow(3).createCell(0).setCellValue("#if 1 > 2");
+            sheet.createRow(4).createCell(0).setCellValue("#foreach n in ${source.fetch()}");
+            sheet.createRow(5).createCell(0).setCellValue("${n}");
+            sheet.createRow(6).createCell(0).setCellValue("#end");
+            sheet.createRow(7).createCell(0).setCellValue("#end");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+        CountingSource source = new CountingSource();
+        Map<String, Object> data = new HashMap<>();
+        data.put("source", source);
+
+        byte[] output = render(PoiTemplateEngine.builder().build(), template, data);
+
+        assertThat(source.calls.get()).isEqualTo(1);
+        assertThat(TemplateFixtures.readCells(output)).hasSize(3);
+    }
+
+    private static int sxssfTempFileCount() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"), "poifiles").listFiles((dir, name) -> name.startsWith("poi-sxssf-sheet"));
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    @DisplayName("超过截止时间的渲染会被中止，并清理 SXSSF 临时文件")
+    void deadlineAbortsRenderAndDisposesTempFiles() {
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).sxssfWindowSize(100).build();
+        Map<String, Object> data = TemplateFixtures.data(1_000_000);
+        int tempFilesBefore = sxssfTempFileCount();
+        RenderHandle handle = RenderHandle.withTimeout(500, TimeUnit.MILLISECONDS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> engine.process(TemplateFixtures.stream(TemplateFixtures.listTemplate()), data, out, handle))
+                .isInstanceOfSatisfying(RenderCancelledException.class, e -> {
+                    assertThat(e.isDeadlineExceeded()).isTrue();
+                    assertThat(e.getSheetName()).isEqualTo("Data");
+                    assertThat(e.getRowsWritten()).isLessThan(1_000_000);
+                });
+        assertThat(handle.isDeadlineExceeded()).isTrue();
+        assertThat(out.size()).isZero();
+        assertThat(sxssfTempFileCount()).isEqualTo(tempFilesBefore);
+    }
+
+    @Test
+    @DisplayName("从其他线程调用 cancel() 会停止内联和流水线渲染")
+    void cancelFromAnotherThreadStopsRender() throws Exception {
+        Map<String, Object> data = TemplateFixtures.data(1_000_000);
+        for (RenderMode mode : new RenderMode[]{RenderMode.INLINE, RenderMode.PIPELINED}) {
+            PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(mode).build();
+            RenderHandle handle = RenderHandle.create();
+            Thread canceller = new Thread(() -> {
+                while (handle.getRowsWritten() < 1_000) {
+                    Thread.yield();
+                }
+                handle.cancel();
+            });
+            canceller.start();
+
+            assertThatThrownBy(() -> engine.process(TemplateFixtures.stream(TemplateFixtures.listTemplate()), data,
+                    new ByteArrayOutputStream(), handle))
+                    .isInstanceOfSatisfying(RenderCancelledException.class, e -> assertThat(e.isDeadlineExceeded()).isFalse());
+            canceller.join();
+            assertThat(handle.getRowsWritten()).isBetween(1_000L, 999_999L);
+        }
+    }
+
+    /**
+     * 包装 SXSSF 后端：统计未释放的临时缓冲区；{@link #stallNextConsumerRow} 置位后，消费者写完下一行时
+     * 模拟一次不响应中断的阻塞，并记录阻塞结束时工作簿是否已经被关闭。
+     */
+    private static final class StallingBackend implements OutputBackend {
+        final AtomicInteger outstandingBuffers = new AtomicInteger();
+        final AtomicBoolean stallNextConsumerRow = new AtomicBoolean();
+        final CountDownLatch consumerStalled = new CountDownLatch(1);
+        final AtomicBoolean usedAfterClose = new AtomicBoolean();
+        private final OutputBackend delegate;
+
+        StallingBackend(TempStorage storage) {
+            TempStorage tracking = () -> {
+                TempStorage.Buffer buffer = storage.allocate();
+                outstandingBuffers.incrementAndGet();
+                AtomicBoolean released = new AtomicBoolean();
+                return new TempStorage.Buffer() {
+                    @Override
+                    public OutputStream openOutputStream() throws IOException {
+                        return buffer.openOutputStream();
+                    }
+
+                    @Override
+                    public InputStream openInputStream() throws IOException {
+                        return buffer.openInputStream();
+                    }
+
+                    @Override
+                    public boolean release() {
+                        if (released.compareAndSet(false, true)) {
+                            outstandingBuffers.decrementAndGet();
+                        }
+                        return buffer.release();
+                    }
+                };
+            };
+            this.delegate = PoiOutputBackend.builder().windowSize(100).tempStorage(tracking).build();
+        }
+
+        @Override
+        public WorkbookOutput open(TemplateStyleTable styleTable, OutputStream outputStream) throws IOException {
+            WorkbookOutput workbook = delegate.open(styleTable, outputStream);
+            AtomicBoolean closed = new AtomicBoolean();
+            return new WorkbookOutput() {
+                @Override
+                public SheetOutput createSheet(String sheetName) throws IOException {
+                    SheetOutput sheet = workbook.createSheet(sheetName);
+                    return (SheetOutput) Proxy.newProxyInstance(SheetOutput.class.getClassLoader(), new Class<?>[]{SheetOutput.class},
+                            (proxy, method, args) -> {
+                                Object result;
+                                try {
+                                    result = method.invoke(sheet, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                                if (method.getName().equals("endRow")
+                                        && Thread.currentThread().getName().startsWith("fastexcel-consumer")
+                                        && stallNextConsumerRow.compareAndSet(true, false)) {
+                                    consumerStalled.countDown();
+                                    long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                                    while (System.nanoTime() < until) {
+                                        Thread.yield();
+                                    }
+                                    if (closed.get()) {
+                                        usedAfterClose.set(true);
+                                    }
+                                }
+                                return result;
+                            });
+                }
+
+                @Override
+                public int deriveStyle(int baseStyleIndex, StyleOverride override) {
+                    return workbook.deriveStyle(baseStyleIndex, override);
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    workbook.finish();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    workbook.close();
+                }
+            };
+        }
+    }
+
+    @Test
+    @DisplayName("流水线渲染被取消或生产者失败时，等消费者退出后才关闭输出、释放临时存储和内存预算")
+    void abortedPipelinedRenderWaitsForConsumer() throws Exception {
+        StallingBackend backend = new StallingBackend(TempStorage.memory(256L << 20));
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).outputBackend(backend)
+                .memoryBudget(256 * 1024, 1024 * 1024).build();
+        AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate("${!item.category}")));
+        Map<String, Object> data = TemplateFixtures.data(500_000);
+
+        for (int i = 0; i < 5; i++) {
+            long cancelAfter = 2_000 + i * 1_500;
+            RenderHandle handle = RenderHandle.create();
+            Thread canceller = new Thread(() -> {
+                while (handle.getRowsWritten() < cancelAfter) {
+                    Thread.yield();
+                }
+                handle.cancel();
+            });
+            canceller.start();
+
+            assertThatThrownBy(() -> engine.process(template, data, new ByteArrayOutputStream(), handle))
+                    .isInstanceOf(RenderCancelledException.class);
+            canceller.join();
+            assertThat(backend.outstandingBuffers.get()).isZero();
+            assertThat(engine.getMemoryBytesInUse()).isZero();
+        }
+
+        // 生产者失败时渲染句柄没有被取消，消费者只会被中断，可能仍在写入
+        List<TemplateFixtures.Item> items = TemplateFixtures.items(5_000);
+        Iterable<TemplateFixtures.Item> failing = () -> new Iterator<TemplateFixtures.Item>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public TemplateFixtures.Item next() {
+                if (next == items.size()) {
+                    backend.stallNextConsumerRow.set(true);
+                    try {
+                        backend.consumerStalled.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("data source failed");
+                }
+                return items.get(next++);
+            }
+        };
+        Map<String, Object> failingData = new HashMap<>();
+        failingData.put("items", failing);
+        assertThatThrownBy(() -> engine.process(template, failingData, new ByteArrayOutputStream()))
+                .hasStackTraceContaining("data source failed");
+        assertThat(backend.consumerStalled.getCount()).isZero();
+        assertThat(backend.outstandingBuffers.get()).isZero();
+        assertThat(engine.getMemoryBytesInUse()).isZero();
+        Thread.sleep(400);
+        assertThat(backend.usedAfterClose).isFalse();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.process(template, TemplateFixtures.data(3_000), out);
+        assertThat(TemplateFixtures.readCells(out.toByteArray())).hasSize(3_002);
+        assertThat(backend.outstandingBuffers.get()).isZero();
+        assertThat(engine.getMemoryBytesInUse()).isZero();
+    }
+
+    @Test
+    @DisplayName("极小的内存预算只会限速，不影响输出")
+    void tightMemoryBudgetThrottlesWithoutChangingOutput() {
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        Map<String, Object> data = TemplateFixtures.data(20_000);
+
+        byte[] unbounded = render(PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build(), template, data);
+        PoiTemplateEngine budgetedEngine = PoiTemplateEngine.builder()
+                .renderMode(RenderMode.PIPELINED)
+                .memoryBudget(32 * 1024, 48 * 1024)
+                .build();
+        byte[] budgeted = render(budgetedEngine, template, data);
+
+        assertThat(TemplateFixtures.readCells(budgeted)).isEqualTo(TemplateFixtures.readCells(unbounded));
+        assertThat(budgetedEngine.getMemoryBytesInUse()).isZero();
+    }
+
+    @Test
+    @DisplayName("有界内存预算下消费者写出失败时，没有截止时间的渲染也会失败返回而不是永久等待预算")
+    void boundedBudgetFailsWhenConsumerDies() {
+        // 消费者写出若干行后失败（例如磁盘写满），留下永远不会被排空的在途行
+        OutputBackend delegate = PoiOutputBackend.builder().build();
+        AtomicInteger rowsEnded = new AtomicInteger();
+        OutputBackend failing = (styleTable, outputStream) -> {
+            WorkbookOutput workbook = delegate.open(styleTable, outputStream);
+            return new WorkbookOutput() {
+                @Override
+                public SheetOutput createSheet(String sheetName) throws IOException {
+                    SheetOutput sheet = workbook.createSheet(sheetName);
+                    return (SheetOutput) Proxy.newProxyInstance(SheetOutput.class.getClassLoader(), new Class<?>[]{SheetOutput.class},
+                            (proxy, method, args) -> {
+                                if (method.getName().equals("endRow") && rowsEnded.incrementAndGet() > 100) {
+                                    throw new IOException("No space left on device");
+                                }
+                                try {
+                                    return method.invoke(sheet, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    workbook.finish();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    workbook.close();
+                }
+            };
+        };
+        PoiTemplateEngine engine = PoiTemplateEngine.builder()
+                .renderMode(RenderMode.PIPELINED)
+                .outputBackend(failing)
+                .memoryBudget(32 * 1024, 48 * 1024)
+                .build();
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        Map<String, Object> data = TemplateFixtures.data(200_000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () ->
+                assertThatThrownBy(() -> engine.process(TemplateFixtures.stream(template), data, new ByteArrayOutputStream(), RenderHandle.create()))
+                        .isInstanceOf(RuntimeException.class)
+                        .hasStackTraceContaining("No space left on device"));
+        assertThat(engine.getMemoryBytesInUse()).isZero();
+    }
+
+    @Test
+    @DisplayName("列式行存储保留数值、字符串、布尔值的单元格类型和样式")
+    void columnarRowsKeepCellTypesAndStyles() throws IOException {
+        byte[] template = TemplateFixtures.listTemplate("${item.id > 1}");
+        byte[] output = render(PoiTemplateEngine.builder().build(), template, TemplateFixtures.data(2));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+            Sheet sheet = workbook.getSheet("Data");
+            Row first = sheet.getRow(1);
+            assertThat(first.getCell(0).getCellType()).isEqualTo(CellType.NUMERIC);
+            assertThat(first.getCell(0).getNumericCellValue()).isEqualTo(1.0);
+            assertThat(first.getCell(1).getCellType()).isEqualTo(CellType.STRING);
+            assertThat(first.getCell(2).getCellType()).isEqualTo(CellType.BOOLEAN);
+            assertThat(first.getCell(2).getBooleanCellValue()).isFalse();
+            assertThat(sheet.getRow(2).getCell(2).getBooleanCellValue()).isTrue();
+            assertThat(first.getCell(3).getCellStyle().getDataFormatString()).isEqualTo("#,##0.00");
+            assertThat(sheet.getRow(0).getCell(0).getCellStyle().getFillForegroundColor())
+                    .isEqualTo(IndexedColors.GREY_25_PERCENT.getIndex());
+            assertThat(sheet.getRow(3).getCell(3).getCellFormula()).isEqualTo("SUM(D2:D3)");
+            assertThat(sheet.getRow(3).getCell(3).getCellStyle().getDataFormatString()).isEqualTo("#,##0.00");
+            assertThat(sheet.getRow(0).getHeightInPoints()).isEqualTo(24f);
+        }
+    }
+
+    @Test
+    @DisplayName("直接写出 XLSX 的后端与 POI 后端输出一致：单元格、公式、合并、列宽、行高和样式")
+    void directXlsxBackendMatchesPoiBackend() throws IOException {
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        Map<String, Object> data = TemplateFixtures.data(300);
+
+        byte[] poi = render(PoiTemplateEngine.builder().build(), template, data);
+        byte[] direct = render(PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build(), template, data);
+
+        assertThat(TemplateFixtures.readCells(direct)).isEqualTo(TemplateFixtures.readCells(poi));
+        try (XSSFWorkbook expected = new XSSFWorkbook(TemplateFixtures.stream(poi));
+             XSSFWorkbook actual = new XSSFWorkbook(TemplateFixtures.stream(direct))) {
+            XSSFSheet expectedSheet = expected.getSheet("Data");
+            XSSFSheet actualSheet = actual.getSheet("Data");
+            assertThat(actualSheet.getMergedRegions()).isNotEmpty().containsExactlyInAnyOrderElementsOf(expectedSheet.getMergedRegions());
+            assertThat(actualSheet.getColumnWidth(3)).isEqualTo(expectedSheet.getColumnWidth(3));
+            assertThat(actualSheet.getRow(0).getHeightInPoints()).isEqualTo(24f);
+            assertThat(actualSheet.getRow(0).getCell(0).getCellStyle().getFont().getBold()).isTrue();
+            assertThat(actualSheet.getRow(1).getCell(3).getCellStyle().getDataFormatString()).isEqualTo("#,##0.00");
+            assertThat(actualSheet.getRow(1).getCell(0).getCellType()).isEqualTo(CellType.NUMERIC);
+        }
+        // XLSX 要求行内单元格按列排列：可合并的 Category 列走旁路通道，但仍须写在 Amount 列之前
+        String sheetXml = TemplateFixtures.readZipEntry(direct, "xl/worksheets/sheet1.xml");
+        assertThat(sheetXml.indexOf("r=\"C2\"")).isPositive().isLessThan(sheetXml.indexOf("r=\"D2\""));
+    }
+
+    @Test
+    @DisplayName("CSV 后端使用同一份模板只输出数据：合并列只保留首个值，公式默认输出为空")
+    void delimitedBackendWritesDataOnly() {
+        byte[] template = TemplateFixtures.listTemplate("${!item.category}");
+        PoiTemplateEngine engine = PoiTemplateEngine.builder()
+                .outputBackend(DelimitedOutputBackend.builder().lineSeparator("\n").build())
+                .build();
+
+        String[] lines = new String(render(engine, template, TemplateFixtures.data(20)), StandardCharsets.UTF_8).split("\n");
+
+        assertThat(lines).hasSize(22);
+        assertThat(lines[0]).isEqualTo("ID,Name,Category,Amount");
+        assertThat(lines[1]).isEqualTo("1,Item-0,Hardware,0");
+        assertThat(lines[2]).isEqualTo("2,Item-1,,1.25");
+        assertThat(lines[21]).isEqualTo("Total,,,");
+    }
+
+    @Test
+    @DisplayName("有界共享字符串表：重复的类别进入 sharedStrings.xml，唯一的名称仍然内联")
+    void directXlsxBackendSharesRepeatedStrings() throws IOException {
+        byte[] template = TemplateFixtures.listTemplate();
+        Map<String, Object> data = TemplateFixtures.data(300);
+
+        byte[] poi = render(PoiTemplateEngine.builder().sharedStrings().build(), template, data);
+        byte[] direct = render(PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend(16)).build(), template, data);
+
+        assertThat(TemplateFixtures.readCells(direct)).isEqualTo(TemplateFixtures.readCells(poi));
+        String sharedStrings = TemplateFixtures.readZipEntry(direct, "xl/sharedStrings.xml");
+        assertThat(sharedStrings).contains("<t>Hardware</t>", "<t>Support</t>").doesNotContain("Item-");
+        assertThat(TemplateFixtures.readZipEntry(direct, "xl/worksheets/sheet1.xml")).contains("<is><t>Item-299</t></is>");
+    }
+
+    @Test
+    @DisplayName("压缩级别与并行压缩不改变输出内容")
+    void compressionOptionsKeepContent() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(TemplateFixtures.listTemplate()));
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            wb.cloneSheet(0, "Data2");
+            wb.cloneSheet(0, "Data3");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+        Map<String, Object> data = TemplateFixtures.data(2000);
+
+        byte[] poi = render(PoiTemplateEngine.builder().build(), template, data);
+        byte[] poiFast = render(PoiTemplateEngine.builder().sxssfWindowSize(100)
+                .compressionLevel(1).tempFileCompressionLevel(0).build(), template, data);
+        byte[] direct = render(PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build(), template, data);
+        byte[] stored = render(PoiTemplateEngine.builder().outputBackend(
+                DirectXlsxOutputBackend.builder().compressionLevel(0).build()).build(), template, data);
+        byte[] parallel = render(PoiTemplateEngine.builder().outputBackend(
+                DirectXlsxOutputBackend.builder().sharedStrings(16).parallelCompression().build()).build(), template, data);
+
+        List<List<String>> expected = TemplateFixtures.readCells(poi);
+        assertThat(expected).hasSize(3 * 2002);
+        assertThat(TemplateFixtures.readCells(poiFast)).isEqualTo(expected);
+        assertThat(TemplateFixtures.readCells(stored)).isEqualTo(expected);
+        assertThat(TemplateFixtures.readCells(parallel)).isEqualTo(expected);
+        assertThat(stored.length).isGreaterThan(direct.length * 3);
+        assertThat(TemplateFixtures.readZipEntry(parallel, "xl/worksheets/sheet3.xml")).endsWith("</worksheet>");
+        assertThatThrownBy(() -> DirectXlsxOutputBackend.builder().compressionLevel(10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("临时存储策略不改变输出，渲染结束或失败后释放缓冲区")
+    void tempStorageStrategiesReleaseBuffers(@TempDir Path tempDir) throws IOException {
+        byte[] template = TemplateFixtures.listTemplate();
+        Map<String, Object> data = TemplateFixtures.data(3000);
+        Path spillDir = tempDir.resolve("spill");
+        List<List<String>> expected = TemplateFixtures.readCells(render(PoiTemplateEngine.builder().build(), template, data));
+
+        TempStorage[] storages = {
+                TempStorage.directory(spillDir, Long.MAX_VALUE),
+                TempStorage.memory(64L << 20),
+                TempStorage.offHeap(64L << 20)
+        };
+        for (TempStorage storage : storages) {
+            for (int level : new int[]{Deflater.DEFAULT_COMPRESSION, 0}) {
+                PoiTemplateEngine engine = PoiTemplateEngine.builder().sxssfWindowSize(100)
+                        .tempFileCompressionLevel(level).tempStorage(storage).build();
+                assertThat(TemplateFixtures.readCells(render(engine, template, data))).isEqualTo(expected);
+            }
+        }
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertThat(files).isEmpty();
+        }
+
+        PoiTemplateEngine tooSmall = PoiTemplateEngine.builder().sxssfWindowSize(100).tempFileCompressionLevel(0)
+                .tempStorage(TempStorage.directory(spillDir, 16 * 1024)).build();
+        assertThatThrownBy(() -> render(tooSmall, template, data)).hasStackTraceContaining("quota");
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("超过每个 Sheet 的行数上限时溢出到续表，重新输出表头并按 Sheet 计算行号")
+    void rolloverContinuesOnNewSheets() throws IOException {
+        byte[] template = TemplateFixtures.listTemplate();
+        Map<String, Object> data = TemplateFixtures.data(250);
+
+        for (RenderMode mode : new RenderMode[]{RenderMode.INLINE, RenderMode.PIPELINED}) {
+            PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(mode)
+                    .maxRowsPerSheet(100).sheetOverflowPolicy(SheetOverflowPolicy.ROLLOVER).build();
+            byte[] output = render(engine, template, data);
+
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+                assertThat(wb.getNumberOfSheets()).isEqualTo(3);
+                assertThat(wb.getSheetName(1)).isEqualTo("Data (2)");
+                assertThat(wb.getSheetName(2)).isEqualTo("Data (3)");
+                for (Sheet sheet : wb) {
+                    assertThat(sheet.getRow(0).getCell(0).getStringCellValue()).isEqualTo("ID");
+                    assertThat(sheet.getRow(0).getHeightInPoints()).isEqualTo(24f);
+                    assertThat(sheet.getColumnWidth(1)).isEqualTo(14 * 256);
+                }
+                assertThat(wb.getSheetAt(0).getLastRowNum()).isEqualTo(99);
+                assertThat(wb.getSheetAt(1).getRow(1).getCell(0).getNumericCellValue()).isEqualTo(100);
+                Sheet last = wb.getSheetAt(2);
+                assertThat(last.getRow(1).getCell(0).getNumericCellValue()).isEqualTo(199);
+                assertThat(last.getRow(52).getCell(0).getNumericCellValue()).isEqualTo(250);
+                assertThat(last.getRow(53).getCell(3).getCellFormula()).isEqualTo("SUM(D2:D53)");
+            }
+        }
+
+        PoiTemplateEngine failing = PoiTemplateEngine.builder().maxRowsPerSheet(100).build();
+        assertThatThrownBy(() -> render(failing, template, data)).hasStackTraceContaining("exceeds the maximum of 100 rows");
+    }
+
+    @Test
+    @DisplayName("分片导出共享编译结果，清单记录每个分片的行数")
+    void shardedExportWritesManifestAndZip(@TempDir Path dir) throws IOException {
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.INLINE).build();
+        AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate()));
+        List<TemplateFixtures.Item> items = TemplateFixtures.items(250);
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ShardManifest manifest = engine.sharded(template).parallelism(2).maxInFlight(2).build()
+                .exportToZip(Shard.bySize(items, 100, "part", "items", null), zip);
+
+        assertThat(manifest.getEntries()).extracting(ShardManifest.Entry::getFileName)
+                .containsExactly("part-1.xlsx", "part-2.xlsx", "part-3.xlsx");
+        // 每个分片多出表头行和合计行
+        assertThat(manifest.getEntries()).extracting(ShardManifest.Entry::getRows).containsExactly(102L, 102L, 52L);
+        assertThat(manifest.getTotalRows()).isEqualTo(256);
+        List<String> entryNames = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(TemplateFixtures.stream(zip.toByteArray()))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                entryNames.add(entry.getName());
+                if (entry.getName().equals("part-3.xlsx")) {
+                    try (XSSFWorkbook wb = new XSSFWorkbook(in)) {
+                        Sheet sheet = wb.getSheetAt(0);
+                        assertThat(sheet.getRow(1).getCell(0).getNumericCellValue()).isEqualTo(201);
+                        assertThat(sheet.getRow(51).getCell(3).getCellFormula()).isEqualTo("SUM(D2:D51)");
+                    }
+                    break;
+                }
+            }
+        }
+        assertThat(entryNames).contains("part-3.xlsx");
+
+        ShardManifest byCategory = engine.sharded(template).parallelism(2).build()
+                .export(Shard.byKey(items, TemplateFixtures.Item::getCategory, "items", null),
+                        shard -> Files.newOutputStream(dir.resolve(shard.getName() + ".xlsx")));
+        assertThat(byCategory.getEntries()).extracting(ShardManifest.Entry::getName)
+                .containsExactly("Hardware", "Software", "Services", "Support");
+        assertThat(byCategory.getTotalRows()).isEqualTo(250 + 4 * 2);
+        for (ShardManifest.Entry entry : byCategory.getEntries()) {
+            assertThat(Files.size(dir.resolve(entry.getFileName()))).isEqualTo(entry.getBytes());
+        }
+
+        assertThatThrownBy(() -> engine.sharded(template).build()
+                .export(Shard.byKey(items, TemplateFixtures.Item::getCategory, "items", null), shard -> {
+                    if (shard.getName().equals("Services")) throw new IOException("disk full");
+                    return new ByteArrayOutputStream();
+                }))
+                .hasMessageContaining("Shard 'Services' failed");
+    }
+
+    @Test
+    @DisplayName("结构相同的模板样式只创建一次，未被输出单元格用到的样式不会创建")
+    void stylesAreDedupedAndCreatedLazily() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            Row header = sheet.createRow(0);
+            String[] titles = {"ID", "Name", "Category", "Amount"};
+            for (int i = 0; i < titles.length; i++) {
+                // 每个表头单元格各自创建字体和样式，内容完全相同
+                Font bold = wb.createFont();
+                bold.setBold(true);
+                CellStyle style = wb.createCellStyle();
+                style.setFont(bold);
+                style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+                style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                Cell cell = header.createCell(i);
+                cell.setCellValue(titles[i]);
+                cell.setCellStyle(style);
+            }
+            CellStyle directiveStyle = wb.createCellStyle();
+            directiveStyle.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+            directiveStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            Cell directive = sheet.createRow(1).createCell(0);
+            directive.setCellValue("#foreach item in ${items}");
+            directive.setCellStyle(directiveStyle);
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("${item.id}");
+            body.createCell(1).setCellValue("${item.name}");
+            body.createCell(2).setCellValue("${item.category}");
+            body.createCell(3).setCellValue("${item.amount}");
+            sheet.createRow(3).createCell(0).setCellValue("#end");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            AnalyzedTemplate analyzed = engine.compile(TemplateFixtures.stream(template));
+            assertThat(analyzed.getStyleTable().getRegisteredStyleCount()).isGreaterThanOrEqualTo(5);
+            assertThat(analyzed.getStyleTable().size()).isLessThanOrEqualTo(3);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            engine.process(analyzed, TemplateFixtures.data(20), out);
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(out.toByteArray()))) {
+                // 输出工作簿的默认样式 + 模板默认样式（数据行）+ 一个表头样式，指令行的样式没有被输出
+                assertThat(wb.getNumCellStyles()).isEqualTo(3);
+                Sheet sheet = wb.getSheetAt(0);
+                for (int i = 0; i < 4; i++) {
+                    CellStyle style = sheet.getRow(0).getCell(i).getCellStyle();
+                    assertThat(wb.getFontAt(style.getFontIndexAsInt()).getBold()).isTrue();
+                    assertThat(style.getFillForegroundColor()).isEqualTo(IndexedColors.GREY_25_PERCENT.getIndex());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("样式快照在同一个已编译模板的多次渲染之间共享，输出样式与模板一致")
+    void styleSnapshotIsSharedAcrossRenders() throws IOException {
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().build(),
+                PoiTemplateEngine.builder().disableStreaming().build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            AnalyzedTemplate analyzed = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate()));
+            for (int run = 0; run < 2; run++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                engine.process(analyzed, TemplateFixtures.data(10), out);
+                try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(out.toByteArray()))) {
+                    Sheet sheet = wb.getSheetAt(0);
+                    CellStyle header = sheet.getRow(0).getCell(0).getCellStyle();
+                    assertThat(wb.getFontAt(header.getFontIndexAsInt()).getBold()).isTrue();
+                    assertThat(header.getFillForegroundColor()).isEqualTo(IndexedColors.GREY_25_PERCENT.getIndex());
+                    assertThat(sheet.getRow(1).getCell(3).getCellStyle().getDataFormatString()).isEqualTo("#,##0.00");
+                    assertThat(sheet.getRow(11).getCell(3).getCellStyle().getDataFormatString()).isEqualTo("#,##0.00");
+                }
+            }
+            assertThat(analyzed.getStyleTable().getSnapshot()).isSameAs(analyzed.getStyleTable().getSnapshot());
+        }
+    }
+
+    @Test
+    @DisplayName("#style 指令按条件派生样式，每种组合只创建一个样式")
+    void styleDirectiveDerivesBoundedVariants() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            CellStyle amountStyle = wb.createCellStyle();
+            amountStyle.setDataFormat(wb.createDataFormat().getFormat("#,##0.00"));
+            sheet.createRow(0).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(1);
+            body.createCell(0).setCellValue("${item.name} #style ${item.id % 10 == 0 ? 'bold' : ''}");
+            Cell amount = body.createCell(1);
+            amount.setCellValue("${item.amount} #style ${item.amount >= 100 ? 'fill:#FFC7CE;color:RED' : ''}");
+            amount.setCellStyle(amountStyle);
+            sheet.createRow(2).createCell(0).setCellValue("#end");
+            Cell total = sheet.createRow(3).createCell(1);
+            total.setCellValue("#formula SUM(B1:B${endRowNo}) #style bold; border:thin");
+            total.setCellStyle(amountStyle);
+            wb.write(out);
+            template = out.toByteArray();
+        }
+
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            byte[] output = render(engine, template, TemplateFixtures.data(200));
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+                Sheet sheet = wb.getSheetAt(0);
+                CellStyle plain = sheet.getRow(1).getCell(0).getCellStyle();
+                CellStyle bold = sheet.getRow(9).getCell(0).getCellStyle();
+                assertThat(wb.getFontAt(plain.getFontIndexAsInt()).getBold()).isFalse();
+                assertThat(wb.getFontAt(bold.getFontIndexAsInt()).getBold()).isTrue();
+                assertThat(sheet.getRow(19).getCell(0).getCellStyle().getIndex()).isEqualTo(bold.getIndex());
+
+                // item.amount = (i % 1000) * 1.25，第 81 项起不小于 100
+                CellStyle low = sheet.getRow(0).getCell(1).getCellStyle();
+                CellStyle high = sheet.getRow(80).getCell(1).getCellStyle();
+                assertThat(low.getDataFormatString()).isEqualTo("#,##0.00");
+                assertThat(high.getDataFormatString()).isEqualTo("#,##0.00");
+                assertThat(((XSSFCellStyle) high).getFillForegroundXSSFColor().getARGBHex()).isEqualTo("FFFFC7CE");
+                assertThat(wb.getFontAt(high.getFontIndexAsInt()).getColor()).isEqualTo(IndexedColors.RED.getIndex());
+                assertThat(sheet.getRow(150).getCell(1).getCellStyle().getIndex()).isEqualTo(high.getIndex());
+
+                CellStyle totalStyle = sheet.getRow(200).getCell(1).getCellStyle();
+                assertThat(sheet.getRow(200).getCell(1).getCellFormula()).isEqualTo("SUM(B1:B200)");
+                assertThat(totalStyle.getBorderTop()).isEqualTo(BorderStyle.THIN);
+                assertThat(totalStyle.getDataFormatString()).isEqualTo("#,##0.00");
+                // 默认样式、模板默认样式、金额样式，加上 bold、高亮、合计三个派生样式
+                assertThat(wb.getNumCellStyles()).isEqualTo(6);
+            }
+        }
+
+        byte[] dataDriven;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("#foreach item in ${items}");
+            sheet.createRow(1).createCell(0).setCellValue("${item.id} #style size:${8 + item.id % 20}");
+            sheet.createRow(2).createCell(0).setCellValue("#end");
+            wb.write(out);
+            dataDriven = out.toByteArray();
+        }
+        PoiTemplateEngine bounded = PoiTemplateEngine.builder().maxStyleVariants(10).build();
+        assertThatThrownBy(() -> render(bounded, dataDriven, TemplateFixtures.data(50)))
+                .hasStackTraceContaining("More than 10 distinct #style variants");
+        assertThatCode(() -> render(bounded, dataDriven, TemplateFixtures.data(5))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void autoColumnWidthFitsRenderedContent() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("Quarterly inventory report for all warehouses and regions");
+            sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, 2));
+            sheet.createRow(1).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("${item.name} / ${item.category}");
+            body.createCell(1).setCellValue("${item.category}仓库");
+            CellStyle amountStyle = wb.createCellStyle();
+            amountStyle.setDataFormat(wb.createDataFormat().getFormat("#,##0.00"));
+            Cell amount = body.createCell(2);
+            amount.setCellValue("${item.amount * 1000}");
+            amount.setCellStyle(amountStyle);
+            sheet.createRow(3).createCell(0).setCellValue("#end");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().autoColumnWidth().build(),
+                PoiTemplateEngine.builder().autoColumnWidth().disableStreaming().build(),
+                PoiTemplateEngine.builder().autoColumnWidth().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            byte[] output = render(engine, template, TemplateFixtures.data(300));
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+                Sheet sheet = wb.getSheetAt(0);
+                // "Item-299 / Software"：横向合并的标题不参与估算
+                assertThat(sheet.getColumnWidth(0)).isBetween(19 * 256, 25 * 256);
+                // "Hardware仓库"：全角字符按两个字符宽度计
+                assertThat(sheet.getColumnWidth(1)).isBetween(12 * 256, 16 * 256);
+                // "373,750.00"
+                assertThat(sheet.getColumnWidth(2)).isBetween(10 * 256, 14 * 256);
+            }
+        }
+
+        byte[] fixed = render(PoiTemplateEngine.builder().build(), template, TemplateFixtures.data(300));
+        try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(fixed))) {
+            assertThat(wb.getSheetAt(0).getColumnWidth(0)).isEqualTo(8 * 256);
+        }
+    }
+
+    @Test
+    void rowRelativeFormulasArePrecompiled() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("Amount");
+            sheet.createRow(1).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("${item.amount}");
+            body.createCell(1).setCellValue("#formula A${currentRowNo}*2");
+            body.createCell(2).setCellValue("#formula IF(ROW()>2,A${currentRowNo}-A${ currentRowNo - 1 },\"\") #style bold");
+            body.createCell(3).setCellValue("#formula SUM(A2:A${currentRowNo})+${item.id}");
+            sheet.createRow(3).createCell(0).setCellValue("#end");
+            sheet.createRow(4).createCell(1).setCellValue("#formula SUM(B2:B${endRowNo})");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().build(),
+                PoiTemplateEngine.builder().disableStreaming().build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            byte[] output = render(engine, template, TemplateFixtures.data(5));
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+                Sheet sheet = wb.getSheetAt(0);
+                assertThat(sheet.getRow(1).getCell(1).getCellFormula()).isEqualTo("A2*2");
+                assertThat(sheet.getRow(5).getCell(1).getCellFormula()).isEqualTo("A6*2");
+                assertThat(sheet.getRow(5).getCell(2).getCellFormula()).isEqualTo("IF(ROW()>2,A6-A5,\"\")");
+                assertThat(wb.getFontAt(sheet.getRow(5).getCell(2).getCellStyle().getFontIndexAsInt()).getBold()).isTrue();
+                // 引用了其他变量的公式仍然逐行求值
+                assertThat(sheet.getRow(5).getCell(3).getCellFormula()).isEqualTo("SUM(A2:A6)+5");
+                assertThat(sheet.getRow(6).getCell(1).getCellFormula()).isEqualTo("SUM(B2:B6)");
+            }
+        }
+    }
+
+    @Test
+    void nativeFormulasFollowExpandedRows() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("Amount");
+            sheet.createRow(1).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("${item.amount}");
+            body.createCell(1).setCellFormula("A3*2");
+            sheet.createRow(3).createCell(0).setCellValue("#end");
+            Row total = sheet.createRow(4);
+            total.createCell(1).setCellFormula("SUM(A3:A3)");
+            total.createCell(2).setCellFormula("$A$1&\"A3\"&B3");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().build(),
+                PoiTemplateEngine.builder().disableStreaming().build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build()
+        };
+        for (PoiTemplateEngine engine : engines) {
+            byte[] output = render(engine, template, TemplateFixtures.data(5));
+            try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(output))) {
+                Sheet sheet = wb.getSheetAt(0);
+                assertThat(sheet.getRow(1).getCell(1).getCellFormula()).isEqualTo("A2*2");
+                assertThat(sheet.getRow(5).getCell(1).getCellFormula()).isEqualTo("A6*2");
+                // 循环之后的区域展开到整个循环，字符串常量和绝对引用的静态行保持不变
+                assertThat(sheet.getRow(6).getCell(1).getCellFormula()).isEqualTo("SUM(A2:A6)");
+                assertThat(sheet.getRow(6).getCell(2).getCellFormula()).isEqualTo("$A$1&\"A3\"&B6");
+            }
+        }
+    }
+
+    @Test
+    void progressiveFlushStreamsRowsBeforeRenderCompletes() {
+        byte[] template = TemplateFixtures.listTemplate();
+        List<TemplateFixtures.Item> items = TemplateFixtures.items(10000);
+        class FlushCountingStream extends ByteArrayOutputStream {
+            int flushes;
+
+            @Override
+            public void flush() {
+                flushes++;
+            }
+        }
+        FlushCountingStream out = new FlushCountingStream();
+        List<int[]> progress = new ArrayList<>();
+        Map<String, Object> data = new java.util.HashMap<>();
+        // 取完最后一个元素时记录输出流的状态
+        data.put("items", (Iterable<TemplateFixtures.Item>) () -> new java.util.Iterator<TemplateFixtures.Item>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == items.size() && progress.isEmpty()) {
+                    progress.add(new int[]{out.flushes, out.size()});
+                }
+                return next < items.size();
+            }
+
+            @Override
+            public TemplateFixtures.Item next() {
+                return items.get(next++);
+            }
+        });
+
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.INLINE)
+                .outputBackend(DirectXlsxOutputBackend.builder().progressiveFlush(500).build()).build();
+        engine.process(TemplateFixtures.stream(template), data, out);
+
+        // 10000 行按 500 行冲刷一次，渲染结束前已经有 19 次以上的刷新和大部分数据
+        assertThat(progress.get(0)[0]).isGreaterThanOrEqualTo(19);
+        assertThat(progress.get(0)[1]).isGreaterThan(out.size() / 2);
+        byte[] expected = render(PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend()).build(),
+                template, TemplateFixtures.data(10000));
+        assertThat(TemplateFixtures.readCells(out.toByteArray())).isEqualTo(TemplateFixtures.readCells(expected));
+        assertThatThrownBy(() -> DirectXlsxOutputBackend.builder().progressiveFlush(100).parallelCompression().build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pathAndChannelTargetsMatchStreamOutput(@TempDir Path dir) throws IOException {
+        byte[] template = TemplateFixtures.listTemplate();
+        Map<String, Object> data = TemplateFixtures.data(500);
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().build();
+        List<List<String>> expected = TemplateFixtures.readCells(render(engine, template, data));
+
+        Path templateFile = dir.resolve("template.xlsx");
+        Path outputFile = dir.resolve("output.xlsx");
+        Files.write(templateFile, template);
+        Files.write(outputFile, new byte[]{1, 2, 3});
+        engine.process(templateFile, data, outputFile);
+        assertThat(TemplateFixtures.readCells(Files.readAllBytes(outputFile))).isEqualTo(expected);
+        assertThat(engine.compile(templateFile).getSheetOrder()).containsExactly("Data");
+
+        // 文件通道从当前位置读到末尾，调用方负责关闭
+        Path channelOutput = dir.resolve("channel.xlsx");
+        try (FileChannel in = FileChannel.open(templateFile, StandardOpenOption.READ);
+             FileChannel outChannel = FileChannel.open(channelOutput, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            engine.process(in, data, outChannel);
+            assertThat(in.isOpen()).isTrue();
+        }
+        assertThat(TemplateFixtures.readCells(Files.readAllBytes(channelOutput))).isEqualTo(expected);
+
+        // 非文件通道按流读取
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.process(Channels.newChannel(TemplateFixtures.stream(template)), data,
+                Channels.newChannel(out));
+        assertThat(TemplateFixtures.readCells(out.toByteArray())).isEqualTo(expected);
+    }
+
+    @Test
+    void sharedEngineRendersConcurrently() throws Exception {
+        PoiTemplateEngine[] engines = {
+                PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).queueCapacity(64).build(),
+                PoiTemplateEngine.builder().outputBackend(new DirectXlsxOutputBackend(16)).build()
+        };
+        Map<String, Object> data = TemplateFixtures.data(600);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (PoiTemplateEngine engine : engines) {
+                AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate("${!item.category}")));
+                ByteArrayOutputStream reference = new ByteArrayOutputStream();
+                engine.process(template, data, reference);
+                String expected = TemplateFixtures.readZipEntry(reference.toByteArray(), "xl/worksheets/sheet1.xml");
+
+                List<Future<String>> renders = new ArrayList<>();
+                for (int i = 0; i < 24; i++) {
+                    renders.add(executor.submit(() -> {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        engine.process(template, data, out);
+                        return TemplateFixtures.readZipEntry(out.toByteArray(), "xl/worksheets/sheet1.xml");
+                    }));
+                }
+                for (Future<String> render : renders) {
+                    assertThat(render.get(60, TimeUnit.SECONDS)).isEqualTo(expected);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("邮件合并：每个数据模型输出一个文件，输出与单独渲染一致")
+    void mailMergeWritesOneFilePerModel(@TempDir Path dir) throws IOException {
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().renderMode(RenderMode.PIPELINED).build();
+        AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate()));
+        List<Map<String, Object>> models = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            models.add(TemplateFixtures.data(i * 3));
+        }
+
+        ShardManifest manifest = engine.sharded(template).parallelism(2).maxInFlight(2).build()
+                .mailMerge(models.iterator(), (index, model) -> Files.newOutputStream(dir.resolve("statement-" + index + ".xlsx")));
+
+        assertThat(manifest.getEntries()).extracting(ShardManifest.Entry::getName)
+                .containsExactly("1", "2", "3", "4", "5", "6");
+        assertThat(manifest.getEntries()).extracting(ShardManifest.Entry::getRows)
+                .containsExactly(5L, 8L, 11L, 14L, 17L, 20L);
+        for (int i = 0; i < models.size(); i++) {
+            Path file = dir.resolve("statement-" + i + ".xlsx");
+            assertThat(Files.size(file)).isEqualTo(manifest.getEntries().get(i).getBytes());
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            engine.process(template, models.get(i), expected);
+            assertThat(TemplateFixtures.readCells(Files.readAllBytes(file)))
+                    .isEqualTo(TemplateFixtures.readCells(expected.toByteArray()));
+        }
+
+        List<Map<String, Object>> withNull = new ArrayList<>(models.subList(0, 2));
+        withNull.add(null);
+        assertThatThrownBy(() -> engine.sharded(template).build().mailMerge(withNull, (index, model) -> new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Model #3 is null");
+    }
+
+    @Test
+    @DisplayName("分片导出异常退出时，调用方线程池中的在途渲染先被取消并结束，方法返回后不再写入输出目标")
+    void failedShardedExportStopsInFlightRenders() throws Exception {
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().build();
+        AnalyzedTemplate template = engine.compile(TemplateFixtures.stream(TemplateFixtures.listTemplate()));
+        // 第一个模型很快完成，取第三个模型失败时第二个模型仍在渲染
+        List<Map<String, Object>> models = new ArrayList<>();
+        models.add(TemplateFixtures.data(10));
+        models.add(TemplateFixtures.data(50_000));
+        models.add(null);
+        AtomicInteger openTargets = new AtomicInteger();
+        AtomicInteger writes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ShardedExport export = engine.sharded(template).executor(executor).parallelism(2).maxInFlight(2).build();
+            assertThatThrownBy(() -> export.mailMerge(models, (index, model) -> {
+                openTargets.incrementAndGet();
+                return new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        writes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        writes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void close() {
+                        openTargets.decrementAndGet();
+                    }
+                };
+            })).hasMessageContaining("Model #3 is null");
+
+            assertThat(openTargets.get()).isZero();
+            int writesAtReturn = writes.get();
+            Thread.sleep(200);
+            assertThat(writes.get()).isEqualTo(writesAtReturn);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("#style 必须是独立的记号，普通文本和自定义处理器处理的单元格不受影响")
+    void styleDirectiveOnlyMatchesSeparateToken() throws IOException {
+        byte[] template;
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Row row = wb.createSheet("Data").createRow(0);
+            row.createCell(0).setCellValue("备注#style 说明");
+            row.createCell(1).setCellValue("x#style y");
+            row.createCell(2).setCellValue("备注 \\#style 说明");
+            row.createCell(3).setCellValue("#note 审核 #style bold");
+            row.createCell(4).setCellValue("${label} #style bold");
+            wb.write(out);
+            template = out.toByteArray();
+        }
+        CellSyntaxHandler noteHandler = new CellSyntaxHandler() {
+            @Override
+            public boolean canHandle(String rawText) {
+                return rawText != null && rawText.startsWith("#note ");
+            }
+
+            @Override
+            public CellTemplate handle(CellParseContext context) {
+                return new DefaultCellTemplate(context.getTemplateAddress(), context.getColIndex(),
+                        "NOTE " + context.getRawStringValue().substring("#note ".length()), false, false);
+            }
+        };
+        PoiTemplateEngine engine = PoiTemplateEngine.builder().registerCellSyntaxHandler(noteHandler).build();
+        Map<String, Object> data = new HashMap<>();
+        data.put("label", "合计");
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(TemplateFixtures.stream(render(engine, template, data)))) {
+            Row row = wb.getSheetAt(0).getRow(0);
+            assertThat(row.getCell(0).getStringCellValue()).isEqualTo("备注#style 说明");
+            assertThat(row.getCell(1).getStringCellValue()).isEqualTo("x#style y");
+            assertThat(row.getCell(2).getStringCellValue()).isEqualTo("备注 #style 说明");
+            // 自定义处理器优先于 #style，拿到完整的单元格文本
+            assertThat(row.getCell(3).getStringCellValue()).isEqualTo("NOTE 审核 #style bold");
+            assertThat(row.getCell(4).getStringCellValue()).isEqualTo("合计");
+            assertThat(wb.getFontAt(row.getCell(4).getCellStyle().getFontIndexAsInt()).getBold()).isTrue();
+            assertThat(wb.getFontAt(row.getCell(0).getCellStyle().getFontIndexAsInt()).getBold()).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("只实现三参数 process 的旧实现类仍可使用句柄、Path 和通道重载")
+    void legacyEngineImplementationsKeepWorking(@TempDir Path dir) throws Exception {
+        List<Map<String, Object>> seen = new ArrayList<>();
+        ExcelTemplateEngine legacy = new ExcelTemplateEngine() {
+            @Override
+            public void process(InputStream templateStream, Map<String, Object> data, OutputStream outputStream) {
+                seen.add(data);
+                try {
+                    byte[] buffer = new byte[8192];
+                    for (int n; (n = templateStream.read(buffer)) > 0; ) {
+                        outputStream.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        Map<String, Object> data = new HashMap<>();
+        Path templateFile = dir.resolve("template.bin");
+        Files.write(templateFile, "template".getBytes(StandardCharsets.UTF_8));
+        Path outputFile = dir.resolve("out.bin");
+
+        legacy.process(templateFile, data, outputFile);
+        assertThat(Files.readAllBytes(outputFile)).isEqualTo("template".getBytes(StandardCharsets.UTF_8));
+        assertThat(seen).hasSize(1);
+
+        RenderHandle cancelled = RenderHandle.create();
+        cancelled.cancel();
+        assertThatThrownBy(() -> legacy.process(TemplateFixtures.stream(new byte[0]), data, new ByteArrayOutputStream(), cancelled))
+                .isInstanceOf(RenderCancelledException.class);
+        assertThat(seen).hasSize(1);
+    }
+}
@@ -35,6 +35,7 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.Consumer;
@@ -55,7 +56,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 public class NewTest {
 
     private static final Logger testLogger = LoggerFactory.getLogger(FullFeatureTest.class);
-    private static final String OUTPUT_DIR = "target\\test-output";
+    private static final String OUTPUT_DIR = Paths.get("target", "test-output").toString();
 
     // ===================================================================================
     // == 自定义语法插件实现 (作为内部类，便于测试)
@@ -405,6 +406,11 @@ public class NewTest {
             BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
             ImageIO.write(image, "png", imageFile);
         }
+        File logoFile = new File(OUTPUT_DIR, "black.png");
+        if (!logoFile.exists()) {
+            BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+            ImageIO.write(image, "png", logoFile);
+        }
     }
     /**
      * 准备通用的测试数据模型。
@@ -0,0 +1,166 @@
+package com.github.jwj.flexcel;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 测试与基准共用的模板和数据构造工具。
+ * 模板在内存中用 XSSFWorkbook 生成，避免依赖额外的资源文件。
+ */
+final class TemplateFixtures {
+
+    private TemplateFixtures() {}
+
+    public static class Item {
+        private final int id;
+        private final String name;
+        private final String category;
+        private final double amount;
+
+        public Item(int id, String name, String category, double amount) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.amount = amount;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getCategory() { return category; }
+        public double getAmount() { return amount; }
+    }
+
+    /**
+     * 生成一个带表头、单层 #foreach 和合计公式的模板：
+     * <pre>
+     * | ID                         | Name           | Category         | Amount                         |
+     * | #foreach item in ${items}  |                |                  |                                |
+     * | ${item.id}                 | ${item.name}   | ${item.category} | ${item.amount}                 |
+     * | #end                       |                |                  |                                |
+     * | Total                      |                |                  | #formula SUM(D2:D${endRowNo})  |
+     * </pre>
+     */
+    static byte[] listTemplate() {
+        return listTemplate("${item.category}");
+    }
+
+    /**
+     * 与 {@link #listTemplate()} 相同，但 Category 列使用给定的单元格内容（例如 {@code ${!item.category}}）。
+     */
+    static byte[] listTemplate(String categoryCell) {
+        try (Workbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Data");
+            CellStyle headerStyle = wb.createCellStyle();
+            Font bold = wb.createFont();
+            bold.setBold(true);
+            headerStyle.setFont(bold);
+            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            CellStyle amountStyle = wb.createCellStyle();
+            amountStyle.setDataFormat(wb.createDataFormat().getFormat("#,##0.00"));
+
+            Row header = sheet.createRow(0);
+            String[] titles = {"ID", "Name", "Category", "Amount"};
+            for (int i = 0; i < titles.length; i++) {
+                Cell cell = header.createCell(i);
+                cell.setCellValue(titles[i]);
+                cell.setCellStyle(headerStyle);
+            }
+            header.setHeightInPoints(24);
+            sheet.createRow(1).createCell(0).setCellValue("#foreach item in ${items}");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("${item.id}");
+            body.createCell(1).setCellValue("${item.name}");
+            body.createCell(2).setCellValue(categoryCell);
+            Cell amount = body.createCell(3);
+            amount.setCellValue("${item.amount}");
+            amount.setCellStyle(amountStyle);
+            sheet.createRow(3).createCell(0).setCellValue("#end");
+            Row total = sheet.createRow(4);
+            total.createCell(0).setCellValue("Total");
+            Cell sum = total.createCell(3);
+            sum.setCellValue("#formula SUM(D2:D${endRowNo})");
+            sum.setCellStyle(amountStyle);
+            for (int i = 0; i < titles.length; i++) {
+                sheet.setColumnWidth(i, 14 * 256);
+            }
+            wb.write(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Item> items(int count) {
+        String[] categories = {"Hardware", "Software", "Services", "Support"};
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Item(i + 1, "Item-" + i, categories[(i / 50) % categories.length], (i % 1000) * 1.25))
+                .collect(Collectors.toList());
+    }
+
+    static Map<String, Object> data(int count) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", items(count));
+        return data;
+    }
+
+    /**
+     * 读取输出工作簿中所有 Sheet 的单元格文本（公式取公式字符串），用于比较不同配置下的输出是否一致。
+     */
+    static List<List<String>> readCells(byte[] xlsx) {
+        List<List<String>> rows = new ArrayList<>();
+        DataFormatter formatter = new DataFormatter();
+        try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(xlsx))) {
+            for (Sheet sheet : wb) {
+                for (Row row : sheet) {
+                    List<String> values = new ArrayList<>();
+                    values.add(sheet.getSheetName() + "!" + (row.getRowNum() + 1));
+                    for (Cell cell : row) {
+                        values.add(cell.getCellType() == CellType.FORMULA ? "=" + cell.getCellFormula() : formatter.formatCellValue(cell));
+                    }
+                    rows.add(values);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * 读取 zip 包（例如 xlsx）中指定条目的文本内容。
+     */
+    static String readZipEntry(byte[] zip, String entryName) {
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                if (entry.getName().equals(entryName)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    for (int n; (n = in.read(buffer)) > 0; ) {
+                        out.write(buffer, 0, n);
+                    }
+                    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new IllegalArgumentException("No zip entry named " + entryName);
+    }
+
+    static InputStream stream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+}
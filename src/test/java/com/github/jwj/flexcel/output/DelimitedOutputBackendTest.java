@@ -0,0 +1,88 @@
+package com.github.jwj.flexcel.output;
+
+import com.github.jwj.flexcel.style.RowFormat;
+import com.github.jwj.flexcel.style.TemplateStyleTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelimitedOutputBackendTest {
+
+    private static final int NO_STYLE = RowFormat.NO_STYLE;
+
+    /**
+     * 写出一个 Sheet：一行包含需要引号的文本、数值、布尔值和空列，隔一行后再写一行。
+     */
+    private static void writeSheet(WorkbookOutput workbook, String name) throws IOException {
+        SheetOutput sheet = workbook.createSheet(name);
+        sheet.startRow(0, -1);
+        sheet.writeString(0, "a,b", NO_STYLE);
+        sheet.writeString(1, "say \"hi\"", NO_STYLE);
+        sheet.writeNumber(2, 1.5, NO_STYLE);
+        sheet.writeBoolean(4, true, NO_STYLE);
+        sheet.endRow();
+        sheet.startRow(2, -1);
+        sheet.writeNumber(0, 42, NO_STYLE);
+        sheet.writeFormula(1, "SUM(A1:A2)", NO_STYLE);
+        sheet.endRow();
+        sheet.finish();
+    }
+
+    private static String render(DelimitedOutputBackend backend) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WorkbookOutput workbook = backend.open(new TemplateStyleTable(), out)) {
+            writeSheet(workbook, "Data");
+            workbook.finish();
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("按引号策略输出字段，跳过的行输出为空行")
+    void quotesFieldsAccordingToPolicy() throws IOException {
+        assertThat(render(DelimitedOutputBackend.builder().build()))
+                .isEqualTo("\"a,b\",\"say \"\"hi\"\"\",1.5,,TRUE\r\n\r\n42,\r\n");
+        assertThat(render(DelimitedOutputBackend.builder().quoting(DelimitedOutputBackend.Quoting.NON_NUMERIC).lineSeparator("\n")
+                .formulaPolicy(DelimitedOutputBackend.FormulaPolicy.TEXT).build()))
+                .isEqualTo("\"a,b\",\"say \"\"hi\"\"\",1.5,,TRUE\n\n42,\"SUM(A1:A2)\"\n");
+        assertThat(render(DelimitedOutputBackend.builder().tsv().quoting(DelimitedOutputBackend.Quoting.ALL).lineSeparator("\n")
+                .formulaPolicy(DelimitedOutputBackend.FormulaPolicy.TEXT).build()))
+                .isEqualTo("\"a,b\"\t\"say \"\"hi\"\"\"\t\"1.5\"\t\t\"TRUE\"\n\n\"42\"\t\"SUM(A1:A2)\"\n");
+    }
+
+    @Test
+    @DisplayName("zipPerSheet 模式下每个 Sheet 输出为 zip 包中的一个文件")
+    void writesOneZipEntryPerSheet() throws IOException {
+        DelimitedOutputBackend backend = DelimitedOutputBackend.builder().tsv().zipPerSheet().byteOrderMark().build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WorkbookOutput workbook = backend.open(new TemplateStyleTable(), out)) {
+            writeSheet(workbook, "First");
+            writeSheet(workbook, "Second");
+            workbook.finish();
+        }
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                for (int n; (n = zip.read(buffer)) > 0; ) {
+                    content.write(buffer, 0, n);
+                }
+                entries.put(entry.getName(), new String(content.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+        assertThat(entries).containsOnlyKeys("First.tsv", "Second.tsv");
+        assertThat(entries.get("Second.tsv")).startsWith("\uFEFFa,b\t").endsWith("42\t\r\n");
+    }
+}
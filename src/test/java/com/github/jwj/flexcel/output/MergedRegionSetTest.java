@@ -0,0 +1,50 @@
+package com.github.jwj.flexcel.output;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MergedRegionSetTest {
+
+    private static List<String> regions(MergedRegionSet set) {
+        List<String> refs = new ArrayList<>();
+        for (int i = 0; i < set.size(); i++) {
+            refs.add(set.toCellRangeAddress(i).formatAsString());
+        }
+        return refs;
+    }
+
+    @Test
+    @DisplayName("按登记顺序剔除与先前区域重叠的区域和单单元格区域")
+    void dropsOverlappingAndSingleCellRegionsInInsertionOrder() {
+        MergedRegionSet set = new MergedRegionSet();
+        set.add(0, 3, 0, 0);    // A1:A4
+        set.add(4, 5, 0, 0);    // A5:A6，与 A1:A4 相邻但不重叠
+        set.add(2, 2, 0, 2);    // A3:C3，与 A1:A4 重叠
+        set.add(2, 2, 1, 2);    // B3:C3
+        set.add(7, 7, 4, 4);    // 单个单元格
+        set.add(1, 6, 2, 3);    // C2:D7，与 B3:C3 重叠
+        set.add(6, 1, 3, 2);    // 坐标颠倒的 C2:D7，同样重叠
+
+        assertThat(set.validate("Data")).isEqualTo(4);
+        assertThat(regions(set)).containsExactly("A1:A4", "A5:A6", "B3:C3");
+    }
+
+    @Test
+    @DisplayName("大量纵向合并的检查是近线性的")
+    void validatesManyVerticalMergesQuickly() {
+        MergedRegionSet set = new MergedRegionSet();
+        for (int row = 0; row < 200_000; row += 2) {
+            set.add(row, row + 1, 0, 0);
+            set.add(row, row + 1, 2, 3);
+        }
+        long start = System.nanoTime();
+        assertThat(set.validate("Data")).isZero();
+        assertThat(set.size()).isEqualTo(200_000);
+        assertThat(System.nanoTime() - start).isLessThan(5_000_000_000L);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.jwj.flexcel.parser.ast.template;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TemplateFormulaTest {
+
+    @Test
+    @DisplayName("平移后行号小于 1 的引用输出为 #REF!，而不是钳到第 1 行")
+    void underflowingReferenceBecomesRefError() {
+        // 模板第 5 行的公式输出到第 2 行，整体上移 3 行
+        assertThat(TemplateFormula.compile("A1+B5").render(null, 4, 2)).isEqualTo("#REF!+B2");
+        assertThat(TemplateFormula.compile("$A$3*2").render(null, 4, 2)).isEqualTo("#REF!*2");
+        // 区域只要有一端越界，整个区域都是 #REF!
+        assertThat(TemplateFormula.compile("SUM(A2:A5)").render(null, 4, 2)).isEqualTo("SUM(#REF!)");
+        assertThat(TemplateFormula.compile("SUM(A4:A5)").render(null, 4, 2)).isEqualTo("SUM(A1:A2)");
+    }
+
+    @Test
+    @DisplayName("平移后行号超过 1048576 的引用输出为 #REF!，而不是钳到最后一行")
+    void overflowingReferenceBecomesRefError() {
+        assertThat(TemplateFormula.compile("A1+A2").render(null, 0, 1048576)).isEqualTo("A1048576+#REF!");
+        assertThat(TemplateFormula.compile("SUM(A1:A3)").render(null, 0, 1048575)).isEqualTo("SUM(#REF!)");
+        assertThat(TemplateFormula.compile("SUM(A1:A2)").render(null, 0, 1048575)).isEqualTo("SUM(A1048575:A1048576)");
+    }
+}
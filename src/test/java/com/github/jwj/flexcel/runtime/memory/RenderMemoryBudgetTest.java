@@ -0,0 +1,35 @@
+package com.github.jwj.flexcel.runtime.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RenderMemoryBudgetTest {
+
+    @Test
+    @DisplayName("关闭后迟到的释放不会重复归还引擎预算")
+    void releaseAfterCloseDoesNotDriftEngineBudget() throws InterruptedException {
+        MemoryBudget engineBudget = new MemoryBudget(1024, 4096);
+        RenderMemoryBudget cancelled = engineBudget.openRender();
+        cancelled.acquire(300, () -> { });
+        cancelled.acquire(200, () -> { });
+        cancelled.updateWindowBytes(100);
+        assertThat(engineBudget.getEngineBytesInUse()).isEqualTo(600);
+
+        RenderMemoryBudget other = engineBudget.openRender();
+        other.acquire(400, () -> { });
+
+        // 取消时生产者先关闭预算，消费者随后才释放它正在写出的行
+        cancelled.close();
+        cancelled.release(300);
+        cancelled.updateWindowBytes(0);
+        cancelled.close();
+        assertThat(cancelled.getBytesInUse()).isZero();
+        assertThat(engineBudget.getEngineBytesInUse()).isEqualTo(400);
+
+        other.release(500);
+        assertThat(other.getBytesInUse()).isZero();
+        assertThat(engineBudget.getEngineBytesInUse()).isZero();
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.jwj.flexcel.runtime.pool;
+
+import com.github.jwj.flexcel.runtime.dto.RenderedRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultObjectPoolTest {
+
+    /**
+     * 模拟一次渲染：同时借出 {@code outstanding} 行后全部归还。
+     */
+    private static void simulateRender(DefaultObjectPool pool, int outstanding) {
+        List<RenderedRow> rows = new ArrayList<>();
+        for (int i = 0; i < outstanding; i++) {
+            rows.add(pool.acquireRow());
+        }
+        rows.forEach(pool::returnRow);
+        pool.onRenderComplete();
+    }
+
+    @Test
+    @DisplayName("固定容量池统计命中、未命中、丢弃和借出峰值")
+    void fixedPoolCountsHitsMissesAndDiscards() {
+        DefaultObjectPool pool = new DefaultObjectPool(4, 4, 4);
+        simulateRender(pool, 6);
+        simulateRender(pool, 3);
+
+        ObjectPoolStatistics.Counters rows = pool.getStatistics().getRows();
+        assertThat(rows.getMisses()).isEqualTo(6);
+        assertThat(rows.getHits()).isEqualTo(3);
+        assertThat(rows.getDiscards()).isEqualTo(2);
+        assertThat(rows.getPeakOutstanding()).isEqualTo(6);
+        assertThat(rows.getRetainedCapacity()).isEqualTo(4);
+        assertThat(rows.getPooled()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("自适应池随工作集扩大保留容量，空闲后逐步收缩")
+    void adaptivePoolFollowsWorkingSet() {
+        DefaultObjectPool pool = new DefaultObjectPool(4096, 4096, 4096, true);
+        assertThat(pool.getStatistics().getRows().getRetainedCapacity()).isEqualTo(16);
+
+        simulateRender(pool, 1000);
+        ObjectPoolStatistics.Counters afterLoad = pool.getStatistics().getRows();
+        assertThat(afterLoad.getRetainedCapacity()).isEqualTo(1250);
+
+        // 容量扩大后，归还的对象被保留下来，此后同样规模的渲染全部命中
+        simulateRender(pool, 1000);
+        assertThat(pool.getStatistics().getRows().getPooled()).isEqualTo(1000);
+        ObjectPoolStatistics.Counters warmed = pool.getStatistics().getRows();
+        simulateRender(pool, 1000);
+        ObjectPoolStatistics.Counters steady = pool.getStatistics().getRows();
+        assertThat(steady.getHits() - warmed.getHits()).isEqualTo(1000);
+        assertThat(steady.getMisses() - warmed.getMisses()).isZero();
+
+        for (int i = 0; i < 8; i++) {
+            simulateRender(pool, 10);
+        }
+        ObjectPoolStatistics.Counters idle = pool.getStatistics().getRows();
+        assertThat(idle.getRetainedCapacity()).isEqualTo(16);
+        assertThat(idle.getPooled()).isLessThanOrEqualTo(16);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.jwj.flexcel.runtime.pool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MpmcArrayQueueTest {
+
+    @Test
+    @DisplayName("容量取整为 2 的幂，满时 offer 失败，空时 poll 返回 null，且保持 FIFO")
+    void boundedFifo() {
+        MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(3);
+        assertThat(queue.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.offer(i)).isTrue();
+        }
+        assertThat(queue.offer(99)).isFalse();
+        assertThat(queue.size()).isEqualTo(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertThat(queue.poll()).isEqualTo(i);
+                assertThat(queue.offer(i)).isTrue();
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    @DisplayName("多生产者多消费者并发下元素不丢失也不重复")
+    void concurrentProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 200_000;
+        int total = producers * perProducer;
+        MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger consumed = new AtomicInteger();
+        List<Future<BitSet>> results = new ArrayList<>();
+        try {
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!queue.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (int c = 0; c < consumers; c++) {
+                results.add(executor.submit(() -> {
+                    BitSet seen = new BitSet(total);
+                    start.await();
+                    while (consumed.get() < total) {
+                        Integer value = queue.poll();
+                        if (value == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        assertThat(seen.get(value)).isFalse();
+                        seen.set(value);
+                        consumed.incrementAndGet();
+                    }
+                    return seen;
+                }));
+            }
+            start.countDown();
+            BitSet all = new BitSet(total);
+            for (Future<BitSet> result : results) {
+                BitSet seen = result.get(60, TimeUnit.SECONDS);
+                assertThat(all.intersects(seen)).isFalse();
+                all.or(seen);
+            }
+            assertThat(all.cardinality()).isEqualTo(total);
+            assertThat(queue.poll()).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}